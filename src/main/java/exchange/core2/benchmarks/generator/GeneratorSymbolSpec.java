@@ -19,7 +19,7 @@ import exchange.core2.orderbook.ISymbolSpecification;
 
 import java.util.Objects;
 
-// TODO Use generic interface and factory so that generator can instatiate symbols of required type (to reduce GC pressure)
+// see SymbolTable for columnar storage of large symbol universes (flyweight views instead of objects)
 public final class GeneratorSymbolSpec implements ISymbolSpecification {
 
     private final int symbolId;
@@ -155,7 +155,35 @@ public final class GeneratorSymbolSpec implements ISymbolSpecification {
 
     @Override
     public int hashCode() {
-        return Objects.hash(symbolId, symbolType, baseCurrency, quoteCurrency, baseScaleK, quoteScaleK, takerFee, makerFee, marginBuy, marginSell);
+        return hash(symbolId, symbolType, baseCurrency, quoteCurrency, baseScaleK, quoteScaleK, takerFee, makerFee, marginBuy, marginSell);
+    }
+
+    /**
+     * Same value as Objects.hash of all fields, but without varargs array and boxing.
+     */
+    public static int hash(int symbolId,
+                           SymbolType symbolType,
+                           int baseCurrency,
+                           int quoteCurrency,
+                           long baseScaleK,
+                           long quoteScaleK,
+                           long takerFee,
+                           long makerFee,
+                           long marginBuy,
+                           long marginSell) {
+
+        int result = 1;
+        result = 31 * result + Integer.hashCode(symbolId);
+        result = 31 * result + Objects.hashCode(symbolType);
+        result = 31 * result + Integer.hashCode(baseCurrency);
+        result = 31 * result + Integer.hashCode(quoteCurrency);
+        result = 31 * result + Long.hashCode(baseScaleK);
+        result = 31 * result + Long.hashCode(quoteScaleK);
+        result = 31 * result + Long.hashCode(takerFee);
+        result = 31 * result + Long.hashCode(makerFee);
+        result = 31 * result + Long.hashCode(marginBuy);
+        result = 31 * result + Long.hashCode(marginSell);
+        return result;
     }
 
     public enum SymbolType {
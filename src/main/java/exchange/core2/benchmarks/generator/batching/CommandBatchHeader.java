@@ -0,0 +1,57 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.batching;
+
+import org.agrona.DirectBuffer;
+
+/**
+ * Layout of a batch header (one cache line). Commands follow the header in merged layout: [code][symbolId][body].
+ */
+public final class CommandBatchHeader {
+
+    public static final int HEADER_SIZE = 64;
+
+    // number of commands in the batch
+    public static final int OFFSET_COUNT = 0;
+    // total length of commands following the header
+    public static final int OFFSET_PAYLOAD_LENGTH = 4;
+    // sequence number of the first command
+    public static final int OFFSET_FIRST_SEQUENCE = 8;
+    // number of distinct symbols
+    public static final int OFFSET_SYMBOLS_TOUCHED = 16;
+    // bit (symbolId & 63) is set for every symbol in the batch, can be used for routing to shards
+    public static final int OFFSET_SYMBOLS_MASK = 24;
+
+    public static int count(final DirectBuffer buffer, final int batchOffset) {
+        return buffer.getInt(batchOffset + OFFSET_COUNT);
+    }
+
+    public static int payloadLength(final DirectBuffer buffer, final int batchOffset) {
+        return buffer.getInt(batchOffset + OFFSET_PAYLOAD_LENGTH);
+    }
+
+    public static long firstSequence(final DirectBuffer buffer, final int batchOffset) {
+        return buffer.getLong(batchOffset + OFFSET_FIRST_SEQUENCE);
+    }
+
+    public static int symbolsTouched(final DirectBuffer buffer, final int batchOffset) {
+        return buffer.getInt(batchOffset + OFFSET_SYMBOLS_TOUCHED);
+    }
+
+    public static long symbolsMask(final DirectBuffer buffer, final int batchOffset) {
+        return buffer.getLong(batchOffset + OFFSET_SYMBOLS_MASK);
+    }
+}
@@ -0,0 +1,196 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.batching;
+
+import exchange.core2.benchmarks.generator.storage.CommandCursor;
+import exchange.core2.benchmarks.generator.storage.CommandView;
+import exchange.core2.benchmarks.generator.storage.CommandsCorpus;
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+import exchange.core2.benchmarks.generator.storage.SegmentedBufferWriter;
+import org.agrona.BitUtil;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.eclipse.collections.impl.set.mutable.primitive.IntHashSet;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Merged commands packed into fixed-capacity, cache-line aligned batches (ready for publishing into a ring buffer).
+ * <p>
+ * Every batch occupies exactly batchCapacity bytes: {@link CommandBatchHeader} followed by commands, unused tail is zeroed.
+ * Batches never cross segment boundaries, so any batch can be published with a single bulk copy.
+ */
+public final class CommandBatches {
+
+    private final SegmentedBuffer buffer;
+    private final int batchCapacity;
+    private final int batchesPerSegment;
+    private final int batchesCount;
+    private final long commandsCount;
+
+    private CommandBatches(final SegmentedBuffer buffer,
+                           final int batchCapacity,
+                           final int batchesPerSegment,
+                           final int batchesCount,
+                           final long commandsCount) {
+
+        this.buffer = buffer;
+        this.batchCapacity = batchCapacity;
+        this.batchesPerSegment = batchesPerSegment;
+        this.batchesCount = batchesCount;
+        this.commandsCount = commandsCount;
+    }
+
+    /**
+     * Packs merged commands into batches.
+     *
+     * @param corpus               - merged commands
+     * @param batchCapacity        - batch size in bytes including header (multiple of cache line size)
+     * @param maxCommandsPerBatch  - limit of commands number per batch
+     * @param firstSequence        - sequence number of the first command
+     */
+    public static CommandBatches build(final CommandsCorpus corpus,
+                                       final int batchCapacity,
+                                       final int maxCommandsPerBatch,
+                                       final long firstSequence) {
+
+        if (!corpus.hasSymbolId()) {
+            throw new IllegalArgumentException("Only merged commands can be batched");
+        }
+        if (batchCapacity % BitUtil.CACHE_LINE_LENGTH != 0 || batchCapacity <= CommandBatchHeader.HEADER_SIZE) {
+            throw new IllegalArgumentException("Batch capacity should be multiple of " + BitUtil.CACHE_LINE_LENGTH + " and larger than header");
+        }
+        if (maxCommandsPerBatch < 1) {
+            throw new IllegalArgumentException("maxCommandsPerBatch should be positive");
+        }
+
+        final int batchesPerSegment = Math.max(1, SegmentedBufferWriter.DEFAULT_SEGMENT_SIZE / batchCapacity);
+        final SegmentedBufferWriter writer = new SegmentedBufferWriter(batchesPerSegment * batchCapacity);
+
+        final UnsafeBuffer batch = new UnsafeBuffer(ByteBuffer.allocateDirect(batchCapacity));
+        final IntHashSet symbols = new IntHashSet();
+
+        final CommandCursor cursor = corpus.newCursor();
+        final CommandView view = cursor.view();
+
+        long sequence = firstSequence;
+        int batchesCount = 0;
+
+        int count = 0;
+        int position = CommandBatchHeader.HEADER_SIZE;
+        long symbolsMask = 0;
+
+        boolean hasCommand = cursor.next();
+        while (hasCommand) {
+
+            final int length = view.getLength();
+            if (CommandBatchHeader.HEADER_SIZE + length > batchCapacity) {
+                throw new IllegalArgumentException("Command of " + length + " bytes does not fit into batch capacity " + batchCapacity);
+            }
+
+            if (position + length > batchCapacity || count == maxCommandsPerBatch) {
+                writeBatch(writer, batch, count, position, sequence, symbols.size(), symbolsMask);
+                batchesCount++;
+                sequence += count;
+                count = 0;
+                position = CommandBatchHeader.HEADER_SIZE;
+                symbolsMask = 0;
+                symbols.clear();
+            }
+
+            batch.putBytes(position, view.getBuffer(), view.getOffset(), length);
+            position += length;
+            count++;
+
+            final int symbolId = view.getSymbolId();
+            symbols.add(symbolId);
+            symbolsMask |= 1L << (symbolId & 63);
+
+            hasCommand = cursor.next();
+        }
+
+        if (count > 0) {
+            writeBatch(writer, batch, count, position, sequence, symbols.size(), symbolsMask);
+            batchesCount++;
+            sequence += count;
+        }
+
+        return new CommandBatches(writer.toBuffer(), batchCapacity, batchesPerSegment, batchesCount, sequence - firstSequence);
+    }
+
+    private static void writeBatch(final SegmentedBufferWriter writer,
+                                   final UnsafeBuffer batch,
+                                   final int count,
+                                   final int position,
+                                   final long firstSequence,
+                                   final int symbolsTouched,
+                                   final long symbolsMask) {
+
+        batch.setMemory(0, CommandBatchHeader.HEADER_SIZE, (byte) 0);
+        batch.putInt(CommandBatchHeader.OFFSET_COUNT, count);
+        batch.putInt(CommandBatchHeader.OFFSET_PAYLOAD_LENGTH, position - CommandBatchHeader.HEADER_SIZE);
+        batch.putLong(CommandBatchHeader.OFFSET_FIRST_SEQUENCE, firstSequence);
+        batch.putInt(CommandBatchHeader.OFFSET_SYMBOLS_TOUCHED, symbolsTouched);
+        batch.putLong(CommandBatchHeader.OFFSET_SYMBOLS_MASK, symbolsMask);
+        batch.setMemory(position, batch.capacity() - position, (byte) 0);
+
+        writer.beginRecord(batch.capacity());
+        writer.appendBytes(batch, 0, batch.capacity());
+    }
+
+    public int getBatchCapacity() {
+        return batchCapacity;
+    }
+
+    public int getBatchesCount() {
+        return batchesCount;
+    }
+
+    public long getCommandsCount() {
+        return commandsCount;
+    }
+
+    public SegmentedBuffer getBuffer() {
+        return buffer;
+    }
+
+    /**
+     * @return segment buffer containing the batch (use with {@link #batchOffset(int)} and {@link CommandBatchHeader} accessors)
+     */
+    public UnsafeBuffer batchSegment(final int batchIndex) {
+        return buffer.getSegment(batchIndex / batchesPerSegment);
+    }
+
+    public int batchOffset(final int batchIndex) {
+        return (batchIndex % batchesPerSegment) * batchCapacity;
+    }
+
+    /**
+     * Copies the batch into destination buffer (e.g. ring buffer slot) with a single bulk copy.
+     * Only the header and used cache lines are copied.
+     *
+     * @return number of bytes copied
+     */
+    public int publishTo(final int batchIndex, final MutableDirectBuffer destination, final int destinationOffset) {
+        final UnsafeBuffer segment = batchSegment(batchIndex);
+        final int offset = batchOffset(batchIndex);
+        final int length = BitUtil.align(
+                CommandBatchHeader.HEADER_SIZE + CommandBatchHeader.payloadLength(segment, offset),
+                BitUtil.CACHE_LINE_LENGTH);
+        destination.putBytes(destinationOffset, segment, offset, length);
+        return length;
+    }
+}
@@ -17,6 +17,8 @@ package exchange.core2.benchmarks.generator.clients;
 
 import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
 import exchange.core2.benchmarks.generator.util.ExecutionTime;
+import exchange.core2.benchmarks.generator.util.GenerationPhase;
+import exchange.core2.benchmarks.generator.util.PhaseMeters;
 import org.apache.commons.math3.distribution.EnumeratedDistribution;
 import org.apache.commons.math3.distribution.ParetoDistribution;
 import org.apache.commons.math3.distribution.RealDistribution;
@@ -95,6 +97,17 @@ public final class ClientsCurrencyAccountsGenerator {
         return result;
     }
 
+    public static List<BitSet> generateClients(final int accountsToCreate,
+                                               final Map<Integer, Double> currenciesWeights,
+                                               final int seed,
+                                               final PhaseMeters phaseMeters) {
+
+        try (PhaseMeters.PhaseMeter meter = PhaseMeters.start(phaseMeters, GenerationPhase.CLIENTS)) {
+            meter.addCommands(accountsToCreate);
+            return generateClients(accountsToCreate, currenciesWeights, seed);
+        }
+    }
+
     private static BitSet generateClientAccounts(int[] allCurrencies,
                                                  RealDistribution accountsNumDistribution,
                                                  EnumeratedDistribution<Integer> currenciesDistribution,
@@ -41,6 +41,13 @@ public class CurrenciesGenerator {
                         c -> (double) (float) Math.exp(rng.nextGaussian() * power)));
     }
 
+    /**
+     * Dense index-based alternative to createRatesMatrix (same rates, without boxed per-pair entries).
+     */
+    public static CurrencyRatesMatrix createDenseRatesMatrix(final Map<Integer, Double> rates) {
+        return CurrencyRatesMatrix.create(rates);
+    }
+
     public static Map<Integer, Map<Integer, Double>> createRatesMatrix(final Map<Integer, Double> rates) {
 
         final Map<Integer, Map<Integer, Double>> ratesMatrix = new HashMap<>();
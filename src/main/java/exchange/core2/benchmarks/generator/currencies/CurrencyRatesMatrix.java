@@ -0,0 +1,183 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.currencies;
+
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Dense currency conversion matrix.
+ * Currencies are addressed by index (ascending currency id order), conversion rate from->to is stored at [from * size + to].
+ * <p>
+ * All rates are derived from single per-currency unit value (rate(a->b) = value(b) / value(a)),
+ * so cross rates are consistent: rate(a->b) * rate(b->c) == rate(a->c) up to floating point rounding,
+ * and there is no triangular arbitrage.
+ * <p>
+ * Replacement for CurrenciesGenerator.createRatesMatrix when many conversions are required. Generators do not
+ * convert amounts between currencies (client accounts and symbols are sampled by currency weights only),
+ * so currently it is only used for symbol fair prices (see SymbolTable.fairPrice).
+ */
+public final class CurrencyRatesMatrix {
+
+    // use dense id->index array if ids span is not much bigger than currencies number
+    private static final int MAX_DENSE_SPAN_FACTOR = 4;
+
+    private final int size;
+    private final int[] indexToCurrency;
+    private final double[] unitRates;
+    private final double[] matrix;
+
+    private final int minCurrencyId;
+    private final int[] denseIdToIndex; // null if sparse
+    private final IntIntHashMap sparseIdToIndex; // null if dense
+
+    private CurrencyRatesMatrix(final int[] currencies, final double[] unitRates) {
+
+        this.size = currencies.length;
+        this.indexToCurrency = currencies;
+        this.unitRates = unitRates;
+        this.matrix = new double[size * size];
+
+        for (int from = 0; from < size; from++) {
+            final int rowOffset = from * size;
+            final double rateFrom = unitRates[from];
+            for (int to = 0; to < size; to++) {
+                matrix[rowOffset + to] = from == to ? 1.0 : unitRates[to] / rateFrom;
+            }
+        }
+
+        this.minCurrencyId = size == 0 ? 0 : currencies[0];
+        final long span = size == 0 ? 0 : (long) currencies[size - 1] - minCurrencyId + 1;
+        if (span <= (long) size * MAX_DENSE_SPAN_FACTOR) {
+            this.denseIdToIndex = new int[(int) span];
+            Arrays.fill(denseIdToIndex, -1);
+            for (int i = 0; i < size; i++) {
+                denseIdToIndex[currencies[i] - minCurrencyId] = i;
+            }
+            this.sparseIdToIndex = null;
+        } else {
+            this.denseIdToIndex = null;
+            this.sparseIdToIndex = new IntIntHashMap(size);
+            for (int i = 0; i < size; i++) {
+                sparseIdToIndex.put(currencies[i], i);
+            }
+        }
+    }
+
+    /**
+     * @param rates - currency id to unit value (same format as CurrenciesGenerator.generateRandomRates)
+     */
+    public static CurrencyRatesMatrix create(final Map<Integer, Double> rates) {
+
+        final int[] currencies = rates.keySet().stream().mapToInt(a -> a).sorted().toArray();
+        final double[] unitRates = new double[currencies.length];
+        for (int i = 0; i < currencies.length; i++) {
+            final double rate = rates.get(currencies[i]);
+            if (!(rate > 0.0) || Double.isInfinite(rate)) {
+                throw new IllegalArgumentException("Invalid rate " + rate + " for currency " + currencies[i]);
+            }
+            unitRates[i] = rate;
+        }
+
+        return new CurrencyRatesMatrix(currencies, unitRates);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return currency index or -1 if currency is unknown
+     */
+    public int indexOf(final int currencyId) {
+        if (denseIdToIndex != null) {
+            final int pos = currencyId - minCurrencyId;
+            return (pos >= 0 && pos < denseIdToIndex.length) ? denseIdToIndex[pos] : -1;
+        } else {
+            return sparseIdToIndex.getIfAbsent(currencyId, -1);
+        }
+    }
+
+    public int currencyId(final int idx) {
+        return indexToCurrency[idx];
+    }
+
+    public double getUnitRate(final int idx) {
+        return unitRates[idx];
+    }
+
+    /**
+     * @return how many units of currency toIdx can be obtained for one unit of currency fromIdx
+     */
+    public double getRate(final int fromIdx, final int toIdx) {
+        return matrix[fromIdx * size + toIdx];
+    }
+
+    public double getRateByIds(final int fromCurrency, final int toCurrency) {
+        return getRate(requireIndex(fromCurrency), requireIndex(toCurrency));
+    }
+
+    public double convert(final double amount, final int fromIdx, final int toIdx) {
+        return amount * matrix[fromIdx * size + toIdx];
+    }
+
+    public long convert(final long amount, final int fromIdx, final int toIdx) {
+        return Math.round(amount * matrix[fromIdx * size + toIdx]);
+    }
+
+    /**
+     * Bulk conversion: result[i] = amounts[i] converted from fromIdx[i] into toIdx
+     */
+    public void convert(final long[] amounts, final int[] fromIdx, final int toIdx, final long[] result) {
+        if (amounts.length != fromIdx.length || result.length < amounts.length) {
+            throw new IllegalArgumentException("Arrays length mismatch");
+        }
+        for (int i = 0; i < amounts.length; i++) {
+            result[i] = Math.round(amounts[i] * matrix[fromIdx[i] * size + toIdx]);
+        }
+    }
+
+    /**
+     * @param amountsByIndex - amounts indexed by currency index (length=size)
+     * @return total value of all amounts in currency toIdx
+     */
+    public double totalValue(final long[] amountsByIndex, final int toIdx) {
+        double sum = 0.0;
+        for (int from = 0; from < size; from++) {
+            sum += amountsByIndex[from] * matrix[from * size + toIdx];
+        }
+        return sum;
+    }
+
+    /**
+     * Fair price of a symbol in price steps: value of one lot (baseScaleK units of base currency) in quote price steps.
+     */
+    public long symbolPrice(final int baseCurrency, final int quoteCurrency, final long baseScaleK, final long quoteScaleK) {
+        final double rate = getRate(requireIndex(baseCurrency), requireIndex(quoteCurrency));
+        return Math.max(1L, Math.round(rate * baseScaleK / quoteScaleK));
+    }
+
+    private int requireIndex(final int currencyId) {
+        final int idx = indexOf(currencyId);
+        if (idx < 0) {
+            throw new IllegalArgumentException("Unknown currency " + currencyId);
+        }
+        return idx;
+    }
+
+}
@@ -0,0 +1,139 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.distributed;
+
+import exchange.core2.benchmarks.generator.orders.MultiSymbolGenResult;
+import exchange.core2.benchmarks.generator.orders.StateHashTrail;
+import exchange.core2.benchmarks.generator.storage.CommandOffsetIndex;
+import exchange.core2.benchmarks.generator.storage.CommandsCorpus;
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+import exchange.core2.benchmarks.generator.storage.SegmentedBufferWriter;
+import exchange.core2.orderbook.IOrderBook;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Result of distributed generation: merged commands are stored in files (same layout as merged in-memory buffers).
+ */
+public final class DistributedGenResult {
+
+    private final Map<Integer, Integer> orderBookHashes;
+    private final Map<Integer, StateHashTrail> stateHashTrails;
+
+    private final Path commandsFillFile;
+    private final Path commandsBenchmarkFile;
+
+    private final int fillCommandsSize;
+    private final int benchmarkCommandsSize;
+
+    public DistributedGenResult(final Map<Integer, Integer> orderBookHashes,
+                                final Map<Integer, StateHashTrail> stateHashTrails,
+                                final Path commandsFillFile,
+                                final Path commandsBenchmarkFile,
+                                final int fillCommandsSize,
+                                final int benchmarkCommandsSize) {
+
+        this.orderBookHashes = orderBookHashes;
+        this.stateHashTrails = stateHashTrails;
+        this.commandsFillFile = commandsFillFile;
+        this.commandsBenchmarkFile = commandsBenchmarkFile;
+        this.fillCommandsSize = fillCommandsSize;
+        this.benchmarkCommandsSize = benchmarkCommandsSize;
+    }
+
+    public Map<Integer, Integer> getOrderBookHashes() {
+        return orderBookHashes;
+    }
+
+    public Map<Integer, StateHashTrail> getStateHashTrails() {
+        return stateHashTrails;
+    }
+
+    public Path getCommandsFillFile() {
+        return commandsFillFile;
+    }
+
+    public Path getCommandsBenchmarkFile() {
+        return commandsBenchmarkFile;
+    }
+
+    public int getFillCommandsSize() {
+        return fillCommandsSize;
+    }
+
+    public int getBenchmarkCommandsSize() {
+        return benchmarkCommandsSize;
+    }
+
+    /**
+     * Loads merged commands into off-heap segments and exposes them as regular result (heap readers are not available).
+     */
+    public MultiSymbolGenResult toMultiSymbolGenResult(final int segmentSize) {
+
+        final CompletableFuture<SegmentedBuffer> fill = CompletableFuture.supplyAsync(
+                () -> loadMergedCommands(commandsFillFile, segmentSize));
+
+        final CompletableFuture<SegmentedBuffer> benchmark = fill.thenApplyAsync(
+                ignore -> loadMergedCommands(commandsBenchmarkFile, segmentSize));
+
+        return MultiSymbolGenResult.builder()
+                .orderBookHashes(orderBookHashes)
+                .commandsBuffers(fill, benchmark)
+                .fillCommandsSize(fillCommandsSize)
+                .benchmarkCommandsSize(benchmarkCommandsSize)
+                .stateHashTrails(stateHashTrails)
+                .commandsIndexes(
+                        fill.thenApply(buffer -> CommandOffsetIndex.scan(CommandsCorpus.merged(buffer), CommandOffsetIndex.DEFAULT_INTERVAL, false)),
+                        benchmark.thenApply(buffer -> CommandOffsetIndex.scan(CommandsCorpus.merged(buffer), CommandOffsetIndex.DEFAULT_INTERVAL, false)))
+                .build();
+    }
+
+    /**
+     * Loads merged commands file into segmented buffer (commands are not split between segments).
+     */
+    public static SegmentedBuffer loadMergedCommands(final Path file, final int segmentSize) {
+
+        final SegmentedBufferWriter writer = new SegmentedBufferWriter(segmentSize);
+        final byte[] command = new byte[256];
+        final UnsafeBuffer commandView = new UnsafeBuffer(command);
+
+        try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1024 * 1024))) {
+
+            final long size = Files.size(file);
+            for (long pos = 0; pos < size; ) {
+                final byte cmdCode = dis.readByte();
+                final int length = 5 + IOrderBook.fixedCommandSize(cmdCode);
+                command[0] = cmdCode;
+                dis.readFully(command, 1, length - 1);
+                writer.beginRecord(length);
+                writer.appendBytes(commandView, 0, length);
+                pos += length;
+            }
+
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not load commands from " + file, ex);
+        }
+
+        return writer.toBuffer();
+    }
+}
@@ -0,0 +1,61 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.distributed;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+public final class DistributedGeneratorConfig {
+
+    // shared directory for job files, worker outputs and merged commands
+    private final Path workDirectory;
+
+    private final int numWorkers;
+
+    // extra options for worker JVMs (e.g. -Xmx)
+    private final List<String> workerJvmOptions;
+
+    public DistributedGeneratorConfig(final Path workDirectory,
+                                      final int numWorkers,
+                                      final List<String> workerJvmOptions) {
+
+        if (numWorkers < 1) {
+            throw new IllegalArgumentException("numWorkers should be positive");
+        }
+
+        this.workDirectory = workDirectory;
+        this.numWorkers = numWorkers;
+        this.workerJvmOptions = workerJvmOptions;
+    }
+
+    public DistributedGeneratorConfig(final Path workDirectory,
+                                      final int numWorkers) {
+        this(workDirectory, numWorkers, Collections.emptyList());
+    }
+
+    public Path getWorkDirectory() {
+        return workDirectory;
+    }
+
+    public int getNumWorkers() {
+        return numWorkers;
+    }
+
+    public List<String> getWorkerJvmOptions() {
+        return workerJvmOptions;
+    }
+}
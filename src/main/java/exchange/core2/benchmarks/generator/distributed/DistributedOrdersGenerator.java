@@ -0,0 +1,329 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.distributed;
+
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.benchmarks.generator.orders.GeneratorScenario;
+import exchange.core2.benchmarks.generator.orders.MultiSymbolOrdersGenerator;
+import exchange.core2.benchmarks.generator.orders.RandomCollectionsMerger;
+import exchange.core2.benchmarks.generator.orders.StateHashTrail;
+import exchange.core2.benchmarks.generator.orders.SymbolGenerationTask;
+import exchange.core2.benchmarks.generator.util.ExecutionTime;
+import org.apache.commons.math3.random.JDKRandomGenerator;
+import org.apache.commons.math3.util.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Coordinator of multi-process generation.
+ * <p>
+ * Symbols are planned exactly as in {@link MultiSymbolOrdersGenerator}, split between worker JVMs (job files),
+ * then per-symbol streams written by workers are merged from disk in the same order as {@link RandomCollectionsMerger}
+ * would produce for the same seed. Result is byte-identical to the in-memory generation.
+ * <p>
+ * Stages are public, so that workers can be started on different hosts sharing the work directory.
+ */
+public final class DistributedOrdersGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(DistributedOrdersGenerator.class);
+
+    public static final String MERGED_FILL_FILE = "commands.fill";
+    public static final String MERGED_BENCHMARK_FILE = "commands.benchmark";
+
+    public static DistributedGenResult generateMultipleSymbols(
+            final List<Pair<GeneratorSymbolSpec, Double>> symbolSpecs,
+            final int totalTransactionsNumber,
+            final List<BitSet> usersAccounts,
+            final int targetOrderBookOrdersTotal,
+            final int randomSeed,
+            final boolean avalancheIOC,
+            final GeneratorScenario scenario,
+            final int stateHashInterval,
+            final DistributedGeneratorConfig config) {
+
+        try (ExecutionTime ignore = new ExecutionTime(t -> log.debug("Distributed generation completed in {}", t))) {
+
+            final List<SymbolGenerationTask> tasks = MultiSymbolOrdersGenerator.planSymbolTasks(
+                    symbolSpecs,
+                    totalTransactionsNumber,
+                    targetOrderBookOrdersTotal);
+
+            final List<Path> jobFiles = prepareJobs(
+                    tasks,
+                    usersAccounts,
+                    randomSeed,
+                    avalancheIOC,
+                    scenario,
+                    stateHashInterval,
+                    config);
+
+            runLocalWorkers(jobFiles, config);
+
+            return mergeWorkersResults(tasks, randomSeed, config);
+        }
+    }
+
+    /**
+     * Splits tasks between workers (largest first, to the least loaded worker) and writes job files.
+     */
+    public static List<Path> prepareJobs(final List<SymbolGenerationTask> tasks,
+                                         final List<BitSet> usersAccounts,
+                                         final int randomSeed,
+                                         final boolean avalancheIOC,
+                                         final GeneratorScenario scenario,
+                                         final int stateHashInterval,
+                                         final DistributedGeneratorConfig config) {
+
+        final int numWorkers = config.getNumWorkers();
+
+        final List<SymbolGenerationTask> sorted = new ArrayList<>(tasks);
+        sorted.sort(Comparator.comparingLong(DistributedOrdersGenerator::taskWeight).reversed());
+
+        final List<List<SymbolGenerationTask>> workerTasks = new ArrayList<>(numWorkers);
+        for (int i = 0; i < numWorkers; i++) {
+            workerTasks.add(new ArrayList<>());
+        }
+
+        final long[] workerLoad = new long[numWorkers];
+        for (final SymbolGenerationTask task : sorted) {
+            int worker = 0;
+            for (int i = 1; i < numWorkers; i++) {
+                if (workerLoad[i] < workerLoad[worker]) {
+                    worker = i;
+                }
+            }
+            workerTasks.get(worker).add(task);
+            workerLoad[worker] += taskWeight(task);
+        }
+
+        final Path dir = config.getWorkDirectory();
+        final List<Path> jobFiles = new ArrayList<>(numWorkers);
+
+        try {
+            Files.createDirectories(dir);
+
+            for (int i = 0; i < numWorkers; i++) {
+
+                final List<SymbolGenerationTask> jobTasks = workerTasks.get(i);
+                final List<int[]> uids = jobTasks.parallelStream()
+                        .map(task -> MultiSymbolOrdersGenerator.createUidsForSymbol(usersAccounts, task, randomSeed))
+                        .collect(Collectors.toList());
+
+                final Path jobFile = GenerationJob.jobFile(dir, i);
+                new GenerationJob(i, randomSeed, avalancheIOC, scenario, stateHashInterval, jobTasks, uids).write(jobFile);
+                jobFiles.add(jobFile);
+
+                log.debug("Worker {}: {} symbols, {} commands", i, jobTasks.size(), workerLoad[i]);
+            }
+
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not write job files into " + dir, ex);
+        }
+
+        return jobFiles;
+    }
+
+    /**
+     * Runs one worker JVM per job file on the local host and waits for all of them.
+     */
+    public static void runLocalWorkers(final List<Path> jobFiles,
+                                       final DistributedGeneratorConfig config) {
+
+        final String javaCmd = Paths.get(System.getProperty("java.home"), "bin", "java").toString();
+        final String classPath = System.getProperty("java.class.path");
+
+        final List<Process> processes = new ArrayList<>(jobFiles.size());
+
+        try {
+            for (final Path jobFile : jobFiles) {
+                final List<String> cmd = new ArrayList<>();
+                cmd.add(javaCmd);
+                cmd.addAll(config.getWorkerJvmOptions());
+                cmd.add("-cp");
+                cmd.add(classPath);
+                cmd.add(DistributedOrdersWorker.class.getName());
+                cmd.add(jobFile.toAbsolutePath().toString());
+
+                processes.add(new ProcessBuilder(cmd).inheritIO().start());
+            }
+
+            for (int i = 0; i < processes.size(); i++) {
+                final int exitCode = processes.get(i).waitFor();
+                if (exitCode != 0) {
+                    throw new IllegalStateException("Worker " + jobFiles.get(i) + " failed with exit code " + exitCode);
+                }
+            }
+
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not start worker process", ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for workers", ex);
+        } finally {
+            processes.forEach(Process::destroy);
+        }
+    }
+
+    /**
+     * Merges per-symbol streams written by workers into merged fill and benchmark files.
+     */
+    public static DistributedGenResult mergeWorkersResults(final List<SymbolGenerationTask> tasks,
+                                                           final int randomSeed,
+                                                           final DistributedGeneratorConfig config) {
+
+        final Path dir = config.getWorkDirectory();
+        final int numWorkers = config.getNumWorkers();
+
+        final Map<Integer, SymbolStreamInfo> streams = new HashMap<>();
+        final Map<Integer, Integer> symbolWorker = new HashMap<>();
+
+        for (int i = 0; i < numWorkers; i++) {
+            for (final SymbolStreamInfo info : readIndex(GenerationJob.indexFile(dir, i))) {
+                streams.put(info.symbolId, info);
+                symbolWorker.put(info.symbolId, i);
+            }
+        }
+
+        final List<Integer> mergeOrder = MultiSymbolOrdersGenerator.mergeOrder(tasks);
+        for (final Integer symbol : mergeOrder) {
+            if (!streams.containsKey(symbol)) {
+                throw new IllegalStateException("No commands generated for symbol " + symbol);
+            }
+        }
+
+        final Path fillFile = dir.resolve(MERGED_FILL_FILE);
+        final Path benchmarkFile = dir.resolve(MERGED_BENCHMARK_FILE);
+
+        final FileChannel[] fillChannels = new FileChannel[numWorkers];
+        final FileChannel[] benchmarkChannels = new FileChannel[numWorkers];
+
+        try {
+            for (int i = 0; i < numWorkers; i++) {
+                fillChannels[i] = FileChannel.open(GenerationJob.fillFile(dir, i), StandardOpenOption.READ);
+                benchmarkChannels[i] = FileChannel.open(GenerationJob.benchmarkFile(dir, i), StandardOpenOption.READ);
+            }
+
+            log.debug("Merging {} PREFILL commands for {} symbols...",
+                    streams.values().stream().mapToLong(info -> info.numCommandsFill).sum(), streams.size());
+
+            mergeFiles(mergeOrder, randomSeed, fillFile, symbol -> {
+                final SymbolStreamInfo info = streams.get(symbol);
+                return new Region(fillChannels[symbolWorker.get(symbol)], info.fillOffset, info.fillLength);
+            });
+
+            log.debug("Merging {} BENCHMARK commands for {} symbols...",
+                    streams.values().stream().mapToLong(info -> info.numCommandsBenchmark).sum(), streams.size());
+
+            mergeFiles(mergeOrder, randomSeed, benchmarkFile, symbol -> {
+                final SymbolStreamInfo info = streams.get(symbol);
+                return new Region(benchmarkChannels[symbolWorker.get(symbol)], info.benchmarkOffset, info.benchmarkLength);
+            });
+
+        } catch (IOException | UncheckedIOException ex) {
+            throw new IllegalStateException("Can not merge worker results in " + dir, ex);
+        } finally {
+            closeAll(fillChannels);
+            closeAll(benchmarkChannels);
+        }
+
+        final Map<Integer, Integer> bookHashes = new HashMap<>();
+        final Map<Integer, StateHashTrail> stateHashTrails = new HashMap<>();
+        streams.forEach((symbol, info) -> {
+            bookHashes.put(symbol, info.finalOrderBookHash);
+            if (info.stateHashTrail != null) {
+                stateHashTrails.put(symbol, info.stateHashTrail);
+            }
+        });
+
+        final int fillCmdSize = streams.values().stream().mapToInt(info -> info.numCommandsFill).sum();
+        final int benchmarkCmdSize = streams.values().stream().mapToInt(info -> info.numCommandsBenchmark).sum();
+
+        return new DistributedGenResult(bookHashes, stateHashTrails, fillFile, benchmarkFile, fillCmdSize, benchmarkCmdSize);
+    }
+
+    private static void mergeFiles(final List<Integer> mergeOrder,
+                                   final int randomSeed,
+                                   final Path outputFile,
+                                   final Function<Integer, Region> regionMapper) throws IOException {
+
+        try (final MergedCommandsFileWriter output = new MergedCommandsFileWriter(outputFile)) {
+
+            final int readBufferSize = FileRegionCommandSource.readBufferSize(mergeOrder.size());
+
+            final List<FileRegionCommandSource> sources = mergeOrder.stream()
+                    .map(symbol -> {
+                        final Region region = regionMapper.apply(symbol);
+                        return new FileRegionCommandSource(region.channel, region.offset, region.length, symbol, output, readBufferSize);
+                    })
+                    .collect(Collectors.toList());
+
+            RandomCollectionsMerger.merge(sources, new JDKRandomGenerator(randomSeed));
+        }
+    }
+
+    private static List<SymbolStreamInfo> readIndex(final Path indexFile) {
+
+        try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(indexFile)))) {
+            final int size = dis.readInt();
+            final List<SymbolStreamInfo> infos = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                infos.add(SymbolStreamInfo.readFrom(dis));
+            }
+            return infos;
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not read worker index " + indexFile, ex);
+        }
+    }
+
+    private static long taskWeight(final SymbolGenerationTask task) {
+        return (long) task.getCommandsNum() + task.getOrderBookSizeTarget();
+    }
+
+    private static void closeAll(final FileChannel[] channels) {
+        for (final FileChannel channel : channels) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException ex) {
+                    log.warn("Can not close channel", ex);
+                }
+            }
+        }
+    }
+
+    private static final class Region {
+
+        private final FileChannel channel;
+        private final long offset;
+        private final long length;
+
+        private Region(FileChannel channel, long offset, long length) {
+            this.channel = channel;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
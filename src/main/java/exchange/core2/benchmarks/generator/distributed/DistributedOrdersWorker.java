@@ -0,0 +1,141 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.distributed;
+
+import exchange.core2.benchmarks.generator.orders.GenResult;
+import exchange.core2.benchmarks.generator.orders.GeneratorOptions;
+import exchange.core2.benchmarks.generator.orders.GeneratorWorkerArena;
+import exchange.core2.benchmarks.generator.orders.SingleBookOrderGenerator;
+import exchange.core2.benchmarks.generator.orders.SymbolGenerationTask;
+import exchange.core2.benchmarks.generator.util.AsyncProgressLogger;
+import exchange.core2.benchmarks.generator.util.ExecutionTime;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.function.LongConsumer;
+
+/**
+ * Generates order books of a single job and writes their command streams into worker files.
+ * Can be started as a separate JVM (possibly on another host sharing the work directory).
+ * <p>
+ * Output: worker-N.fill and worker-N.benchmark with per-symbol streams written one after another,
+ * worker-N.index with streams locations (written last, so it also marks successful completion).
+ */
+public final class DistributedOrdersWorker {
+
+    private static final Logger log = LoggerFactory.getLogger(DistributedOrdersWorker.class);
+
+    public static void main(String[] args) {
+
+        if (args.length != 1) {
+            System.err.println("Usage: " + DistributedOrdersWorker.class.getName() + " <job file>");
+            System.exit(2);
+        }
+
+        try {
+            run(Paths.get(args[0]));
+        } catch (Throwable ex) {
+            log.error("Worker failed", ex);
+            System.exit(1);
+        }
+    }
+
+    public static void run(final Path jobFile) throws IOException {
+
+        final GenerationJob job = GenerationJob.read(jobFile);
+        final Path dir = jobFile.toAbsolutePath().getParent();
+
+        final int totalCommands = job.tasks.stream()
+                .mapToInt(task -> task.getCommandsNum() + task.getOrderBookSizeTarget())
+                .sum();
+
+        final LongConsumer progressLogger = AsyncProgressLogger.createLoggingConsumer(
+                totalCommands,
+                message -> log.debug("Worker {} progress: {} ...", job.workerIndex, message),
+                5);
+
+        final Path indexFile = GenerationJob.indexFile(dir, job.workerIndex);
+        final Path indexTmpFile = dir.resolve(indexFile.getFileName() + ".tmp");
+        Files.deleteIfExists(indexFile);
+
+        try (ExecutionTime ignore = new ExecutionTime(t -> log.debug("Worker {} generated {} symbols in {}", job.workerIndex, job.tasks.size(), t));
+             final FileChannel fillChannel = openForWriting(GenerationJob.fillFile(dir, job.workerIndex));
+             final FileChannel benchmarkChannel = openForWriting(GenerationJob.benchmarkFile(dir, job.workerIndex));
+             final DataOutputStream indexStream = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(indexTmpFile)))) {
+
+            indexStream.writeInt(job.tasks.size());
+
+            // symbols are generated sequentially, so session maps and results buffer are reused
+            final GeneratorWorkerArena arena = new GeneratorWorkerArena();
+
+            final GeneratorOptions options = GeneratorOptions.builder()
+                    .scenario(job.scenario)
+                    .stateHashInterval(job.stateHashInterval)
+                    .build();
+
+            for (int i = 0; i < job.tasks.size(); i++) {
+
+                final SymbolGenerationTask task = job.tasks.get(i);
+                final int[] uids = job.uids.get(i);
+
+                final GenResult genResult = SingleBookOrderGenerator.generateCommands(
+                        task.getCommandsNum(),
+                        task.getOrderBookSizeTarget(),
+                        uids.length,
+                        idx -> uids[idx],
+                        task.getSpec(),
+                        false,
+                        job.avalancheIOC,
+                        progressLogger,
+                        task.getOrderIdCounter(),
+                        job.randomSeed,
+                        options,
+                        arena);
+
+                final long fillOffset = fillChannel.position();
+                genResult.getCommandsFillBuffer().writeTo(fillChannel);
+                final long benchmarkOffset = benchmarkChannel.position();
+                genResult.getCommandsBenchmarkBuffer().writeTo(benchmarkChannel);
+
+                new SymbolStreamInfo(
+                        task.getSymbolId(),
+                        fillOffset,
+                        fillChannel.position() - fillOffset,
+                        genResult.getNumCommandsFill(),
+                        benchmarkOffset,
+                        benchmarkChannel.position() - benchmarkOffset,
+                        genResult.getNumCommandsBenchmark(),
+                        genResult.getFinalOrderBookHash(),
+                        genResult.getStateHashTrail())
+                        .writeTo(indexStream);
+            }
+
+            fillChannel.force(false);
+            benchmarkChannel.force(false);
+        }
+
+        Files.move(indexTmpFile, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static FileChannel openForWriting(final Path file) throws IOException {
+        return FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+}
@@ -0,0 +1,132 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.distributed;
+
+import exchange.core2.benchmarks.generator.orders.RandomCollectionsMerger;
+import exchange.core2.orderbook.IOrderBook;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads commands of a single symbol stream (region of a worker file) and appends them into merged file.
+ * <p>
+ * All sources are read at the same time while merging, so read buffer is only allocated while source has data,
+ * and its size is limited by the region length and by the shared budget of all sources.
+ */
+final class FileRegionCommandSource implements RandomCollectionsMerger.CommandSource {
+
+    static final int MAX_READ_BUFFER_SIZE = 16 * 1024;
+
+    // at least few largest commands
+    static final int MIN_READ_BUFFER_SIZE = 256;
+
+    // total size of read buffers of all merged sources
+    static final long READ_BUFFERS_BUDGET = 64L * 1024 * 1024;
+
+    private final FileChannel channel;
+    private final long end;
+    private final int symbolId;
+    private final MergedCommandsFileWriter output;
+
+    private final int readBufferSize;
+
+    // allocated on first read, released when region is fully consumed
+    private ByteBuffer readBuffer;
+    private UnsafeBuffer readBufferView;
+
+    private long filePosition;
+
+    FileRegionCommandSource(final FileChannel channel,
+                            final long offset,
+                            final long length,
+                            final int symbolId,
+                            final MergedCommandsFileWriter output,
+                            final int readBufferSize) {
+
+        this.channel = channel;
+        this.filePosition = offset;
+        this.end = offset + length;
+        this.symbolId = symbolId;
+        this.output = output;
+        this.readBufferSize = (int) Math.max(Math.min(readBufferSize, length), MIN_READ_BUFFER_SIZE);
+    }
+
+    /**
+     * @return read buffer size for each of sourcesNum sources merged at the same time
+     */
+    static int readBufferSize(final int sourcesNum) {
+        final long share = READ_BUFFERS_BUDGET / Math.max(sourcesNum, 1);
+        return (int) Math.max(MIN_READ_BUFFER_SIZE, Math.min(share, MAX_READ_BUFFER_SIZE));
+    }
+
+    @Override
+    public long getRemainingSize() {
+        return end - filePosition + (readBuffer != null ? readBuffer.remaining() : 0);
+    }
+
+    @Override
+    public void copyCommand() {
+        try {
+            ensureReadable(1);
+            final byte cmdCode = readBuffer.get();
+            final int bodySize = IOrderBook.fixedCommandSize(cmdCode);
+            ensureReadable(bodySize);
+            output.appendCommand(cmdCode, symbolId, readBufferView, readBuffer.position(), bodySize);
+            readBuffer.position(readBuffer.position() + bodySize);
+
+            if (filePosition == end && !readBuffer.hasRemaining()) {
+                readBuffer = null;
+                readBufferView = null;
+            }
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private void ensureReadable(final int length) throws IOException {
+
+        if (readBuffer == null) {
+            readBuffer = ByteBuffer.allocate(readBufferSize);
+            readBufferView = new UnsafeBuffer(readBuffer);
+            readBuffer.limit(0);
+        }
+
+        if (readBuffer.remaining() >= length) {
+            return;
+        }
+
+        readBuffer.compact();
+        final int toRead = (int) Math.min(readBuffer.capacity() - readBuffer.position(), end - filePosition);
+        readBuffer.limit(readBuffer.position() + toRead);
+        while (readBuffer.hasRemaining()) {
+            final int n = channel.read(readBuffer, filePosition);
+            if (n < 0) {
+                throw new EOFException("Unexpected end of symbol " + symbolId + " stream at " + filePosition);
+            }
+            filePosition += n;
+        }
+        readBuffer.flip();
+
+        if (readBuffer.remaining() < length) {
+            throw new EOFException("Truncated command in symbol " + symbolId + " stream");
+        }
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.distributed;
+
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.benchmarks.generator.orders.GeneratorScenario;
+import exchange.core2.benchmarks.generator.orders.SymbolGenerationTask;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Part of the symbols assigned to a single worker, stored in a job file.
+ */
+final class GenerationJob {
+
+    private static final int MAGIC = 0x4F47444A;
+    private static final int VERSION = 1;
+
+    final int workerIndex;
+    final int randomSeed;
+    final boolean avalancheIOC;
+    final GeneratorScenario scenario;
+    final int stateHashInterval;
+
+    final List<SymbolGenerationTask> tasks;
+    // uids available for every task symbol
+    final List<int[]> uids;
+
+    GenerationJob(final int workerIndex,
+                  final int randomSeed,
+                  final boolean avalancheIOC,
+                  final GeneratorScenario scenario,
+                  final int stateHashInterval,
+                  final List<SymbolGenerationTask> tasks,
+                  final List<int[]> uids) {
+
+        this.workerIndex = workerIndex;
+        this.randomSeed = randomSeed;
+        this.avalancheIOC = avalancheIOC;
+        this.scenario = scenario;
+        this.stateHashInterval = stateHashInterval;
+        this.tasks = tasks;
+        this.uids = uids;
+    }
+
+    static Path jobFile(final Path workDirectory, final int workerIndex) {
+        return workDirectory.resolve("worker-" + workerIndex + ".job");
+    }
+
+    static Path fillFile(final Path workDirectory, final int workerIndex) {
+        return workDirectory.resolve("worker-" + workerIndex + ".fill");
+    }
+
+    static Path benchmarkFile(final Path workDirectory, final int workerIndex) {
+        return workDirectory.resolve("worker-" + workerIndex + ".benchmark");
+    }
+
+    static Path indexFile(final Path workDirectory, final int workerIndex) {
+        return workDirectory.resolve("worker-" + workerIndex + ".index");
+    }
+
+    void write(final Path file) throws IOException {
+
+        try (final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+
+            dos.writeInt(MAGIC);
+            dos.writeInt(VERSION);
+            dos.writeInt(workerIndex);
+            dos.writeInt(randomSeed);
+            dos.writeBoolean(avalancheIOC);
+            dos.writeInt(scenario.ordinal());
+            dos.writeInt(stateHashInterval);
+
+            dos.writeInt(tasks.size());
+            for (int i = 0; i < tasks.size(); i++) {
+                final SymbolGenerationTask task = tasks.get(i);
+                writeSpec(dos, task.getSpec());
+                dos.writeInt(task.getCommandsNum());
+                dos.writeInt(task.getOrderBookSizeTarget());
+                dos.writeInt(task.getOrderIdCounter());
+
+                final int[] taskUids = uids.get(i);
+                dos.writeInt(taskUids.length);
+                for (final int uid : taskUids) {
+                    dos.writeInt(uid);
+                }
+            }
+        }
+    }
+
+    static GenerationJob read(final Path file) throws IOException {
+
+        try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+
+            if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+                throw new IllegalStateException("Unsupported job file format: " + file);
+            }
+
+            final int workerIndex = dis.readInt();
+            final int randomSeed = dis.readInt();
+            final boolean avalancheIOC = dis.readBoolean();
+            final GeneratorScenario scenario = GeneratorScenario.values()[dis.readInt()];
+            final int stateHashInterval = dis.readInt();
+
+            final int numTasks = dis.readInt();
+            final List<SymbolGenerationTask> tasks = new ArrayList<>(numTasks);
+            final List<int[]> uids = new ArrayList<>(numTasks);
+            for (int i = 0; i < numTasks; i++) {
+                final GeneratorSymbolSpec spec = readSpec(dis);
+                tasks.add(new SymbolGenerationTask(spec, dis.readInt(), dis.readInt(), dis.readInt()));
+
+                final int[] taskUids = new int[dis.readInt()];
+                for (int j = 0; j < taskUids.length; j++) {
+                    taskUids[j] = dis.readInt();
+                }
+                uids.add(taskUids);
+            }
+
+            return new GenerationJob(workerIndex, randomSeed, avalancheIOC, scenario, stateHashInterval, tasks, uids);
+        }
+    }
+
+    private static void writeSpec(final DataOutputStream dos, final GeneratorSymbolSpec spec) throws IOException {
+        dos.writeInt(spec.getSymbolId());
+        dos.writeInt(spec.getSymbolType().ordinal());
+        dos.writeInt(spec.getBaseCurrency());
+        dos.writeInt(spec.getQuoteCurrency());
+        dos.writeLong(spec.getBaseScaleK());
+        dos.writeLong(spec.getQuoteScaleK());
+        dos.writeLong(spec.getTakerFee());
+        dos.writeLong(spec.getMakerFee());
+        dos.writeLong(spec.getMarginBuy());
+        dos.writeLong(spec.getMarginSell());
+    }
+
+    private static GeneratorSymbolSpec readSpec(final DataInputStream dis) throws IOException {
+        return new GeneratorSymbolSpec(
+                dis.readInt(),
+                GeneratorSymbolSpec.SymbolType.values()[dis.readInt()],
+                dis.readInt(),
+                dis.readInt(),
+                dis.readLong(),
+                dis.readLong(),
+                dis.readLong(),
+                dis.readLong(),
+                dis.readLong(),
+                dis.readLong());
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.distributed;
+
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Writes merged commands stream ([code][symbolId][body]) into a file,
+ * using the same layout as in-memory merged buffer.
+ */
+final class MergedCommandsFileWriter implements AutoCloseable {
+
+    private static final int WRITE_BUFFER_SIZE = 1024 * 1024;
+
+    private final FileChannel channel;
+
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(WRITE_BUFFER_SIZE);
+    private final UnsafeBuffer writeBufferView = new UnsafeBuffer(writeBuffer);
+    private int position = 0;
+
+    private long size = 0;
+
+    MergedCommandsFileWriter(final Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    void appendCommand(final byte cmdCode,
+                       final int symbolId,
+                       final DirectBuffer body,
+                       final int bodyOffset,
+                       final int bodySize) throws IOException {
+
+        if (position + 5 + bodySize > WRITE_BUFFER_SIZE) {
+            flush();
+        }
+
+        writeBufferView.putByte(position, cmdCode);
+        writeBufferView.putInt(position + 1, symbolId);
+        writeBufferView.putBytes(position + 5, body, bodyOffset, bodySize);
+        position += 5 + bodySize;
+        size += 5 + bodySize;
+    }
+
+    long getSize() {
+        return size;
+    }
+
+    private void flush() throws IOException {
+        writeBuffer.clear();
+        writeBuffer.limit(position);
+        while (writeBuffer.hasRemaining()) {
+            channel.write(writeBuffer);
+        }
+        position = 0;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.distributed;
+
+import exchange.core2.benchmarks.generator.orders.StateHashTrail;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * Location of a single symbol streams inside worker output files, and generation results for that symbol.
+ */
+final class SymbolStreamInfo {
+
+    final int symbolId;
+
+    final long fillOffset;
+    final long fillLength;
+    final int numCommandsFill;
+
+    final long benchmarkOffset;
+    final long benchmarkLength;
+    final int numCommandsBenchmark;
+
+    final int finalOrderBookHash;
+
+    // can be null
+    final StateHashTrail stateHashTrail;
+
+    SymbolStreamInfo(final int symbolId,
+                     final long fillOffset,
+                     final long fillLength,
+                     final int numCommandsFill,
+                     final long benchmarkOffset,
+                     final long benchmarkLength,
+                     final int numCommandsBenchmark,
+                     final int finalOrderBookHash,
+                     final StateHashTrail stateHashTrail) {
+
+        this.symbolId = symbolId;
+        this.fillOffset = fillOffset;
+        this.fillLength = fillLength;
+        this.numCommandsFill = numCommandsFill;
+        this.benchmarkOffset = benchmarkOffset;
+        this.benchmarkLength = benchmarkLength;
+        this.numCommandsBenchmark = numCommandsBenchmark;
+        this.finalOrderBookHash = finalOrderBookHash;
+        this.stateHashTrail = stateHashTrail;
+    }
+
+    void writeTo(final DataOutputStream dos) throws IOException {
+        dos.writeInt(symbolId);
+        dos.writeLong(fillOffset);
+        dos.writeLong(fillLength);
+        dos.writeInt(numCommandsFill);
+        dos.writeLong(benchmarkOffset);
+        dos.writeLong(benchmarkLength);
+        dos.writeInt(numCommandsBenchmark);
+        dos.writeInt(finalOrderBookHash);
+        dos.writeBoolean(stateHashTrail != null);
+        if (stateHashTrail != null) {
+            stateHashTrail.writeTo(dos);
+        }
+    }
+
+    static SymbolStreamInfo readFrom(final DataInputStream dis) throws IOException {
+        return new SymbolStreamInfo(
+                dis.readInt(),
+                dis.readLong(),
+                dis.readLong(),
+                dis.readInt(),
+                dis.readLong(),
+                dis.readLong(),
+                dis.readInt(),
+                dis.readInt(),
+                dis.readBoolean() ? StateHashTrail.readFrom(dis) : null);
+    }
+}
@@ -0,0 +1,43 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.encoding;
+
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+/**
+ * Encodes a single order book command into the target wire format, writing directly into the output buffer.
+ * <p>
+ * Source is the command body in the native order book layout (see IOrderBook offsets).
+ * Implementations should be stateless and allocation-free.
+ */
+public interface CommandEncoder {
+
+    /**
+     * @return upper bound of a single encoded command length
+     */
+    int maxEncodedLength();
+
+    /**
+     * @return number of bytes written
+     */
+    int encode(int symbolId,
+               byte cmdCode,
+               DirectBuffer body,
+               int bodyOffset,
+               MutableDirectBuffer dst,
+               int dstOffset);
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.encoding;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.OrderAction;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * FIX-like tag=value text layout, fields are separated by SOH, every message ends with SOH.
+ * Session level fields (BeginString, BodyLength, CheckSum) are not written.
+ * <ul>
+ * <li>place: 35=D 55=symbol 1=uid 11=orderId 54=side(1 buy, 2 sell) 44=price 38=size 59=tif(1 GTC, 3 IOC, 4 FOK) [9001=reservedBidPrice] 9002=userCookie</li>
+ * <li>cancel: 35=F 55=symbol 1=uid 41=orderId</li>
+ * <li>move: 35=G 55=symbol 1=uid 41=orderId 44=newPrice</li>
+ * <li>reduce: 35=UR 55=symbol 1=uid 41=orderId 38=reduceSize</li>
+ * </ul>
+ * FOK_BUDGET orders are encoded as FOK with price holding the budget.
+ */
+public final class FixTextCommandEncoder implements CommandEncoder {
+
+    public static final FixTextCommandEncoder INSTANCE = new FixTextCommandEncoder();
+
+    public static final byte SOH = 0x01;
+
+    // 10 fields with up to 20 digits value and up to 5 bytes tag
+    private static final int MAX_LENGTH = 10 * (5 + 1 + 20 + 1);
+
+    private static final byte[] MSG_PLACE = ascii("35=D\u0001");
+    private static final byte[] MSG_CANCEL = ascii("35=F\u0001");
+    private static final byte[] MSG_MOVE = ascii("35=G\u0001");
+    private static final byte[] MSG_REDUCE = ascii("35=UR\u0001");
+
+    private static final byte[] TAG_SYMBOL = ascii("55=");
+    private static final byte[] TAG_ACCOUNT = ascii("1=");
+    private static final byte[] TAG_CL_ORD_ID = ascii("11=");
+    private static final byte[] TAG_ORIG_CL_ORD_ID = ascii("41=");
+    private static final byte[] TAG_SIDE = ascii("54=");
+    private static final byte[] TAG_PRICE = ascii("44=");
+    private static final byte[] TAG_ORDER_QTY = ascii("38=");
+    private static final byte[] TAG_TIME_IN_FORCE = ascii("59=");
+    private static final byte[] TAG_RESERVED_BID_PRICE = ascii("9001=");
+    private static final byte[] TAG_USER_COOKIE = ascii("9002=");
+
+    private FixTextCommandEncoder() {
+    }
+
+    @Override
+    public int maxEncodedLength() {
+        return MAX_LENGTH;
+    }
+
+    @Override
+    public int encode(final int symbolId,
+                      final byte cmdCode,
+                      final DirectBuffer body,
+                      final int bodyOffset,
+                      final MutableDirectBuffer dst,
+                      final int dstOffset) {
+
+        int pos = dstOffset;
+
+        switch (cmdCode) {
+            case IOrderBook.COMMAND_PLACE_ORDER: {
+                final boolean bid = OrderAction.of(body.getByte(bodyOffset + IOrderBook.PLACE_OFFSET_ACTION)) == OrderAction.BID;
+                final byte orderType = body.getByte(bodyOffset + IOrderBook.PLACE_OFFSET_TYPE);
+                pos = putBytes(dst, pos, MSG_PLACE);
+                pos = putInt(dst, pos, TAG_SYMBOL, symbolId);
+                pos = putLong(dst, pos, TAG_ACCOUNT, body.getLong(bodyOffset + IOrderBook.PLACE_OFFSET_UID));
+                pos = putLong(dst, pos, TAG_CL_ORD_ID, body.getLong(bodyOffset + IOrderBook.PLACE_OFFSET_ORDER_ID));
+                pos = putInt(dst, pos, TAG_SIDE, bid ? 1 : 2);
+                pos = putLong(dst, pos, TAG_PRICE, body.getLong(bodyOffset + IOrderBook.PLACE_OFFSET_PRICE));
+                pos = putLong(dst, pos, TAG_ORDER_QTY, body.getLong(bodyOffset + IOrderBook.PLACE_OFFSET_SIZE));
+                pos = putInt(dst, pos, TAG_TIME_IN_FORCE, timeInForce(orderType));
+                if (bid) {
+                    pos = putLong(dst, pos, TAG_RESERVED_BID_PRICE, body.getLong(bodyOffset + IOrderBook.PLACE_OFFSET_RESERVED_BID_PRICE));
+                }
+                pos = putInt(dst, pos, TAG_USER_COOKIE, body.getInt(bodyOffset + IOrderBook.PLACE_OFFSET_USER_COOKIE));
+                break;
+            }
+
+            case IOrderBook.COMMAND_CANCEL_ORDER:
+                pos = putBytes(dst, pos, MSG_CANCEL);
+                pos = putInt(dst, pos, TAG_SYMBOL, symbolId);
+                pos = putLong(dst, pos, TAG_ACCOUNT, body.getLong(bodyOffset + IOrderBook.CANCEL_OFFSET_UID));
+                pos = putLong(dst, pos, TAG_ORIG_CL_ORD_ID, body.getLong(bodyOffset + IOrderBook.CANCEL_OFFSET_ORDER_ID));
+                break;
+
+            case IOrderBook.COMMAND_MOVE_ORDER:
+                pos = putBytes(dst, pos, MSG_MOVE);
+                pos = putInt(dst, pos, TAG_SYMBOL, symbolId);
+                pos = putLong(dst, pos, TAG_ACCOUNT, body.getLong(bodyOffset + IOrderBook.MOVE_OFFSET_UID));
+                pos = putLong(dst, pos, TAG_ORIG_CL_ORD_ID, body.getLong(bodyOffset + IOrderBook.MOVE_OFFSET_ORDER_ID));
+                pos = putLong(dst, pos, TAG_PRICE, body.getLong(bodyOffset + IOrderBook.MOVE_OFFSET_PRICE));
+                break;
+
+            case IOrderBook.COMMAND_REDUCE_ORDER:
+                pos = putBytes(dst, pos, MSG_REDUCE);
+                pos = putInt(dst, pos, TAG_SYMBOL, symbolId);
+                pos = putLong(dst, pos, TAG_ACCOUNT, body.getLong(bodyOffset + IOrderBook.REDUCE_OFFSET_UID));
+                pos = putLong(dst, pos, TAG_ORIG_CL_ORD_ID, body.getLong(bodyOffset + IOrderBook.REDUCE_OFFSET_ORDER_ID));
+                pos = putLong(dst, pos, TAG_ORDER_QTY, body.getLong(bodyOffset + IOrderBook.REDUCE_OFFSET_SIZE));
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown command code " + cmdCode);
+        }
+
+        return pos - dstOffset;
+    }
+
+    private static int timeInForce(final byte orderType) {
+        switch (orderType) {
+            case IOrderBook.ORDER_TYPE_GTC:
+                return 1;
+            case IOrderBook.ORDER_TYPE_IOC:
+                return 3;
+            case IOrderBook.ORDER_TYPE_FOK_BUDGET:
+                return 4;
+            default:
+                throw new IllegalStateException("Unknown order type " + orderType);
+        }
+    }
+
+    private static int putBytes(final MutableDirectBuffer dst, final int pos, final byte[] bytes) {
+        dst.putBytes(pos, bytes);
+        return pos + bytes.length;
+    }
+
+    private static int putInt(final MutableDirectBuffer dst, final int pos, final byte[] tag, final int value) {
+        int p = putBytes(dst, pos, tag);
+        p += dst.putIntAscii(p, value);
+        dst.putByte(p, SOH);
+        return p + 1;
+    }
+
+    private static int putLong(final MutableDirectBuffer dst, final int pos, final byte[] tag, final long value) {
+        int p = putBytes(dst, pos, tag);
+        p += dst.putLongAscii(p, value);
+        dst.putByte(p, SOH);
+        return p + 1;
+    }
+
+    private static byte[] ascii(final String s) {
+        return s.getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.encoding;
+
+import exchange.core2.orderbook.IOrderBook;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+/**
+ * Default merged layout: [byte code][int symbolId][native command body] (native byte order).
+ */
+public final class NativeCommandEncoder implements CommandEncoder {
+
+    public static final NativeCommandEncoder INSTANCE = new NativeCommandEncoder();
+
+    private static final int MAX_LENGTH = 5 + IOrderBook.fixedCommandSize(IOrderBook.COMMAND_PLACE_ORDER);
+
+    private NativeCommandEncoder() {
+    }
+
+    @Override
+    public int maxEncodedLength() {
+        return MAX_LENGTH;
+    }
+
+    @Override
+    public int encode(final int symbolId,
+                      final byte cmdCode,
+                      final DirectBuffer body,
+                      final int bodyOffset,
+                      final MutableDirectBuffer dst,
+                      final int dstOffset) {
+
+        final int bodySize = IOrderBook.fixedCommandSize(cmdCode);
+        dst.putByte(dstOffset, cmdCode);
+        dst.putInt(dstOffset + 1, symbolId);
+        dst.putBytes(dstOffset + 5, body, bodyOffset, bodySize);
+        return 5 + bodySize;
+    }
+}
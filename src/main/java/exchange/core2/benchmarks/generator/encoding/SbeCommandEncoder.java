@@ -0,0 +1,116 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.encoding;
+
+import exchange.core2.orderbook.IOrderBook;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+
+import java.nio.ByteOrder;
+
+/**
+ * SBE-style fixed-offset little-endian layout.
+ * <p>
+ * Message header: [u16 blockLength][u16 templateId = command code][u16 schemaId][u16 schemaVersion],
+ * followed by the block: [i32 symbolId][i64 uid][i64 orderId] and command specific fields:
+ * <ul>
+ * <li>place: [i64 price][i64 reservedBidPrice][i64 size][i32 userCookie][u8 action][u8 orderType]</li>
+ * <li>cancel: no more fields</li>
+ * <li>move: [i64 newPrice]</li>
+ * <li>reduce: [i64 reduceSize]</li>
+ * </ul>
+ */
+public final class SbeCommandEncoder implements CommandEncoder {
+
+    public static final SbeCommandEncoder INSTANCE = new SbeCommandEncoder();
+
+    public static final int HEADER_SIZE = 8;
+    public static final int SCHEMA_ID = 1;
+    public static final int SCHEMA_VERSION = 0;
+
+    public static final int BLOCK_LENGTH_PLACE = 4 + 8 + 8 + 8 + 8 + 8 + 4 + 1 + 1;
+    public static final int BLOCK_LENGTH_CANCEL = 4 + 8 + 8;
+    public static final int BLOCK_LENGTH_MOVE = 4 + 8 + 8 + 8;
+    public static final int BLOCK_LENGTH_REDUCE = 4 + 8 + 8 + 8;
+
+    private static final ByteOrder LE = ByteOrder.LITTLE_ENDIAN;
+
+    private SbeCommandEncoder() {
+    }
+
+    @Override
+    public int maxEncodedLength() {
+        return HEADER_SIZE + BLOCK_LENGTH_PLACE;
+    }
+
+    @Override
+    public int encode(final int symbolId,
+                      final byte cmdCode,
+                      final DirectBuffer body,
+                      final int bodyOffset,
+                      final MutableDirectBuffer dst,
+                      final int dstOffset) {
+
+        final int blockLength;
+        final int block = dstOffset + HEADER_SIZE;
+
+        dst.putInt(block, symbolId, LE);
+
+        switch (cmdCode) {
+            case IOrderBook.COMMAND_PLACE_ORDER:
+                blockLength = BLOCK_LENGTH_PLACE;
+                dst.putLong(block + 4, body.getLong(bodyOffset + IOrderBook.PLACE_OFFSET_UID), LE);
+                dst.putLong(block + 12, body.getLong(bodyOffset + IOrderBook.PLACE_OFFSET_ORDER_ID), LE);
+                dst.putLong(block + 20, body.getLong(bodyOffset + IOrderBook.PLACE_OFFSET_PRICE), LE);
+                dst.putLong(block + 28, body.getLong(bodyOffset + IOrderBook.PLACE_OFFSET_RESERVED_BID_PRICE), LE);
+                dst.putLong(block + 36, body.getLong(bodyOffset + IOrderBook.PLACE_OFFSET_SIZE), LE);
+                dst.putInt(block + 44, body.getInt(bodyOffset + IOrderBook.PLACE_OFFSET_USER_COOKIE), LE);
+                dst.putByte(block + 48, body.getByte(bodyOffset + IOrderBook.PLACE_OFFSET_ACTION));
+                dst.putByte(block + 49, body.getByte(bodyOffset + IOrderBook.PLACE_OFFSET_TYPE));
+                break;
+
+            case IOrderBook.COMMAND_CANCEL_ORDER:
+                blockLength = BLOCK_LENGTH_CANCEL;
+                dst.putLong(block + 4, body.getLong(bodyOffset + IOrderBook.CANCEL_OFFSET_UID), LE);
+                dst.putLong(block + 12, body.getLong(bodyOffset + IOrderBook.CANCEL_OFFSET_ORDER_ID), LE);
+                break;
+
+            case IOrderBook.COMMAND_MOVE_ORDER:
+                blockLength = BLOCK_LENGTH_MOVE;
+                dst.putLong(block + 4, body.getLong(bodyOffset + IOrderBook.MOVE_OFFSET_UID), LE);
+                dst.putLong(block + 12, body.getLong(bodyOffset + IOrderBook.MOVE_OFFSET_ORDER_ID), LE);
+                dst.putLong(block + 20, body.getLong(bodyOffset + IOrderBook.MOVE_OFFSET_PRICE), LE);
+                break;
+
+            case IOrderBook.COMMAND_REDUCE_ORDER:
+                blockLength = BLOCK_LENGTH_REDUCE;
+                dst.putLong(block + 4, body.getLong(bodyOffset + IOrderBook.REDUCE_OFFSET_UID), LE);
+                dst.putLong(block + 12, body.getLong(bodyOffset + IOrderBook.REDUCE_OFFSET_ORDER_ID), LE);
+                dst.putLong(block + 20, body.getLong(bodyOffset + IOrderBook.REDUCE_OFFSET_SIZE), LE);
+                break;
+
+            default:
+                throw new IllegalStateException("Unknown command code " + cmdCode);
+        }
+
+        dst.putShort(dstOffset, (short) blockLength, LE);
+        dst.putShort(dstOffset + 2, cmdCode, LE);
+        dst.putShort(dstOffset + 4, (short) SCHEMA_ID, LE);
+        dst.putShort(dstOffset + 6, (short) SCHEMA_VERSION, LE);
+
+        return HEADER_SIZE + blockLength;
+    }
+}
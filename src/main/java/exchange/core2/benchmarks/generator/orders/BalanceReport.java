@@ -0,0 +1,114 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+import exchange.core2.orderbook.util.BufferWriter;
+import org.agrona.ExpandableArrayBuffer;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Balances required and produced by generated commands of all symbols (see {@link BalanceTracker}).
+ * <p>
+ * Deposit commands stream: records [long uid][int currency][long amount] sorted by uid and currency (native byte order).
+ */
+public final class BalanceReport {
+
+    public static final int DEPOSIT_OFFSET_UID = 0;
+    public static final int DEPOSIT_OFFSET_CURRENCY = 8;
+    public static final int DEPOSIT_OFFSET_AMOUNT = 12;
+    public static final int DEPOSIT_RECORD_SIZE = 20;
+
+    // (uid, currency) -> amount, see BalanceTracker.key
+    private final LongLongHashMap deposits = new LongLongHashMap();
+    private final LongLongHashMap expectedBalances = new LongLongHashMap();
+
+    // (uid, symbolId) -> futures position
+    private final LongLongHashMap positions = new LongLongHashMap();
+
+    public static BalanceReport merge(final Collection<BalanceTracker> trackers) {
+
+        final BalanceReport report = new BalanceReport();
+        for (final BalanceTracker tracker : trackers) {
+            tracker.getDeposits().forEachKeyValue((k, v) -> {
+                report.deposits.addToValue(k, v);
+                report.expectedBalances.addToValue(k, v);
+            });
+            tracker.getBalanceChanges().forEachKeyValue(report.expectedBalances::addToValue);
+            final int symbolId = tracker.getSpec().getSymbolId();
+            tracker.getPositions().forEachKeyValue((uid, position) -> {
+                if (position != 0) {
+                    report.positions.put(BalanceTracker.key(uid, symbolId), position);
+                }
+            });
+        }
+        return report;
+    }
+
+    public long getDeposit(final long uid, final int currency) {
+        return deposits.get(BalanceTracker.key(uid, currency));
+    }
+
+    /**
+     * @return expected total balance (including funds held by remaining orders) after processing all commands
+     */
+    public long getExpectedBalance(final long uid, final int currency) {
+        return expectedBalances.get(BalanceTracker.key(uid, currency));
+    }
+
+    public long getPosition(final long uid, final int symbolId) {
+        return positions.get(BalanceTracker.key(uid, symbolId));
+    }
+
+    public int getDepositsCount() {
+        return deposits.size();
+    }
+
+    /**
+     * @return deposit keys (see BalanceTracker.key) in ascending order (uid, then currency)
+     */
+    public long[] getDepositKeys() {
+        final long[] keys = deposits.keySet().toArray();
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * @return expected balances keys (see BalanceTracker.key) in ascending order (uid, then currency)
+     */
+    public long[] getExpectedBalanceKeys() {
+        final long[] keys = expectedBalances.keySet().toArray();
+        Arrays.sort(keys);
+        return keys;
+    }
+
+    /**
+     * Encodes initial deposits, should be replayed before any generated commands.
+     */
+    public SegmentedBuffer createDepositCommands() {
+        final long[] keys = getDepositKeys();
+        final BufferWriter writer = new BufferWriter(new ExpandableArrayBuffer(Math.max(64, keys.length * DEPOSIT_RECORD_SIZE)), 0);
+        for (final long key : keys) {
+            writer.appendLong(BalanceTracker.uidOfKey(key));
+            writer.appendInt(BalanceTracker.currencyOfKey(key));
+            writer.appendLong(deposits.get(key));
+        }
+        return SegmentedBuffer.wrap(writer);
+    }
+}
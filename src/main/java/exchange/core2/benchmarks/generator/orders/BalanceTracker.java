@@ -0,0 +1,201 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.CommandResponse;
+import exchange.core2.orderbook.api.TradeEvent;
+import org.agrona.DirectBuffer;
+import org.eclipse.collections.impl.map.mutable.primitive.IntByteHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+
+import java.util.List;
+
+/**
+ * Tracks funds required by generated commands of a single symbol and expected balance changes caused by trades.
+ * <p>
+ * Required deposits are conservative: every placed order holds full amount (as risk engine would do for a new order),
+ * funds released by cancels/trades and received from trades are not reused. So replaying commands after deposits
+ * never fails with insufficient funds, regardless of how symbols are interleaved.
+ * <p>
+ * Exchange pairs: bid holds size * (reserveBidPrice * quoteScaleK + takerFee) of quote currency
+ * (FOK_BUDGET: budget * quoteScaleK + size * takerFee), ask holds size * baseScaleK of base currency.
+ * Futures: order holds size * (margin + takerFee) of quote currency, positions are tracked, but PnL is not modelled
+ * (expected balance only includes fees).
+ * <p>
+ * Tracker is a function of commands and order book responses only, so it is rebuilt by replaying commands
+ * (e.g. after restoring checkpoint).
+ */
+public final class BalanceTracker {
+
+    private final GeneratorSymbolSpec spec;
+
+    // (uid, currency) -> amount
+    private final LongLongHashMap deposits = new LongLongHashMap();
+    private final LongLongHashMap balanceChanges = new LongLongHashMap();
+
+    // uid -> futures position (lots)
+    private final LongLongHashMap positions = new LongLongHashMap();
+
+    // action of active resting orders (required for trades caused by move commands)
+    private final IntByteHashMap orderActions = new IntByteHashMap();
+
+    BalanceTracker(final GeneratorSymbolSpec spec) {
+        this.spec = spec;
+    }
+
+    public static long key(final long uid, final int currency) {
+        return (uid << 32) | (currency & 0xFFFF_FFFFL);
+    }
+
+    public static long uidOfKey(final long key) {
+        return key >>> 32;
+    }
+
+    public static int currencyOfKey(final long key) {
+        return (int) key;
+    }
+
+    public GeneratorSymbolSpec getSpec() {
+        return spec;
+    }
+
+    LongLongHashMap getDeposits() {
+        return deposits;
+    }
+
+    LongLongHashMap getBalanceChanges() {
+        return balanceChanges;
+    }
+
+    LongLongHashMap getPositions() {
+        return positions;
+    }
+
+    /**
+     * Should be called for every successfully processed command.
+     *
+     * @param commandsBuffer - buffer containing command [code][body]
+     * @param position       - command code position
+     * @param response       - order book response for the command
+     */
+    void onCommand(final DirectBuffer commandsBuffer,
+                   final int position,
+                   final CommandResponse response) {
+
+        final byte cmdCode = commandsBuffer.getByte(position);
+        final int body = position + 1;
+        final int orderId = (int) response.getOrderId();
+        final long takerUid = response.getUid();
+
+        final boolean takerBid;
+        if (cmdCode == IOrderBook.COMMAND_PLACE_ORDER) {
+
+            takerBid = OrderAction.of(commandsBuffer.getByte(body + IOrderBook.PLACE_OFFSET_ACTION)) == OrderAction.BID;
+            final byte type = commandsBuffer.getByte(body + IOrderBook.PLACE_OFFSET_TYPE);
+            holdFunds(
+                    commandsBuffer.getLong(body + IOrderBook.PLACE_OFFSET_UID),
+                    takerBid,
+                    type,
+                    commandsBuffer.getLong(body + IOrderBook.PLACE_OFFSET_PRICE),
+                    commandsBuffer.getLong(body + IOrderBook.PLACE_OFFSET_RESERVED_BID_PRICE),
+                    commandsBuffer.getLong(body + IOrderBook.PLACE_OFFSET_SIZE));
+
+            if (type == IOrderBook.ORDER_TYPE_GTC && !response.isOrderCompleted()) {
+                orderActions.put(orderId, takerBid ? (byte) 1 : (byte) 0);
+            }
+
+        } else if (cmdCode == IOrderBook.COMMAND_MOVE_ORDER) {
+            takerBid = orderActions.get(orderId) == 1;
+        } else {
+            // cancel or reduce - no trades
+            if (cmdCode == IOrderBook.COMMAND_CANCEL_ORDER || response.isOrderCompleted()) {
+                orderActions.remove(orderId);
+            }
+            return;
+        }
+
+        if (response.isOrderCompleted()) {
+            orderActions.remove(orderId);
+        }
+
+        final List<TradeEvent> trades = response.getTrades();
+        for (int t = 0; t < trades.size(); t++) {
+            final TradeEvent ev = trades.get(t);
+            final long size = ev.getTradeSize();
+            final long price = ev.getTradePrice();
+            final long makerUid = ev.getMakerUid();
+
+            if (takerBid) {
+                settleTrade(takerUid, makerUid, size, price, spec.getTakerFee(), spec.getMakerFee());
+            } else {
+                settleTrade(makerUid, takerUid, size, price, spec.getMakerFee(), spec.getTakerFee());
+            }
+
+            if (ev.isMakerOrderCompleted()) {
+                orderActions.remove((int) ev.getMakerOrderId());
+            }
+        }
+    }
+
+    private void holdFunds(final long uid,
+                           final boolean bid,
+                           final byte type,
+                           final long price,
+                           final long reserveBidPrice,
+                           final long size) {
+
+        final int quote = spec.getQuoteCurrency();
+
+        if (spec.getSymbolType() == GeneratorSymbolSpec.SymbolType.FUTURES_CONTRACT) {
+            final long margin = bid ? spec.getMarginBuy() : spec.getMarginSell();
+            deposits.addToValue(key(uid, quote), size * (margin + spec.getTakerFee()));
+        } else if (bid) {
+            final long amount = (type == IOrderBook.ORDER_TYPE_FOK_BUDGET)
+                    ? price * spec.getQuoteScaleK() + size * spec.getTakerFee()
+                    : size * (reserveBidPrice * spec.getQuoteScaleK() + spec.getTakerFee());
+            deposits.addToValue(key(uid, quote), amount);
+        } else {
+            deposits.addToValue(key(uid, spec.getBaseCurrency()), size * spec.getBaseScaleK());
+        }
+    }
+
+    private void settleTrade(final long buyerUid,
+                             final long sellerUid,
+                             final long size,
+                             final long price,
+                             final long buyerFee,
+                             final long sellerFee) {
+
+        final int quote = spec.getQuoteCurrency();
+
+        if (spec.getSymbolType() == GeneratorSymbolSpec.SymbolType.FUTURES_CONTRACT) {
+            positions.addToValue(buyerUid, size);
+            positions.addToValue(sellerUid, -size);
+            balanceChanges.addToValue(key(buyerUid, quote), -size * buyerFee);
+            balanceChanges.addToValue(key(sellerUid, quote), -size * sellerFee);
+        } else {
+            final long baseAmount = size * spec.getBaseScaleK();
+            final long quoteAmount = size * price * spec.getQuoteScaleK();
+            balanceChanges.addToValue(key(buyerUid, spec.getBaseCurrency()), baseAmount);
+            balanceChanges.addToValue(key(buyerUid, quote), -quoteAmount - size * buyerFee);
+            balanceChanges.addToValue(key(sellerUid, spec.getBaseCurrency()), -baseAmount);
+            balanceChanges.addToValue(key(sellerUid, quote), quoteAmount - size * sellerFee);
+        }
+    }
+}
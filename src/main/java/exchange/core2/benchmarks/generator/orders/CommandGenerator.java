@@ -62,17 +62,10 @@ public class CommandGenerator {
             return;
         }
 
-        // TODO improve random picking performance (custom hashset implementation?)
 //        long t = System.nanoTime();
         final int size = Math.min(session.orderUids.size(), 512);
 
-        final int randPos = session.rand.nextInt(size);
-        Iterator<Map.Entry<Integer, Integer>> iterator = session.orderUids.entrySet().iterator();
-
-        Map.Entry<Integer, Integer> rec = iterator.next();
-        for (int i = 0; i < randPos; i++) {
-            rec = iterator.next();
-        }
+        final Map.Entry<Integer, Integer> rec = orderAtPosition(session, session.rand.nextInt(size));
 //        session.hdrRecorder.recordValue(Math.min(System.nanoTime() - t, Integer.MAX_VALUE));
         final int orderId = rec.getKey();
 
@@ -145,23 +138,36 @@ public class CommandGenerator {
         }
 
         //log.debug("p={} action={}", p, action);
-        final int price = (int) session.lastTradePrice + (int) p;
+        int price = (int) session.lastTradePrice + (int) p;
+        if (session.priceLevelStep != 1) {
+            price = snapToPriceLevel(session, price);
+        }
 
         final int size = 1 + rand.nextInt(6) * rand.nextInt(6) * rand.nextInt(6);
 
+        appendGtcOrder(session, commandBufferWriter, action, uid, newOrderId, price, size);
+    }
 
-        session.orderPrices.put(newOrderId, price);
-        session.orderSizes.put(newOrderId, size);
-        session.orderUids.put(newOrderId, uid);
+    static void appendGtcOrder(final OrdersGeneratorSession session,
+                               final BufferWriter commandBufferWriter,
+                               final OrderAction action,
+                               final int uid,
+                               final int orderId,
+                               final int price,
+                               final int size) {
 
-        final int userCookie = rand.nextInt();
+        session.orderPrices.put(orderId, price);
+        session.orderSizes.put(orderId, size);
+        session.orderUids.put(orderId, uid);
+
+        final int userCookie = session.rand.nextInt();
 
         commandBufferWriter.appendByte(IOrderBook.COMMAND_PLACE_ORDER);
 
         CommandsEncoder.placeOrder(
                 commandBufferWriter,
                 IOrderBook.ORDER_TYPE_GTC,
-                newOrderId,
+                orderId,
                 uid,
                 price,
                 action == OrderAction.BID ? session.maxPrice : 0,// set limit price
@@ -170,6 +176,26 @@ public class CommandGenerator {
                 userCookie);
     }
 
+    /**
+     * Rounds price down to the sparse price levels grid, keeping it within allowed price range
+     */
+    static int snapToPriceLevel(final OrdersGeneratorSession session, final long price) {
+        final long level = Math.max(price - session.minPrice, 0) / session.priceLevelStep;
+        return (int) Math.min(session.minPrice + level * session.priceLevelStep, session.maxPrice);
+    }
+
+    // TODO improve random picking performance (custom hashset implementation?)
+    static Map.Entry<Integer, Integer> orderAtPosition(final OrdersGeneratorSession session, final int position) {
+
+        final Iterator<Map.Entry<Integer, Integer>> iterator = session.orderUids.entrySet().iterator();
+
+        Map.Entry<Integer, Integer> rec = iterator.next();
+        for (int i = 0; i < position; i++) {
+            rec = iterator.next();
+        }
+        return rec;
+    }
+
     public static void generateRandomInstantOrder(final OrdersGeneratorSession session,
                                                   final BufferWriter commandBufferWriter) {
 
@@ -244,11 +270,11 @@ public class CommandGenerator {
                 userCookie);
     }
 
-    private static int randomUid(OrdersGeneratorSession session, Random rand) {
+    static int randomUid(OrdersGeneratorSession session, Random rand) {
 
-        final int uid = session.uidMapper.apply(rand.nextInt(session.numUsers));
+        final int uid = session.uidMapper.applyAsInt(rand.nextInt(session.numUsers));
         if (uid == 0) {
-            throw new IllegalArgumentException("uid can not be 0, check uid mapping use UID_PLAIN_MAPPER");
+            throw new IllegalArgumentException("uid can not be 0, check uid mapping use UID_PLAIN_INT_MAPPER");
         } else {
             return uid;
         }
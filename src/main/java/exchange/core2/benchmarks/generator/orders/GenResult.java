@@ -15,6 +15,7 @@
  */
 package exchange.core2.benchmarks.generator.orders;
 
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
 import exchange.core2.orderbook.api.QueryResponseL2Data;
 import exchange.core2.orderbook.util.BufferReader;
 
@@ -24,11 +25,24 @@ public class GenResult {
     private final int finalOrderBookHash;
 
     private final BufferReader commandsFill;
+    private final SegmentedBuffer commandsFillBuffer;
     private final int numCommandsFill;
 
     private final BufferReader commandsBenchmark;
+    private final SegmentedBuffer commandsBenchmarkBuffer;
     private final int numCommandsBenchmark;
 
+    // can be null
+    private final StateHashTrail stateHashTrail;
+
+    // can be null
+    private final BalanceTracker balanceTracker;
+
+    // can be null
+    private final OrderBookDepthStats depthStats;
+
+    private final int peakLiveOrders;
+
     public GenResult(final QueryResponseL2Data finalOrderBookSnapshot,
                      final int finalOrderBookHash,
                      final BufferReader commandsFill,
@@ -36,12 +50,30 @@ public class GenResult {
                      final BufferReader commandsBenchmark,
                      final int numCommandsBenchmark) {
 
-        this.finalOrderBookSnapshot = finalOrderBookSnapshot;
-        this.finalOrderBookHash = finalOrderBookHash;
-        this.commandsFill = commandsFill;
-        this.numCommandsFill = numCommandsFill;
-        this.commandsBenchmark = commandsBenchmark;
-        this.numCommandsBenchmark = numCommandsBenchmark;
+        this(builder()
+                .finalOrderBook(finalOrderBookSnapshot, finalOrderBookHash)
+                .commandsFill(commandsFill, null, numCommandsFill)
+                .commandsBenchmark(commandsBenchmark, null, numCommandsBenchmark));
+    }
+
+    private GenResult(final Builder builder) {
+
+        this.finalOrderBookSnapshot = builder.finalOrderBookSnapshot;
+        this.finalOrderBookHash = builder.finalOrderBookHash;
+        this.commandsFill = builder.commandsFill;
+        this.commandsFillBuffer = builder.commandsFillBuffer;
+        this.numCommandsFill = builder.numCommandsFill;
+        this.commandsBenchmark = builder.commandsBenchmark;
+        this.commandsBenchmarkBuffer = builder.commandsBenchmarkBuffer;
+        this.numCommandsBenchmark = builder.numCommandsBenchmark;
+        this.stateHashTrail = builder.stateHashTrail;
+        this.balanceTracker = builder.balanceTracker;
+        this.depthStats = builder.depthStats;
+        this.peakLiveOrders = builder.peakLiveOrders;
+    }
+
+    public static Builder builder() {
+        return new Builder();
     }
 
     public QueryResponseL2Data getFinalOrderBookSnapshot() {
@@ -56,6 +88,13 @@ public class GenResult {
         return commandsFill;
     }
 
+    /**
+     * @return stateless view of fill commands, or null if not provided
+     */
+    public SegmentedBuffer getCommandsFillBuffer() {
+        return commandsFillBuffer;
+    }
+
     public int getNumCommandsFill() {
         return numCommandsFill;
     }
@@ -64,12 +103,118 @@ public class GenResult {
         return commandsBenchmark;
     }
 
+    /**
+     * @return stateless view of benchmark commands, or null if not provided
+     */
+    public SegmentedBuffer getCommandsBenchmarkBuffer() {
+        return commandsBenchmarkBuffer;
+    }
+
     public int getNumCommandsBenchmark() {
         return numCommandsBenchmark;
     }
 
+    /**
+     * @return intermediate order book state hashes, or null if not recorded
+     */
+    public StateHashTrail getStateHashTrail() {
+        return stateHashTrail;
+    }
+
+    /**
+     * @return required deposits and balance changes, or null if balances were not tracked
+     */
+    public BalanceTracker getBalanceTracker() {
+        return balanceTracker;
+    }
+
+    /**
+     * @return order book shape observed while generating benchmark commands
+     */
+    public OrderBookDepthStats getDepthStats() {
+        return depthStats;
+    }
+
+    /**
+     * @return maximum number of orders tracked by generator session at the same time
+     */
+    public int getPeakLiveOrders() {
+        return peakLiveOrders;
+    }
+
     public int size() {
         return commandsFill.getSize() + commandsBenchmark.getSize();
     }
 
+    public static final class Builder {
+
+        private QueryResponseL2Data finalOrderBookSnapshot;
+        private int finalOrderBookHash;
+
+        private BufferReader commandsFill;
+        private SegmentedBuffer commandsFillBuffer;
+        private int numCommandsFill;
+
+        private BufferReader commandsBenchmark;
+        private SegmentedBuffer commandsBenchmarkBuffer;
+        private int numCommandsBenchmark;
+
+        private StateHashTrail stateHashTrail;
+        private BalanceTracker balanceTracker;
+        private OrderBookDepthStats depthStats;
+        private int peakLiveOrders;
+
+        private Builder() {
+        }
+
+        public Builder finalOrderBook(final QueryResponseL2Data snapshot, final int hash) {
+            this.finalOrderBookSnapshot = snapshot;
+            this.finalOrderBookHash = hash;
+            return this;
+        }
+
+        /**
+         * @param buffer - stateless view of the same commands (can be null)
+         */
+        public Builder commandsFill(final BufferReader reader, final SegmentedBuffer buffer, final int numCommands) {
+            this.commandsFill = reader;
+            this.commandsFillBuffer = buffer;
+            this.numCommandsFill = numCommands;
+            return this;
+        }
+
+        /**
+         * @param buffer - stateless view of the same commands (can be null)
+         */
+        public Builder commandsBenchmark(final BufferReader reader, final SegmentedBuffer buffer, final int numCommands) {
+            this.commandsBenchmark = reader;
+            this.commandsBenchmarkBuffer = buffer;
+            this.numCommandsBenchmark = numCommands;
+            return this;
+        }
+
+        public Builder stateHashTrail(final StateHashTrail stateHashTrail) {
+            this.stateHashTrail = stateHashTrail;
+            return this;
+        }
+
+        public Builder balanceTracker(final BalanceTracker balanceTracker) {
+            this.balanceTracker = balanceTracker;
+            return this;
+        }
+
+        public Builder depthStats(final OrderBookDepthStats depthStats) {
+            this.depthStats = depthStats;
+            return this;
+        }
+
+        public Builder peakLiveOrders(final int peakLiveOrders) {
+            this.peakLiveOrders = peakLiveOrders;
+            return this;
+        }
+
+        public GenResult build() {
+            return new GenResult(this);
+        }
+    }
 }
@@ -0,0 +1,52 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Where and how often generator should save its state, so that long-running generation can be resumed.
+ * Directory should be cleaned before starting a new (not resumed) generation.
+ */
+public final class GeneratorCheckpointConfig {
+
+    private final Path directory;
+    private final long intervalNs;
+
+    public GeneratorCheckpointConfig(final Path directory,
+                                     final int intervalSeconds) {
+
+        this.directory = directory;
+        this.intervalNs = TimeUnit.SECONDS.toNanos(intervalSeconds);
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    public long getIntervalNs() {
+        return intervalNs;
+    }
+
+    @Override
+    public String toString() {
+        return "GeneratorCheckpointConfig{" +
+                "directory=" + directory +
+                ", intervalNs=" + intervalNs +
+                '}';
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import exchange.core2.benchmarks.generator.encoding.CommandEncoder;
+import exchange.core2.benchmarks.generator.encoding.NativeCommandEncoder;
+import exchange.core2.benchmarks.generator.util.PhaseMeters;
+
+/**
+ * Optional generator settings, shared by single order book and multi-symbol generation.
+ * Defaults reproduce plain random generation with the naive order book.
+ * <p>
+ * Merged output settings (segment size, encoder) and phase meters are only used by multi-symbol generation.
+ */
+public final class GeneratorOptions {
+
+    public static final GeneratorOptions DEFAULT = builder().build();
+
+    private final GeneratorScenario scenario;
+
+    // null - checkpoints are disabled
+    private final GeneratorCheckpointConfig checkpointConfig;
+
+    private final OrderBookFactory orderBookFactory;
+
+    // null - no cross-checking
+    private final OrderBookFactory crossCheckOrderBookFactory;
+
+    // 0 - intermediate state hashes are not recorded
+    private final int stateHashInterval;
+
+    private final boolean trackBalances;
+
+    // 0 - merge into single heap buffer
+    private final int mergedSegmentSize;
+
+    // null - phases are not measured
+    private final PhaseMeters phaseMeters;
+
+    // null - native layout
+    private final CommandEncoder commandEncoder;
+
+    private GeneratorOptions(final Builder builder) {
+        this.scenario = builder.scenario;
+        this.checkpointConfig = builder.checkpointConfig;
+        this.orderBookFactory = builder.orderBookFactory;
+        this.crossCheckOrderBookFactory = builder.crossCheckOrderBookFactory;
+        this.stateHashInterval = builder.stateHashInterval;
+        this.trackBalances = builder.trackBalances;
+        this.mergedSegmentSize = builder.mergedSegmentSize;
+        this.phaseMeters = builder.phaseMeters;
+        this.commandEncoder = builder.commandEncoder;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public Builder toBuilder() {
+        return new Builder()
+                .scenario(scenario)
+                .checkpointConfig(checkpointConfig)
+                .orderBookFactory(orderBookFactory)
+                .crossCheckOrderBookFactory(crossCheckOrderBookFactory)
+                .stateHashInterval(stateHashInterval)
+                .trackBalances(trackBalances)
+                .mergedSegmentSize(mergedSegmentSize)
+                .phaseMeters(phaseMeters)
+                .commandEncoder(commandEncoder);
+    }
+
+    public GeneratorScenario getScenario() {
+        return scenario;
+    }
+
+    public GeneratorCheckpointConfig getCheckpointConfig() {
+        return checkpointConfig;
+    }
+
+    public OrderBookFactory getOrderBookFactory() {
+        return orderBookFactory;
+    }
+
+    public OrderBookFactory getCrossCheckOrderBookFactory() {
+        return crossCheckOrderBookFactory;
+    }
+
+    public int getStateHashInterval() {
+        return stateHashInterval;
+    }
+
+    public boolean isTrackBalances() {
+        return trackBalances;
+    }
+
+    public int getMergedSegmentSize() {
+        return mergedSegmentSize;
+    }
+
+    public PhaseMeters getPhaseMeters() {
+        return phaseMeters;
+    }
+
+    public CommandEncoder getCommandEncoder() {
+        return commandEncoder;
+    }
+
+    /**
+     * @return true if merged commands are written in native [code][symbolId][body] layout
+     */
+    public boolean isNativeLayout() {
+        return commandEncoder == null || commandEncoder == NativeCommandEncoder.INSTANCE;
+    }
+
+    @Override
+    public String toString() {
+        return "GeneratorOptions{" +
+                "scenario=" + scenario +
+                ", checkpointConfig=" + checkpointConfig +
+                ", crossCheck=" + (crossCheckOrderBookFactory != null) +
+                ", stateHashInterval=" + stateHashInterval +
+                ", trackBalances=" + trackBalances +
+                ", mergedSegmentSize=" + mergedSegmentSize +
+                ", commandEncoder=" + (commandEncoder != null ? commandEncoder.getClass().getSimpleName() : "native") +
+                '}';
+    }
+
+    public static final class Builder {
+
+        private GeneratorScenario scenario = GeneratorScenario.RANDOM;
+        private GeneratorCheckpointConfig checkpointConfig = null;
+        private OrderBookFactory orderBookFactory = OrderBookFactory.NAIVE;
+        private OrderBookFactory crossCheckOrderBookFactory = null;
+        private int stateHashInterval = 0;
+        private boolean trackBalances = false;
+        private int mergedSegmentSize = 0;
+        private PhaseMeters phaseMeters = null;
+        private CommandEncoder commandEncoder = null;
+
+        private Builder() {
+        }
+
+        public Builder scenario(final GeneratorScenario scenario) {
+            this.scenario = scenario;
+            return this;
+        }
+
+        public Builder checkpointConfig(final GeneratorCheckpointConfig checkpointConfig) {
+            this.checkpointConfig = checkpointConfig;
+            return this;
+        }
+
+        public Builder orderBookFactory(final OrderBookFactory orderBookFactory) {
+            this.orderBookFactory = orderBookFactory;
+            return this;
+        }
+
+        public Builder crossCheckOrderBookFactory(final OrderBookFactory crossCheckOrderBookFactory) {
+            this.crossCheckOrderBookFactory = crossCheckOrderBookFactory;
+            return this;
+        }
+
+        public Builder stateHashInterval(final int stateHashInterval) {
+            this.stateHashInterval = stateHashInterval;
+            return this;
+        }
+
+        public Builder trackBalances(final boolean trackBalances) {
+            this.trackBalances = trackBalances;
+            return this;
+        }
+
+        public Builder mergedSegmentSize(final int mergedSegmentSize) {
+            this.mergedSegmentSize = mergedSegmentSize;
+            return this;
+        }
+
+        public Builder phaseMeters(final PhaseMeters phaseMeters) {
+            this.phaseMeters = phaseMeters;
+            return this;
+        }
+
+        public Builder commandEncoder(final CommandEncoder commandEncoder) {
+            this.commandEncoder = commandEncoder;
+            return this;
+        }
+
+        public GeneratorOptions build() {
+
+            if (scenario == null) {
+                throw new IllegalArgumentException("Scenario is required");
+            }
+            if (orderBookFactory == null) {
+                throw new IllegalArgumentException("Order book factory is required");
+            }
+            if (stateHashInterval < 0) {
+                throw new IllegalArgumentException("stateHashInterval should not be negative");
+            }
+            if (mergedSegmentSize < 0) {
+                throw new IllegalArgumentException("mergedSegmentSize should not be negative");
+            }
+
+            final GeneratorOptions options = new GeneratorOptions(this);
+
+            // merged stream is written straight in the target format (generation itself always uses native layout)
+            if (!options.isNativeLayout() && mergedSegmentSize == 0) {
+                throw new IllegalArgumentException("Custom commands encoding requires merging into segments (mergedSegmentSize > 0)");
+            }
+
+            return options;
+        }
+    }
+}
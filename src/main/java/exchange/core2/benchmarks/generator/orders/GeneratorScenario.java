@@ -0,0 +1,45 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+/**
+ * Shape of the commands stream generated for a single order book.
+ * <p>
+ * RANDOM produces mostly near-touch activity. Other scenarios target pathological order book costs,
+ * so that tail latency can be measured under worst-case inputs. All commands are still processed by the reference
+ * order book, and the resulting state hash is reported as usual.
+ */
+public enum GeneratorScenario {
+
+    // regular random near-touch activity
+    RANDOM,
+
+    // GTC orders scattered across very wide price range, most price levels are holding just few orders
+    WIDE_SPARSE_BOOK,
+
+    // huge IOC and FOK_BUDGET orders sweeping through thousands of sparse price levels
+    SWEEPING_ORDERS,
+
+    // orders hopping between distant price levels
+    MOVE_STORM,
+
+    // deep queues on few price levels, cancels are targeting orders in the middle of a queue
+    MID_QUEUE_CANCELS;
+
+    public boolean isWidePriceRange() {
+        return this == WIDE_SPARSE_BOOK || this == SWEEPING_ORDERS;
+    }
+}
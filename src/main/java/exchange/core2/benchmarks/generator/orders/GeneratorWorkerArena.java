@@ -0,0 +1,65 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import exchange.core2.orderbook.util.BufferWriter;
+import org.agrona.ExpandableArrayBuffer;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Per-worker state reused across symbols generated one after another by the same thread.
+ * Holds everything that does not escape into GenResult: order book results buffer and session order maps.
+ * Cleared collections keep their capacity, so generating many small symbols does not reallocate them.
+ * <p>
+ * Not thread safe - used by a single worker at a time (arenas can be pooled and handed over between batches).
+ */
+public final class GeneratorWorkerArena {
+
+    final BufferWriter resultsBufferWriter = new BufferWriter(new ExpandableArrayBuffer(), 0);
+
+    final IntIntHashMap orderPrices = new IntIntHashMap();
+    final IntIntHashMap orderSizes = new IntIntHashMap();
+    final Map<Integer, Integer> orderUids = new LinkedHashMap<>();
+
+    private int symbolsGenerated = 0;
+
+    /**
+     * Prepares arena for the next symbol
+     */
+    void reset() {
+        resultsBufferWriter.reset();
+        orderPrices.clear();
+        orderSizes.clear();
+        orderUids.clear();
+    }
+
+    /**
+     * Should be called by generator after symbol commands were successfully generated
+     */
+    void onSymbolGenerated() {
+        symbolsGenerated++;
+    }
+
+    /**
+     * @return number of symbols successfully generated using this arena
+     */
+    public int getSymbolsGenerated() {
+        return symbolsGenerated;
+    }
+}
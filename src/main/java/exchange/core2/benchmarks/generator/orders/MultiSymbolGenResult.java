@@ -15,8 +15,15 @@
  */
 package exchange.core2.benchmarks.generator.orders;
 
+import exchange.core2.benchmarks.generator.batching.CommandBatches;
+import exchange.core2.benchmarks.generator.encoding.CommandEncoder;
+import exchange.core2.benchmarks.generator.encoding.NativeCommandEncoder;
+import exchange.core2.benchmarks.generator.storage.CommandOffsetIndex;
+import exchange.core2.benchmarks.generator.storage.CommandsCorpus;
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
 import exchange.core2.orderbook.util.BufferReader;
 
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 
@@ -25,36 +32,279 @@ public class MultiSymbolGenResult {
     private final Map<Integer, Integer> orderBookHashes;
 
     // completable future (as merging takes some time)
-    // TODO use stateless object (Buffer with size - to avoid state)
     private final CompletableFuture<BufferReader> commandsFill;
     private final CompletableFuture<BufferReader> commandsBenchmark;
 
+    // stateless views, can hold more than 2GB if merged into off-heap segments
+    private final CompletableFuture<SegmentedBuffer> commandsFillBuffer;
+    private final CompletableFuture<SegmentedBuffer> commandsBenchmarkBuffer;
+
+    // format of merged commands in buffers
+    private final CommandEncoder commandEncoder;
+
+    private final int fillCommandsSize;
     private final int benchmarkCommandsSize;
 
+    // empty if state hashes were not recorded
+    private final Map<Integer, StateHashTrail> stateHashTrails;
+
+    // null if balances were not tracked
+    private final BalanceReport balanceReport;
+
+    // null if offset indexes were not built
+    private final CompletableFuture<CommandOffsetIndex> commandsFillIndex;
+    private final CompletableFuture<CommandOffsetIndex> commandsBenchmarkIndex;
+
+    // empty if not collected
+    private final Map<Integer, OrderBookDepthStats> depthStats;
+
     public Map<Integer, Integer> getOrderBookHashes() {
         return orderBookHashes;
     }
 
     public CompletableFuture<BufferReader> getCommandsFill() {
-        return commandsFill;
+        return requireAvailable(commandsFill, "use getCommandsFillBuffer()");
     }
 
     public CompletableFuture<BufferReader> getCommandsBenchmark() {
-        return commandsBenchmark;
+        return requireAvailable(commandsBenchmark, "use getCommandsBenchmarkBuffer()");
+    }
+
+    public CompletableFuture<SegmentedBuffer> getCommandsFillBuffer() {
+        return requireAvailable(commandsFillBuffer, "use getCommandsFill()");
+    }
+
+    public CompletableFuture<SegmentedBuffer> getCommandsBenchmarkBuffer() {
+        return requireAvailable(commandsBenchmarkBuffer, "use getCommandsBenchmark()");
+    }
+
+    /**
+     * @return encoder which produced merged commands buffers
+     */
+    public CommandEncoder getCommandEncoder() {
+        return commandEncoder;
+    }
+
+    /**
+     * @return stateless view of merged fill commands (supports independent cursors and parallel iteration)
+     * @throws IllegalStateException if commands were not merged in native layout
+     */
+    public CompletableFuture<CommandsCorpus> getCommandsFillCorpus() {
+        requireNativeLayout();
+        return getCommandsFillBuffer().thenApply(CommandsCorpus::merged);
+    }
+
+    /**
+     * @return stateless view of merged benchmark commands (supports independent cursors and parallel iteration)
+     * @throws IllegalStateException if commands were not merged in native layout
+     */
+    public CompletableFuture<CommandsCorpus> getCommandsBenchmarkCorpus() {
+        requireNativeLayout();
+        return getCommandsBenchmarkBuffer().thenApply(CommandsCorpus::merged);
+    }
+
+    /**
+     * Packs fill commands into ring-buffer-ready batches, sequences are starting from 0.
+     */
+    public CompletableFuture<CommandBatches> getCommandsFillBatches(final int batchCapacity,
+                                                                    final int maxCommandsPerBatch) {
+        return getCommandsFillCorpus().thenApplyAsync(
+                corpus -> CommandBatches.build(corpus, batchCapacity, maxCommandsPerBatch, 0));
+    }
+
+    /**
+     * Packs benchmark commands into ring-buffer-ready batches, sequences are continuing after fill commands.
+     */
+    public CompletableFuture<CommandBatches> getCommandsBenchmarkBatches(final int batchCapacity,
+                                                                         final int maxCommandsPerBatch) {
+        return getCommandsFillCorpus().thenCombineAsync(
+                getCommandsBenchmarkCorpus(),
+                (fillCorpus, corpus) -> CommandBatches.build(corpus, batchCapacity, maxCommandsPerBatch, fillCommandsSize));
+    }
+
+    /**
+     * @return sparse offset index of merged fill commands (seek to command, split between consumers)
+     */
+    public CompletableFuture<CommandOffsetIndex> getCommandsFillIndex() {
+        return requireAvailable(commandsFillIndex, "index was not built");
+    }
+
+    /**
+     * @return sparse offset index of merged benchmark commands (seek to command, split between consumers)
+     */
+    public CompletableFuture<CommandOffsetIndex> getCommandsBenchmarkIndex() {
+        return requireAvailable(commandsBenchmarkIndex, "index was not built");
+    }
+
+    public int getFillCommandsSize() {
+        return fillCommandsSize;
     }
 
     public int getBenchmarkCommandsSize() {
         return benchmarkCommandsSize;
     }
 
+    public Map<Integer, StateHashTrail> getStateHashTrails() {
+        return stateHashTrails;
+    }
+
+    /**
+     * @return symbolId -> order book shape observed while generating benchmark commands
+     */
+    public Map<Integer, OrderBookDepthStats> getDepthStats() {
+        return depthStats;
+    }
+
+    /**
+     * @return required deposits and expected final balances, or null if balances were not tracked
+     */
+    public BalanceReport getBalanceReport() {
+        return balanceReport;
+    }
+
     public MultiSymbolGenResult(Map<Integer, Integer> orderBookHashes,
                                 CompletableFuture<BufferReader> commandsFill,
                                 CompletableFuture<BufferReader> commandsBenchmark,
                                 int benchmarkCommandsSize) {
 
-        this.orderBookHashes = orderBookHashes;
-        this.commandsFill = commandsFill;
-        this.commandsBenchmark = commandsBenchmark;
-        this.benchmarkCommandsSize = benchmarkCommandsSize;
+        this(builder()
+                .orderBookHashes(orderBookHashes)
+                .commandsFill(commandsFill, 0)
+                .commandsBenchmark(commandsBenchmark, benchmarkCommandsSize));
+    }
+
+    private MultiSymbolGenResult(final Builder builder) {
+
+        this.orderBookHashes = builder.orderBookHashes;
+        this.commandsFill = builder.commandsFill;
+        this.commandsBenchmark = builder.commandsBenchmark;
+        this.commandsFillBuffer = builder.commandsFillBuffer;
+        this.commandsBenchmarkBuffer = builder.commandsBenchmarkBuffer;
+        this.commandEncoder = builder.commandEncoder;
+        this.fillCommandsSize = builder.fillCommandsSize;
+        this.benchmarkCommandsSize = builder.benchmarkCommandsSize;
+        this.stateHashTrails = builder.stateHashTrails;
+        this.balanceReport = builder.balanceReport;
+        this.commandsFillIndex = builder.commandsFillIndex;
+        this.commandsBenchmarkIndex = builder.commandsBenchmarkIndex;
+        this.depthStats = builder.depthStats;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    private void requireNativeLayout() {
+        if (commandEncoder != NativeCommandEncoder.INSTANCE) {
+            throw new IllegalStateException("Commands are merged by " + commandEncoder.getClass().getSimpleName()
+                    + ", only raw buffers are available (corpus and batches require native layout)");
+        }
+    }
+
+    private static <T> CompletableFuture<T> requireAvailable(final CompletableFuture<T> future, final String hint) {
+        if (future == null) {
+            throw new IllegalStateException("Commands are not available in this form, " + hint);
+        }
+        return future;
+    }
+
+    /**
+     * Either heap readers or segmented buffers can be left null (if commands were merged into off-heap segments).
+     */
+    public static final class Builder {
+
+        private Map<Integer, Integer> orderBookHashes = Collections.emptyMap();
+
+        private CompletableFuture<BufferReader> commandsFill;
+        private CompletableFuture<BufferReader> commandsBenchmark;
+
+        private CompletableFuture<SegmentedBuffer> commandsFillBuffer;
+        private CompletableFuture<SegmentedBuffer> commandsBenchmarkBuffer;
+
+        private CommandEncoder commandEncoder = NativeCommandEncoder.INSTANCE;
+
+        private int fillCommandsSize;
+        private int benchmarkCommandsSize;
+
+        private Map<Integer, StateHashTrail> stateHashTrails = Collections.emptyMap();
+        private BalanceReport balanceReport;
+
+        private CompletableFuture<CommandOffsetIndex> commandsFillIndex;
+        private CompletableFuture<CommandOffsetIndex> commandsBenchmarkIndex;
+
+        private Map<Integer, OrderBookDepthStats> depthStats = Collections.emptyMap();
+
+        private Builder() {
+        }
+
+        public Builder orderBookHashes(final Map<Integer, Integer> orderBookHashes) {
+            this.orderBookHashes = orderBookHashes;
+            return this;
+        }
+
+        public Builder commandsFill(final CompletableFuture<BufferReader> commandsFill,
+                                    final int fillCommandsSize) {
+            this.commandsFill = commandsFill;
+            this.fillCommandsSize = fillCommandsSize;
+            return this;
+        }
+
+        public Builder commandsBenchmark(final CompletableFuture<BufferReader> commandsBenchmark,
+                                         final int benchmarkCommandsSize) {
+            this.commandsBenchmark = commandsBenchmark;
+            this.benchmarkCommandsSize = benchmarkCommandsSize;
+            return this;
+        }
+
+        public Builder commandsBuffers(final CompletableFuture<SegmentedBuffer> commandsFillBuffer,
+                                       final CompletableFuture<SegmentedBuffer> commandsBenchmarkBuffer) {
+            this.commandsFillBuffer = commandsFillBuffer;
+            this.commandsBenchmarkBuffer = commandsBenchmarkBuffer;
+            return this;
+        }
+
+        /**
+         * @param commandEncoder - encoder used for merged buffers (null means native layout)
+         */
+        public Builder commandEncoder(final CommandEncoder commandEncoder) {
+            this.commandEncoder = commandEncoder != null ? commandEncoder : NativeCommandEncoder.INSTANCE;
+            return this;
+        }
+
+        public Builder fillCommandsSize(final int fillCommandsSize) {
+            this.fillCommandsSize = fillCommandsSize;
+            return this;
+        }
+
+        public Builder benchmarkCommandsSize(final int benchmarkCommandsSize) {
+            this.benchmarkCommandsSize = benchmarkCommandsSize;
+            return this;
+        }
+
+        public Builder stateHashTrails(final Map<Integer, StateHashTrail> stateHashTrails) {
+            this.stateHashTrails = stateHashTrails;
+            return this;
+        }
+
+        public Builder balanceReport(final BalanceReport balanceReport) {
+            this.balanceReport = balanceReport;
+            return this;
+        }
+
+        public Builder commandsIndexes(final CompletableFuture<CommandOffsetIndex> commandsFillIndex,
+                                       final CompletableFuture<CommandOffsetIndex> commandsBenchmarkIndex) {
+            this.commandsFillIndex = commandsFillIndex;
+            this.commandsBenchmarkIndex = commandsBenchmarkIndex;
+            return this;
+        }
+
+        public Builder depthStats(final Map<Integer, OrderBookDepthStats> depthStats) {
+            this.depthStats = depthStats;
+            return this;
+        }
+
+        public MultiSymbolGenResult build() {
+            return new MultiSymbolGenResult(this);
+        }
     }
 }
@@ -19,18 +19,29 @@ import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
 import exchange.core2.benchmarks.generator.clients.ClientsCurrencyAccountsGenerator;
 import exchange.core2.benchmarks.generator.util.AsyncProgressLogger;
 import exchange.core2.benchmarks.generator.util.ExecutionTime;
+import exchange.core2.benchmarks.generator.util.GenerationPhase;
+import exchange.core2.benchmarks.generator.util.PhaseMeters;
+import exchange.core2.benchmarks.generator.encoding.CommandEncoder;
+import exchange.core2.benchmarks.generator.storage.CommandOffsetIndex;
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
 import exchange.core2.orderbook.util.BufferReader;
+import exchange.core2.orderbook.util.BufferWriter;
 import org.apache.commons.math3.random.JDKRandomGenerator;
 import org.apache.commons.math3.util.Pair;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
+import java.util.IntSummaryStatistics;
 import java.util.List;
 import java.util.Map;
+import java.util.Queue;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
 import java.util.function.LongConsumer;
 import java.util.stream.Collectors;
 
@@ -38,6 +49,9 @@ public final class MultiSymbolOrdersGenerator {
 
     private static final Logger log = LoggerFactory.getLogger(MultiSymbolOrdersGenerator.class);
 
+    // symbols with fewer commands are generated in batches by the same worker
+    private static final long SYMBOLS_BATCH_COMMANDS = 200_000;
+
     // TODO allow limiting max volume
     // TODO allow limiting number of opened positions (currently it just grows)
     // TODO use longs for prices (optionally)
@@ -50,18 +64,37 @@ public final class MultiSymbolOrdersGenerator {
             final int randomSeed,
             final boolean avalancheIOC) {
 
+        return generateMultipleSymbols(
+                symbolSpecs,
+                totalTransactionsNumber,
+                usersAccounts,
+                targetOrderBookOrdersTotal,
+                randomSeed,
+                avalancheIOC,
+                GeneratorOptions.DEFAULT);
+    }
+
+    public static MultiSymbolGenResult generateMultipleSymbols(
+            final List<Pair<GeneratorSymbolSpec, Double>> symbolSpecs,
+            final int totalTransactionsNumber,
+            final List<BitSet> usersAccounts,
+            final int targetOrderBookOrdersTotal,
+            final int randomSeed,
+            final boolean avalancheIOC,
+            final GeneratorOptions options) {
+
+        // merged stream is written straight in the target format (generation itself always uses native layout)
+        final boolean nativeLayout = options.isNativeLayout();
+        final int mergedSegmentSize = options.getMergedSegmentSize();
+        final PhaseMeters phaseMeters = options.getPhaseMeters();
+        final CommandEncoder commandEncoder = options.getCommandEncoder();
+
         final Map<Integer, GenResult> genResultsMap = new HashMap<>();
 
         try (ExecutionTime ignore = new ExecutionTime(t -> log.debug("All test commands generated in {}", t))) {
 
-            if (Math.abs(symbolSpecs.stream().mapToDouble(Pair::getSecond).sum() - 1.0) > 0.000001) {
-                throw new IllegalArgumentException("Symbol spec weights should be normalized");
-            }
-
-            final double linearWeightK = 1.0 / symbolSpecs.size();
+            final List<SymbolGenerationTask> tasks = planSymbolTasks(symbolSpecs, totalTransactionsNumber, targetOrderBookOrdersTotal);
 
-            int quotaLeft = totalTransactionsNumber;
-            int orderIdShift = 1;
             final Map<Integer, CompletableFuture<GenResult>> futures = new HashMap<>();
 
             final LongConsumer sharedProgressLogger = AsyncProgressLogger.createLoggingConsumer(
@@ -69,52 +102,67 @@ public final class MultiSymbolOrdersGenerator {
                     message -> log.debug("Generating commands progress: {} ...", message),
                     5);
 
-            for (int i = symbolSpecs.size() - 1; i >= 0; i--) {
-
-                final Pair<GeneratorSymbolSpec, Double> wspec = symbolSpecs.get(i);
-                final double weight = wspec.getSecond();
-                final int commandsNum = (i != 0) ? (int) Math.round(totalTransactionsNumber * weight) : Math.max(quotaLeft, 1);
-
-                // linearizing order book GTC orders distribution a bit (simulate market makers)
-                final int orderBookSizeTarget = (int) Math.round(targetOrderBookOrdersTotal * (weight + linearWeightK) * 0.5);
-
-                quotaLeft -= commandsNum;
+            // small symbols are generated one after another by the same worker, reusing its arena
+            final List<List<SymbolGenerationTask>> batches = batchSymbolTasks(
+                    tasks,
+                    symbolsBatchCommands(totalTransactionsNumber + targetOrderBookOrdersTotal));
 
-                // maintaining unique orderId
-                final int orderIdCounter = orderIdShift;
-                orderIdShift += (commandsNum + orderBookSizeTarget);
+            // arenas are shared between batches (at most one per concurrently running batch)
+            final Queue<GeneratorWorkerArena> arenas = new ConcurrentLinkedQueue<>();
 
-                final GeneratorSymbolSpec spec = wspec.getFirst();
+            for (final List<SymbolGenerationTask> batch : batches) {
 
-                //log.debug("{}. Generating symbol {} : commands={} orderBookSizeTarget={} (quotaLeft={})", i, spec.getSymbolId(), commandsNum, orderBookSizeTarget, quotaLeft);
-
-                //log.debug("{}. {} b={} q={}", i, spec.getSymbolId(), spec.getBaseCurrency(), spec.getQuoteCurrency());
-
-                futures.put(spec.getSymbolId(), CompletableFuture.supplyAsync(() -> {
-
-                    // only some clients can trade specific symbols
-                    final int[] uidsAvailableForSymbol = ClientsCurrencyAccountsGenerator.createClientsListForSymbol(
-                            usersAccounts,
-                            spec,
-                            commandsNum,
-                            randomSeed);
+                final List<CompletableFuture<GenResult>> symbolFutures = new ArrayList<>(batch.size());
+                for (final SymbolGenerationTask task : batch) {
+                    final CompletableFuture<GenResult> future = new CompletableFuture<>();
+                    symbolFutures.add(future);
+                    futures.put(task.getSymbolId(), future);
+                }
 
-                    if (uidsAvailableForSymbol.length < 1) {
-                        throw new IllegalArgumentException();
+                CompletableFuture.runAsync(() -> {
+
+                    final GeneratorWorkerArena pooledArena = arenas.poll();
+                    final GeneratorWorkerArena arena = pooledArena != null ? pooledArena : new GeneratorWorkerArena();
+
+                    try {
+                        for (int i = 0; i < batch.size(); i++) {
+
+                            final SymbolGenerationTask task = batch.get(i);
+
+                            // failed symbol does not prevent generating the rest of the batch
+                            try (PhaseMeters.PhaseMeter meter = PhaseMeters.start(phaseMeters, GenerationPhase.SYMBOL_COMMANDS)) {
+
+                                final int[] uidsAvailableForSymbol = createUidsForSymbol(usersAccounts, task, randomSeed);
+
+                                final GenResult genResult = SingleBookOrderGenerator.generateCommands(
+                                        task.getCommandsNum(),
+                                        task.getOrderBookSizeTarget(),
+                                        uidsAvailableForSymbol.length,
+                                        idx -> uidsAvailableForSymbol[idx],
+                                        task.getSpec(),
+                                        false,
+                                        avalancheIOC,
+                                        sharedProgressLogger,
+                                        task.getOrderIdCounter(),
+                                        randomSeed,
+                                        options,
+                                        arena);
+                                meter.addCommands(genResult.getNumCommandsFill() + genResult.getNumCommandsBenchmark());
+                                symbolFutures.get(i).complete(genResult);
+
+                            } catch (final RuntimeException ex) {
+                                symbolFutures.get(i).completeExceptionally(ex);
+                            }
+                        }
+                    } finally {
+                        arenas.offer(arena);
                     }
-
-                    return SingleBookOrderGenerator.generateCommands(
-                            commandsNum,
-                            orderBookSizeTarget,
-                            uidsAvailableForSymbol.length,
-                            idx -> uidsAvailableForSymbol[idx],
-                            spec,
-                            false,
-                            avalancheIOC,
-                            sharedProgressLogger,
-                            orderIdCounter,
-                            randomSeed);
-                }));
+                }).whenComplete((v, ex) -> {
+                    // unexpected batch failure (e.g. out of memory) - do not leave symbols incomplete
+                    if (ex != null) {
+                        symbolFutures.forEach(future -> future.completeExceptionally(ex));
+                    }
+                });
             }
 
             futures.forEach((symbol, future) -> {
@@ -126,45 +174,255 @@ public final class MultiSymbolOrdersGenerator {
             });
         }
 
-        log.debug("Merging {} PREFILL commands for {} symbols...",
-                genResultsMap.values().stream().mapToInt(GenResult::getNumCommandsFill).sum(),
-                genResultsMap.size());
-
-        final CompletableFuture<BufferReader> mergedCommandsFill = CompletableFuture.supplyAsync(
-                () -> RandomCollectionsMerger.mergeCommands(
-                        genResultsMap,
-                        GenResult::getCommandsFill,
-                        new JDKRandomGenerator(randomSeed))
-                        .toReader());
-
-        // initiate merging process for benchmark commands part only when pre-fill commands are completed)
-        final CompletableFuture<BufferReader> mergedCommandsBenchmark = mergedCommandsFill.thenApplyAsync(ignore -> {
-            log.debug("Merging {} BENCHMARK commands for {} symbols...",
-                    genResultsMap.values().stream().mapToInt(GenResult::getNumCommandsBenchmark).sum(),
-                    genResultsMap.size());
-
-            return RandomCollectionsMerger.mergeCommands(
-                    genResultsMap,
-                    GenResult::getCommandsBenchmark,
-                    new JDKRandomGenerator(randomSeed))
-                    .toReader();
-        });
-
+        final int fillCmdSize = genResultsMap.values().stream()
+                .mapToInt(GenResult::getNumCommandsFill)
+                .sum();
 
         final int benchmarkCmdSize = genResultsMap.values().stream()
                 .mapToInt(GenResult::getNumCommandsBenchmark)
                 .sum();
 
+        log.debug("Merging {} PREFILL commands for {} symbols...", fillCmdSize, genResultsMap.size());
+
+        final CompletableFuture<BufferReader> mergedCommandsFill;
+        final CompletableFuture<BufferReader> mergedCommandsBenchmark;
+        final CompletableFuture<SegmentedBuffer> mergedCommandsFillBuffer;
+        final CompletableFuture<SegmentedBuffer> mergedCommandsBenchmarkBuffer;
+
+        // sparse offset indexes are filled by the merger
+        final CommandOffsetIndex.Builder fillIndexBuilder = nativeLayout ? new CommandOffsetIndex.Builder(CommandOffsetIndex.DEFAULT_INTERVAL, false) : null;
+        final CommandOffsetIndex.Builder benchmarkIndexBuilder = nativeLayout ? new CommandOffsetIndex.Builder(CommandOffsetIndex.DEFAULT_INTERVAL, false) : null;
+
+        if (mergedSegmentSize > 0) {
+
+            // merging into off-heap segments (no 2GB limit, no copying on growth)
+            mergedCommandsFillBuffer = CompletableFuture.supplyAsync(() -> {
+                try (PhaseMeters.PhaseMeter meter = PhaseMeters.start(phaseMeters, GenerationPhase.FILL_MERGE)) {
+                    meter.addCommands(fillCmdSize);
+                    return RandomCollectionsMerger.mergeCommandsSegmented(
+                            genResultsMap,
+                            GenResult::getCommandsFillBuffer,
+                            new JDKRandomGenerator(randomSeed),
+                            mergedSegmentSize,
+                            fillIndexBuilder,
+                            commandEncoder);
+                }
+            });
+
+            mergedCommandsBenchmarkBuffer = mergedCommandsFillBuffer.thenApplyAsync(ignore -> {
+                log.debug("Merging {} BENCHMARK commands for {} symbols...", benchmarkCmdSize, genResultsMap.size());
+
+                try (PhaseMeters.PhaseMeter meter = PhaseMeters.start(phaseMeters, GenerationPhase.BENCHMARK_MERGE)) {
+                    meter.addCommands(benchmarkCmdSize);
+                    return RandomCollectionsMerger.mergeCommandsSegmented(
+                            genResultsMap,
+                            GenResult::getCommandsBenchmarkBuffer,
+                            new JDKRandomGenerator(randomSeed),
+                            mergedSegmentSize,
+                            benchmarkIndexBuilder,
+                            commandEncoder);
+                }
+            });
+
+            mergedCommandsFill = null;
+            mergedCommandsBenchmark = null;
+
+        } else {
+
+            final CompletableFuture<BufferWriter> mergedFillWriter = CompletableFuture.supplyAsync(() -> {
+                try (PhaseMeters.PhaseMeter meter = PhaseMeters.start(phaseMeters, GenerationPhase.FILL_MERGE)) {
+                    meter.addCommands(fillCmdSize);
+                    return RandomCollectionsMerger.mergeCommands(
+                            genResultsMap,
+                            GenResult::getCommandsFill,
+                            new JDKRandomGenerator(randomSeed),
+                            fillIndexBuilder);
+                }
+            });
+
+            // initiate merging process for benchmark commands part only when pre-fill commands are completed)
+            final CompletableFuture<BufferWriter> mergedBenchmarkWriter = mergedFillWriter.thenApplyAsync(ignore -> {
+                log.debug("Merging {} BENCHMARK commands for {} symbols...", benchmarkCmdSize, genResultsMap.size());
+
+                try (PhaseMeters.PhaseMeter meter = PhaseMeters.start(phaseMeters, GenerationPhase.BENCHMARK_MERGE)) {
+                    meter.addCommands(benchmarkCmdSize);
+                    return RandomCollectionsMerger.mergeCommands(
+                            genResultsMap,
+                            GenResult::getCommandsBenchmark,
+                            new JDKRandomGenerator(randomSeed),
+                            benchmarkIndexBuilder);
+                }
+            });
+
+            mergedCommandsFill = mergedFillWriter.thenApply(BufferWriter::toReader);
+            mergedCommandsBenchmark = mergedBenchmarkWriter.thenApply(BufferWriter::toReader);
+            mergedCommandsFillBuffer = mergedFillWriter.thenApply(SegmentedBuffer::wrap);
+            mergedCommandsBenchmarkBuffer = mergedBenchmarkWriter.thenApply(SegmentedBuffer::wrap);
+        }
+
+        final CompletableFuture<CommandOffsetIndex> fillIndex = nativeLayout
+                ? mergedCommandsFillBuffer.thenApply(buffer -> fillIndexBuilder.build(buffer.getEndAddress()))
+                : null;
+        final CompletableFuture<CommandOffsetIndex> benchmarkIndex = nativeLayout
+                ? mergedCommandsBenchmarkBuffer.thenApply(buffer -> benchmarkIndexBuilder.build(buffer.getEndAddress()))
+                : null;
+
         final Map<Integer, Integer> bookHashes = genResultsMap.entrySet().stream()
                 .collect(Collectors.toMap(
                         Map.Entry::getKey,
                         entry -> entry.getValue().getFinalOrderBookHash()));
 
-        return new MultiSymbolGenResult(
-                bookHashes,
-                mergedCommandsFill,
-                mergedCommandsBenchmark,
-                benchmarkCmdSize);
+        final Map<Integer, StateHashTrail> stateHashTrails = new HashMap<>();
+        genResultsMap.forEach((symbol, genResult) -> {
+            if (genResult.getStateHashTrail() != null) {
+                stateHashTrails.put(symbol, genResult.getStateHashTrail());
+            }
+        });
+
+        final Map<Integer, OrderBookDepthStats> depthStats = new HashMap<>();
+        genResultsMap.forEach((symbol, genResult) -> {
+            if (genResult.getDepthStats() != null) {
+                depthStats.put(symbol, genResult.getDepthStats());
+            }
+        });
+
+        final IntSummaryStatistics peakLiveOrders = genResultsMap.values().stream()
+                .mapToInt(GenResult::getPeakLiveOrders)
+                .summaryStatistics();
+        log.debug("Peak live orders tracked by sessions: max {} per symbol, {} total",
+                peakLiveOrders.getMax(), peakLiveOrders.getSum());
+
+        final BalanceReport balanceReport = options.isTrackBalances()
+                ? BalanceReport.merge(genResultsMap.values().stream().map(GenResult::getBalanceTracker).collect(Collectors.toList()))
+                : null;
+
+        return MultiSymbolGenResult.builder()
+                .orderBookHashes(bookHashes)
+                .commandsFill(mergedCommandsFill, fillCmdSize)
+                .commandsBenchmark(mergedCommandsBenchmark, benchmarkCmdSize)
+                .commandsBuffers(mergedCommandsFillBuffer, mergedCommandsBenchmarkBuffer)
+                .commandEncoder(commandEncoder)
+                .stateHashTrails(stateHashTrails)
+                .balanceReport(balanceReport)
+                .commandsIndexes(fillIndex, benchmarkIndex)
+                .depthStats(depthStats)
+                .build();
+    }
+
+    /**
+     * Splits total quotas between symbols according to weights.
+     *
+     * @return tasks in generation order (orderId ranges are assigned in that order)
+     */
+    public static List<SymbolGenerationTask> planSymbolTasks(final List<Pair<GeneratorSymbolSpec, Double>> symbolSpecs,
+                                                             final int totalTransactionsNumber,
+                                                             final int targetOrderBookOrdersTotal) {
+
+        if (Math.abs(symbolSpecs.stream().mapToDouble(Pair::getSecond).sum() - 1.0) > 0.000001) {
+            throw new IllegalArgumentException("Symbol spec weights should be normalized");
+        }
+
+        final double linearWeightK = 1.0 / symbolSpecs.size();
+
+        int quotaLeft = totalTransactionsNumber;
+        int orderIdShift = 1;
+
+        final List<SymbolGenerationTask> tasks = new ArrayList<>(symbolSpecs.size());
+
+        for (int i = symbolSpecs.size() - 1; i >= 0; i--) {
+
+            final Pair<GeneratorSymbolSpec, Double> wspec = symbolSpecs.get(i);
+            final double weight = wspec.getSecond();
+            final int commandsNum = (i != 0) ? (int) Math.round(totalTransactionsNumber * weight) : Math.max(quotaLeft, 1);
+
+            // linearizing order book GTC orders distribution a bit (simulate market makers)
+            final int orderBookSizeTarget = (int) Math.round(targetOrderBookOrdersTotal * (weight + linearWeightK) * 0.5);
+
+            quotaLeft -= commandsNum;
+
+            // maintaining unique orderId
+            final int orderIdCounter = orderIdShift;
+            orderIdShift += (commandsNum + orderBookSizeTarget);
+
+            //log.debug("{}. Generating symbol {} : commands={} orderBookSizeTarget={} (quotaLeft={})", i, spec.getSymbolId(), commandsNum, orderBookSizeTarget, quotaLeft);
+
+            tasks.add(new SymbolGenerationTask(wspec.getFirst(), commandsNum, orderBookSizeTarget, orderIdCounter));
+        }
+
+        return tasks;
+    }
+
+    /**
+     * Groups consecutive tasks into batches of at least minBatchCommands (fill and benchmark) commands,
+     * large symbols always get their own batch.
+     */
+    public static List<List<SymbolGenerationTask>> batchSymbolTasks(final List<SymbolGenerationTask> tasks,
+                                                                     final long minBatchCommands) {
+
+        final List<List<SymbolGenerationTask>> batches = new ArrayList<>();
+
+        List<SymbolGenerationTask> batch = new ArrayList<>();
+        long batchCommands = 0;
+
+        for (final SymbolGenerationTask task : tasks) {
+            batch.add(task);
+            batchCommands += (long) task.getCommandsNum() + task.getOrderBookSizeTarget();
+            if (batchCommands >= minBatchCommands) {
+                batches.add(batch);
+                batch = new ArrayList<>();
+                batchCommands = 0;
+            }
+        }
+
+        if (!batch.isEmpty()) {
+            batches.add(batch);
+        }
+
+        return batches;
+    }
+
+    /**
+     * Batch size is limited so that there are still enough batches to keep all workers busy
+     */
+    private static long symbolsBatchCommands(final long totalCommands) {
+        final long perWorkerShare = totalCommands / (ForkJoinPool.getCommonPoolParallelism() * 4L);
+        return Math.max(1, Math.min(SYMBOLS_BATCH_COMMANDS, perWorkerShare));
+    }
+
+    /**
+     * Only some clients can trade specific symbols
+     */
+    public static int[] createUidsForSymbol(final List<BitSet> usersAccounts,
+                                            final SymbolGenerationTask task,
+                                            final int randomSeed) {
+
+        final int[] uidsAvailableForSymbol = ClientsCurrencyAccountsGenerator.createClientsListForSymbol(
+                usersAccounts,
+                task.getSpec(),
+                task.getCommandsNum(),
+                randomSeed);
+
+        if (uidsAvailableForSymbol.length < 1) {
+            throw new IllegalArgumentException();
+        }
+
+        return uidsAvailableForSymbol;
+    }
+
+    /**
+     * Order of symbols in which merger takes them from results map.
+     * Reproduces iteration order of the results map built by generateMultipleSymbols,
+     * so that commands produced elsewhere can be merged exactly the same way for the same seed.
+     */
+    public static List<Integer> mergeOrder(final List<SymbolGenerationTask> tasks) {
+
+        final Map<Integer, Boolean> futures = new HashMap<>();
+        tasks.forEach(task -> futures.put(task.getSymbolId(), Boolean.TRUE));
+
+        final Map<Integer, Boolean> genResultsMap = new HashMap<>();
+        futures.keySet().forEach(symbol -> genResultsMap.put(symbol, Boolean.TRUE));
+
+        return new ArrayList<>(genResultsMap.keySet());
     }
 
 //
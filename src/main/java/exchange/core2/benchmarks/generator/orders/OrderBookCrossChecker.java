@@ -0,0 +1,85 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.agrona.MutableDirectBuffer;
+
+/**
+ * Runs second order book implementation side by side with the primary one.
+ * Fails on the first command (or L2 snapshot) producing a different response.
+ */
+final class OrderBookCrossChecker {
+
+    private final BufferWriter resultsBufferWriter = new BufferWriter(new ExpandableArrayBuffer(), 0);
+    private final IOrderBook<ISymbolSpecification> orderBook;
+
+    OrderBookCrossChecker(final OrderBookFactory factory,
+                          final ISymbolSpecification spec) {
+
+        this.orderBook = factory.create(spec, resultsBufferWriter);
+    }
+
+    /**
+     * Should be called after primary order book processed the same command, but before its results are reset.
+     */
+    void processCommand(final MutableDirectBuffer commandsBuffer,
+                        final int position,
+                        final int commandIndex,
+                        final BufferWriter expectedResults) {
+
+        SingleBookOrderGenerator.processCommand(orderBook, commandsBuffer, position, commandIndex);
+        compareResults(expectedResults, "command " + commandIndex);
+    }
+
+    void sendL2Snapshot(final BufferWriter expectedResults) {
+
+        orderBook.sendL2Snapshot(SingleBookOrderGenerator.L2_QUERY_ALL, 0);
+        compareResults(expectedResults, "L2 snapshot");
+    }
+
+    void checkStateHash(final int expectedHash) {
+        final int hash = orderBook.stateHash();
+        if (hash != expectedHash) {
+            throw new IllegalStateException("Cross-check order book state hash " + hash + " does not match " + expectedHash);
+        }
+    }
+
+    private void compareResults(final BufferWriter expectedResults, final String what) {
+
+        final int size = resultsBufferWriter.getWriterPosition();
+        final DirectBuffer actual = resultsBufferWriter.getBuffer();
+        final DirectBuffer expected = expectedResults.getBuffer();
+
+        boolean equal = size == expectedResults.getWriterPosition();
+        for (int i = 0; equal && i < size; i++) {
+            equal = actual.getByte(i) == expected.getByte(i);
+        }
+
+        if (!equal) {
+            throw new IllegalStateException("Cross-check failed on " + what + ": expected "
+                    + ResponseDecoder.readResult(expectedResults.getBuffer(), expectedResults.getWriterPosition())
+                    + " but got " + ResponseDecoder.readResult(resultsBufferWriter.getBuffer(), size));
+        }
+
+        resultsBufferWriter.reset();
+    }
+}
@@ -0,0 +1,222 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+
+/**
+ * Fixed-memory summary of order book shape observed during benchmark commands generation.
+ * <p>
+ * For price levels and orders number (both sides) keeps a histogram and a decimated time series:
+ * when the series is full, every second point is dropped and the sampling stride doubles,
+ * so memory does not depend on the run length.
+ * Series arrays start small and double up to the capacity, so short runs (many small symbols) stay cheap.
+ */
+public final class OrderBookDepthStats {
+
+    public static final int DEFAULT_SERIES_CAPACITY = 1024;
+
+    private static final int INITIAL_SERIES_CAPACITY = 16;
+
+    private final Histogram askLevels = new Histogram(2);
+    private final Histogram bidLevels = new Histogram(2);
+    private final Histogram askOrders = new Histogram(2);
+    private final Histogram bidOrders = new Histogram(2);
+
+    private final int capacity;
+
+    // series are sharing same stride
+    private int[] askLevelsSeries;
+    private int[] bidLevelsSeries;
+    private int[] askOrdersSeries;
+    private int[] bidOrdersSeries;
+    private int seriesSize = 0;
+    private int stride = 1;
+
+    private long snapshotsCount = 0;
+
+    public OrderBookDepthStats(final int capacity) {
+        if (capacity < 2 || capacity % 2 != 0) {
+            throw new IllegalArgumentException("Series capacity should be even and at least 2: " + capacity);
+        }
+        this.capacity = capacity;
+        allocateSeries(Math.min(capacity, INITIAL_SERIES_CAPACITY));
+    }
+
+    public void record(final int askLevelsNum,
+                       final int bidLevelsNum,
+                       final int askOrdersNum,
+                       final int bidOrdersNum) {
+
+        askLevels.recordValue(askLevelsNum);
+        bidLevels.recordValue(bidLevelsNum);
+        askOrders.recordValue(askOrdersNum);
+        bidOrders.recordValue(bidOrdersNum);
+
+        if (snapshotsCount % stride == 0) {
+            if (seriesSize == capacity) {
+                // capacity is even, so current snapshot is always aligned to the doubled stride
+                decimate();
+            } else if (seriesSize == askLevelsSeries.length) {
+                allocateSeries(Math.min(capacity, seriesSize * 2));
+            }
+            askLevelsSeries[seriesSize] = askLevelsNum;
+            bidLevelsSeries[seriesSize] = bidLevelsNum;
+            askOrdersSeries[seriesSize] = askOrdersNum;
+            bidOrdersSeries[seriesSize] = bidOrdersNum;
+            seriesSize++;
+        }
+
+        snapshotsCount++;
+    }
+
+    private void allocateSeries(final int length) {
+        askLevelsSeries = askLevelsSeries == null ? new int[length] : Arrays.copyOf(askLevelsSeries, length);
+        bidLevelsSeries = bidLevelsSeries == null ? new int[length] : Arrays.copyOf(bidLevelsSeries, length);
+        askOrdersSeries = askOrdersSeries == null ? new int[length] : Arrays.copyOf(askOrdersSeries, length);
+        bidOrdersSeries = bidOrdersSeries == null ? new int[length] : Arrays.copyOf(bidOrdersSeries, length);
+    }
+
+    private void decimate() {
+        final int half = capacity / 2;
+        for (int i = 0; i < half; i++) {
+            askLevelsSeries[i] = askLevelsSeries[i * 2];
+            bidLevelsSeries[i] = bidLevelsSeries[i * 2];
+            askOrdersSeries[i] = askOrdersSeries[i * 2];
+            bidOrdersSeries[i] = bidOrdersSeries[i * 2];
+        }
+        seriesSize = half;
+        stride *= 2;
+    }
+
+    public long getSnapshotsCount() {
+        return snapshotsCount;
+    }
+
+    public Histogram getAskLevels() {
+        return askLevels;
+    }
+
+    public Histogram getBidLevels() {
+        return bidLevels;
+    }
+
+    public Histogram getAskOrders() {
+        return askOrders;
+    }
+
+    public Histogram getBidOrders() {
+        return bidOrders;
+    }
+
+    /**
+     * @return distance between series points (in snapshots)
+     */
+    public int getSeriesStride() {
+        return stride;
+    }
+
+    public int[] getAskLevelsSeries() {
+        return Arrays.copyOf(askLevelsSeries, seriesSize);
+    }
+
+    public int[] getBidLevelsSeries() {
+        return Arrays.copyOf(bidLevelsSeries, seriesSize);
+    }
+
+    public int[] getAskOrdersSeries() {
+        return Arrays.copyOf(askOrdersSeries, seriesSize);
+    }
+
+    public int[] getBidOrdersSeries() {
+        return Arrays.copyOf(bidOrdersSeries, seriesSize);
+    }
+
+    void writeTo(final DataOutputStream dos) throws IOException {
+        dos.writeLong(snapshotsCount);
+        dos.writeInt(stride);
+        dos.writeInt(seriesSize);
+        for (int i = 0; i < seriesSize; i++) {
+            dos.writeInt(askLevelsSeries[i]);
+            dos.writeInt(bidLevelsSeries[i]);
+            dos.writeInt(askOrdersSeries[i]);
+            dos.writeInt(bidOrdersSeries[i]);
+        }
+        writeHistogram(dos, askLevels);
+        writeHistogram(dos, bidLevels);
+        writeHistogram(dos, askOrders);
+        writeHistogram(dos, bidOrders);
+    }
+
+    void readFrom(final DataInputStream dis) throws IOException {
+        snapshotsCount = dis.readLong();
+        stride = dis.readInt();
+        seriesSize = dis.readInt();
+        if (seriesSize > capacity) {
+            throw new IllegalStateException("Series size " + seriesSize + " exceeds capacity " + capacity);
+        }
+        if (seriesSize > askLevelsSeries.length) {
+            allocateSeries(seriesSize);
+        }
+        for (int i = 0; i < seriesSize; i++) {
+            askLevelsSeries[i] = dis.readInt();
+            bidLevelsSeries[i] = dis.readInt();
+            askOrdersSeries[i] = dis.readInt();
+            bidOrdersSeries[i] = dis.readInt();
+        }
+        readHistogram(dis, askLevels);
+        readHistogram(dis, bidLevels);
+        readHistogram(dis, askOrders);
+        readHistogram(dis, bidOrders);
+    }
+
+    private static void writeHistogram(final DataOutputStream dos, final Histogram histogram) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(histogram.getNeededByteBufferCapacity());
+        final int length = histogram.encodeIntoCompressedByteBuffer(buffer);
+        dos.writeInt(length);
+        dos.write(buffer.array(), 0, length);
+    }
+
+    private static void readHistogram(final DataInputStream dis, final Histogram histogram) throws IOException {
+        final byte[] bytes = new byte[dis.readInt()];
+        dis.readFully(bytes);
+        histogram.reset();
+        try {
+            histogram.add(Histogram.decodeFromCompressedByteBuffer(ByteBuffer.wrap(bytes), 0));
+        } catch (DataFormatException ex) {
+            throw new IOException("Can not decode histogram", ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OrderBookDepthStats{" +
+                "snapshots=" + snapshotsCount +
+                ", levels ask/bid avg=" + Math.round(askLevels.getMean()) + "/" + Math.round(bidLevels.getMean()) +
+                " max=" + askLevels.getMaxValue() + "/" + bidLevels.getMaxValue() +
+                ", orders ask/bid avg=" + Math.round(askOrders.getMean()) + "/" + Math.round(bidOrders.getMean()) +
+                " max=" + askOrders.getMaxValue() + "/" + bidOrders.getMaxValue() +
+                ", seriesStride=" + stride +
+                '}';
+    }
+}
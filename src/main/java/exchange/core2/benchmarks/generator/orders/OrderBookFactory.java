@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.naive.OrderBookNaiveImpl;
+import exchange.core2.orderbook.util.BufferWriter;
+
+/**
+ * Creates order book implementation used by generator for matching simulation.
+ * Any correct implementation produces the same commands, so the fastest one available can be used.
+ */
+@FunctionalInterface
+public interface OrderBookFactory {
+
+    OrderBookFactory NAIVE = (spec, resultsBufferWriter) -> new OrderBookNaiveImpl<>(spec, false, resultsBufferWriter);
+
+    /**
+     * @param spec                - symbol specification
+     * @param resultsBufferWriter - writer order book should send responses to
+     * @return new empty order book
+     */
+    IOrderBook<ISymbolSpecification> create(ISymbolSpecification spec, BufferWriter resultsBufferWriter);
+}
@@ -0,0 +1,344 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import exchange.core2.benchmarks.generator.util.RestorableRandom;
+import exchange.core2.orderbook.util.BufferWriter;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Periodic checkpoints of a single order book generator.
+ * <p>
+ * Generated commands are appended to files incrementally, so that taking a checkpoint costs about the same as
+ * serializing session maps and counters. Order book is not serialized: it is rebuilt by replaying restored commands.
+ * Resumed generation produces byte-identical output.
+ */
+final class OrdersGeneratorCheckpoint {
+
+    private static final Logger log = LoggerFactory.getLogger(OrdersGeneratorCheckpoint.class);
+
+    private static final int MAGIC = 0x4F474350;
+    private static final int VERSION = 4;
+
+    private static final int COPY_CHUNK_SIZE = 64 * 1024;
+
+    private final Path fillFile;
+    private final Path benchmarkFile;
+    private final Path stateFile;
+    private final Path stateTmpFile;
+
+    private final long intervalNs;
+
+    // generator parameters, checkpoint can only be restored by generator having same parameters
+    private final int[] parameters;
+
+    private final byte[] copyChunk = new byte[COPY_CHUNK_SIZE];
+
+    private long fillFlushed = 0;
+    private long benchmarkFlushed = 0;
+
+    private long nextCheckpointNs;
+
+    // restored loop state
+    private int nextCommandIndex = 0;
+    private int nextSizeCheck = 0;
+    private int lastProgressReported = 0;
+
+    OrdersGeneratorCheckpoint(final GeneratorCheckpointConfig config,
+                              final int symbolId,
+                              final int[] parameters) {
+
+        final Path dir = config.getDirectory();
+        this.fillFile = dir.resolve("symbol-" + symbolId + ".fill");
+        this.benchmarkFile = dir.resolve("symbol-" + symbolId + ".benchmark");
+        this.stateFile = dir.resolve("symbol-" + symbolId + ".state");
+        this.stateTmpFile = dir.resolve("symbol-" + symbolId + ".state.tmp");
+        this.intervalNs = config.getIntervalNs();
+        this.parameters = parameters;
+        this.nextCheckpointNs = System.nanoTime() + intervalNs;
+
+        try {
+            Files.createDirectories(dir);
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not create checkpoints directory " + dir, ex);
+        }
+    }
+
+    boolean isDue() {
+        return System.nanoTime() > nextCheckpointNs;
+    }
+
+    int getNextCommandIndex() {
+        return nextCommandIndex;
+    }
+
+    int getNextSizeCheck() {
+        return nextSizeCheck;
+    }
+
+    int getLastProgressReported() {
+        return lastProgressReported;
+    }
+
+    /**
+     * Saves session state. Should be called on commands boundary, when order book response is fully processed.
+     */
+    void write(final OrdersGeneratorSession session,
+               final RestorableRandom rand,
+               final StateHashTrail stateHashTrail,
+               final int nextCommandIndex,
+               final int nextSizeCheck,
+               final int lastProgressReported) {
+
+        try {
+            fillFlushed = appendToFile(fillFile, session.fillCommandsBufferWriter, fillFlushed);
+            benchmarkFlushed = appendToFile(benchmarkFile, session.benchmarkCommandsBufferWriter, benchmarkFlushed);
+
+            try (final FileOutputStream fos = new FileOutputStream(stateTmpFile.toFile());
+                 final DataOutputStream dos = new DataOutputStream(new BufferedOutputStream(fos))) {
+
+                dos.writeInt(MAGIC);
+                dos.writeInt(VERSION);
+                writeInts(dos, parameters);
+
+                dos.writeInt(nextCommandIndex);
+                dos.writeInt(nextSizeCheck);
+                dos.writeInt(lastProgressReported);
+                dos.writeLong(fillFlushed);
+                dos.writeLong(benchmarkFlushed);
+                dos.writeLong(rand.getState());
+
+                dos.writeLong(session.lastTradePrice);
+                dos.writeInt(session.priceDirection);
+                dos.writeLong(session.numCompleted);
+                dos.writeLong(session.numRejected);
+                dos.writeLong(session.numReduced);
+                dos.writeInt(session.orderIdCounter);
+                dos.writeInt(session.lastOrderBookOrdersSizeAsk);
+                dos.writeInt(session.lastOrderBookOrdersSizeBid);
+                dos.writeLong(session.lastTotalVolumeAsk);
+                dos.writeLong(session.lastTotalVolumeBid);
+                dos.writeInt(session.peakLiveOrders);
+
+                dos.writeInt(session.orderPrices.size());
+                session.orderPrices.forEachKeyValue((k, v) -> writeIntPair(dos, k, v));
+                dos.writeInt(session.orderSizes.size());
+                session.orderSizes.forEachKeyValue((k, v) -> writeIntPair(dos, k, v));
+
+                // insertion order matters for orders picking
+                dos.writeInt(session.orderUids.size());
+                for (final Map.Entry<Integer, Integer> entry : session.orderUids.entrySet()) {
+                    writeIntPair(dos, entry.getKey(), entry.getValue());
+                }
+
+                session.depthStats.writeTo(dos);
+
+                final int hashesNum = (stateHashTrail != null) ? stateHashTrail.size() : 0;
+                dos.writeInt(hashesNum);
+                for (int i = 0; i < hashesNum; i++) {
+                    dos.writeInt(stateHashTrail.getHash(i));
+                }
+
+                dos.flush();
+                fos.getChannel().force(true);
+            }
+
+            Files.move(stateTmpFile, stateFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        } catch (IOException | UncheckedIOException ex) {
+            throw new IllegalStateException("Can not write checkpoint " + stateFile, ex);
+        }
+
+        nextCheckpointNs = System.nanoTime() + intervalNs;
+    }
+
+    /**
+     * Restores session state and generated commands from the last checkpoint (if any).
+     * Order book is not restored, all restored commands should be replayed.
+     *
+     * @return true if checkpoint was found and restored
+     */
+    boolean restore(final OrdersGeneratorSession session,
+                    final RestorableRandom rand,
+                    final StateHashTrail stateHashTrail) {
+
+        if (!Files.exists(stateFile)) {
+            return false;
+        }
+
+        try (final DataInputStream dis = new DataInputStream(new BufferedInputStream(Files.newInputStream(stateFile)))) {
+
+            if (dis.readInt() != MAGIC || dis.readInt() != VERSION) {
+                throw new IllegalStateException("Unsupported checkpoint format: " + stateFile);
+            }
+
+            final int[] savedParameters = readInts(dis);
+            if (!Arrays.equals(savedParameters, parameters)) {
+                throw new IllegalStateException("Checkpoint " + stateFile + " was created with different parameters: "
+                        + Arrays.toString(savedParameters) + " expected " + Arrays.toString(parameters));
+            }
+
+            nextCommandIndex = dis.readInt();
+            nextSizeCheck = dis.readInt();
+            lastProgressReported = dis.readInt();
+            fillFlushed = dis.readLong();
+            benchmarkFlushed = dis.readLong();
+            rand.setState(dis.readLong());
+
+            session.lastTradePrice = dis.readLong();
+            session.priceDirection = dis.readInt();
+            session.numCompleted = dis.readLong();
+            session.numRejected = dis.readLong();
+            session.numReduced = dis.readLong();
+            session.orderIdCounter = dis.readInt();
+            session.lastOrderBookOrdersSizeAsk = dis.readInt();
+            session.lastOrderBookOrdersSizeBid = dis.readInt();
+            session.lastTotalVolumeAsk = dis.readLong();
+            session.lastTotalVolumeBid = dis.readLong();
+            session.peakLiveOrders = dis.readInt();
+
+            session.orderPrices.clear();
+            for (int i = dis.readInt(); i > 0; i--) {
+                session.orderPrices.put(dis.readInt(), dis.readInt());
+            }
+            session.orderSizes.clear();
+            for (int i = dis.readInt(); i > 0; i--) {
+                session.orderSizes.put(dis.readInt(), dis.readInt());
+            }
+            session.orderUids.clear();
+            for (int i = dis.readInt(); i > 0; i--) {
+                session.orderUids.put(dis.readInt(), dis.readInt());
+            }
+
+            session.depthStats.readFrom(dis);
+
+            if (stateHashTrail != null) {
+                stateHashTrail.clear();
+            }
+            for (int i = dis.readInt(); i > 0; i--) {
+                final int hash = dis.readInt();
+                if (stateHashTrail != null) {
+                    stateHashTrail.record(hash);
+                }
+            }
+
+            loadFromFile(fillFile, fillFlushed, session.fillCommandsBufferWriter);
+            loadFromFile(benchmarkFile, benchmarkFlushed, session.benchmarkCommandsBufferWriter);
+
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not read checkpoint " + stateFile, ex);
+        }
+
+        log.debug("Restored checkpoint {}: nextCommandIndex={} fill={}B benchmark={}B",
+                stateFile, nextCommandIndex, fillFlushed, benchmarkFlushed);
+
+        return true;
+    }
+
+    private long appendToFile(final Path file,
+                              final BufferWriter bufferWriter,
+                              final long flushed) throws IOException {
+
+        final int end = bufferWriter.getWriterPosition();
+        final MutableDirectBuffer buffer = bufferWriter.getBuffer();
+
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+
+            // drop anything written after the last successful checkpoint
+            channel.truncate(flushed);
+            channel.position(flushed);
+
+            for (int pos = (int) flushed; pos < end; ) {
+                final int len = Math.min(COPY_CHUNK_SIZE, end - pos);
+                buffer.getBytes(pos, copyChunk, 0, len);
+                final ByteBuffer bb = ByteBuffer.wrap(copyChunk, 0, len);
+                while (bb.hasRemaining()) {
+                    channel.write(bb);
+                }
+                pos += len;
+            }
+
+            channel.force(false);
+        }
+
+        return end;
+    }
+
+    private static void loadFromFile(final Path file,
+                                     final long length,
+                                     final BufferWriter bufferWriter) throws IOException {
+
+        if (length == 0) {
+            return;
+        }
+
+        final byte[] bytes = new byte[Math.toIntExact(length)];
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final ByteBuffer bb = ByteBuffer.wrap(bytes);
+            while (bb.hasRemaining()) {
+                if (channel.read(bb) < 0) {
+                    throw new EOFException("Commands file " + file + " is shorter than " + length);
+                }
+            }
+        }
+
+        final UnsafeBuffer src = new UnsafeBuffer(bytes);
+        int pos = 0;
+        for (; pos + 4 <= bytes.length; pos += 4) {
+            bufferWriter.appendInt(src.getInt(pos));
+        }
+        for (; pos < bytes.length; pos++) {
+            bufferWriter.appendByte(bytes[pos]);
+        }
+    }
+
+    private static void writeIntPair(final DataOutputStream dos, final int key, final int value) {
+        try {
+            dos.writeInt(key);
+            dos.writeInt(value);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static void writeInts(final DataOutputStream dos, final int[] values) throws IOException {
+        dos.writeInt(values.length);
+        for (final int v : values) {
+            dos.writeInt(v);
+        }
+    }
+
+    private static int[] readInts(final DataInputStream dis) throws IOException {
+        final int[] values = new int[dis.readInt()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = dis.readInt();
+        }
+        return values;
+    }
+}
@@ -21,7 +21,7 @@ import org.agrona.ExpandableArrayBuffer;
 import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
 
 import java.util.*;
-import java.util.function.UnaryOperator;
+import java.util.function.IntUnaryOperator;
 
 import static exchange.core2.benchmarks.generator.orders.SingleBookOrderGenerator.CHECK_ORDERBOOK_STAT_EVERY_NTH_COMMAND;
 
@@ -30,6 +30,14 @@ import static exchange.core2.benchmarks.generator.orders.SingleBookOrderGenerato
  */
 public final class OrdersGeneratorSession {
 
+    private static final int MIN_BUFFER_CAPACITY = 1024;
+
+    // fill stage only places GTC orders
+    private static final int FILL_COMMAND_SIZE = 1 + IOrderBook.fixedCommandSize(IOrderBook.COMMAND_PLACE_ORDER);
+
+    // benchmark stage mixes place/move/reduce/cancel commands (buffer grows if actual mix is heavier)
+    private static final int AVERAGE_BENCHMARK_COMMAND_SIZE = 32;
+
     public final IOrderBook orderBook;
 
     public final BufferWriter fillCommandsBufferWriter;
@@ -41,19 +49,30 @@ public final class OrdersGeneratorSession {
 
     public final boolean avalancheIOC;
 
+    public final GeneratorScenario scenario;
+
+    // distance between adjacent price levels used by sparse book scenarios
+    public final long priceLevelStep;
+
+    // total volume is required for avalanche IOC and sweeping orders
+    public final boolean trackTotalVolume;
+
     public final int numUsers;
-    public final UnaryOperator<Integer> uidMapper;
+    public final IntUnaryOperator uidMapper;
 
     public final Random rand;
 
-    public final IntIntHashMap orderPrices = new IntIntHashMap();
-    public final IntIntHashMap orderSizes = new IntIntHashMap();
-    public final Map<Integer, Integer> orderUids = new LinkedHashMap<>();
+    // live orders only - entries are released as soon as order is completed, rejected or cancelled
+    // (orderUids is also used for picking orders, so cancelled orders leave it when cancel is generated)
+    public final IntIntHashMap orderPrices;
+    public final IntIntHashMap orderSizes;
+    public final Map<Integer, Integer> orderUids;
+
+    // maximum number of orders tracked at the same time
+    public int peakLiveOrders = 0;
 
-    public final List<Integer> orderBookSizeAskStat = new ArrayList<>();
-    public final List<Integer> orderBookSizeBidStat = new ArrayList<>();
-    public final List<Integer> orderBookNumOrdersAskStat = new ArrayList<>();
-    public final List<Integer> orderBookNumOrdersBidStat = new ArrayList<>();
+    // order book shape snapshots (benchmark stage only)
+    public final OrderBookDepthStats depthStats = new OrderBookDepthStats(OrderBookDepthStats.DEFAULT_SERIES_CAPACITY);
 
     public final long minPrice;
     public final long maxPrice;
@@ -83,19 +102,85 @@ public final class OrdersGeneratorSession {
                                   int targetOrderBookOrdersHalf,
                                   boolean avalancheIOC,
                                   int numUsers,
-                                  UnaryOperator<Integer> uidMapper,
+                                  IntUnaryOperator uidMapper,
                                   boolean enableSlidingPrice,
                                   int orderIdCounter,
                                   Random rand) {
 
+        this(orderBook,
+                targetOrderBookOrdersHalf,
+                avalancheIOC,
+                numUsers,
+                uidMapper,
+                enableSlidingPrice,
+                orderIdCounter,
+                rand,
+                GeneratorScenario.RANDOM);
+    }
+
+    public OrdersGeneratorSession(IOrderBook orderBook,
+                                  int targetOrderBookOrdersHalf,
+                                  boolean avalancheIOC,
+                                  int numUsers,
+                                  IntUnaryOperator uidMapper,
+                                  boolean enableSlidingPrice,
+                                  int orderIdCounter,
+                                  Random rand,
+                                  GeneratorScenario scenario) {
+
+        this(orderBook,
+                targetOrderBookOrdersHalf,
+                avalancheIOC,
+                numUsers,
+                uidMapper,
+                enableSlidingPrice,
+                orderIdCounter,
+                rand,
+                scenario,
+                0,
+                0,
+                null);
+    }
+
+    /**
+     * @param expectedFillCommands      - used for pre-sizing fill commands buffer (0 if unknown)
+     * @param expectedBenchmarkCommands - used for pre-sizing benchmark commands buffer (0 if unknown)
+     * @param arena                     - worker arena order maps are taken from (already cleared), or null to allocate new ones
+     */
+    public OrdersGeneratorSession(IOrderBook orderBook,
+                                  int targetOrderBookOrdersHalf,
+                                  boolean avalancheIOC,
+                                  int numUsers,
+                                  IntUnaryOperator uidMapper,
+                                  boolean enableSlidingPrice,
+                                  int orderIdCounter,
+                                  Random rand,
+                                  GeneratorScenario scenario,
+                                  int expectedFillCommands,
+                                  int expectedBenchmarkCommands,
+                                  GeneratorWorkerArena arena) {
+
         this.orderBook = orderBook;
 
-        // TODO estimate initial capacity
-        this.fillCommandsBufferWriter = new BufferWriter(new ExpandableArrayBuffer(1024), 0);
-        this.benchmarkCommandsBufferWriter = new BufferWriter(new ExpandableArrayBuffer(1024), 0);
+        // command buffers are pre-sized from expected commands number: fill buffer exactly (fill stage only places orders),
+        // benchmark buffer by average command size of the mix, it grows (by copying) only if actual mix is heavier
+        this.fillCommandsBufferWriter = new BufferWriter(new ExpandableArrayBuffer(estimateBufferCapacity(expectedFillCommands, FILL_COMMAND_SIZE)), 0);
+        this.benchmarkCommandsBufferWriter = new BufferWriter(new ExpandableArrayBuffer(estimateBufferCapacity(expectedBenchmarkCommands, AVERAGE_BENCHMARK_COMMAND_SIZE)), 0);
+
+        if (arena != null) {
+            this.orderPrices = arena.orderPrices;
+            this.orderSizes = arena.orderSizes;
+            this.orderUids = arena.orderUids;
+        } else {
+            this.orderPrices = new IntIntHashMap();
+            this.orderSizes = new IntIntHashMap();
+            this.orderUids = new LinkedHashMap<>();
+        }
 
         this.targetOrderBookOrdersHalf = targetOrderBookOrdersHalf;
         this.avalancheIOC = avalancheIOC;
+        this.scenario = scenario;
+        this.trackTotalVolume = avalancheIOC || scenario == GeneratorScenario.SWEEPING_ORDERS;
         this.numUsers = numUsers;
         this.uidMapper = uidMapper;
 
@@ -106,7 +191,14 @@ public final class OrdersGeneratorSession {
         int price = (int) Math.pow(10, 3.3 + rand.nextDouble() * 1.5 + rand.nextDouble() * 1.5);
 
         this.lastTradePrice = price;
-        this.priceDeviation = Math.min((int) (price * 0.05), 10000);
+        if (scenario.isWidePriceRange()) {
+            // very wide range (minPrice still stays positive) split into ~3000 sparse price levels
+            this.priceDeviation = price / 6;
+            this.priceLevelStep = Math.max(1, priceDeviation / 300);
+        } else {
+            this.priceDeviation = Math.min((int) (price * 0.05), 10000);
+            this.priceLevelStep = 1;
+        }
         this.minPrice = price - priceDeviation * 5;
         this.maxPrice = price + priceDeviation * 5;
 
@@ -116,4 +208,9 @@ public final class OrdersGeneratorSession {
 
         this.lackOrOrdersFastFillThreshold = Math.min(CHECK_ORDERBOOK_STAT_EVERY_NTH_COMMAND, targetOrderBookOrdersHalf * 3 / 4);
     }
+
+    static int estimateBufferCapacity(final int expectedCommands, final int averageCommandSize) {
+        final long capacity = (long) expectedCommands * averageCommandSize;
+        return (int) Math.max(MIN_BUFFER_CAPACITY, Math.min(capacity, ExpandableArrayBuffer.MAX_ARRAY_LENGTH));
+    }
 }
@@ -15,10 +15,18 @@
  */
 package exchange.core2.benchmarks.generator.orders;
 
+import exchange.core2.benchmarks.generator.encoding.CommandEncoder;
+import exchange.core2.benchmarks.generator.encoding.NativeCommandEncoder;
+import exchange.core2.benchmarks.generator.storage.CommandOffsetIndex;
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+import exchange.core2.benchmarks.generator.storage.SegmentedBufferReader;
+import exchange.core2.benchmarks.generator.storage.SegmentedBufferWriter;
 import exchange.core2.orderbook.IOrderBook;
 import exchange.core2.orderbook.util.BufferReader;
 import exchange.core2.orderbook.util.BufferWriter;
 import org.agrona.ExpandableArrayBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
 import org.apache.commons.math3.distribution.EnumeratedDistribution;
 import org.apache.commons.math3.random.RandomGenerator;
 import org.apache.commons.math3.util.Pair;
@@ -38,17 +46,89 @@ public class RandomCollectionsMerger {
     public static BufferWriter mergeCommands(final Map<Integer, GenResult> genResults,
                                              final Function<GenResult, BufferReader> mapper,
                                              final RandomGenerator rand) {
+        return mergeCommands(genResults, mapper, rand, null);
+    }
+
+    /**
+     * @param indexBuilder receives address of every merged command (can be null)
+     */
+    public static BufferWriter mergeCommands(final Map<Integer, GenResult> genResults,
+                                             final Function<GenResult, BufferReader> mapper,
+                                             final RandomGenerator rand,
+                                             final CommandOffsetIndex.Builder indexBuilder) {
 
         final ExpandableArrayBuffer buffer = new ExpandableArrayBuffer();
         final BufferWriter bufferWriter = new BufferWriter(buffer, 0);
 
+        final List<CommandSource> sources = genResults.entrySet().stream()
+                .map(entry -> new HeapSourceRecord(mapper.apply(entry.getValue()), entry.getKey(), bufferWriter, indexBuilder))
+                .collect(Collectors.toList());
+
+        merge(sources, rand);
+
+        return bufferWriter;
+    }
+
+    /**
+     * Merges commands into segmented off-heap buffer. Commands order is the same as for {@link #mergeCommands}.
+     */
+    public static SegmentedBuffer mergeCommandsSegmented(final Map<Integer, GenResult> genResults,
+                                                         final Function<GenResult, SegmentedBuffer> mapper,
+                                                         final RandomGenerator rand,
+                                                         final int segmentSize) {
+        return mergeCommandsSegmented(genResults, mapper, rand, segmentSize, null);
+    }
+
+    /**
+     * @param indexBuilder receives address of every merged command (can be null)
+     */
+    public static SegmentedBuffer mergeCommandsSegmented(final Map<Integer, GenResult> genResults,
+                                                         final Function<GenResult, SegmentedBuffer> mapper,
+                                                         final RandomGenerator rand,
+                                                         final int segmentSize,
+                                                         final CommandOffsetIndex.Builder indexBuilder) {
+        return mergeCommandsSegmented(genResults, mapper, rand, segmentSize, indexBuilder, null);
+    }
+
+    /**
+     * @param indexBuilder receives address of every merged command (can be null, only for native layout)
+     * @param encoder      target wire format (null for native layout)
+     */
+    public static SegmentedBuffer mergeCommandsSegmented(final Map<Integer, GenResult> genResults,
+                                                         final Function<GenResult, SegmentedBuffer> mapper,
+                                                         final RandomGenerator rand,
+                                                         final int segmentSize,
+                                                         final CommandOffsetIndex.Builder indexBuilder,
+                                                         final CommandEncoder encoder) {
+
+        final boolean nativeLayout = encoder == null || encoder == NativeCommandEncoder.INSTANCE;
+        if (!nativeLayout && indexBuilder != null) {
+            throw new IllegalArgumentException("Offset index is only supported for native commands layout");
+        }
+
+        final SegmentedBufferWriter bufferWriter = new SegmentedBufferWriter(segmentSize);
+
+        final List<CommandSource> sources = genResults.entrySet().stream()
+                .map(entry -> nativeLayout
+                        ? new SegmentedSourceRecord(mapper.apply(entry.getValue()).newReader(), entry.getKey(), bufferWriter, indexBuilder)
+                        : new EncodingSourceRecord(mapper.apply(entry.getValue()).newReader(), entry.getKey(), bufferWriter, encoder))
+                .collect(Collectors.toList());
+
+        merge(sources, rand);
+
+        return bufferWriter.toBuffer();
+    }
+
+    /**
+     * Randomly interleaves commands of the sources, proportionally to remaining sizes.
+     * Result depends only on sources order, their sizes and random generator state.
+     */
+    public static void merge(final List<? extends CommandSource> sources,
+                             final RandomGenerator rand) {
+
         // initial weight pairs
-        List<Pair<SourceRecord, Double>> weightPairs = genResults.entrySet().stream()
-                .map(entry -> {
-                    final BufferReader reader = mapper.apply(entry.getValue());
-                    final SourceRecord sourceRecord = new SourceRecord(reader, entry.getKey());
-                    return new Pair<>(sourceRecord, (double) reader.getRemainingSize());
-                })
+        List<Pair<CommandSource, Double>> weightPairs = sources.stream()
+                .map(sourceRecord -> new Pair<>(sourceRecord, (double) sourceRecord.getRemainingSize()))
                 .collect(Collectors.toList());
 
         while (!weightPairs.isEmpty()) {
@@ -56,21 +136,16 @@ public class RandomCollectionsMerger {
             // weightPairs.forEach(pair->log.debug("wp={}", pair));
 
             // rebuild distribution
-            final EnumeratedDistribution<SourceRecord> ed = new EnumeratedDistribution<>(rand, weightPairs);
+            final EnumeratedDistribution<CommandSource> ed = new EnumeratedDistribution<>(rand, weightPairs);
 
             // take random elements until face too many misses
             int missCounter = 0;
             while (missCounter < 3) {
 
-                final SourceRecord sourceRecord = ed.sample();
-                BufferReader reader = sourceRecord.bufferReader;
+                final CommandSource sourceRecord = ed.sample();
 
-                if (reader.getRemainingSize() > 0) {
-                    // copy
-                    final byte cmdCode = reader.readByte();
-                    bufferWriter.appendByte(cmdCode);
-                    bufferWriter.appendInt(sourceRecord.symbolId);
-                    reader.readBytesToWriter(bufferWriter, IOrderBook.fixedCommandSize(cmdCode));
+                if (sourceRecord.getRemainingSize() > 0) {
+                    sourceRecord.copyCommand();
                     missCounter = 0;
                 } else {
                     missCounter++;
@@ -79,25 +154,123 @@ public class RandomCollectionsMerger {
 
             // as empty queues leading to misses - rebuild wight pairs without them
             weightPairs = weightPairs.stream()
-                    .filter(p -> p.getFirst().bufferReader.getRemainingSize() > 0)
-                    .map(p -> Pair.create(p.getFirst(), (double) p.getFirst().bufferReader.getRemainingSize()))
+                    .filter(p -> p.getFirst().getRemainingSize() > 0)
+                    .map(p -> Pair.create(p.getFirst(), (double) p.getFirst().getRemainingSize()))
                     .collect(Collectors.toList());
 
             // log.debug("rebuild size {}", weightPairs.size());
         }
+    }
 
-        return bufferWriter;
+    public interface CommandSource {
+
+        /**
+         * @return remaining size in bytes
+         */
+        long getRemainingSize();
+
+        /**
+         * Copies next command inserting symbol id after command code
+         */
+        void copyCommand();
     }
 
-    private final static class SourceRecord {
+    private final static class HeapSourceRecord implements CommandSource {
 
         private final BufferReader bufferReader;
         private final int symbolId;
+        private final BufferWriter bufferWriter;
+        private final CommandOffsetIndex.Builder indexBuilder;
+
+        private HeapSourceRecord(BufferReader bufferReader, int symbolId, BufferWriter bufferWriter, CommandOffsetIndex.Builder indexBuilder) {
+            this.bufferReader = bufferReader;
+            this.symbolId = symbolId;
+            this.bufferWriter = bufferWriter;
+            this.indexBuilder = indexBuilder;
+        }
+
+        @Override
+        public long getRemainingSize() {
+            return bufferReader.getRemainingSize();
+        }
+
+        @Override
+        public void copyCommand() {
+            final byte cmdCode = bufferReader.readByte();
+            if (indexBuilder != null) {
+                // heap buffer is wrapped as a single segment
+                indexBuilder.onCommand(SegmentedBuffer.address(0, bufferWriter.getWriterPosition()), symbolId);
+            }
+            bufferWriter.appendByte(cmdCode);
+            bufferWriter.appendInt(symbolId);
+            bufferReader.readBytesToWriter(bufferWriter, IOrderBook.fixedCommandSize(cmdCode));
+        }
+    }
+
+    private final static class SegmentedSourceRecord implements CommandSource {
+
+        private final SegmentedBufferReader bufferReader;
+        private final int symbolId;
+        private final SegmentedBufferWriter bufferWriter;
+        private final CommandOffsetIndex.Builder indexBuilder;
 
-        private SourceRecord(BufferReader bufferReader, int symbolId) {
+        private SegmentedSourceRecord(SegmentedBufferReader bufferReader, int symbolId, SegmentedBufferWriter bufferWriter, CommandOffsetIndex.Builder indexBuilder) {
             this.bufferReader = bufferReader;
             this.symbolId = symbolId;
+            this.bufferWriter = bufferWriter;
+            this.indexBuilder = indexBuilder;
+        }
+
+        @Override
+        public long getRemainingSize() {
+            return bufferReader.getRemainingSize();
+        }
+
+        @Override
+        public void copyCommand() {
+            final byte cmdCode = bufferReader.readByte();
+            final int bodySize = IOrderBook.fixedCommandSize(cmdCode);
+            bufferWriter.beginRecord(5 + bodySize);
+            if (indexBuilder != null) {
+                indexBuilder.onCommand(bufferWriter.getWriterPosition(), symbolId);
+            }
+            bufferWriter.appendByte(cmdCode);
+            bufferWriter.appendInt(symbolId);
+            bufferReader.readBytesToWriter(bufferWriter, bodySize);
         }
     }
 
+    private final static class EncodingSourceRecord implements CommandSource {
+
+        private final SegmentedBufferReader bufferReader;
+        private final int symbolId;
+        private final SegmentedBufferWriter bufferWriter;
+        private final CommandEncoder encoder;
+        private final int maxEncodedLength;
+
+        // native command body
+        private final UnsafeBuffer body = new UnsafeBuffer(new byte[IOrderBook.fixedCommandSize(IOrderBook.COMMAND_PLACE_ORDER)]);
+
+        private EncodingSourceRecord(SegmentedBufferReader bufferReader, int symbolId, SegmentedBufferWriter bufferWriter, CommandEncoder encoder) {
+            this.bufferReader = bufferReader;
+            this.symbolId = symbolId;
+            this.bufferWriter = bufferWriter;
+            this.encoder = encoder;
+            this.maxEncodedLength = encoder.maxEncodedLength();
+        }
+
+        @Override
+        public long getRemainingSize() {
+            return bufferReader.getRemainingSize();
+        }
+
+        @Override
+        public void copyCommand() {
+            final byte cmdCode = bufferReader.readByte();
+            bufferReader.readBytes(body, 0, IOrderBook.fixedCommandSize(cmdCode));
+            final MutableDirectBuffer segment = bufferWriter.reserveRecord(maxEncodedLength);
+            final int length = encoder.encode(symbolId, cmdCode, body, 0, segment, bufferWriter.getRecordOffset());
+            bufferWriter.commitRecord(length);
+        }
+    }
 }
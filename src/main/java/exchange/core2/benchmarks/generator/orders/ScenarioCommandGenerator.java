@@ -0,0 +1,240 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.CommandsEncoder;
+
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Generates commands according to session scenario (see {@link GeneratorScenario}).
+ * RANDOM scenario is fully delegated to {@link CommandGenerator}.
+ */
+public final class ScenarioCommandGenerator {
+
+    // number of price levels (on each side) holding deep queues
+    public static final int DEEP_QUEUE_LEVELS = 4;
+
+    // how far to look for orders in the middle of queues
+    public static final int MID_QUEUE_SEARCH_WINDOW = 2048;
+
+    public static void generateFillCommand(final OrdersGeneratorSession session,
+                                           final BufferWriter commandBufferWriter) {
+
+        if (session.scenario == GeneratorScenario.MID_QUEUE_CANCELS) {
+            generateDeepQueueGtcOrder(session, commandBufferWriter);
+        } else {
+            // sparse price levels are applied by session settings
+            CommandGenerator.generateRandomGtcOrder(session, commandBufferWriter);
+        }
+    }
+
+    public static void generateBenchmarkCommand(final OrdersGeneratorSession session,
+                                                final BufferWriter commandBufferWriter) {
+
+        switch (session.scenario) {
+            case SWEEPING_ORDERS:
+                generateSweepingScenarioCommand(session, commandBufferWriter);
+                break;
+
+            case MOVE_STORM:
+                generateMoveStormScenarioCommand(session, commandBufferWriter);
+                break;
+
+            case MID_QUEUE_CANCELS:
+                generateMidQueueCancelsScenarioCommand(session, commandBufferWriter);
+                break;
+
+            case WIDE_SPARSE_BOOK:
+            case RANDOM:
+            default:
+                CommandGenerator.generateRandomCommand(session, commandBufferWriter);
+        }
+    }
+
+    private static void generateSweepingScenarioCommand(final OrdersGeneratorSession session,
+                                                        final BufferWriter commandBufferWriter) {
+
+        // refill book first, then sweep it from time to time
+        final int q = session.rand.nextInt(8);
+        if (session.orderUids.isEmpty() || (lackOfOrders(session) > 0 && q != 0)) {
+            CommandGenerator.generateRandomGtcOrder(session, commandBufferWriter);
+        } else {
+            generateSweepingOrder(session, commandBufferWriter);
+        }
+    }
+
+    private static void generateMoveStormScenarioCommand(final OrdersGeneratorSession session,
+                                                         final BufferWriter commandBufferWriter) {
+
+        final Random rand = session.rand;
+        final int q = rand.nextInt(20);
+
+        if (q < 2 || session.orderUids.isEmpty()) {
+            if (lackOfOrders(session) > 0) {
+                CommandGenerator.generateRandomGtcOrder(session, commandBufferWriter);
+            } else {
+                CommandGenerator.generateRandomInstantOrder(session, commandBufferWriter);
+            }
+            return;
+        }
+
+        final int size = Math.min(session.orderUids.size(), 512);
+        final Map.Entry<Integer, Integer> rec = CommandGenerator.orderAtPosition(session, rand.nextInt(size));
+        final int orderId = rec.getKey();
+        final int uid = rec.getValue();
+
+        if (q == 2) {
+            appendCancel(session, commandBufferWriter, orderId, uid);
+            return;
+        }
+
+        final int prevPrice = session.orderPrices.get(orderId);
+        if (prevPrice == 0) {
+            throw new IllegalStateException();
+        }
+
+        // hop to a distant price level (can cross the spread)
+        final int hop = (1 + rand.nextInt((int) Math.max(session.priceDeviation, 1))) * (rand.nextBoolean() ? 1 : -1);
+        int newPrice = (int) Math.min(Math.max(prevPrice + hop, session.minPrice), session.maxPrice);
+        if (newPrice == prevPrice) {
+            newPrice = (prevPrice == session.minPrice) ? prevPrice + 1 : prevPrice - 1;
+        }
+
+        session.orderPrices.put(orderId, newPrice);
+
+        commandBufferWriter.appendByte(IOrderBook.COMMAND_MOVE_ORDER);
+        CommandsEncoder.move(commandBufferWriter, orderId, uid, newPrice);
+    }
+
+    private static void generateMidQueueCancelsScenarioCommand(final OrdersGeneratorSession session,
+                                                               final BufferWriter commandBufferWriter) {
+
+        final Random rand = session.rand;
+        final int q = rand.nextInt(10);
+
+        if (session.orderUids.size() < 4 || q < (lackOfOrders(session) > 0 ? 5 : 1)) {
+            generateDeepQueueGtcOrder(session, commandBufferWriter);
+
+        } else if (q < 8) {
+            // orders are never moved in this scenario, so insertion order matches queues order
+            final int window = Math.min(session.orderUids.size(), MID_QUEUE_SEARCH_WINDOW);
+            final int position = window / 4 + rand.nextInt(window / 2);
+            final Map.Entry<Integer, Integer> rec = CommandGenerator.orderAtPosition(session, position);
+            appendCancel(session, commandBufferWriter, rec.getKey(), rec.getValue());
+
+        } else {
+            // instant orders are consuming queues heads
+            CommandGenerator.generateRandomInstantOrder(session, commandBufferWriter);
+        }
+    }
+
+    private static void generateDeepQueueGtcOrder(final OrdersGeneratorSession session,
+                                                  final BufferWriter commandBufferWriter) {
+
+        final Random rand = session.rand;
+
+        final OrderAction action = (rand.nextInt(4) + session.priceDirection >= 2) ? OrderAction.BID : OrderAction.ASK;
+        final int uid = CommandGenerator.randomUid(session, rand);
+
+        final int newOrderId = session.orderIdCounter++;
+
+        final int levelDistance = 1 + rand.nextInt(DEEP_QUEUE_LEVELS);
+        final long price = (action == OrderAction.BID)
+                ? Math.max(session.lastTradePrice - levelDistance, 1)
+                : session.lastTradePrice + levelDistance;
+
+        final int size = 1 + rand.nextInt(6) * rand.nextInt(6) * rand.nextInt(6);
+
+        CommandGenerator.appendGtcOrder(session, commandBufferWriter, action, uid, newOrderId, (int) price, size);
+    }
+
+    private static void generateSweepingOrder(final OrdersGeneratorSession session,
+                                              final BufferWriter commandBufferWriter) {
+
+        final Random rand = session.rand;
+
+        final OrderAction action = rand.nextBoolean() ? OrderAction.BID : OrderAction.ASK;
+        final int uid = CommandGenerator.randomUid(session, rand);
+
+        final int newOrderId = session.orderIdCounter++;
+
+        final long priceLimit = action == OrderAction.BID ? session.maxPrice : session.minPrice;
+
+        // taker bid is consuming asks liquidity and vice versa
+        final long availableVolume = action == OrderAction.BID ? session.lastTotalVolumeAsk : session.lastTotalVolumeBid;
+
+        // at least half of available liquidity
+        long bigRand = rand.nextLong();
+        bigRand = bigRand < 0 ? -1 - bigRand : bigRand;
+        final long size = 1 + availableVolume / 2 + bigRand % (availableVolume / 2 + 1);
+
+        final byte orderType;
+        final long priceOrBudget;
+        final long reserveBidPrice;
+
+        if (rand.nextInt(4) == 0) {
+            orderType = IOrderBook.ORDER_TYPE_FOK_BUDGET;
+            priceOrBudget = size * priceLimit;
+            reserveBidPrice = priceOrBudget;
+        } else {
+            orderType = IOrderBook.ORDER_TYPE_IOC;
+            priceOrBudget = priceLimit;
+            reserveBidPrice = action == OrderAction.BID ? session.maxPrice : 0; // set limit price
+        }
+
+        if (action == OrderAction.BID) {
+            session.lastTotalVolumeAsk = Math.max(session.lastTotalVolumeAsk - size, 0);
+        } else {
+            session.lastTotalVolumeBid = Math.max(session.lastTotalVolumeBid - size, 0);
+        }
+
+        session.orderSizes.put(newOrderId, (int) size);
+
+        final int userCookie = rand.nextInt();
+
+        commandBufferWriter.appendByte(IOrderBook.COMMAND_PLACE_ORDER);
+
+        CommandsEncoder.placeOrder(
+                commandBufferWriter,
+                orderType,
+                newOrderId,
+                uid,
+                priceOrBudget,
+                reserveBidPrice,
+                size,
+                action,
+                userCookie);
+    }
+
+    private static void appendCancel(final OrdersGeneratorSession session,
+                                     final BufferWriter commandBufferWriter,
+                                     final int orderId,
+                                     final int uid) {
+
+        session.orderUids.remove(orderId);
+        commandBufferWriter.appendByte(IOrderBook.COMMAND_CANCEL_ORDER);
+        CommandsEncoder.cancel(commandBufferWriter, orderId, uid);
+    }
+
+    private static int lackOfOrders(final OrdersGeneratorSession session) {
+        return session.targetOrderBookOrdersHalf * 2 - session.lastOrderBookOrdersSizeAsk - session.lastOrderBookOrdersSizeBid;
+    }
+}
@@ -15,22 +15,30 @@
  */
 package exchange.core2.benchmarks.generator.orders;
 
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+import exchange.core2.benchmarks.generator.util.RestorableRandom;
 import exchange.core2.orderbook.IOrderBook;
 import exchange.core2.orderbook.ISymbolSpecification;
 import exchange.core2.orderbook.api.CommandResponse;
+import exchange.core2.orderbook.api.CommandResponseCancel;
 import exchange.core2.orderbook.api.CommandResponsePlace;
 import exchange.core2.orderbook.api.OrderBookResponse;
 import exchange.core2.orderbook.api.QueryResponseL2Data;
-import exchange.core2.orderbook.naive.OrderBookNaiveImpl;
+import exchange.core2.orderbook.api.ReduceEvent;
+import exchange.core2.orderbook.api.TradeEvent;
 import exchange.core2.orderbook.util.BufferWriter;
 import exchange.core2.orderbook.util.CommandsEncoder;
 import exchange.core2.orderbook.util.ResponseDecoder;
+import org.agrona.DirectBuffer;
 import org.agrona.ExpandableArrayBuffer;
 import org.agrona.MutableDirectBuffer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.Random;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.IntUnaryOperator;
 import java.util.function.LongConsumer;
 import java.util.function.UnaryOperator;
 
@@ -42,8 +50,25 @@ public class SingleBookOrderGenerator {
 
 
     public static final int CHECK_ORDERBOOK_STAT_EVERY_NTH_COMMAND = 512;
+    public static final IntUnaryOperator UID_PLAIN_INT_MAPPER = i -> i + 1;
+
+    /**
+     * @deprecated boxes every uid, use {@link #UID_PLAIN_INT_MAPPER}
+     */
+    @Deprecated
     public static final UnaryOperator<Integer> UID_PLAIN_MAPPER = i -> i + 1;
 
+    // full depth L2 query, only read by order books - can be shared
+    static final DirectBuffer L2_QUERY_ALL = CommandsEncoder.L2DataQuery(Integer.MAX_VALUE);
+
+    /**
+     * Boxing uid mapper variant, kept for source compatibility. Adapts the mapper to {@link IntUnaryOperator}.
+     * There is no IntUnaryOperator overload with the same arity, so that implicitly typed lambdas remain unambiguous.
+     *
+     * @deprecated use {@link #generateCommands(int, int, int, IntUnaryOperator, ISymbolSpecification, boolean, boolean, LongConsumer, int, int, GeneratorOptions)}
+     * with {@link GeneratorOptions#DEFAULT}
+     */
+    @Deprecated
     public static GenResult generateCommands(
             final int benchmarkTransactionsNumber,
             final int targetOrderBookOrders,
@@ -56,13 +81,88 @@ public class SingleBookOrderGenerator {
             final int orderIdCounter,
             final int seed) {
 
+        return generateCommands(
+                benchmarkTransactionsNumber,
+                targetOrderBookOrders,
+                numUsers,
+                uid -> uidMapper.apply(uid),
+                spec,
+                enableSlidingPrice,
+                avalancheIOC,
+                asyncProgressConsumer,
+                orderIdCounter,
+                seed,
+                GeneratorOptions.DEFAULT,
+                null);
+    }
+
+    public static GenResult generateCommands(
+            final int benchmarkTransactionsNumber,
+            final int targetOrderBookOrders,
+            final int numUsers,
+            final IntUnaryOperator uidMapper,
+            final ISymbolSpecification spec,
+            final boolean enableSlidingPrice,
+            final boolean avalancheIOC,
+            final LongConsumer asyncProgressConsumer,
+            final int orderIdCounter,
+            final int seed,
+            final GeneratorOptions options) {
+
+        return generateCommands(
+                benchmarkTransactionsNumber,
+                targetOrderBookOrders,
+                numUsers,
+                uidMapper,
+                spec,
+                enableSlidingPrice,
+                avalancheIOC,
+                asyncProgressConsumer,
+                orderIdCounter,
+                seed,
+                options,
+                null);
+    }
 
-        final BufferWriter resultsBufferWriter = new BufferWriter(new ExpandableArrayBuffer(), 0);
+    /**
+     * @param options - scenario, order book engines, checkpoints and other optional settings
+     * @param arena   - worker arena reused across symbols generated by the same thread (can be null)
+     */
+    public static GenResult generateCommands(
+            final int benchmarkTransactionsNumber,
+            final int targetOrderBookOrders,
+            final int numUsers,
+            final IntUnaryOperator uidMapper,
+            final ISymbolSpecification spec,
+            final boolean enableSlidingPrice,
+            final boolean avalancheIOC,
+            final LongConsumer asyncProgressConsumer,
+            final int orderIdCounter,
+            final int seed,
+            final GeneratorOptions options,
+            final GeneratorWorkerArena arena) {
+
+        final GeneratorScenario scenario = options.getScenario();
+        final GeneratorCheckpointConfig checkpointConfig = options.getCheckpointConfig();
+        final OrderBookFactory crossCheckOrderBookFactory = options.getCrossCheckOrderBookFactory();
+        final int stateHashInterval = options.getStateHashInterval();
+
+        final BufferWriter resultsBufferWriter;
+        if (arena != null) {
+            arena.reset();
+            resultsBufferWriter = arena.resultsBufferWriter;
+        } else {
+            resultsBufferWriter = new BufferWriter(new ExpandableArrayBuffer(), 0);
+        }
 
         // TODO specify symbol type (for testing exchange-bid-move rejects)
-        final IOrderBook<ISymbolSpecification> orderBook = new OrderBookNaiveImpl<>(spec, false, resultsBufferWriter);
+        final IOrderBook<ISymbolSpecification> orderBook = options.getOrderBookFactory().create(spec, resultsBufferWriter);
 
-        final Random rand = new Random(Long.hashCode(spec.getSymbolId() * -177277 + seed));
+        final OrderBookCrossChecker crossChecker = (crossCheckOrderBookFactory != null)
+                ? new OrderBookCrossChecker(crossCheckOrderBookFactory, spec)
+                : null;
+
+        final RestorableRandom rand = new RestorableRandom(Long.hashCode(spec.getSymbolId() * -177277 + seed));
 
         final OrdersGeneratorSession session = new OrdersGeneratorSession(
                 orderBook,
@@ -72,15 +172,61 @@ public class SingleBookOrderGenerator {
                 uidMapper,
                 enableSlidingPrice,
                 orderIdCounter,
-                rand);
+                rand,
+                scenario,
+                targetOrderBookOrders,
+                benchmarkTransactionsNumber,
+                arena);
+
+        // optional order book state hashes recorded every stateHashInterval commands
+        final StateHashTrail stateHashTrail = (stateHashInterval > 0)
+                ? new StateHashTrail(spec.getSymbolId(), stateHashInterval)
+                : null;
+
+        final BalanceTracker balanceTracker;
+        if (options.isTrackBalances()) {
+            if (!(spec instanceof GeneratorSymbolSpec)) {
+                throw new IllegalArgumentException("Balance tracking requires GeneratorSymbolSpec, got " + spec.getClass());
+            }
+            balanceTracker = new BalanceTracker((GeneratorSymbolSpec) spec);
+        } else {
+            balanceTracker = null;
+        }
 
         int nextSizeCheck = Math.min(CHECK_ORDERBOOK_STAT_EVERY_NTH_COMMAND, targetOrderBookOrders + 1);
 
         final int totalCommandsNumber = benchmarkTransactionsNumber + targetOrderBookOrders;
 
         int lastProgressReported = 0;
+        int firstCommandIndex = 0;
+
+        final OrdersGeneratorCheckpoint checkpoint = (checkpointConfig != null)
+                ? new OrdersGeneratorCheckpoint(checkpointConfig, spec.getSymbolId(), new int[]{
+                benchmarkTransactionsNumber,
+                targetOrderBookOrders,
+                numUsers,
+                enableSlidingPrice ? 1 : 0,
+                avalancheIOC ? 1 : 0,
+                orderIdCounter,
+                seed,
+                scenario.ordinal(),
+                stateHashInterval})
+                : null;
+
+        if (checkpoint != null && checkpoint.restore(session, rand, stateHashTrail)) {
+            firstCommandIndex = checkpoint.getNextCommandIndex();
+            nextSizeCheck = checkpoint.getNextSizeCheck();
+            lastProgressReported = checkpoint.getLastProgressReported();
+
+            // order book is rebuilt by replaying already generated commands
+            // (balance tracker is rebuilt from the same commands and responses)
+            final int replayed = replayCommands(orderBook, crossChecker, balanceTracker, resultsBufferWriter, session.fillCommandsBufferWriter, 0);
+            replayCommands(orderBook, crossChecker, balanceTracker, resultsBufferWriter, session.benchmarkCommandsBufferWriter, replayed);
+
+            asyncProgressConsumer.accept(lastProgressReported);
+        }
 
-        for (int i = 0; i < totalCommandsNumber; i++) {
+        for (int i = firstCommandIndex; i < totalCommandsNumber; i++) {
 
             final boolean fillStage = i < targetOrderBookOrders;
 
@@ -90,40 +236,20 @@ public class SingleBookOrderGenerator {
             if (fillStage) {
                 commandBufferWriter = session.fillCommandsBufferWriter;
                 lastWriterPosition = commandBufferWriter.getWriterPosition();
-                CommandGenerator.generateRandomGtcOrder(session, commandBufferWriter);
+                ScenarioCommandGenerator.generateFillCommand(session, commandBufferWriter);
             } else {
                 commandBufferWriter = session.benchmarkCommandsBufferWriter;
                 lastWriterPosition = commandBufferWriter.getWriterPosition();
-                CommandGenerator.generateRandomCommand(session, commandBufferWriter);
+                ScenarioCommandGenerator.generateBenchmarkCommand(session, commandBufferWriter);
             }
 
             // log.debug("lastWriterPosition={}", lastWriterPosition);
             // log.debug("commandBufferWriter\n{}", commandBufferWriter.prettyHexDump());
 
-            final MutableDirectBuffer commandsBuffer = commandBufferWriter.getBuffer();
-            final byte cmdCode = commandsBuffer.getByte(lastWriterPosition);
-
-            // log.debug("cmdCode:{}", cmdCode);
-
-            switch (cmdCode) {
-                case IOrderBook.COMMAND_PLACE_ORDER:
-                    orderBook.newOrder(commandsBuffer, lastWriterPosition + 1, 1_000_000_000L + i);
-                    break;
-
-                case IOrderBook.COMMAND_CANCEL_ORDER:
-                    orderBook.cancelOrder(commandsBuffer, lastWriterPosition + 1);
-                    break;
-
-                case IOrderBook.COMMAND_MOVE_ORDER:
-                    orderBook.moveOrder(commandsBuffer, lastWriterPosition + 1);
-                    break;
-
-                case IOrderBook.COMMAND_REDUCE_ORDER:
-                    orderBook.reduceOrder(commandsBuffer, lastWriterPosition + 1);
-                    break;
+            processCommand(orderBook, commandBufferWriter.getBuffer(), lastWriterPosition, i);
 
-                default:
-                    throw new IllegalStateException("cmdCode=" + cmdCode);
+            if (crossChecker != null) {
+                crossChecker.processCommand(commandBufferWriter.getBuffer(), lastWriterPosition, i, resultsBufferWriter);
             }
 
             // handler response from order book
@@ -137,52 +263,185 @@ public class SingleBookOrderGenerator {
                 throw new IllegalStateException("Unsuccessful result code: " + orderBookResponse.toString());
             }
 
+            if (balanceTracker != null) {
+                balanceTracker.onCommand(commandBufferWriter.getBuffer(), lastWriterPosition, (CommandResponse) orderBookResponse);
+            }
+
             matcherTradeEventEventHandler(
                     session,
                     (CommandResponse) orderBookResponse,
-                    () -> updateOrderBookSizeStat(session, orderBook, resultsBufferWriter, fillStage));
+                    orderBook,
+                    crossChecker,
+                    resultsBufferWriter,
+                    fillStage);
 
 
             if (i >= nextSizeCheck) {
 
                 nextSizeCheck += Math.min(CHECK_ORDERBOOK_STAT_EVERY_NTH_COMMAND, targetOrderBookOrders + 1);
 
-                updateOrderBookSizeStat(session, orderBook, resultsBufferWriter, fillStage);
+                updateOrderBookSizeStat(session, orderBook, crossChecker, resultsBufferWriter, fillStage);
+            }
+
+            if (stateHashTrail != null && (i + 1) % stateHashInterval == 0) {
+                final int stateHash = orderBook.stateHash();
+                if (crossChecker != null) {
+                    crossChecker.checkStateHash(stateHash);
+                }
+                stateHashTrail.record(stateHash);
             }
 
             if (i % 10000 == 9999) {
                 asyncProgressConsumer.accept(i - lastProgressReported);
                 lastProgressReported = i;
+
+                if (checkpoint != null && checkpoint.isDue()) {
+                    checkpoint.write(session, rand, stateHashTrail, i + 1, nextSizeCheck, lastProgressReported);
+                }
             }
         }
 
+        if (checkpoint != null && firstCommandIndex != totalCommandsNumber) {
+            checkpoint.write(session, rand, stateHashTrail, totalCommandsNumber, nextSizeCheck, lastProgressReported);
+        }
+
         asyncProgressConsumer.accept(totalCommandsNumber - lastProgressReported);
 
-        final QueryResponseL2Data responseL2Data = updateOrderBookSizeStat(session, orderBook, resultsBufferWriter, false);
+        final QueryResponseL2Data responseL2Data = updateOrderBookSizeStat(session, orderBook, crossChecker, resultsBufferWriter, false);
 
-        return new GenResult(
-                responseL2Data,
-                orderBook.stateHash(),
-                session.fillCommandsBufferWriter.toReader(),
-                targetOrderBookOrders,
-                session.benchmarkCommandsBufferWriter.toReader(),
-                benchmarkTransactionsNumber);
+        final int stateHash = orderBook.stateHash();
+        if (crossChecker != null) {
+            crossChecker.checkStateHash(stateHash);
+        }
+
+        if (arena != null) {
+            arena.onSymbolGenerated();
+        }
+
+        return GenResult.builder()
+                .finalOrderBook(responseL2Data, stateHash)
+                .commandsFill(
+                        session.fillCommandsBufferWriter.toReader(),
+                        SegmentedBuffer.wrap(session.fillCommandsBufferWriter),
+                        targetOrderBookOrders)
+                .commandsBenchmark(
+                        session.benchmarkCommandsBufferWriter.toReader(),
+                        SegmentedBuffer.wrap(session.benchmarkCommandsBufferWriter),
+                        benchmarkTransactionsNumber)
+                .stateHashTrail(stateHashTrail)
+                .balanceTracker(balanceTracker)
+                .depthStats(session.depthStats)
+                .peakLiveOrders(session.peakLiveOrders)
+                .build();
+    }
+
+    static void processCommand(final IOrderBook<ISymbolSpecification> orderBook,
+                               final MutableDirectBuffer commandsBuffer,
+                               final int position,
+                               final int commandIndex) {
+
+        final byte cmdCode = commandsBuffer.getByte(position);
+
+        // log.debug("cmdCode:{}", cmdCode);
+
+        switch (cmdCode) {
+            case IOrderBook.COMMAND_PLACE_ORDER:
+                orderBook.newOrder(commandsBuffer, position + 1, 1_000_000_000L + commandIndex);
+                break;
+
+            case IOrderBook.COMMAND_CANCEL_ORDER:
+                orderBook.cancelOrder(commandsBuffer, position + 1);
+                break;
+
+            case IOrderBook.COMMAND_MOVE_ORDER:
+                orderBook.moveOrder(commandsBuffer, position + 1);
+                break;
+
+            case IOrderBook.COMMAND_REDUCE_ORDER:
+                orderBook.reduceOrder(commandsBuffer, position + 1);
+                break;
+
+            default:
+                throw new IllegalStateException("cmdCode=" + cmdCode);
+        }
+    }
+
+    /**
+     * Replays commands into order book (responses are only checked for success).
+     *
+     * @return index of the next command
+     */
+    private static int replayCommands(final IOrderBook<ISymbolSpecification> orderBook,
+                                      final OrderBookCrossChecker crossChecker,
+                                      final BalanceTracker balanceTracker,
+                                      final BufferWriter resultsBufferWriter,
+                                      final BufferWriter commandsBufferWriter,
+                                      int commandIndex) {
+
+        final MutableDirectBuffer commandsBuffer = commandsBufferWriter.getBuffer();
+        final int end = commandsBufferWriter.getWriterPosition();
+
+        for (int position = 0; position < end; commandIndex++) {
+
+            processCommand(orderBook, commandsBuffer, position, commandIndex);
+
+            if (crossChecker != null) {
+                crossChecker.processCommand(commandsBuffer, position, commandIndex, resultsBufferWriter);
+            }
+
+            final OrderBookResponse orderBookResponse = ResponseDecoder.readResult(
+                    resultsBufferWriter.getBuffer(),
+                    resultsBufferWriter.getWriterPosition());
+            resultsBufferWriter.reset();
+
+            if (!orderBookResponse.isSuccessful()) {
+                throw new IllegalStateException("Unsuccessful result code while replaying: " + orderBookResponse);
+            }
+
+            if (balanceTracker != null) {
+                balanceTracker.onCommand(commandsBuffer, position, (CommandResponse) orderBookResponse);
+            }
+
+            position += 1 + IOrderBook.fixedCommandSize(commandsBuffer.getByte(position));
+        }
+
+        return commandIndex;
     }
 
     private static QueryResponseL2Data updateOrderBookSizeStat(final OrdersGeneratorSession session,
                                                                final IOrderBook<ISymbolSpecification> orderBook,
+                                                               final OrderBookCrossChecker crossChecker,
                                                                final BufferWriter resultsBufferWriter,
                                                                final boolean fillStage) {
 
-        orderBook.sendL2Snapshot(CommandsEncoder.L2DataQuery(Integer.MAX_VALUE), 0);
+        orderBook.sendL2Snapshot(L2_QUERY_ALL, 0);
+        if (crossChecker != null) {
+            crossChecker.sendL2Snapshot(resultsBufferWriter);
+        }
         final QueryResponseL2Data responseL2Data = (QueryResponseL2Data) ResponseDecoder.readResult(
                 resultsBufferWriter.getBuffer(),
                 resultsBufferWriter.getWriterPosition());
         resultsBufferWriter.reset();
 
         // TODO move reduction into QueryResponseL2Data
-        final int ordersNumAsk = responseL2Data.getAsks().stream().mapToInt(QueryResponseL2Data.L2Record::getOrders).sum();
-        final int ordersNumBid = responseL2Data.getBids().stream().mapToInt(QueryResponseL2Data.L2Record::getOrders).sum();
+        final List<QueryResponseL2Data.L2Record> asks = responseL2Data.getAsks();
+        final List<QueryResponseL2Data.L2Record> bids = responseL2Data.getBids();
+
+        int ordersNumAsk = 0;
+        long totalVolumeAsk = 0;
+        for (int i = 0; i < asks.size(); i++) {
+            final QueryResponseL2Data.L2Record record = asks.get(i);
+            ordersNumAsk += record.getOrders();
+            totalVolumeAsk += record.getVolume();
+        }
+
+        int ordersNumBid = 0;
+        long totalVolumeBid = 0;
+        for (int i = 0; i < bids.size(); i++) {
+            final QueryResponseL2Data.L2Record record = bids.get(i);
+            ordersNumBid += record.getOrders();
+            totalVolumeBid += record.getVolume();
+        }
 
         // log.debug("ask={}, bif={} seq={} filledAtSeq={}", ordersNumAsk, ordersNumBid, session.seq, session.filledAtSeq);
 
@@ -191,48 +450,58 @@ public class SingleBookOrderGenerator {
         session.lastOrderBookOrdersSizeBid = ordersNumBid;
 //        log.debug("ordersNum:{}", ordersNum);
 
-        if (session.avalancheIOC) {
-            session.lastTotalVolumeAsk = responseL2Data.getAsks().stream().mapToLong(QueryResponseL2Data.L2Record::getVolume).sum();
-            session.lastTotalVolumeBid = responseL2Data.getBids().stream().mapToLong(QueryResponseL2Data.L2Record::getVolume).sum();
+        if (session.trackTotalVolume) {
+            session.lastTotalVolumeAsk = totalVolumeAsk;
+            session.lastTotalVolumeBid = totalVolumeBid;
         }
 
         // record stat snapshots
         if (!fillStage) {
-            session.orderBookSizeAskStat.add(responseL2Data.getAsks().size());
-            session.orderBookSizeBidStat.add(responseL2Data.getBids().size());
-            session.orderBookNumOrdersAskStat.add(ordersNumAsk);
-            session.orderBookNumOrdersBidStat.add(ordersNumBid);
+            session.depthStats.record(asks.size(), bids.size(), ordersNumAsk, ordersNumBid);
         }
 
         return responseL2Data;
     }
 
+    // no lambdas or iterators here - called for every generated command
     private static void matcherTradeEventEventHandler(final OrdersGeneratorSession session,
                                                       final CommandResponse commandResponse,
-                                                      final Runnable updateOrderBookSizeStat) {
+                                                      final IOrderBook<ISymbolSpecification> orderBook,
+                                                      final OrderBookCrossChecker crossChecker,
+                                                      final BufferWriter resultsBufferWriter,
+                                                      final boolean fillStage) {
 
         final int orderId = (int) commandResponse.getOrderId();
 
-        if (commandResponse.isOrderCompleted()) {
+        // instant orders are only tracked until their response is handled
+        final int liveOrders = session.orderSizes.size();
+        if (liveOrders > session.peakLiveOrders) {
+            session.peakLiveOrders = liveOrders;
+        }
+
+        final boolean orderCompleted = commandResponse.isOrderCompleted();
+        if (orderCompleted) {
             session.orderUids.remove(orderId);
             session.numCompleted++;
         }
 
-        commandResponse.getTrades().forEach(ev -> {
+        final List<TradeEvent> trades = commandResponse.getTrades();
+        for (int t = 0; t < trades.size(); t++) {
+            final TradeEvent ev = trades.get(t);
             final int makerOrderId = (int) ev.getMakerOrderId();
             final int tradeVolume = (int) -ev.getTradeSize();
 
-            if (ev.isMakerOrderCompleted()) {
-                session.orderUids.remove(makerOrderId);
-                session.numCompleted++;
-            }
-
             // decrease size (important for reduce operation)
 
             if (session.orderSizes.addToValue(makerOrderId, tradeVolume) < 0) {
                 throw new IllegalStateException("Incorrect filled size for maker order " + makerOrderId);
             }
 
+            if (ev.isMakerOrderCompleted()) {
+                releaseOrder(session, makerOrderId);
+                session.numCompleted++;
+            }
+
             int takerRemaining = session.orderSizes.addToValue(orderId, tradeVolume);
             if (takerRemaining < 0) {
                 throw new IllegalStateException("Incorrect filled size for taker order " + orderId);
@@ -248,9 +517,11 @@ public class SingleBookOrderGenerator {
             } else if (tradePrice >= session.maxPrice) {
                 session.priceDirection = -1;
             }
-        });
+        }
 
-        commandResponse.getReduceEventOpt().ifPresent(ev -> {
+        final Optional<ReduceEvent> reduceEventOpt = commandResponse.getReduceEventOpt();
+        if (reduceEventOpt.isPresent()) {
+            final ReduceEvent ev = reduceEventOpt.get();
             int takerRemaining = session.orderSizes.addToValue(orderId, (int) ev.getReducedSize());
             if (takerRemaining < 0) {
                 throw new IllegalStateException("Incorrect filled size for order " + orderId);
@@ -260,10 +531,23 @@ public class SingleBookOrderGenerator {
                 // treat reduce on placing as a rejection
                 session.numRejected++;
                 // force updating order book stat to push generator to issue more limit orders
-                updateOrderBookSizeStat.run();
+                updateOrderBookSizeStat(session, orderBook, crossChecker, resultsBufferWriter, fillStage);
             } else {
                 session.numReduced++;
             }
-        });
+        }
+
+        // cancelled order is already excluded from picking, but its size and price are kept until response
+        if (orderCompleted
+                || commandResponse instanceof CommandResponseCancel
+                || session.orderSizes.get(orderId) == 0) {
+            releaseOrder(session, orderId);
+        }
+    }
+
+    private static void releaseOrder(final OrdersGeneratorSession session, final int orderId) {
+        session.orderUids.remove(orderId);
+        session.orderSizes.remove(orderId);
+        session.orderPrices.remove(orderId);
     }
 }
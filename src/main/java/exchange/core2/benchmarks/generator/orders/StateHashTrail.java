@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+/**
+ * Order book state hashes recorded every N commands of a single symbol (fill and benchmark commands are counted together).
+ * Hash with index k corresponds to the state after (k + 1) * interval commands.
+ */
+public final class StateHashTrail {
+
+    private final int symbolId;
+    private final int interval;
+    private final IntArrayList hashes;
+
+    public StateHashTrail(final int symbolId, final int interval) {
+        this(symbolId, interval, new IntArrayList());
+    }
+
+    private StateHashTrail(final int symbolId, final int interval, final IntArrayList hashes) {
+        if (interval < 1) {
+            throw new IllegalArgumentException("interval should be positive");
+        }
+        this.symbolId = symbolId;
+        this.interval = interval;
+        this.hashes = hashes;
+    }
+
+    public int getSymbolId() {
+        return symbolId;
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public int size() {
+        return hashes.size();
+    }
+
+    public int getHash(int index) {
+        return hashes.get(index);
+    }
+
+    /**
+     * @param index - hash index
+     * @return number of commands processed by the order book when hash was recorded
+     */
+    public long commandsProcessed(int index) {
+        return (index + 1L) * interval;
+    }
+
+    void record(final int stateHash) {
+        hashes.add(stateHash);
+    }
+
+    void clear() {
+        hashes.clear();
+    }
+
+    public void writeTo(final DataOutput out) throws IOException {
+        out.writeInt(symbolId);
+        out.writeInt(interval);
+        out.writeInt(hashes.size());
+        for (int i = 0; i < hashes.size(); i++) {
+            out.writeInt(hashes.get(i));
+        }
+    }
+
+    public static StateHashTrail readFrom(final DataInput in) throws IOException {
+        final int symbolId = in.readInt();
+        final int interval = in.readInt();
+        final int size = in.readInt();
+        final IntArrayList hashes = new IntArrayList(size);
+        for (int i = 0; i < size; i++) {
+            hashes.add(in.readInt());
+        }
+        return new StateHashTrail(symbolId, interval, hashes);
+    }
+
+    @Override
+    public String toString() {
+        return "StateHashTrail{" +
+                "symbolId=" + symbolId +
+                ", interval=" + interval +
+                ", size=" + hashes.size() +
+                '}';
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import java.io.DataInput;
+import java.io.EOFException;
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Compares generator state hash trails against state hashes reported by an exchange.
+ * <p>
+ * Exchange-side hash stream is a sequence of records [int symbolId][long commandsProcessed][int stateHash],
+ * written every time a symbol processed a multiple of trail interval commands. Records are checked in the order they come,
+ * and the first mismatching record in check order is reported. Hashes are only reported at per-symbol window boundaries,
+ * so a symbol with a long window can report its divergence after another symbol that diverged later in the merged stream.
+ */
+public final class StateHashVerifier {
+
+    public static Optional<Divergence> findFirstDivergence(final Map<Integer, StateHashTrail> expectedTrails,
+                                                           final DataInput exchangeHashStream) throws IOException {
+
+        while (true) {
+
+            final int symbolId;
+            try {
+                symbolId = exchangeHashStream.readInt();
+            } catch (EOFException ex) {
+                return Optional.empty();
+            }
+
+            final long commandsProcessed = exchangeHashStream.readLong();
+            final int actualHash = exchangeHashStream.readInt();
+
+            final StateHashTrail trail = expectedTrails.get(symbolId);
+            if (trail == null) {
+                throw new IllegalArgumentException("No state hash trail for symbol " + symbolId);
+            }
+
+            if (commandsProcessed % trail.getInterval() != 0) {
+                throw new IllegalArgumentException("Symbol " + symbolId + " hash reported after " + commandsProcessed
+                        + " commands, expected multiple of " + trail.getInterval());
+            }
+
+            final long index = commandsProcessed / trail.getInterval() - 1;
+            if (index < 0 || index >= trail.size()) {
+                throw new IllegalArgumentException("Symbol " + symbolId + " hash reported after " + commandsProcessed
+                        + " commands, but only " + trail.size() + " hashes were recorded");
+            }
+
+            final int expectedHash = trail.getHash((int) index);
+            if (expectedHash != actualHash) {
+                return Optional.of(new Divergence(
+                        symbolId,
+                        commandsProcessed - trail.getInterval(),
+                        commandsProcessed,
+                        expectedHash,
+                        actualHash));
+            }
+        }
+    }
+
+    /**
+     * Compares two trails of the same symbol
+     */
+    public static Optional<Divergence> findFirstDivergence(final StateHashTrail expected,
+                                                           final StateHashTrail actual) {
+
+        if (expected.getInterval() != actual.getInterval()) {
+            throw new IllegalArgumentException("Trails have different intervals");
+        }
+
+        final int size = Math.min(expected.size(), actual.size());
+        for (int i = 0; i < size; i++) {
+            if (expected.getHash(i) != actual.getHash(i)) {
+                return Optional.of(new Divergence(
+                        expected.getSymbolId(),
+                        expected.commandsProcessed(i) - expected.getInterval(),
+                        expected.commandsProcessed(i),
+                        expected.getHash(i),
+                        actual.getHash(i)));
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Window of symbol commands [fromCommand, toCommand) containing the first command producing different state.
+     * Commands are counted within the symbol (fill and benchmark commands together).
+     */
+    public static final class Divergence {
+
+        private final int symbolId;
+        private final long fromCommand;
+        private final long toCommand;
+        private final int expectedHash;
+        private final int actualHash;
+
+        public Divergence(int symbolId, long fromCommand, long toCommand, int expectedHash, int actualHash) {
+            this.symbolId = symbolId;
+            this.fromCommand = fromCommand;
+            this.toCommand = toCommand;
+            this.expectedHash = expectedHash;
+            this.actualHash = actualHash;
+        }
+
+        public int getSymbolId() {
+            return symbolId;
+        }
+
+        public long getFromCommand() {
+            return fromCommand;
+        }
+
+        public long getToCommand() {
+            return toCommand;
+        }
+
+        public int getExpectedHash() {
+            return expectedHash;
+        }
+
+        public int getActualHash() {
+            return actualHash;
+        }
+
+        @Override
+        public String toString() {
+            return "Divergence{" +
+                    "symbolId=" + symbolId +
+                    ", commands=[" + fromCommand + ", " + toCommand + ")" +
+                    ", expectedHash=" + expectedHash +
+                    ", actualHash=" + actualHash +
+                    '}';
+        }
+    }
+}
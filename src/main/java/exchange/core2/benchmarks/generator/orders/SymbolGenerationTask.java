@@ -0,0 +1,69 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+
+/**
+ * Parameters of a single order book generation, planned from the symbol weights and total quotas.
+ */
+public final class SymbolGenerationTask {
+
+    private final GeneratorSymbolSpec spec;
+    private final int commandsNum;
+    private final int orderBookSizeTarget;
+    private final int orderIdCounter;
+
+    public SymbolGenerationTask(final GeneratorSymbolSpec spec,
+                                final int commandsNum,
+                                final int orderBookSizeTarget,
+                                final int orderIdCounter) {
+        this.spec = spec;
+        this.commandsNum = commandsNum;
+        this.orderBookSizeTarget = orderBookSizeTarget;
+        this.orderIdCounter = orderIdCounter;
+    }
+
+    public GeneratorSymbolSpec getSpec() {
+        return spec;
+    }
+
+    public int getSymbolId() {
+        return spec.getSymbolId();
+    }
+
+    public int getCommandsNum() {
+        return commandsNum;
+    }
+
+    public int getOrderBookSizeTarget() {
+        return orderBookSizeTarget;
+    }
+
+    public int getOrderIdCounter() {
+        return orderIdCounter;
+    }
+
+    @Override
+    public String toString() {
+        return "SymbolGenerationTask{" +
+                "symbolId=" + spec.getSymbolId() +
+                ", commandsNum=" + commandsNum +
+                ", orderBookSizeTarget=" + orderBookSizeTarget +
+                ", orderIdCounter=" + orderIdCounter +
+                '}';
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Warm-up commands stream. Pre-fill commands should be replayed before the warm-up commands.
+ * Both are merged in the same format as benchmark commands, but use shifted symbol ids and uids.
+ * <p>
+ * Warm-up symbols (see {@link #getSymbolSpecs()}) should be registered and warm-up users
+ * (uids {@link #getFirstUid()}..{@link #getLastUid()}) should be funded before replay.
+ * Warm-up uid u has the same accounts as benchmark uid (u - uidOffset).
+ */
+public final class WarmupCorpus {
+
+    private final SegmentedBuffer commandsFill;
+    private final SegmentedBuffer commandsWarmup;
+
+    // warm-up symbolId -> final order book hash (never part of benchmark hashes)
+    private final Map<Integer, Integer> orderBookHashes;
+
+    private final int warmupCommandsSize;
+
+    // warm-up symbols (shifted ids)
+    private final List<GeneratorSymbolSpec> symbolSpecs;
+
+    private final int uidOffset;
+    private final int uidsNum;
+
+    public WarmupCorpus(final SegmentedBuffer commandsFill,
+                        final SegmentedBuffer commandsWarmup,
+                        final Map<Integer, Integer> orderBookHashes,
+                        final int warmupCommandsSize,
+                        final List<GeneratorSymbolSpec> symbolSpecs,
+                        final int uidOffset,
+                        final int uidsNum) {
+
+        this.commandsFill = commandsFill;
+        this.commandsWarmup = commandsWarmup;
+        this.orderBookHashes = orderBookHashes;
+        this.warmupCommandsSize = warmupCommandsSize;
+        this.symbolSpecs = symbolSpecs;
+        this.uidOffset = uidOffset;
+        this.uidsNum = uidsNum;
+    }
+
+    public SegmentedBuffer getCommandsFill() {
+        return commandsFill;
+    }
+
+    public SegmentedBuffer getCommandsWarmup() {
+        return commandsWarmup;
+    }
+
+    public Map<Integer, Integer> getOrderBookHashes() {
+        return orderBookHashes;
+    }
+
+    public int getWarmupCommandsSize() {
+        return warmupCommandsSize;
+    }
+
+    /**
+     * @return specifications of warm-up symbols (benchmark symbols with shifted ids)
+     */
+    public List<GeneratorSymbolSpec> getSymbolSpecs() {
+        return symbolSpecs;
+    }
+
+    public int getUidOffset() {
+        return uidOffset;
+    }
+
+    /**
+     * @return first uid used by warm-up commands (uid 0 is reserved)
+     */
+    public int getFirstUid() {
+        return uidOffset + 1;
+    }
+
+    /**
+     * @return last uid (inclusive) used by warm-up commands
+     */
+    public int getLastUid() {
+        return uidOffset + uidsNum - 1;
+    }
+}
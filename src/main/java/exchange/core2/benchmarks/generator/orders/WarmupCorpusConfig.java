@@ -0,0 +1,95 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+/**
+ * Warm-up corpus parameters.
+ * <p>
+ * Warm-up commands are generated for shifted symbol ids (and optionally shifted uids),
+ * so that replaying them does not touch order books and accounts used by the measured benchmark.
+ */
+public final class WarmupCorpusConfig {
+
+    private final int symbolIdOffset;
+    private final int uidOffset;
+    private final int transactionsNumber;
+    private final int targetOrderBookOrdersTotal;
+    private final int randomSeed;
+
+    /**
+     * @param symbolIdOffset             added to every benchmark symbol id, should move ids out of benchmark symbols range
+     * @param uidOffset                  added to every uid, 0 keeps the same users (books are still disjoint)
+     * @param transactionsNumber         number of warm-up commands (excluding order books pre-fill)
+     * @param targetOrderBookOrdersTotal total number of orders in warm-up order books after pre-fill
+     * @param randomSeed                 seed, normally different from the benchmark one
+     */
+    public WarmupCorpusConfig(final int symbolIdOffset,
+                              final int uidOffset,
+                              final int transactionsNumber,
+                              final int targetOrderBookOrdersTotal,
+                              final int randomSeed) {
+
+        if (symbolIdOffset <= 0) {
+            throw new IllegalArgumentException("Symbol id offset should be positive: " + symbolIdOffset);
+        }
+        if (uidOffset < 0) {
+            throw new IllegalArgumentException("Uid offset should not be negative: " + uidOffset);
+        }
+        if (transactionsNumber <= 0) {
+            throw new IllegalArgumentException("Transactions number should be positive: " + transactionsNumber);
+        }
+        if (targetOrderBookOrdersTotal < 0) {
+            throw new IllegalArgumentException("Target order book size should not be negative: " + targetOrderBookOrdersTotal);
+        }
+
+        this.symbolIdOffset = symbolIdOffset;
+        this.uidOffset = uidOffset;
+        this.transactionsNumber = transactionsNumber;
+        this.targetOrderBookOrdersTotal = targetOrderBookOrdersTotal;
+        this.randomSeed = randomSeed;
+    }
+
+    public int getSymbolIdOffset() {
+        return symbolIdOffset;
+    }
+
+    public int getUidOffset() {
+        return uidOffset;
+    }
+
+    public int getTransactionsNumber() {
+        return transactionsNumber;
+    }
+
+    public int getTargetOrderBookOrdersTotal() {
+        return targetOrderBookOrdersTotal;
+    }
+
+    public int getRandomSeed() {
+        return randomSeed;
+    }
+
+    @Override
+    public String toString() {
+        return "WarmupCorpusConfig{" +
+                "symbolIdOffset=" + symbolIdOffset +
+                ", uidOffset=" + uidOffset +
+                ", transactionsNumber=" + transactionsNumber +
+                ", targetOrderBookOrdersTotal=" + targetOrderBookOrdersTotal +
+                ", randomSeed=" + randomSeed +
+                '}';
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.orders;
+
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.benchmarks.generator.util.ExecutionTime;
+import org.apache.commons.math3.random.JDKRandomGenerator;
+import org.apache.commons.math3.util.Pair;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+
+/**
+ * Generates JIT warm-up corpus for the same symbols mix as the benchmark.
+ * <p>
+ * Each warm-up order book is a copy of a benchmark symbol with shifted id, generated by the same command generator and
+ * scenario, so command types mix and exercised code paths (GTC/IOC/FOK_BUDGET including rejects, move, reduce, cancel)
+ * match the benchmark stream. Benchmark order books, their state hashes and (with non-zero uid offset) accounts
+ * are not affected by replaying the warm-up corpus.
+ */
+public final class WarmupCorpusGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupCorpusGenerator.class);
+
+    public static final int WARMUP_SEGMENT_SIZE = 4 * 1024 * 1024;
+
+    public static WarmupCorpus generateWarmupCorpus(final List<Pair<GeneratorSymbolSpec, Double>> symbolSpecs,
+                                                    final List<BitSet> usersAccounts,
+                                                    final boolean avalancheIOC,
+                                                    final GeneratorScenario scenario,
+                                                    final WarmupCorpusConfig config) {
+
+        final int symbolIdOffset = config.getSymbolIdOffset();
+        final int uidOffset = config.getUidOffset();
+
+        final int maxSymbolId = symbolSpecs.stream().mapToInt(p -> p.getFirst().getSymbolId()).max()
+                .orElseThrow(() -> new IllegalArgumentException("No symbols specified"));
+        final int minSymbolId = symbolSpecs.stream().mapToInt(p -> p.getFirst().getSymbolId()).min().getAsInt();
+
+        if ((long) minSymbolId + symbolIdOffset <= maxSymbolId || (long) maxSymbolId + symbolIdOffset > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Symbol id offset " + symbolIdOffset
+                    + " does not move symbols [" + minSymbolId + ".." + maxSymbolId + "] into disjoint range");
+        }
+
+        if (uidOffset != 0 && (uidOffset < usersAccounts.size() || (long) uidOffset + usersAccounts.size() > Integer.MAX_VALUE)) {
+            throw new IllegalArgumentException("Uid offset " + uidOffset
+                    + " does not move " + usersAccounts.size() + " uids into disjoint range");
+        }
+
+        final List<Pair<GeneratorSymbolSpec, Double>> warmupSpecs = symbolSpecs.stream()
+                .map(p -> Pair.create(shiftSymbolId(p.getFirst(), symbolIdOffset), p.getSecond()))
+                .collect(Collectors.toList());
+
+        final Map<Integer, GenResult> genResultsMap = new HashMap<>();
+
+        try (ExecutionTime ignore = new ExecutionTime(t -> log.debug("Warm-up commands generated in {}", t))) {
+
+            final List<SymbolGenerationTask> tasks = MultiSymbolOrdersGenerator.planSymbolTasks(
+                    warmupSpecs,
+                    config.getTransactionsNumber(),
+                    config.getTargetOrderBookOrdersTotal());
+
+            final Map<Integer, CompletableFuture<GenResult>> futures = new HashMap<>();
+
+            final GeneratorOptions options = GeneratorOptions.builder()
+                    .scenario(scenario)
+                    .build();
+
+            for (final SymbolGenerationTask task : tasks) {
+
+                futures.put(task.getSymbolId(), CompletableFuture.supplyAsync(() -> {
+
+                    final int[] uids = MultiSymbolOrdersGenerator.createUidsForSymbol(usersAccounts, task, config.getRandomSeed());
+
+                    return SingleBookOrderGenerator.generateCommands(
+                            task.getCommandsNum(),
+                            task.getOrderBookSizeTarget(),
+                            uids.length,
+                            idx -> uids[idx] + uidOffset,
+                            task.getSpec(),
+                            false,
+                            avalancheIOC,
+                            a -> {
+                            },
+                            task.getOrderIdCounter(),
+                            config.getRandomSeed(),
+                            options);
+                }));
+            }
+
+            futures.forEach((symbol, future) -> {
+                try {
+                    genResultsMap.put(symbol, future.get());
+                } catch (InterruptedException | ExecutionException ex) {
+                    throw new IllegalStateException("Exception while generating warm-up commands for symbol " + symbol, ex);
+                }
+            });
+        }
+
+        final int warmupCmdSize = genResultsMap.values().stream()
+                .mapToInt(GenResult::getNumCommandsBenchmark)
+                .sum();
+
+        log.debug("Merging {} warm-up commands for {} symbols...", warmupCmdSize, genResultsMap.size());
+
+        final JDKRandomGenerator rand = new JDKRandomGenerator(config.getRandomSeed());
+
+        final Map<Integer, Integer> bookHashes = new HashMap<>();
+        genResultsMap.forEach((symbol, genResult) -> bookHashes.put(symbol, genResult.getFinalOrderBookHash()));
+
+        return new WarmupCorpus(
+                RandomCollectionsMerger.mergeCommandsSegmented(genResultsMap, GenResult::getCommandsFillBuffer, rand, WARMUP_SEGMENT_SIZE),
+                RandomCollectionsMerger.mergeCommandsSegmented(genResultsMap, GenResult::getCommandsBenchmarkBuffer, rand, WARMUP_SEGMENT_SIZE),
+                bookHashes,
+                warmupCmdSize,
+                warmupSpecs.stream().map(Pair::getFirst).collect(Collectors.toList()),
+                uidOffset,
+                usersAccounts.size());
+    }
+
+    public static GeneratorSymbolSpec shiftSymbolId(final GeneratorSymbolSpec spec, final int symbolIdOffset) {
+        return new GeneratorSymbolSpec(
+                spec.getSymbolId() + symbolIdOffset,
+                spec.getSymbolType(),
+                spec.getBaseCurrency(),
+                spec.getQuoteCurrency(),
+                spec.getBaseScaleK(),
+                spec.getQuoteScaleK(),
+                spec.getTakerFee(),
+                spec.getMakerFee(),
+                spec.getMarginBuy(),
+                spec.getMarginSell());
+    }
+}
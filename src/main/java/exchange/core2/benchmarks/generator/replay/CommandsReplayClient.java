@@ -0,0 +1,160 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.replay;
+
+import exchange.core2.benchmarks.generator.storage.CommandCursor;
+import exchange.core2.benchmarks.generator.storage.CommandView;
+import exchange.core2.benchmarks.generator.storage.CommandsCorpus;
+import exchange.core2.orderbook.IOrderBook;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.SocketChannel;
+
+/**
+ * Streams generated corpus to a socket as fast as possible (TCP with Nagle disabled, or UDP).
+ * Measures client-side send overhead only. Responses (if any, e.g. echo) are read by a background drain thread
+ * per TCP connection and discarded, so the peer never blocks on a full socket buffer.
+ */
+public final class CommandsReplayClient {
+
+    private static final Logger log = LoggerFactory.getLogger(CommandsReplayClient.class);
+
+    private static final int MAX_DATAGRAM_SIZE = 65507;
+
+    private static final int DRAIN_BUFFER_SIZE = 64 * 1024;
+
+    public static ReplayStats replay(final CommandsCorpus corpus,
+                                     final ReplayClientConfig config) {
+
+        if (!corpus.hasSymbolId() && config.getFanOutMode() == FanOutMode.BY_SYMBOL) {
+            throw new IllegalArgumentException("Fan-out by symbol requires merged commands");
+        }
+
+        final int maxFrameSize = config.getFraming().getHeaderSize() + 5 + IOrderBook.fixedCommandSize(IOrderBook.COMMAND_PLACE_ORDER);
+        if (config.getProtocol() == ReplayClientConfig.Protocol.UDP && config.getCommandsPerWrite() * maxFrameSize > MAX_DATAGRAM_SIZE) {
+            throw new IllegalArgumentException("Datagram of " + config.getCommandsPerWrite() + " commands can exceed max UDP datagram size");
+        }
+
+        final int numConnections = config.getConnections();
+        final GatheringByteChannel[] channels = new GatheringByteChannel[numConnections];
+        final ReplayConnection[] connections = new ReplayConnection[numConnections];
+
+        try {
+            for (int i = 0; i < numConnections; i++) {
+                channels[i] = openChannel(config);
+                if (channels[i] instanceof SocketChannel) {
+                    startDrainThread((SocketChannel) channels[i], i);
+                }
+                connections[i] = new ReplayConnection(channels[i], config.getFraming(), corpus.getBuffer(), config.getCommandsPerWrite());
+            }
+
+            final CommandCursor cursor = corpus.newCursor();
+            final CommandView view = cursor.view();
+            final FanOutMode fanOutMode = config.getFanOutMode();
+
+            long commands = 0;
+            final long t = System.nanoTime();
+
+            while (cursor.next()) {
+                final int idx;
+                switch (fanOutMode) {
+                    case BY_SYMBOL:
+                        idx = Math.floorMod(view.getSymbolId(), numConnections);
+                        break;
+                    case BY_UID:
+                        idx = (int) Math.floorMod(view.getUid(), (long) numConnections);
+                        break;
+                    default:
+                        idx = 0;
+                }
+                connections[idx].send(view);
+                commands++;
+            }
+
+            long bytes = 0;
+            long writeCalls = 0;
+            for (final ReplayConnection connection : connections) {
+                connection.flush();
+                bytes += connection.getBytesSent();
+                writeCalls += connection.getWriteCalls();
+            }
+
+            final ReplayStats stats = new ReplayStats(commands, bytes, writeCalls, System.nanoTime() - t);
+            log.debug("Replayed to {}: {}", config.getAddress(), stats);
+            return stats;
+
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not replay commands to " + config.getAddress(), ex);
+        } finally {
+            for (final GatheringByteChannel channel : channels) {
+                if (channel != null) {
+                    try {
+                        channel.close();
+                    } catch (IOException ex) {
+                        log.warn("Can not close channel", ex);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads and discards responses until the channel is closed.
+     */
+    private static void startDrainThread(final SocketChannel channel, final int connectionIdx) {
+        final Thread thread = new Thread(() -> {
+            final ByteBuffer buffer = ByteBuffer.allocateDirect(DRAIN_BUFFER_SIZE);
+            try {
+                while (channel.read(buffer) >= 0) {
+                    buffer.clear();
+                }
+            } catch (AsynchronousCloseException ex) {
+                // replay completed
+            } catch (IOException ex) {
+                log.warn("Can not read responses from connection {}", connectionIdx, ex);
+            }
+        }, "replay-drain-" + connectionIdx);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private static GatheringByteChannel openChannel(final ReplayClientConfig config) throws IOException {
+
+        if (config.getProtocol() == ReplayClientConfig.Protocol.TCP) {
+            final SocketChannel channel = SocketChannel.open();
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            if (config.getSocketSendBufferSize() > 0) {
+                channel.setOption(StandardSocketOptions.SO_SNDBUF, config.getSocketSendBufferSize());
+            }
+            channel.connect(config.getAddress());
+            return channel;
+        } else {
+            final DatagramChannel channel = DatagramChannel.open();
+            if (config.getSocketSendBufferSize() > 0) {
+                channel.setOption(StandardSocketOptions.SO_SNDBUF, config.getSocketSendBufferSize());
+            }
+            channel.connect(config.getAddress());
+            return channel;
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.replay;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousCloseException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Local stand-in for an exchange gateway: receives commands on loopback and discards them (or echoes back, TCP only).
+ * Used to measure client-side replay overhead separately from exchange-side latency.
+ */
+public final class LoopbackSinkServer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LoopbackSinkServer.class);
+
+    private static final int RECEIVE_BUFFER_SIZE = 256 * 1024;
+
+    private final ReplayClientConfig.Protocol protocol;
+    private final boolean echo;
+
+    private final AtomicLong bytesReceived = new AtomicLong();
+    private final AtomicLong messagesReceived = new AtomicLong();
+
+    private final List<AutoCloseable> channels = new CopyOnWriteArrayList<>();
+
+    private volatile boolean running = true;
+
+    private InetSocketAddress address;
+
+    public LoopbackSinkServer(final ReplayClientConfig.Protocol protocol, final boolean echo) {
+        if (echo && protocol != ReplayClientConfig.Protocol.TCP) {
+            throw new IllegalArgumentException("Echo is only supported for TCP");
+        }
+        this.protocol = protocol;
+        this.echo = echo;
+    }
+
+    /**
+     * Binds to an ephemeral loopback port and starts receiving threads.
+     *
+     * @return server address
+     */
+    public InetSocketAddress start() throws IOException {
+
+        final InetSocketAddress bindAddress = new InetSocketAddress(InetAddress.getLoopbackAddress(), 0);
+
+        if (protocol == ReplayClientConfig.Protocol.TCP) {
+            final ServerSocketChannel serverChannel = ServerSocketChannel.open();
+            serverChannel.bind(bindAddress);
+            channels.add(serverChannel);
+            address = (InetSocketAddress) serverChannel.getLocalAddress();
+            startThread("accept", () -> acceptLoop(serverChannel));
+        } else {
+            final DatagramChannel datagramChannel = DatagramChannel.open();
+            datagramChannel.bind(bindAddress);
+            channels.add(datagramChannel);
+            address = (InetSocketAddress) datagramChannel.getLocalAddress();
+            startThread("udp", () -> receiveLoop(datagramChannel));
+        }
+
+        return address;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived.get();
+    }
+
+    /**
+     * @return number of read calls (TCP) or datagrams (UDP) received
+     */
+    public long getMessagesReceived() {
+        return messagesReceived.get();
+    }
+
+    /**
+     * Waits until the server received the expected number of bytes.
+     *
+     * @return true if received, false if timed out
+     */
+    public boolean awaitBytes(final long expectedBytes, final long timeoutMs) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + timeoutMs;
+        while (bytesReceived.get() < expectedBytes) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+            Thread.sleep(1);
+        }
+        return true;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        for (final AutoCloseable channel : channels) {
+            try {
+                channel.close();
+            } catch (Exception ex) {
+                log.warn("Can not close channel", ex);
+            }
+        }
+    }
+
+    private void acceptLoop(final ServerSocketChannel serverChannel) throws IOException {
+        while (running) {
+            final SocketChannel channel = serverChannel.accept();
+            channels.add(channel);
+            startThread("tcp-" + channel.getRemoteAddress(), () -> readLoop(channel));
+        }
+    }
+
+    private void readLoop(final SocketChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+        while (running) {
+            buffer.clear();
+            final int n = channel.read(buffer);
+            if (n < 0) {
+                return;
+            }
+            bytesReceived.addAndGet(n);
+            messagesReceived.incrementAndGet();
+            if (echo) {
+                buffer.flip();
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+            }
+        }
+    }
+
+    private void receiveLoop(final DatagramChannel channel) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(RECEIVE_BUFFER_SIZE);
+        while (running) {
+            buffer.clear();
+            channel.receive(buffer);
+            bytesReceived.addAndGet(buffer.position());
+            messagesReceived.incrementAndGet();
+        }
+    }
+
+    private void startThread(final String name, final IoTask task) {
+        final Thread thread = new Thread(() -> {
+            try {
+                task.run();
+            } catch (AsynchronousCloseException ex) {
+                // closed
+            } catch (IOException ex) {
+                if (running) {
+                    log.warn("Loopback server {} failed", name, ex);
+                }
+            }
+        }, "loopback-sink-" + name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @FunctionalInterface
+    private interface IoTask {
+        void run() throws IOException;
+    }
+}
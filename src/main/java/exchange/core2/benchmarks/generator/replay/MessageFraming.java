@@ -0,0 +1,38 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.replay;
+
+/**
+ * How commands are framed on the wire.
+ */
+public enum MessageFraming {
+
+    // commands are sent as is, back-to-back ([code][symbolId][body], receiver knows fixed body sizes)
+    RAW(0),
+
+    // every command is preceded by int32 (little-endian) length
+    LENGTH_PREFIXED(4);
+
+    private final int headerSize;
+
+    MessageFraming(int headerSize) {
+        this.headerSize = headerSize;
+    }
+
+    public int getHeaderSize() {
+        return headerSize;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.replay;
+
+import java.net.InetSocketAddress;
+
+public final class ReplayClientConfig {
+
+    public enum Protocol {
+        TCP,
+        UDP
+    }
+
+    private final InetSocketAddress address;
+    private final Protocol protocol;
+    private final MessageFraming framing;
+
+    // commands sent per write syscall (for UDP - per datagram)
+    private final int commandsPerWrite;
+
+    private final int connections;
+    private final FanOutMode fanOutMode;
+
+    // 0 - use OS default
+    private final int socketSendBufferSize;
+
+    public ReplayClientConfig(final InetSocketAddress address,
+                              final Protocol protocol,
+                              final MessageFraming framing,
+                              final int commandsPerWrite,
+                              final int connections,
+                              final FanOutMode fanOutMode,
+                              final int socketSendBufferSize) {
+
+        if (commandsPerWrite < 1) {
+            throw new IllegalArgumentException("commandsPerWrite should be positive");
+        }
+        if (connections < 1) {
+            throw new IllegalArgumentException("connections should be positive");
+        }
+        if (connections > 1 && fanOutMode == FanOutMode.SINGLE_CONNECTION) {
+            throw new IllegalArgumentException("Fan-out mode is required for multiple connections");
+        }
+
+        this.address = address;
+        this.protocol = protocol;
+        this.framing = framing;
+        this.commandsPerWrite = commandsPerWrite;
+        this.connections = connections;
+        this.fanOutMode = fanOutMode;
+        this.socketSendBufferSize = socketSendBufferSize;
+    }
+
+    public ReplayClientConfig(final InetSocketAddress address,
+                              final Protocol protocol,
+                              final MessageFraming framing,
+                              final int commandsPerWrite) {
+
+        this(address, protocol, framing, commandsPerWrite, 1, FanOutMode.SINGLE_CONNECTION, 0);
+    }
+
+    public InetSocketAddress getAddress() {
+        return address;
+    }
+
+    public Protocol getProtocol() {
+        return protocol;
+    }
+
+    public MessageFraming getFraming() {
+        return framing;
+    }
+
+    public int getCommandsPerWrite() {
+        return commandsPerWrite;
+    }
+
+    public int getConnections() {
+        return connections;
+    }
+
+    public FanOutMode getFanOutMode() {
+        return fanOutMode;
+    }
+
+    public int getSocketSendBufferSize() {
+        return socketSendBufferSize;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.replay;
+
+import exchange.core2.benchmarks.generator.storage.CommandView;
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * Accumulates up to N commands and sends them with a single gather write.
+ * Command bytes are not copied: gather buffers are pointing directly into the corpus segments.
+ * Adjacent commands of the same segment are coalesced into a single gather buffer (RAW framing).
+ */
+final class ReplayConnection {
+
+    private final GatheringByteChannel channel;
+    private final MessageFraming framing;
+    private final SegmentedBuffer corpusBuffer;
+    private final int commandsPerWrite;
+
+    private final ByteBuffer[] gather;
+    private final ByteBuffer[] headers;
+    private final ByteBuffer[] commandSlices;
+
+    private int gatherCount = 0;
+    private int commands = 0;
+    private int slicesUsed = 0;
+
+    // segment which command slices are currently pointing to
+    private int sliceSegment = -1;
+    private int sliceSegmentAdjustment;
+
+    private long bytesSent = 0;
+    private long writeCalls = 0;
+
+    ReplayConnection(final GatheringByteChannel channel,
+                     final MessageFraming framing,
+                     final SegmentedBuffer corpusBuffer,
+                     final int commandsPerWrite) {
+
+        this.channel = channel;
+        this.framing = framing;
+        this.corpusBuffer = corpusBuffer;
+        this.commandsPerWrite = commandsPerWrite;
+
+        this.gather = new ByteBuffer[commandsPerWrite * 2];
+        this.commandSlices = new ByteBuffer[commandsPerWrite];
+
+        this.headers = new ByteBuffer[commandsPerWrite];
+        if (framing.getHeaderSize() > 0) {
+            final ByteBuffer headersBuffer = ByteBuffer.allocateDirect(commandsPerWrite * framing.getHeaderSize());
+            for (int i = 0; i < commandsPerWrite; i++) {
+                headersBuffer.limit((i + 1) * framing.getHeaderSize()).position(i * framing.getHeaderSize());
+                headers[i] = headersBuffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+            }
+        }
+    }
+
+    void send(final CommandView view) throws IOException {
+
+        final int segmentIndex = SegmentedBuffer.segmentIndex(view.getAddress());
+        if (segmentIndex != sliceSegment) {
+            // slices can only point to a single segment
+            flush();
+            switchSegment(segmentIndex);
+        }
+
+        final int start = sliceSegmentAdjustment + view.getOffset();
+        final int length = view.getLength();
+
+        if (framing == MessageFraming.LENGTH_PREFIXED) {
+            final ByteBuffer header = headers[commands];
+            header.clear();
+            header.putInt(0, length);
+            gather[gatherCount++] = header;
+        }
+
+        final ByteBuffer last = (gatherCount > 0) ? gather[gatherCount - 1] : null;
+        if (framing == MessageFraming.RAW && last != null && last.limit() == start) {
+            // coalesce with the previous command
+            last.limit(start + length);
+        } else {
+            final ByteBuffer slice = commandSlices[slicesUsed++];
+            slice.limit(start + length).position(start);
+            gather[gatherCount++] = slice;
+        }
+
+        commands++;
+        if (commands == commandsPerWrite) {
+            flush();
+        }
+    }
+
+    void flush() throws IOException {
+
+        if (gatherCount == 0) {
+            return;
+        }
+
+        long remaining = 0;
+        for (int i = 0; i < gatherCount; i++) {
+            remaining += gather[i].remaining();
+        }
+
+        bytesSent += remaining;
+
+        while (remaining > 0) {
+            remaining -= channel.write(gather, 0, gatherCount);
+            writeCalls++;
+        }
+
+        gatherCount = 0;
+        commands = 0;
+        slicesUsed = 0;
+    }
+
+    long getBytesSent() {
+        return bytesSent;
+    }
+
+    long getWriteCalls() {
+        return writeCalls;
+    }
+
+    private void switchSegment(final int segmentIndex) {
+
+        final UnsafeBuffer segment = corpusBuffer.getSegment(segmentIndex);
+        final ByteBuffer segmentByteBuffer = (segment.byteBuffer() != null)
+                ? segment.byteBuffer()
+                : ByteBuffer.wrap(segment.byteArray());
+
+        for (int i = 0; i < commandsPerWrite; i++) {
+            commandSlices[i] = segmentByteBuffer.duplicate();
+        }
+
+        sliceSegment = segmentIndex;
+        sliceSegmentAdjustment = segment.wrapAdjustment();
+    }
+}
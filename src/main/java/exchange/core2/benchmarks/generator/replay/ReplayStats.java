@@ -0,0 +1,71 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.replay;
+
+import exchange.core2.benchmarks.generator.util.LatencyTools;
+
+import java.util.concurrent.TimeUnit;
+
+public final class ReplayStats {
+
+    private final long commands;
+    private final long bytes;
+    private final long writeCalls;
+    private final long durationNs;
+
+    public ReplayStats(long commands, long bytes, long writeCalls, long durationNs) {
+        this.commands = commands;
+        this.bytes = bytes;
+        this.writeCalls = writeCalls;
+        this.durationNs = durationNs;
+    }
+
+    public long getCommands() {
+        return commands;
+    }
+
+    public long getBytes() {
+        return bytes;
+    }
+
+    public long getWriteCalls() {
+        return writeCalls;
+    }
+
+    public long getDurationNs() {
+        return durationNs;
+    }
+
+    /**
+     * @return client-side send cost per command (ns), includes framing and write syscalls
+     */
+    public double getNanosPerCommand() {
+        return commands == 0 ? 0 : (double) durationNs / commands;
+    }
+
+    @Override
+    public String toString() {
+        final double seconds = Math.max(1, durationNs) / (double) TimeUnit.SECONDS.toNanos(1);
+        return String.format("ReplayStats{commands=%d bytes=%d writes=%d duration=%s rate=%.0f cmd/s %.1f MB/s %.1f ns/cmd}",
+                commands,
+                bytes,
+                writeCalls,
+                LatencyTools.formatNanos(durationNs),
+                commands / seconds,
+                bytes / seconds / 1024 / 1024,
+                getNanosPerCommand());
+    }
+}
@@ -0,0 +1,108 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.storage;
+
+import exchange.core2.orderbook.IOrderBook;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Independent forward-only cursor over a range of commands [start address, end address).
+ * Not thread-safe, but any number of cursors can be used over the same corpus concurrently.
+ */
+public final class CommandCursor {
+
+    private final SegmentedBuffer buffer;
+    private final int headerSize;
+    private final CommandView view;
+
+    private final int endSegment;
+    private final int endOffset;
+
+    private int segmentIndex;
+    private UnsafeBuffer segment;
+    private int limit;
+    private int offset;
+
+    CommandCursor(final SegmentedBuffer buffer,
+                  final boolean hasSymbolId,
+                  final long startAddress,
+                  final long endAddress) {
+
+        this.buffer = buffer;
+        this.headerSize = hasSymbolId ? 5 : 1;
+        this.view = new CommandView(hasSymbolId);
+        this.endSegment = SegmentedBuffer.segmentIndex(endAddress);
+        this.endOffset = SegmentedBuffer.segmentOffset(endAddress);
+        this.segmentIndex = SegmentedBuffer.segmentIndex(startAddress);
+        this.offset = SegmentedBuffer.segmentOffset(startAddress);
+        if (segmentIndex < buffer.getSegmentsCount()) {
+            this.segment = buffer.getSegment(segmentIndex);
+            this.limit = limitOf(segmentIndex);
+        }
+    }
+
+    /**
+     * Moves to the next command.
+     *
+     * @return false if there are no more commands in the range
+     */
+    public boolean next() {
+
+        while (offset >= limit) {
+            if (segmentIndex >= endSegment) {
+                return false;
+            }
+            segmentIndex++;
+            segment = buffer.getSegment(segmentIndex);
+            limit = limitOf(segmentIndex);
+            offset = 0;
+        }
+
+        view.wrap(segment, offset, SegmentedBuffer.address(segmentIndex, offset));
+        offset += headerSize + IOrderBook.fixedCommandSize(segment.getByte(offset));
+        return true;
+    }
+
+    /**
+     * @return current command (flyweight, reused by the cursor)
+     */
+    public CommandView view() {
+        return view;
+    }
+
+    /**
+     * @return address of the next command (or end of the current segment)
+     */
+    long getNextAddress() {
+        return SegmentedBuffer.address(segmentIndex, offset);
+    }
+
+    /**
+     * Skips commands until reaching specified offset within the current segment.
+     *
+     * @return address of the first command starting at or after the offset
+     */
+    long skipTo(final int targetOffset) {
+        while (offset < targetOffset && offset < limit) {
+            offset += headerSize + IOrderBook.fixedCommandSize(segment.getByte(offset));
+        }
+        return SegmentedBuffer.address(segmentIndex, offset);
+    }
+
+    private int limitOf(final int segmentIdx) {
+        return (segmentIdx == endSegment) ? endOffset : buffer.getSegmentLimit(segmentIdx);
+    }
+}
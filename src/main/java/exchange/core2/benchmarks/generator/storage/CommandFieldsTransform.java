@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.storage;
+
+import exchange.core2.orderbook.IOrderBook;
+import org.agrona.MutableDirectBuffer;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+
+/**
+ * Rewrites uid, symbol id and order id of a fixed-layout command in place (command length never changes).
+ * <p>
+ * Symbol ids are mapped first (ids missing in the map are kept), then shifted.
+ * Uids are mapped by table (index is the original uid), then shifted.
+ */
+public final class CommandFieldsTransform {
+
+    // can be null
+    private final long[] uidTable;
+    private final long uidOffset;
+
+    // can be null
+    private final IntIntHashMap symbolIdMap;
+    private final int symbolIdShift;
+
+    private final long orderIdOffset;
+
+    private final boolean transformsUid;
+    private final boolean transformsSymbolId;
+
+    public CommandFieldsTransform(final long[] uidTable,
+                                  final long uidOffset,
+                                  final IntIntHashMap symbolIdMap,
+                                  final int symbolIdShift,
+                                  final long orderIdOffset) {
+
+        this.uidTable = uidTable;
+        this.uidOffset = uidOffset;
+        this.symbolIdMap = symbolIdMap;
+        this.symbolIdShift = symbolIdShift;
+        this.orderIdOffset = orderIdOffset;
+        this.transformsUid = uidTable != null || uidOffset != 0;
+        this.transformsSymbolId = symbolIdMap != null || symbolIdShift != 0;
+    }
+
+    public static CommandFieldsTransform shift(final long uidOffset,
+                                               final int symbolIdShift,
+                                               final long orderIdOffset) {
+        return new CommandFieldsTransform(null, uidOffset, null, symbolIdShift, orderIdOffset);
+    }
+
+    public boolean transformsSymbolId() {
+        return transformsSymbolId;
+    }
+
+    /**
+     * @return command length (including header)
+     */
+    public int apply(final MutableDirectBuffer buffer,
+                     final int offset,
+                     final boolean hasSymbolId) {
+
+        final byte code = buffer.getByte(offset);
+        int bodyOffset = offset + 1;
+
+        if (hasSymbolId) {
+            if (transformsSymbolId) {
+                buffer.putInt(bodyOffset, mapSymbolId(buffer.getInt(bodyOffset)));
+            }
+            bodyOffset += 4;
+        }
+
+        final int uidOffsetInBody;
+        final int orderIdOffsetInBody;
+        switch (code) {
+            case IOrderBook.COMMAND_PLACE_ORDER:
+                uidOffsetInBody = IOrderBook.PLACE_OFFSET_UID;
+                orderIdOffsetInBody = IOrderBook.PLACE_OFFSET_ORDER_ID;
+                break;
+            case IOrderBook.COMMAND_CANCEL_ORDER:
+                uidOffsetInBody = IOrderBook.CANCEL_OFFSET_UID;
+                orderIdOffsetInBody = IOrderBook.CANCEL_OFFSET_ORDER_ID;
+                break;
+            case IOrderBook.COMMAND_MOVE_ORDER:
+                uidOffsetInBody = IOrderBook.MOVE_OFFSET_UID;
+                orderIdOffsetInBody = IOrderBook.MOVE_OFFSET_ORDER_ID;
+                break;
+            case IOrderBook.COMMAND_REDUCE_ORDER:
+                uidOffsetInBody = IOrderBook.REDUCE_OFFSET_UID;
+                orderIdOffsetInBody = IOrderBook.REDUCE_OFFSET_ORDER_ID;
+                break;
+            default:
+                throw new IllegalStateException("Unknown command code " + code + " at offset " + offset);
+        }
+
+        if (transformsUid) {
+            final int pos = bodyOffset + uidOffsetInBody;
+            buffer.putLong(pos, mapUid(buffer.getLong(pos)));
+        }
+
+        if (orderIdOffset != 0) {
+            final int pos = bodyOffset + orderIdOffsetInBody;
+            buffer.putLong(pos, buffer.getLong(pos) + orderIdOffset);
+        }
+
+        return (bodyOffset - offset) + IOrderBook.fixedCommandSize(code);
+    }
+
+    public long mapUid(final long uid) {
+        if (uidTable == null) {
+            return uid + uidOffset;
+        }
+        if (uid < 0 || uid >= uidTable.length) {
+            throw new IllegalStateException("Uid " + uid + " is out of remap table range " + uidTable.length);
+        }
+        return uidTable[(int) uid] + uidOffset;
+    }
+
+    public int mapSymbolId(final int symbolId) {
+        final int mapped = (symbolIdMap != null) ? symbolIdMap.getIfAbsent(symbolId, symbolId) : symbolId;
+        return mapped + symbolIdShift;
+    }
+
+    @Override
+    public String toString() {
+        return "CommandFieldsTransform{" +
+                "uidTable=" + (uidTable == null ? "none" : uidTable.length) +
+                ", uidOffset=" + uidOffset +
+                ", symbolIdMap=" + (symbolIdMap == null ? "none" : symbolIdMap.size()) +
+                ", symbolIdShift=" + symbolIdShift +
+                ", orderIdOffset=" + orderIdOffset +
+                '}';
+    }
+}
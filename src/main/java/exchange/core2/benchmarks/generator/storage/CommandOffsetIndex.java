@@ -0,0 +1,209 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.storage;
+
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+import org.eclipse.collections.impl.map.mutable.primitive.IntLongHashMap;
+
+/**
+ * Sparse index of a commands stream: address of every N-th command, optionally with number of commands per symbol.
+ * <p>
+ * Normally built by the merger while writing commands (one branch per command), or by scanning an existing corpus.
+ * Seeking to a command skips at most N-1 commands from the nearest indexed one,
+ * so parallel consumers can start and stop at exact command boundaries without scanning the whole stream.
+ */
+public final class CommandOffsetIndex {
+
+    public static final int DEFAULT_INTERVAL = 4096;
+
+    private final int interval;
+    private final long[] addresses;
+    private final long commandsCount;
+    private final long endAddress;
+
+    // can be null
+    private final IntLongHashMap symbolCommandsCount;
+
+    private CommandOffsetIndex(final int interval,
+                               final long[] addresses,
+                               final long commandsCount,
+                               final long endAddress,
+                               final IntLongHashMap symbolCommandsCount) {
+
+        this.interval = interval;
+        this.addresses = addresses;
+        this.commandsCount = commandsCount;
+        this.endAddress = endAddress;
+        this.symbolCommandsCount = symbolCommandsCount;
+    }
+
+    /**
+     * Builds index by scanning existing corpus (only command codes are read).
+     */
+    public static CommandOffsetIndex scan(final CommandsCorpus corpus,
+                                          final int interval,
+                                          final boolean countSymbols) {
+
+        if (countSymbols && !corpus.hasSymbolId()) {
+            throw new IllegalArgumentException("Can not count symbols for single symbol corpus");
+        }
+
+        final Builder builder = new Builder(interval, countSymbols);
+        final CommandCursor cursor = corpus.newCursor();
+        while (cursor.next()) {
+            final CommandView view = cursor.view();
+            builder.onCommand(view.getAddress(), countSymbols ? view.getSymbolId() : 0);
+        }
+        return builder.build(corpus.getBuffer().getEndAddress());
+    }
+
+    public int getInterval() {
+        return interval;
+    }
+
+    public long getCommandsCount() {
+        return commandsCount;
+    }
+
+    public int getEntriesCount() {
+        return addresses.length;
+    }
+
+    /**
+     * @return address of command number (entryIndex * interval)
+     */
+    public long getEntryAddress(final int entryIndex) {
+        return addresses[entryIndex];
+    }
+
+    public boolean hasSymbolCounters() {
+        return symbolCommandsCount != null;
+    }
+
+    /**
+     * @return total number of commands for the symbol
+     */
+    public long getSymbolCommandsCount(final int symbolId) {
+        if (symbolCommandsCount == null) {
+            throw new IllegalStateException("Symbol counters were not collected");
+        }
+        return symbolCommandsCount.get(symbolId);
+    }
+
+    /**
+     * @return cursor, which returns command number commandIndex on the first next() call
+     */
+    public CommandCursor seek(final CommandsCorpus corpus, final long commandIndex) {
+        return newCursor(corpus, commandIndex, commandsCount);
+    }
+
+    /**
+     * @return cursor over commands [fromCommand, toCommand)
+     */
+    public CommandCursor newCursor(final CommandsCorpus corpus, final long fromCommand, final long toCommand) {
+
+        if (fromCommand < 0 || fromCommand > toCommand || toCommand > commandsCount) {
+            throw new IllegalArgumentException("Invalid commands range [" + fromCommand + ", " + toCommand + ") for " + commandsCount + " commands");
+        }
+
+        return new CommandCursor(corpus.getBuffer(), corpus.hasSymbolId(), addressOf(corpus, fromCommand), addressOf(corpus, toCommand));
+    }
+
+    /**
+     * Splits commands into ranges of (almost) equal number of commands.
+     *
+     * @return parts+1 command indexes, part i is [bounds[i], bounds[i+1])
+     */
+    public long[] splitEvenly(final int parts) {
+        if (parts <= 0) {
+            throw new IllegalArgumentException("Parts number should be positive: " + parts);
+        }
+        final long[] bounds = new long[parts + 1];
+        for (int i = 0; i <= parts; i++) {
+            bounds[i] = commandsCount * i / parts;
+        }
+        return bounds;
+    }
+
+    private long addressOf(final CommandsCorpus corpus, final long commandIndex) {
+
+        if (commandIndex == commandsCount) {
+            return endAddress;
+        }
+
+        final int entry = (int) (commandIndex / interval);
+        final int skip = (int) (commandIndex % interval);
+        final long entryAddress = addresses[entry];
+        if (skip == 0) {
+            return entryAddress;
+        }
+
+        final CommandCursor cursor = new CommandCursor(corpus.getBuffer(), corpus.hasSymbolId(), entryAddress, endAddress);
+        for (int i = 0; i < skip; i++) {
+            cursor.next();
+        }
+        return cursor.getNextAddress();
+    }
+
+    @Override
+    public String toString() {
+        return "CommandOffsetIndex{" +
+                "interval=" + interval +
+                ", entries=" + addresses.length +
+                ", commandsCount=" + commandsCount +
+                '}';
+    }
+
+    /**
+     * Receives address of every written command, in order. Not thread-safe.
+     */
+    public static final class Builder {
+
+        private final int interval;
+        private final LongArrayList addresses = new LongArrayList();
+        private final IntLongHashMap symbolCommandsCount;
+
+        private long commandsCount = 0;
+        private int untilNextEntry = 0;
+
+        public Builder(final int interval, final boolean countSymbols) {
+            if (interval <= 0) {
+                throw new IllegalArgumentException("Index interval should be positive: " + interval);
+            }
+            this.interval = interval;
+            this.symbolCommandsCount = countSymbols ? new IntLongHashMap() : null;
+        }
+
+        public void onCommand(final long address, final int symbolId) {
+            if (untilNextEntry == 0) {
+                addresses.add(address);
+                untilNextEntry = interval;
+            }
+            untilNextEntry--;
+            commandsCount++;
+            if (symbolCommandsCount != null) {
+                symbolCommandsCount.addToValue(symbolId, 1);
+            }
+        }
+
+        /**
+         * @param endAddress address after the last command
+         */
+        public CommandOffsetIndex build(final long endAddress) {
+            return new CommandOffsetIndex(interval, addresses.toArray(), commandsCount, endAddress, symbolCommandsCount);
+        }
+    }
+}
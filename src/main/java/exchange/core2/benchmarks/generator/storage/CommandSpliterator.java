@@ -0,0 +1,124 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.storage;
+
+import exchange.core2.orderbook.IOrderBook;
+
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Splits commands range on segment boundaries first, then on command boundaries inside a segment
+ * (found by skipping commands from the range start, reading only command codes).
+ */
+final class CommandSpliterator implements Spliterator<CommandView> {
+
+    // do not split ranges smaller than that
+    private static final int MIN_SPLIT_SIZE = 16 * 1024;
+
+    private final SegmentedBuffer buffer;
+    private final boolean hasSymbolId;
+    private final long endAddress;
+
+    private CommandCursor cursor;
+
+    CommandSpliterator(final SegmentedBuffer buffer,
+                       final boolean hasSymbolId,
+                       final long startAddress,
+                       final long endAddress) {
+
+        this.buffer = buffer;
+        this.hasSymbolId = hasSymbolId;
+        this.endAddress = endAddress;
+        this.cursor = new CommandCursor(buffer, hasSymbolId, startAddress, endAddress);
+    }
+
+    @Override
+    public boolean tryAdvance(final Consumer<? super CommandView> action) {
+        if (!cursor.next()) {
+            return false;
+        }
+        action.accept(cursor.view());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(final Consumer<? super CommandView> action) {
+        final CommandView view = cursor.view();
+        while (cursor.next()) {
+            action.accept(view);
+        }
+    }
+
+    @Override
+    public Spliterator<CommandView> trySplit() {
+
+        final long current = cursor.getNextAddress();
+        final int startSegment = SegmentedBuffer.segmentIndex(current);
+        final int startOffset = SegmentedBuffer.segmentOffset(current);
+        final int lastSegment = lastSegment();
+
+        final long splitAddress;
+        if (lastSegment > startSegment) {
+            // split on segment boundary
+            splitAddress = SegmentedBuffer.address((startSegment + lastSegment + 1) / 2, 0);
+        } else {
+            final int remaining = segmentLimit(startSegment) - startOffset;
+            if (remaining < MIN_SPLIT_SIZE) {
+                return null;
+            }
+            splitAddress = new CommandCursor(buffer, hasSymbolId, current, endAddress).skipTo(startOffset + remaining / 2);
+            if (SegmentedBuffer.segmentOffset(splitAddress) >= segmentLimit(startSegment)) {
+                return null;
+            }
+        }
+
+        cursor = new CommandCursor(buffer, hasSymbolId, splitAddress, endAddress);
+        return new CommandSpliterator(buffer, hasSymbolId, current, splitAddress);
+    }
+
+    @Override
+    public long estimateSize() {
+        final long current = cursor.getNextAddress();
+        final int startSegment = SegmentedBuffer.segmentIndex(current);
+        final int lastSegment = lastSegment();
+
+        long bytes = -SegmentedBuffer.segmentOffset(current);
+        for (int i = startSegment; i <= lastSegment; i++) {
+            bytes += segmentLimit(i);
+        }
+
+        // approximate, place order is the largest command
+        return Math.max(0, bytes) / ((hasSymbolId ? 5 : 1) + IOrderBook.fixedCommandSize(IOrderBook.COMMAND_PLACE_ORDER));
+    }
+
+    // not IMMUTABLE - command fields can be transformed in place while streaming (see CorpusTransformer)
+    @Override
+    public int characteristics() {
+        return ORDERED | NONNULL;
+    }
+
+    private int lastSegment() {
+        final int endSegment = SegmentedBuffer.segmentIndex(endAddress);
+        return (SegmentedBuffer.segmentOffset(endAddress) == 0 && endSegment > 0) ? endSegment - 1 : endSegment;
+    }
+
+    private int segmentLimit(final int segmentIndex) {
+        return (segmentIndex == SegmentedBuffer.segmentIndex(endAddress))
+                ? SegmentedBuffer.segmentOffset(endAddress)
+                : buffer.getSegmentLimit(segmentIndex);
+    }
+}
@@ -0,0 +1,146 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.storage;
+
+import exchange.core2.orderbook.IOrderBook;
+import org.agrona.DirectBuffer;
+
+/**
+ * Flyweight accessor of a single command. Valid only until the cursor (or spliterator) moves to the next command.
+ */
+public final class CommandView {
+
+    private final boolean hasSymbolId;
+    private final int headerSize;
+
+    private DirectBuffer buffer;
+    private int offset;
+    private long address;
+
+    CommandView(final boolean hasSymbolId) {
+        this.hasSymbolId = hasSymbolId;
+        this.headerSize = hasSymbolId ? 5 : 1;
+    }
+
+    void wrap(final DirectBuffer buffer, final int offset, final long address) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.address = address;
+    }
+
+    /**
+     * @return address of the command in the segmented buffer
+     */
+    public long getAddress() {
+        return address;
+    }
+
+    public byte getCommandCode() {
+        return buffer.getByte(offset);
+    }
+
+    /**
+     * @return symbol id, or -1 for single symbol streams (they do not have symbol id in the header)
+     */
+    public int getSymbolId() {
+        return hasSymbolId ? buffer.getInt(offset + 1) : -1;
+    }
+
+    public DirectBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getOffset() {
+        return offset;
+    }
+
+    public int getBodyOffset() {
+        return offset + headerSize;
+    }
+
+    public int getBodySize() {
+        return IOrderBook.fixedCommandSize(getCommandCode());
+    }
+
+    /**
+     * @return total command length including header
+     */
+    public int getLength() {
+        return headerSize + getBodySize();
+    }
+
+    public boolean isPlaceOrder() {
+        return getCommandCode() == IOrderBook.COMMAND_PLACE_ORDER;
+    }
+
+    /**
+     * @return uid of any command type
+     */
+    public long getUid() {
+        final int bodyOffset = offset + headerSize;
+        switch (getCommandCode()) {
+            case IOrderBook.COMMAND_PLACE_ORDER:
+                return buffer.getLong(bodyOffset + IOrderBook.PLACE_OFFSET_UID);
+            case IOrderBook.COMMAND_CANCEL_ORDER:
+                return buffer.getLong(bodyOffset + IOrderBook.CANCEL_OFFSET_UID);
+            case IOrderBook.COMMAND_MOVE_ORDER:
+                return buffer.getLong(bodyOffset + IOrderBook.MOVE_OFFSET_UID);
+            case IOrderBook.COMMAND_REDUCE_ORDER:
+                return buffer.getLong(bodyOffset + IOrderBook.REDUCE_OFFSET_UID);
+            default:
+                throw new IllegalStateException("Unknown command code " + getCommandCode());
+        }
+    }
+
+    // place order fields (only valid for place order commands)
+
+    public long getPlaceUid() {
+        return buffer.getLong(offset + headerSize + IOrderBook.PLACE_OFFSET_UID);
+    }
+
+    public long getPlaceOrderId() {
+        return buffer.getLong(offset + headerSize + IOrderBook.PLACE_OFFSET_ORDER_ID);
+    }
+
+    public long getPlacePrice() {
+        return buffer.getLong(offset + headerSize + IOrderBook.PLACE_OFFSET_PRICE);
+    }
+
+    public long getPlaceReservedBidPrice() {
+        return buffer.getLong(offset + headerSize + IOrderBook.PLACE_OFFSET_RESERVED_BID_PRICE);
+    }
+
+    public long getPlaceSize() {
+        return buffer.getLong(offset + headerSize + IOrderBook.PLACE_OFFSET_SIZE);
+    }
+
+    public byte getPlaceAction() {
+        return buffer.getByte(offset + headerSize + IOrderBook.PLACE_OFFSET_ACTION);
+    }
+
+    public byte getPlaceType() {
+        return buffer.getByte(offset + headerSize + IOrderBook.PLACE_OFFSET_TYPE);
+    }
+
+    @Override
+    public String toString() {
+        return "CommandView{" +
+                "address=" + address +
+                ", code=" + getCommandCode() +
+                ", symbolId=" + getSymbolId() +
+                '}';
+    }
+}
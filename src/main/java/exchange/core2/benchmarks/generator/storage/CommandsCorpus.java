@@ -0,0 +1,79 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.storage;
+
+import java.util.Spliterator;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Stateless view of a commands stream stored in {@link SegmentedBuffer}.
+ * Hands out any number of independent cursors and splittable iterators, so that a corpus can be processed by several threads without copying.
+ * <p>
+ * Merged streams have [code][symbolId][body] layout, single symbol streams have [code][body] layout.
+ * Commands are exposed through a flyweight {@link CommandView}, which should not be retained after moving to the next command.
+ */
+public final class CommandsCorpus {
+
+    private final SegmentedBuffer buffer;
+    private final boolean hasSymbolId;
+
+    private CommandsCorpus(final SegmentedBuffer buffer, final boolean hasSymbolId) {
+        this.buffer = buffer;
+        this.hasSymbolId = hasSymbolId;
+    }
+
+    public static CommandsCorpus merged(final SegmentedBuffer buffer) {
+        return new CommandsCorpus(buffer, true);
+    }
+
+    public static CommandsCorpus singleSymbol(final SegmentedBuffer buffer) {
+        return new CommandsCorpus(buffer, false);
+    }
+
+    public SegmentedBuffer getBuffer() {
+        return buffer;
+    }
+
+    public boolean hasSymbolId() {
+        return hasSymbolId;
+    }
+
+    public CommandCursor newCursor() {
+        return new CommandCursor(buffer, hasSymbolId, 0L, endAddress());
+    }
+
+    public Spliterator<CommandView> spliterator() {
+        return new CommandSpliterator(buffer, hasSymbolId, 0L, endAddress());
+    }
+
+    public Stream<CommandView> stream(final boolean parallel) {
+        return StreamSupport.stream(spliterator(), parallel);
+    }
+
+    public long countCommands() {
+        final CommandCursor cursor = newCursor();
+        long count = 0;
+        while (cursor.next()) {
+            count++;
+        }
+        return count;
+    }
+
+    private long endAddress() {
+        return buffer.getEndAddress();
+    }
+}
@@ -0,0 +1,347 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.storage;
+
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import static exchange.core2.benchmarks.generator.storage.CompressedCorpusWriter.*;
+
+/**
+ * Streaming reader of block-compressed corpus (see {@link CompressedCorpusWriter} for the layout).
+ * <p>
+ * Up to prefetchBlocks next blocks are read and decompressed concurrently by the executor,
+ * while the caller consumes blocks in order. Each block is returned as a single-segment {@link SegmentedBuffer},
+ * which can be wrapped into {@link CommandsCorpus}. Checksum of every block is verified.
+ * <p>
+ * Not thread-safe (but blocks returned by the reader can be used by any thread).
+ */
+public final class CompressedCorpusReader implements AutoCloseable {
+
+    // idle inflaters borrowed by decompressing threads, ended when reader is closed
+    private final Queue<Inflater> inflaters = new ConcurrentLinkedQueue<>();
+
+    private volatile boolean closed = false;
+
+    private final Path file;
+    private final FileChannel channel;
+    private final boolean hasSymbolId;
+    private final int commandsPerBlock;
+
+    private final long[] blockOffsets;
+    private final long[] firstCommands;
+    private final int[] uncompressedLengths;
+    private final int[] commandsCounts;
+
+    private final Executor executor;
+    private final int prefetchBlocks;
+    private final ArrayDeque<CompletableFuture<SegmentedBuffer>> pending = new ArrayDeque<>();
+    private int nextBlockToSubmit = 0;
+
+    private CompressedCorpusReader(final Path file,
+                                   final FileChannel channel,
+                                   final Executor executor,
+                                   final int prefetchBlocks) throws IOException {
+
+        this.file = file;
+        this.channel = channel;
+        this.executor = executor;
+        this.prefetchBlocks = prefetchBlocks;
+
+        final ByteBuffer header = readAt(0, HEADER_SIZE);
+        if (header.getInt() != MAGIC) {
+            throw new IllegalStateException("Not a compressed corpus file: " + file);
+        }
+        final int version = header.getInt();
+        if (version != VERSION) {
+            throw new IllegalStateException("Unsupported compressed corpus version " + version + " in " + file);
+        }
+        this.hasSymbolId = (header.getInt() & FLAG_HAS_SYMBOL_ID) != 0;
+        this.commandsPerBlock = header.getInt();
+
+        final ByteBuffer footer = readAt(channel.size() - FOOTER_SIZE, FOOTER_SIZE);
+        final long indexOffset = footer.getLong();
+        final int blocksCount = footer.getInt();
+        if (footer.getInt() != MAGIC) {
+            throw new IllegalStateException("Compressed corpus file is truncated: " + file);
+        }
+
+        this.blockOffsets = new long[blocksCount];
+        this.firstCommands = new long[blocksCount];
+        this.uncompressedLengths = new int[blocksCount];
+        this.commandsCounts = new int[blocksCount];
+
+        final ByteBuffer index = readAt(indexOffset, blocksCount * INDEX_ENTRY_SIZE);
+        for (int i = 0; i < blocksCount; i++) {
+            blockOffsets[i] = index.getLong();
+            firstCommands[i] = index.getLong();
+            uncompressedLengths[i] = index.getInt();
+            commandsCounts[i] = index.getInt();
+        }
+    }
+
+    /**
+     * @param executor       executor for reading and decompressing blocks
+     * @param prefetchBlocks number of blocks decompressed ahead of the consumer (normally 2-4x of executor threads)
+     */
+    public static CompressedCorpusReader open(final Path file,
+                                              final Executor executor,
+                                              final int prefetchBlocks) {
+
+        if (prefetchBlocks <= 0) {
+            throw new IllegalArgumentException("Prefetch blocks number should be positive: " + prefetchBlocks);
+        }
+
+        FileChannel channel = null;
+        try {
+            channel = FileChannel.open(file, StandardOpenOption.READ);
+            return new CompressedCorpusReader(file, channel, executor, prefetchBlocks);
+        } catch (IOException | RuntimeException ex) {
+            if (channel != null) {
+                try {
+                    channel.close();
+                } catch (IOException closeEx) {
+                    ex.addSuppressed(closeEx);
+                }
+            }
+            if (ex instanceof RuntimeException) {
+                throw (RuntimeException) ex;
+            }
+            throw new IllegalStateException("Can not open compressed corpus " + file, ex);
+        }
+    }
+
+    public boolean hasSymbolId() {
+        return hasSymbolId;
+    }
+
+    public int getCommandsPerBlock() {
+        return commandsPerBlock;
+    }
+
+    public int getBlocksCount() {
+        return blockOffsets.length;
+    }
+
+    public long getCommandsCount() {
+        final int n = blockOffsets.length;
+        return n == 0 ? 0 : firstCommands[n - 1] + commandsCounts[n - 1];
+    }
+
+    public long getFirstCommandIndex(final int blockIndex) {
+        return firstCommands[blockIndex];
+    }
+
+    public int getCommandsCount(final int blockIndex) {
+        return commandsCounts[blockIndex];
+    }
+
+    /**
+     * @return next block in order, or null if all blocks were consumed
+     */
+    public SegmentedBuffer nextBlock() {
+
+        ensureOpen();
+        fillPrefetchWindow();
+
+        final CompletableFuture<SegmentedBuffer> future = pending.poll();
+        if (future == null) {
+            return null;
+        }
+
+        final SegmentedBuffer block;
+        try {
+            block = future.join();
+        } catch (CompletionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw ex;
+        }
+
+        fillPrefetchWindow();
+        return block;
+    }
+
+    /**
+     * Reads all remaining blocks into a single buffer (one segment per block).
+     */
+    public SegmentedBuffer readRemaining() {
+
+        final List<UnsafeBuffer> segments = new ArrayList<>();
+        final List<Integer> limits = new ArrayList<>();
+
+        SegmentedBuffer block;
+        while ((block = nextBlock()) != null) {
+            segments.add(block.getSegment(0));
+            limits.add(block.getSegmentLimit(0));
+        }
+
+        if (segments.isEmpty()) {
+            segments.add(new UnsafeBuffer(new byte[0]));
+            limits.add(0);
+        }
+
+        return new SegmentedBuffer(segments.toArray(new UnsafeBuffer[0]), limits.stream().mapToInt(Integer::intValue).toArray());
+    }
+
+    /**
+     * Reads and decompresses single block in the calling thread (random access, prefetch window is not affected).
+     */
+    public SegmentedBuffer readBlock(final int blockIndex) {
+
+        ensureOpen();
+
+        Inflater inflater = null;
+        try {
+            final ByteBuffer blockHeader = readAt(blockOffsets[blockIndex], BLOCK_HEADER_SIZE);
+            final int compressedLength = blockHeader.getInt();
+            final int uncompressedLength = blockHeader.getInt();
+            final int commandsCount = blockHeader.getInt();
+            final int expectedCrc = blockHeader.getInt();
+
+            if (uncompressedLength != uncompressedLengths[blockIndex] || commandsCount != commandsCounts[blockIndex]) {
+                throw new IllegalStateException("Block " + blockIndex + " header does not match index in " + file);
+            }
+
+            // one extra byte is required by raw inflate
+            final byte[] compressed = new byte[compressedLength + 1];
+            final ByteBuffer compressedBuffer = ByteBuffer.wrap(compressed, 0, compressedLength);
+            readFully(blockOffsets[blockIndex] + BLOCK_HEADER_SIZE, compressedBuffer);
+
+            final byte[] uncompressed = new byte[uncompressedLength];
+            inflater = borrowInflater();
+            inflater.setInput(compressed, 0, compressed.length);
+            int length = 0;
+            while (length < uncompressedLength) {
+                final int n = inflater.inflate(uncompressed, length, uncompressedLength - length);
+                if (n == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                length += n;
+            }
+
+            if (length != uncompressedLength) {
+                throw new IllegalStateException("Block " + blockIndex + " decompressed into " + length + " bytes instead of " + uncompressedLength + " in " + file);
+            }
+
+            final CRC32 crc32 = new CRC32();
+            crc32.update(uncompressed, 0, uncompressedLength);
+            if ((int) crc32.getValue() != expectedCrc) {
+                throw new IllegalStateException("Checksum mismatch in block " + blockIndex + " of " + file);
+            }
+
+            return new SegmentedBuffer(new UnsafeBuffer[]{new UnsafeBuffer(uncompressed)}, new int[]{uncompressedLength});
+
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not read block " + blockIndex + " from " + file, ex);
+        } catch (DataFormatException ex) {
+            throw new IllegalStateException("Corrupted block " + blockIndex + " in " + file, ex);
+        } finally {
+            if (inflater != null) {
+                releaseInflater(inflater);
+            }
+        }
+    }
+
+    /**
+     * Waits for prefetched blocks (inflaters can not be ended while in use), then releases native inflater memory.
+     * Reader can not be used after closing.
+     */
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        pending.forEach(future -> future.handle((block, ex) -> null).join());
+        pending.clear();
+        Inflater inflater;
+        while ((inflater = inflaters.poll()) != null) {
+            inflater.end();
+        }
+        try {
+            channel.close();
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not close " + file, ex);
+        }
+    }
+
+    private void ensureOpen() {
+        if (closed) {
+            throw new IllegalStateException("Compressed corpus reader is closed: " + file);
+        }
+    }
+
+    private Inflater borrowInflater() {
+        final Inflater inflater = inflaters.poll();
+        if (inflater == null) {
+            return new Inflater(true);
+        }
+        inflater.reset();
+        return inflater;
+    }
+
+    private void releaseInflater(final Inflater inflater) {
+        if (closed) {
+            inflater.end();
+        } else {
+            inflaters.add(inflater);
+        }
+    }
+
+    private void fillPrefetchWindow() {
+        while (pending.size() < prefetchBlocks && nextBlockToSubmit < blockOffsets.length) {
+            final int blockIndex = nextBlockToSubmit++;
+            pending.add(CompletableFuture.supplyAsync(() -> readBlock(blockIndex), executor));
+        }
+    }
+
+    private ByteBuffer readAt(final long position, final int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        readFully(position, buffer);
+        buffer.flip();
+        return buffer;
+    }
+
+    // positional reads are safe to use concurrently
+    private void readFully(final long position, final ByteBuffer buffer) throws IOException {
+        long pos = position;
+        while (buffer.hasRemaining()) {
+            final int n = channel.read(buffer, pos);
+            if (n < 0) {
+                throw new IllegalStateException("Unexpected end of " + file + " at " + pos);
+            }
+            pos += n;
+        }
+    }
+}
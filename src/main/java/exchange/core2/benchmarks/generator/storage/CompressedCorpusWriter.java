@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.storage;
+
+import org.agrona.ExpandableArrayBuffer;
+import org.eclipse.collections.impl.list.mutable.primitive.IntArrayList;
+import org.eclipse.collections.impl.list.mutable.primitive.LongArrayList;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes commands corpus into block-compressed container.
+ * <p>
+ * Every block holds a fixed number of whole commands and is compressed independently (raw deflate),
+ * so blocks can be decompressed in parallel (see {@link CompressedCorpusReader}).
+ * <p>
+ * File layout (metadata is big-endian, commands are stored as is):
+ * <pre>
+ * header:  [int magic][int version][int flags][int commandsPerBlock]
+ * block:   [int compressedLength][int uncompressedLength][int commandsCount][int crc32 of uncompressed bytes][compressed bytes]
+ * index:   [long blockFileOffset][long firstCommandIndex][int uncompressedLength][int commandsCount] for every block
+ * footer:  [long indexFileOffset][int blocksCount][int magic]
+ * </pre>
+ */
+public final class CompressedCorpusWriter {
+
+    public static final int MAGIC = 0x45434243;
+    public static final int VERSION = 1;
+
+    public static final int FLAG_HAS_SYMBOL_ID = 1;
+
+    public static final int HEADER_SIZE = 16;
+    public static final int BLOCK_HEADER_SIZE = 16;
+    public static final int INDEX_ENTRY_SIZE = 24;
+    public static final int FOOTER_SIZE = 16;
+
+    public static final int DEFAULT_COMMANDS_PER_BLOCK = 16 * 1024;
+
+    /**
+     * @param compressionLevel deflate level, BEST_SPEED is normally enough as commands are highly repetitive
+     * @return number of written blocks
+     */
+    public static int write(final CommandsCorpus corpus,
+                            final Path file,
+                            final int commandsPerBlock,
+                            final int compressionLevel) {
+
+        if (commandsPerBlock <= 0) {
+            throw new IllegalArgumentException("Commands per block should be positive: " + commandsPerBlock);
+        }
+
+        final ExpandableArrayBuffer block = new ExpandableArrayBuffer(commandsPerBlock * 64);
+        final Deflater deflater = new Deflater(compressionLevel, true);
+        final CRC32 crc32 = new CRC32();
+        final ByteBuffer header = ByteBuffer.allocate(Math.max(HEADER_SIZE, BLOCK_HEADER_SIZE));
+
+        final LongArrayList blockOffsets = new LongArrayList();
+        final IntArrayList uncompressedLengths = new IntArrayList();
+        final IntArrayList commandsCounts = new IntArrayList();
+
+        byte[] compressed = new byte[commandsPerBlock * 64];
+
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+
+            header.clear();
+            header.putInt(MAGIC).putInt(VERSION).putInt(corpus.hasSymbolId() ? FLAG_HAS_SYMBOL_ID : 0).putInt(commandsPerBlock).flip();
+            writeFully(channel, header);
+
+            final CommandCursor cursor = corpus.newCursor();
+            int blockLength = 0;
+            int blockCommands = 0;
+            boolean hasNext = cursor.next();
+
+            while (hasNext) {
+
+                final CommandView view = cursor.view();
+                block.putBytes(blockLength, view.getBuffer(), view.getOffset(), view.getLength());
+                blockLength += view.getLength();
+                blockCommands++;
+
+                hasNext = cursor.next();
+
+                if (blockCommands == commandsPerBlock || !hasNext) {
+
+                    crc32.reset();
+                    crc32.update(block.byteArray(), 0, blockLength);
+
+                    deflater.reset();
+                    deflater.setInput(block.byteArray(), 0, blockLength);
+                    deflater.finish();
+                    int compressedLength = 0;
+                    while (!deflater.finished()) {
+                        if (compressedLength == compressed.length) {
+                            compressed = Arrays.copyOf(compressed, compressed.length * 2);
+                        }
+                        compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+                    }
+
+                    blockOffsets.add(channel.position());
+                    uncompressedLengths.add(blockLength);
+                    commandsCounts.add(blockCommands);
+
+                    header.clear();
+                    header.putInt(compressedLength).putInt(blockLength).putInt(blockCommands).putInt((int) crc32.getValue()).flip();
+                    writeFully(channel, header);
+                    writeFully(channel, ByteBuffer.wrap(compressed, 0, compressedLength));
+
+                    blockLength = 0;
+                    blockCommands = 0;
+                }
+            }
+
+            final int blocksCount = blockOffsets.size();
+            final long indexOffset = channel.position();
+            final ByteBuffer index = ByteBuffer.allocate(blocksCount * INDEX_ENTRY_SIZE + FOOTER_SIZE);
+            long firstCommand = 0;
+            for (int i = 0; i < blocksCount; i++) {
+                index.putLong(blockOffsets.get(i)).putLong(firstCommand).putInt(uncompressedLengths.get(i)).putInt(commandsCounts.get(i));
+                firstCommand += commandsCounts.get(i);
+            }
+            index.putLong(indexOffset).putInt(blocksCount).putInt(MAGIC).flip();
+            writeFully(channel, index);
+
+            return blocksCount;
+
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not write compressed corpus into " + file, ex);
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static void writeFully(final FileChannel channel, final ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+}
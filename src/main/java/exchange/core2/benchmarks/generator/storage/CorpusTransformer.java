@@ -0,0 +1,163 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.storage;
+
+import exchange.core2.orderbook.IOrderBook;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Applies {@link CommandFieldsTransform} to a corpus in place, without copying commands.
+ * <p>
+ * Commands are processed in parallel chunks (split on command boundaries), so one generated corpus
+ * can be adapted to different uid ranges, symbol ids and order ids at memory bandwidth.
+ * Files are transformed through memory mapping.
+ */
+public final class CorpusTransformer {
+
+    private static final Logger log = LoggerFactory.getLogger(CorpusTransformer.class);
+
+    // mapped segments should be less than 2GB
+    public static final int DEFAULT_MAPPED_SEGMENT_SIZE = 1 << 30;
+
+    /**
+     * Transforms all commands of the corpus in place.
+     */
+    public static void transform(final CommandsCorpus corpus,
+                                 final CommandFieldsTransform transform,
+                                 final boolean parallel) {
+
+        if (transform.transformsSymbolId() && !corpus.hasSymbolId()) {
+            throw new IllegalArgumentException("Single symbol corpus has no symbol ids to transform");
+        }
+
+        final boolean hasSymbolId = corpus.hasSymbolId();
+        corpus.stream(parallel).forEach(view -> transform.apply((MutableDirectBuffer) view.getBuffer(), view.getOffset(), hasSymbolId));
+    }
+
+    /**
+     * Transforms merged or single symbol commands file in place (memory-mapped), changes are forced to the storage device.
+     *
+     * @return number of transformed commands
+     */
+    public static long transformFile(final Path file,
+                                     final boolean hasSymbolId,
+                                     final CommandFieldsTransform transform,
+                                     final int maxSegmentSize) {
+
+        try (final FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+
+            final MappedCommands mapped = mapCommandsCounting(channel, hasSymbolId, maxSegmentSize);
+            final SegmentedBuffer buffer = mapped.buffer;
+            final CommandsCorpus corpus = hasSymbolId ? CommandsCorpus.merged(buffer) : CommandsCorpus.singleSymbol(buffer);
+
+            transform(corpus, transform, true);
+
+            for (int i = 0; i < buffer.getSegmentsCount(); i++) {
+                ((MappedByteBuffer) buffer.getSegment(i).byteBuffer()).force();
+            }
+
+            // counted while mapping, no need to scan again
+            final long commands = mapped.commands;
+            log.debug("Transformed {} commands in {} ({})", commands, file, transform);
+            return commands;
+
+        } catch (IOException ex) {
+            throw new IllegalStateException("Can not transform " + file, ex);
+        }
+    }
+
+    /**
+     * Maps commands file into segments, each segment ends on command boundary.
+     */
+    static SegmentedBuffer mapCommands(final FileChannel channel,
+                                       final boolean hasSymbolId,
+                                       final int maxSegmentSize) throws IOException {
+
+        return mapCommandsCounting(channel, hasSymbolId, maxSegmentSize).buffer;
+    }
+
+    private static MappedCommands mapCommandsCounting(final FileChannel channel,
+                                                      final boolean hasSymbolId,
+                                                      final int maxSegmentSize) throws IOException {
+
+        final int headerSize = hasSymbolId ? 5 : 1;
+        final int maxCommandSize = headerSize + IOrderBook.fixedCommandSize(IOrderBook.COMMAND_PLACE_ORDER);
+        if (maxSegmentSize < maxCommandSize) {
+            throw new IllegalArgumentException("Segment size " + maxSegmentSize + " is smaller than command size " + maxCommandSize);
+        }
+
+        final long size = channel.size();
+        final List<UnsafeBuffer> segments = new ArrayList<>();
+        final List<Integer> limits = new ArrayList<>();
+
+        long commands = 0;
+        long segmentStart = 0;
+        while (segmentStart < size || segments.isEmpty()) {
+
+            final int mapLength = (int) Math.min(maxSegmentSize, size - segmentStart);
+            final MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_WRITE, segmentStart, mapLength);
+            final UnsafeBuffer segment = new UnsafeBuffer(mapped);
+
+            // find last complete command within the mapped region
+            int limit = 0;
+            while (limit < mapLength) {
+                final int length = headerSize + IOrderBook.fixedCommandSize(segment.getByte(limit));
+                if (limit + length > mapLength) {
+                    break;
+                }
+                limit += length;
+                commands++;
+            }
+
+            if (limit == 0 && mapLength > 0) {
+                throw new IllegalStateException("Truncated command at file position " + segmentStart);
+            }
+
+            segments.add(segment);
+            limits.add(limit);
+            segmentStart += limit;
+
+            if (mapLength == 0) {
+                break;
+            }
+        }
+
+        final SegmentedBuffer buffer = new SegmentedBuffer(segments.toArray(new UnsafeBuffer[0]), limits.stream().mapToInt(Integer::intValue).toArray());
+        return new MappedCommands(buffer, commands);
+    }
+
+    private static final class MappedCommands {
+
+        private final SegmentedBuffer buffer;
+        private final long commands;
+
+        private MappedCommands(final SegmentedBuffer buffer, final long commands) {
+            this.buffer = buffer;
+            this.commands = commands;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.storage;
+
+import exchange.core2.orderbook.util.BufferWriter;
+import org.agrona.BufferUtil;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Stateless commands storage split into segments (direct memory for generated corpora, or a single heap segment for wrapped buffers).
+ * <p>
+ * Commands never cross segment boundaries. Position of a command is a 64-bit address: (segment index << 32) | offset.
+ * Each segment has its own limit, bytes after the limit are unused.
+ */
+public final class SegmentedBuffer {
+
+    private static final int WRITE_CHUNK_SIZE = 64 * 1024;
+
+    private final UnsafeBuffer[] segments;
+    private final int[] limits;
+    private final long size;
+
+    SegmentedBuffer(final UnsafeBuffer[] segments, final int[] limits) {
+        this.segments = segments;
+        this.limits = limits;
+        long s = 0;
+        for (final int limit : limits) {
+            s += limit;
+        }
+        this.size = s;
+    }
+
+    /**
+     * Creates single-segment view of already written bytes (no copy).
+     */
+    public static SegmentedBuffer wrap(final BufferWriter bufferWriter) {
+        final int length = bufferWriter.getWriterPosition();
+        return new SegmentedBuffer(
+                new UnsafeBuffer[]{new UnsafeBuffer(bufferWriter.getBuffer(), 0, length)},
+                new int[]{length});
+    }
+
+    public static long address(final int segmentIndex, final int offset) {
+        return ((long) segmentIndex << 32) | offset;
+    }
+
+    public static int segmentIndex(final long address) {
+        return (int) (address >>> 32);
+    }
+
+    public static int segmentOffset(final long address) {
+        return (int) address;
+    }
+
+    /**
+     * @return total number of bytes stored in all segments
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * @return address after the last byte of the last segment
+     */
+    public long getEndAddress() {
+        final int last = segments.length - 1;
+        return address(last, limits[last]);
+    }
+
+    public int getSegmentsCount() {
+        return segments.length;
+    }
+
+    public UnsafeBuffer getSegment(final int segmentIndex) {
+        return segments[segmentIndex];
+    }
+
+    public int getSegmentLimit(final int segmentIndex) {
+        return limits[segmentIndex];
+    }
+
+    public byte getByte(final long address) {
+        return segments[segmentIndex(address)].getByte(segmentOffset(address));
+    }
+
+    public int getInt(final long address) {
+        return segments[segmentIndex(address)].getInt(segmentOffset(address));
+    }
+
+    public long getLong(final long address) {
+        return segments[segmentIndex(address)].getLong(segmentOffset(address));
+    }
+
+    /**
+     * Writes content of all segments into the channel
+     */
+    public void writeTo(final WritableByteChannel channel) throws IOException {
+        final ByteBuffer chunk = ByteBuffer.allocate(WRITE_CHUNK_SIZE);
+        for (int i = 0; i < segments.length; i++) {
+            final UnsafeBuffer segment = segments[i];
+            for (int pos = 0; pos < limits[i]; ) {
+                final int len = Math.min(WRITE_CHUNK_SIZE, limits[i] - pos);
+                chunk.clear();
+                segment.getBytes(pos, chunk, len);
+                chunk.flip();
+                while (chunk.hasRemaining()) {
+                    channel.write(chunk);
+                }
+                pos += len;
+            }
+        }
+    }
+
+    public SegmentedBufferReader newReader() {
+        return new SegmentedBufferReader(this);
+    }
+
+    /**
+     * Releases direct memory segments. Buffer (and all readers) can not be used after that.
+     */
+    public void free() {
+        for (final UnsafeBuffer segment : segments) {
+            BufferUtil.free(segment);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "SegmentedBuffer{" +
+                "segments=" + segments.length +
+                ", size=" + size +
+                '}';
+    }
+}
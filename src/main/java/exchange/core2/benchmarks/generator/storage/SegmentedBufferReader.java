@@ -0,0 +1,134 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.storage;
+
+import exchange.core2.orderbook.util.BufferWriter;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+/**
+ * Sequential reader of {@link SegmentedBuffer}. Multi-byte values are never split between segments.
+ */
+public final class SegmentedBufferReader {
+
+    private final SegmentedBuffer buffer;
+
+    private int segmentIndex = -1;
+    private UnsafeBuffer segment;
+    private int limit = 0;
+    private int position = 0;
+
+    private long remaining;
+
+    SegmentedBufferReader(final SegmentedBuffer buffer) {
+        this.buffer = buffer;
+        this.remaining = buffer.getSize();
+    }
+
+    public long getSize() {
+        return buffer.getSize();
+    }
+
+    public long getRemainingSize() {
+        return remaining;
+    }
+
+    /**
+     * @return address of the next byte to read
+     */
+    public long getPosition() {
+        if (position == limit && remaining > 0) {
+            nextSegment();
+        }
+        return SegmentedBuffer.address(segmentIndex, position);
+    }
+
+    public byte readByte() {
+        if (position == limit) {
+            nextSegment();
+        }
+        final byte value = segment.getByte(position);
+        position++;
+        remaining--;
+        return value;
+    }
+
+    public int readInt() {
+        checkAvailable(4);
+        final int value = segment.getInt(position);
+        position += 4;
+        remaining -= 4;
+        return value;
+    }
+
+    public long readLong() {
+        checkAvailable(8);
+        final long value = segment.getLong(position);
+        position += 8;
+        remaining -= 8;
+        return value;
+    }
+
+    public void readBytes(final MutableDirectBuffer dst, final int dstOffset, final int length) {
+        checkAvailable(length);
+        dst.putBytes(dstOffset, segment, position, length);
+        position += length;
+        remaining -= length;
+    }
+
+    public void readBytesToWriter(final SegmentedBufferWriter writer, final int length) {
+        checkAvailable(length);
+        writer.appendBytes(segment, position, length);
+        position += length;
+        remaining -= length;
+    }
+
+    public void readBytesToWriter(final BufferWriter writer, final int length) {
+        checkAvailable(length);
+        int i = 0;
+        for (; i + 4 <= length; i += 4) {
+            writer.appendInt(segment.getInt(position + i));
+        }
+        for (; i < length; i++) {
+            writer.appendByte(segment.getByte(position + i));
+        }
+        position += length;
+        remaining -= length;
+    }
+
+    private void checkAvailable(final int length) {
+        if (position == limit) {
+            nextSegment();
+        }
+        if (position + length > limit) {
+            throw new IllegalStateException("Can not read " + length + " bytes at " + position + " of segment " + segmentIndex + " (limit " + limit + ")");
+        }
+    }
+
+    private void nextSegment() {
+        // skip empty segments
+        do {
+            segmentIndex++;
+            if (segmentIndex >= buffer.getSegmentsCount()) {
+                throw new IllegalStateException("End of buffer");
+            }
+            limit = buffer.getSegmentLimit(segmentIndex);
+        } while (limit == 0);
+
+        segment = buffer.getSegment(segmentIndex);
+        position = 0;
+    }
+}
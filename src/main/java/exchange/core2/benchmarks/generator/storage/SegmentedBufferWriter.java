@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.storage;
+
+import org.agrona.BufferUtil;
+import org.agrona.DirectBuffer;
+import org.agrona.MutableDirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Appends commands into cache-line aligned direct memory segments.
+ * Growing allocates a new segment, already written data is never copied.
+ * <p>
+ * Call {@link #beginRecord(int)} before writing a command, so that it is placed into a single segment.
+ */
+public final class SegmentedBufferWriter {
+
+    public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+    public static final int SEGMENT_ALIGNMENT = 64;
+
+    private final int segmentSize;
+
+    private final List<UnsafeBuffer> segments = new ArrayList<>();
+    private int[] limits = new int[16];
+
+    private UnsafeBuffer current;
+    private int position;
+
+    private long size = 0;
+
+    public SegmentedBufferWriter() {
+        this(DEFAULT_SEGMENT_SIZE);
+    }
+
+    public SegmentedBufferWriter(final int segmentSize) {
+        if (segmentSize < SEGMENT_ALIGNMENT || segmentSize % SEGMENT_ALIGNMENT != 0) {
+            throw new IllegalArgumentException("Segment size should be multiple of " + SEGMENT_ALIGNMENT);
+        }
+        this.segmentSize = segmentSize;
+        newSegment();
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    /**
+     * Switches to the next segment if the record of specified length does not fit into the current one.
+     */
+    public void beginRecord(final int length) {
+        if (length > segmentSize) {
+            throw new IllegalArgumentException("Record length " + length + " exceeds segment size " + segmentSize);
+        }
+        if (position + length > segmentSize) {
+            newSegment();
+        }
+    }
+
+    public void appendByte(final byte value) {
+        ensureCapacity(1);
+        current.putByte(position, value);
+        position++;
+        size++;
+    }
+
+    public void appendInt(final int value) {
+        ensureCapacity(4);
+        current.putInt(position, value);
+        position += 4;
+        size += 4;
+    }
+
+    public void appendLong(final long value) {
+        ensureCapacity(8);
+        current.putLong(position, value);
+        position += 8;
+        size += 8;
+    }
+
+    public void appendBytes(final DirectBuffer src, final int srcOffset, final int length) {
+        ensureCapacity(length);
+        current.putBytes(position, src, srcOffset, length);
+        position += length;
+        size += length;
+    }
+
+    /**
+     * Reserves space for a record of up to maxLength bytes, so that it can be encoded directly into the segment.
+     * Record should be written into the returned segment starting from {@link #getRecordOffset()},
+     * then {@link #commitRecord(int)} should be called with the actual length.
+     */
+    public MutableDirectBuffer reserveRecord(final int maxLength) {
+        beginRecord(maxLength);
+        return current;
+    }
+
+    public int getRecordOffset() {
+        return position;
+    }
+
+    public void commitRecord(final int length) {
+        if (position + length > segmentSize) {
+            throw new IllegalStateException("Record length " + length + " exceeds reserved space");
+        }
+        position += length;
+        size += length;
+    }
+
+    /**
+     * @return address of the next byte to be written
+     */
+    public long getWriterPosition() {
+        return SegmentedBuffer.address(segments.size() - 1, position);
+    }
+
+    /**
+     * @return total number of bytes written
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Creates view of the data written so far (data appended later is not visible in that view).
+     */
+    public SegmentedBuffer toBuffer() {
+        final int n = segments.size();
+        final int[] bufferLimits = Arrays.copyOf(limits, n);
+        bufferLimits[n - 1] = position;
+        return new SegmentedBuffer(segments.toArray(new UnsafeBuffer[0]), bufferLimits);
+    }
+
+    private void ensureCapacity(final int length) {
+        if (position + length > segmentSize) {
+            beginRecord(length);
+        }
+    }
+
+    /**
+     * Allocates cache-line aligned segment. Buffer wraps the whole allocated region (not a slice), so it can be freed explicitly.
+     */
+    private static UnsafeBuffer allocateSegment(final int segmentSize) {
+        final ByteBuffer byteBuffer = ByteBuffer.allocateDirect(segmentSize + SEGMENT_ALIGNMENT);
+        final long address = BufferUtil.address(byteBuffer);
+        final int offset = (int) (-address & (SEGMENT_ALIGNMENT - 1));
+        return new UnsafeBuffer(byteBuffer, offset, segmentSize);
+    }
+
+    private void newSegment() {
+        if (current != null) {
+            limits[segments.size() - 1] = position;
+        }
+        if (segments.size() == limits.length) {
+            limits = Arrays.copyOf(limits, limits.length * 2);
+        }
+        current = allocateSegment(segmentSize);
+        segments.add(current);
+        position = 0;
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.symbols;
+
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.orderbook.ISymbolSpecification;
+
+/**
+ * Flyweight ISymbolSpecification over one row of {@link SymbolTable}.
+ * Not thread-safe, single view should be re-positioned with {@link #wrap(int)} instead of creating new objects.
+ * <p>
+ * stateHash is identical to the one of equivalent {@link GeneratorSymbolSpec}.
+ */
+public final class SymbolSpecView implements ISymbolSpecification {
+
+    private final SymbolTable table;
+    private int idx;
+
+    SymbolSpecView(final SymbolTable table) {
+        this.table = table;
+    }
+
+    public SymbolSpecView wrap(final int idx) {
+        if (idx < 0 || idx >= table.size()) {
+            throw new IndexOutOfBoundsException("index " + idx + " out of table size " + table.size());
+        }
+        this.idx = idx;
+        return this;
+    }
+
+    public int getIndex() {
+        return idx;
+    }
+
+    @Override
+    public int getSymbolId() {
+        return table.symbolId[idx];
+    }
+
+    public GeneratorSymbolSpec.SymbolType getSymbolType() {
+        return table.getSymbolType(idx);
+    }
+
+    public int getBaseCurrency() {
+        return table.baseCurrency[idx];
+    }
+
+    public int getQuoteCurrency() {
+        return table.quoteCurrency[idx];
+    }
+
+    public long getBaseScaleK() {
+        return table.baseScaleK[idx];
+    }
+
+    public long getQuoteScaleK() {
+        return table.quoteScaleK[idx];
+    }
+
+    public long getTakerFee() {
+        return table.takerFee[idx];
+    }
+
+    public long getMakerFee() {
+        return table.makerFee[idx];
+    }
+
+    public long getMarginBuy() {
+        return table.marginBuy[idx];
+    }
+
+    public long getMarginSell() {
+        return table.marginSell[idx];
+    }
+
+    public double getWeight() {
+        return table.weight[idx];
+    }
+
+    @Override
+    public boolean isExchangeType() {
+        return getSymbolType() == GeneratorSymbolSpec.SymbolType.CURRENCY_EXCHANGE_PAIR;
+    }
+
+    @Override
+    public int stateHash() {
+        return table.stateHash(idx);
+    }
+
+    @Override
+    public String toString() {
+        return "SymbolSpecView{idx=" + idx + ", " + table.toSpec(idx) + '}';
+    }
+}
@@ -0,0 +1,231 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.symbols;
+
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.benchmarks.generator.currencies.CurrencyRatesMatrix;
+import org.apache.commons.math3.util.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Columnar symbol universe: one primitive array per attribute, indexed by symbol position.
+ * Millions of symbols are kept in a handful of arrays instead of millions of spec objects,
+ * use {@link SymbolSpecView} when an ISymbolSpecification is required.
+ * <p>
+ * Symbol ids are ascending (but not necessarily contiguous).
+ */
+public final class SymbolTable {
+
+    private static final GeneratorSymbolSpec.SymbolType[] SYMBOL_TYPES = GeneratorSymbolSpec.SymbolType.values();
+
+    private final int size;
+
+    final int[] symbolId;
+    final byte[] symbolType;
+    final int[] baseCurrency;
+    final int[] quoteCurrency;
+    final long[] baseScaleK;
+    final long[] quoteScaleK;
+    final long[] takerFee;
+    final long[] makerFee;
+    final long[] marginBuy;
+    final long[] marginSell;
+    final double[] weight;
+
+    SymbolTable(final int size) {
+        this.size = size;
+        this.symbolId = new int[size];
+        this.symbolType = new byte[size];
+        this.baseCurrency = new int[size];
+        this.quoteCurrency = new int[size];
+        this.baseScaleK = new long[size];
+        this.quoteScaleK = new long[size];
+        this.takerFee = new long[size];
+        this.makerFee = new long[size];
+        this.marginBuy = new long[size];
+        this.marginSell = new long[size];
+        this.weight = new double[size];
+    }
+
+    public static SymbolTable fromWeightedSpecs(final List<Pair<GeneratorSymbolSpec, Double>> specs) {
+
+        final SymbolTable table = new SymbolTable(specs.size());
+
+        for (int i = 0; i < specs.size(); i++) {
+            final Pair<GeneratorSymbolSpec, Double> pair = specs.get(i);
+            final GeneratorSymbolSpec spec = pair.getFirst();
+            if (i > 0 && spec.getSymbolId() <= table.symbolId[i - 1]) {
+                throw new IllegalArgumentException("symbol ids must be ascending, found " + spec.getSymbolId() + " after " + table.symbolId[i - 1]);
+            }
+            table.set(i,
+                    spec.getSymbolId(),
+                    spec.getSymbolType(),
+                    spec.getBaseCurrency(),
+                    spec.getQuoteCurrency(),
+                    spec.getBaseScaleK(),
+                    spec.getQuoteScaleK(),
+                    spec.getTakerFee(),
+                    spec.getMakerFee(),
+                    spec.getMarginBuy(),
+                    spec.getMarginSell(),
+                    pair.getSecond());
+        }
+
+        return table;
+    }
+
+    void set(final int idx,
+             final int symbolId,
+             final GeneratorSymbolSpec.SymbolType symbolType,
+             final int baseCurrency,
+             final int quoteCurrency,
+             final long baseScaleK,
+             final long quoteScaleK,
+             final long takerFee,
+             final long makerFee,
+             final long marginBuy,
+             final long marginSell,
+             final double weight) {
+
+        this.symbolId[idx] = symbolId;
+        this.symbolType[idx] = (byte) symbolType.ordinal();
+        this.baseCurrency[idx] = baseCurrency;
+        this.quoteCurrency[idx] = quoteCurrency;
+        this.baseScaleK[idx] = baseScaleK;
+        this.quoteScaleK[idx] = quoteScaleK;
+        this.takerFee[idx] = takerFee;
+        this.makerFee[idx] = makerFee;
+        this.marginBuy[idx] = marginBuy;
+        this.marginSell[idx] = marginSell;
+        this.weight[idx] = weight;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * @return index of the symbol or -1 if not found
+     */
+    public int indexOf(final int symbolId) {
+        final int idx = Arrays.binarySearch(this.symbolId, symbolId);
+        return idx >= 0 ? idx : -1;
+    }
+
+    public int getSymbolId(final int idx) {
+        return symbolId[idx];
+    }
+
+    public GeneratorSymbolSpec.SymbolType getSymbolType(final int idx) {
+        return SYMBOL_TYPES[symbolType[idx]];
+    }
+
+    public int getBaseCurrency(final int idx) {
+        return baseCurrency[idx];
+    }
+
+    public int getQuoteCurrency(final int idx) {
+        return quoteCurrency[idx];
+    }
+
+    public long getBaseScaleK(final int idx) {
+        return baseScaleK[idx];
+    }
+
+    public long getQuoteScaleK(final int idx) {
+        return quoteScaleK[idx];
+    }
+
+    public long getTakerFee(final int idx) {
+        return takerFee[idx];
+    }
+
+    public long getMakerFee(final int idx) {
+        return makerFee[idx];
+    }
+
+    public long getMarginBuy(final int idx) {
+        return marginBuy[idx];
+    }
+
+    public long getMarginSell(final int idx) {
+        return marginSell[idx];
+    }
+
+    public double getWeight(final int idx) {
+        return weight[idx];
+    }
+
+    public int stateHash(final int idx) {
+        return GeneratorSymbolSpec.hash(
+                symbolId[idx],
+                SYMBOL_TYPES[symbolType[idx]],
+                baseCurrency[idx],
+                quoteCurrency[idx],
+                baseScaleK[idx],
+                quoteScaleK[idx],
+                takerFee[idx],
+                makerFee[idx],
+                marginBuy[idx],
+                marginSell[idx]);
+    }
+
+    /**
+     * Fair price of the symbol in quote price steps according to currency rates
+     */
+    public long fairPrice(final int idx, final CurrencyRatesMatrix rates) {
+        return rates.symbolPrice(baseCurrency[idx], quoteCurrency[idx], baseScaleK[idx], quoteScaleK[idx]);
+    }
+
+    /**
+     * Creates reusable flyweight view, positioned at the first symbol.
+     */
+    public SymbolSpecView newView() {
+        return new SymbolSpecView(this);
+    }
+
+    /**
+     * Materializes single symbol (for the code still working with spec objects, e.g. order book instances).
+     */
+    public GeneratorSymbolSpec toSpec(final int idx) {
+        return new GeneratorSymbolSpec(
+                symbolId[idx],
+                SYMBOL_TYPES[symbolType[idx]],
+                baseCurrency[idx],
+                quoteCurrency[idx],
+                baseScaleK[idx],
+                quoteScaleK[idx],
+                takerFee[idx],
+                makerFee[idx],
+                marginBuy[idx],
+                marginSell[idx]);
+    }
+
+    /**
+     * Materializes whole table in the format accepted by MultiSymbolOrdersGenerator.
+     */
+    public List<Pair<GeneratorSymbolSpec, Double>> toWeightedSpecs() {
+        final List<Pair<GeneratorSymbolSpec, Double>> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(Pair.create(toSpec(i), weight[i]));
+        }
+        return result;
+    }
+
+}
@@ -16,6 +16,8 @@
 package exchange.core2.benchmarks.generator.symbols;
 
 import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.benchmarks.generator.util.GenerationPhase;
+import exchange.core2.benchmarks.generator.util.PhaseMeters;
 import exchange.core2.benchmarks.generator.util.RandomUtils;
 import org.apache.commons.math3.distribution.EnumeratedDistribution;
 import org.apache.commons.math3.random.JDKRandomGenerator;
@@ -33,6 +35,13 @@ public final class SymbolsGenerator {
     private static final long[] ALLOWED_PRICE_STEPS = new long[]{1, 5, 10, 25, 50, 100};
     private static final long[] ALLOWED_LOT_SIZES = new long[]{1, 10, 100};
 
+    // symbols generated by one parallel task (each chunk has own random generator)
+    private static final int TABLE_CHUNK_SIZE = 65536;
+
+    // same parameters as RandomUtils.paretoDistribution
+    private static final double PARETO_SCALE = 0.001;
+    private static final double PARETO_SHAPE = 1.5;
+
 
     public static List<Pair<GeneratorSymbolSpec, Double>> generateRandomSymbols(final int num,
                                                                                 final Map<Integer, Double> currenciesWeights,
@@ -129,6 +138,133 @@ public final class SymbolsGenerator {
         return normalize(weightSum, result);
     }
 
+    public static List<Pair<GeneratorSymbolSpec, Double>> generateRandomSymbols(final int num,
+                                                                                final Map<Integer, Double> currenciesWeights,
+                                                                                final EnumSet<GeneratorSymbolSpec.SymbolType> allowedSymbolTypes,
+                                                                                final int symbolIdShift,
+                                                                                final int seed,
+                                                                                final PhaseMeters phaseMeters) {
+
+        try (PhaseMeters.PhaseMeter meter = PhaseMeters.start(phaseMeters, GenerationPhase.SYMBOLS)) {
+            meter.addCommands(num);
+            return generateRandomSymbols(num, currenciesWeights, allowedSymbolTypes, symbolIdShift, seed);
+        }
+    }
+
+    /**
+     * Generates columnar symbol table in parallel (chunks of symbols are generated independently).
+     * Same distributions as {@link #generateRandomSymbols}, but different random sequence, so tables are
+     * not equal to the lists produced by generateRandomSymbols for the same seed.
+     * Result depends only on parameters (not on number of threads).
+     */
+    public static SymbolTable generateRandomSymbolTable(final int num,
+                                                       final Map<Integer, Double> currenciesWeights,
+                                                       final EnumSet<GeneratorSymbolSpec.SymbolType> allowedSymbolTypes,
+                                                       final int symbolIdShift,
+                                                       final int seed) {
+
+        if (currenciesWeights.size() < 2) {
+            throw new IllegalArgumentException("need more than 2 currencies");
+        }
+        if (allowedSymbolTypes.isEmpty()) {
+            throw new IllegalArgumentException("allowedSymbolTypes enumset can not be empty");
+        }
+
+        // build index to currency mapper
+        final int[] idxToCurrency = currenciesWeights.keySet().stream().mapToInt(a -> a).toArray();
+        final double[] currencyWeight = Arrays.stream(idxToCurrency).mapToDouble(currenciesWeights::get).toArray();
+
+        // cumulative weights for quote currency sampling (binary search instead of EnumeratedDistribution)
+        final double[] cumulativeWeight = new double[idxToCurrency.length];
+        double acc = 0.0;
+        for (int i = 0; i < cumulativeWeight.length; i++) {
+            acc += currencyWeight[i];
+            cumulativeWeight[i] = acc;
+        }
+        final double totalCurrencyWeight = acc;
+
+        final GeneratorSymbolSpec.SymbolType[] types = allowedSymbolTypes.toArray(new GeneratorSymbolSpec.SymbolType[0]);
+
+        final SymbolTable table = new SymbolTable(num);
+        final int chunks = (num + TABLE_CHUNK_SIZE - 1) / TABLE_CHUNK_SIZE;
+
+        // pareto weight multiplied by currency weights, not normalized yet
+        final double[] chunkSums = new double[chunks];
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+
+            final Random random = new Random(seed + chunk * 177277L);
+            final int from = chunk * TABLE_CHUNK_SIZE;
+            final int to = Math.min(num, from + TABLE_CHUNK_SIZE);
+
+            double chunkSum = 0.0;
+            for (int i = from; i < to; i++) {
+
+                // quote currency is weighted
+                final int index1 = sampleIndex(cumulativeWeight, random.nextDouble() * totalCurrencyWeight);
+                final int quoteCurrency = idxToCurrency[index1];
+
+                // base currency is evenly distributed (with gap at index1)
+                final int index2raw = random.nextInt(idxToCurrency.length - 1);
+                final int index2 = index2raw != index1 ? index2raw : index2raw + 1;
+                final int baseCurrency = idxToCurrency[index2];
+
+                final GeneratorSymbolSpec.SymbolType type = types.length == 1 ? types[0] : types[random.nextInt(types.length)];
+
+                // taker fee >= maker fee
+                final long makerFee = random.nextInt(1000);
+                final long takerFee = makerFee + random.nextInt(500);
+
+                // margin (very low to avoid NSF)
+                final boolean futures = type == GeneratorSymbolSpec.SymbolType.FUTURES_CONTRACT;
+                final long marginBuy = futures ? random.nextInt(100) + 1L : 0L;
+                final long marginSell = futures ? random.nextInt(100) + 1L : 0L;
+
+                final long baseScaleK = ALLOWED_LOT_SIZES[random.nextInt(ALLOWED_LOT_SIZES.length)];
+                final long quoteScaleK = ALLOWED_PRICE_STEPS[random.nextInt(ALLOWED_PRICE_STEPS.length)];
+
+                // inverse CDF of Pareto distribution (1-u is in (0,1])
+                final double pareto = PARETO_SCALE / Math.pow(1.0 - random.nextDouble(), 1.0 / PARETO_SHAPE);
+                final double weight = pareto * currencyWeight[index1] * currencyWeight[index2];
+                chunkSum += weight;
+
+                table.set(i, symbolIdShift + i, type, baseCurrency, quoteCurrency, baseScaleK, quoteScaleK,
+                        takerFee, makerFee, marginBuy, marginSell, weight);
+            }
+            chunkSums[chunk] = chunkSum;
+        });
+
+        // added sequentially in chunk order (parallel reduction order would depend on ForkJoin pool)
+        double sum = 0.0;
+        for (final double chunkSum : chunkSums) {
+            sum += chunkSum;
+        }
+        final double weightSum = sum;
+
+        IntStream.range(0, chunks).parallel().forEach(chunk -> {
+            final int from = chunk * TABLE_CHUNK_SIZE;
+            final int to = Math.min(num, from + TABLE_CHUNK_SIZE);
+            for (int i = from; i < to; i++) {
+                table.weight[i] /= weightSum;
+            }
+        });
+
+        return table;
+    }
+
+    private static int sampleIndex(final double[] cumulativeWeight, final double x) {
+        int low = 0;
+        int high = cumulativeWeight.length - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (cumulativeWeight[mid] <= x) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
     private static List<Pair<GeneratorSymbolSpec, Double>> normalize(double weightSum,
                                                                      List<Pair<GeneratorSymbolSpec, Double>> list) {
 
@@ -0,0 +1,70 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.transfers;
+
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+
+/**
+ * Binary layout of fixed-size transfer command (native byte order):
+ * [long transferId][long sourceAccount][long destinationAccount][int currency][long amount]
+ * [int destinationCurrency][long destinationAmount]
+ * <p>
+ * currency and amount are debited from the source account, destinationAmount (amount converted into
+ * destinationCurrency) is credited to the destination account. Both are equal for same-currency transfers.
+ */
+public final class TransferCommand {
+
+    public static final int OFFSET_TRANSFER_ID = 0;
+    public static final int OFFSET_SOURCE_ACCOUNT = 8;
+    public static final int OFFSET_DESTINATION_ACCOUNT = 16;
+    public static final int OFFSET_CURRENCY = 24;
+    public static final int OFFSET_AMOUNT = 28;
+    public static final int OFFSET_DESTINATION_CURRENCY = 36;
+    public static final int OFFSET_DESTINATION_AMOUNT = 40;
+
+    public static final int SIZE = 48;
+
+    private TransferCommand() {
+    }
+
+    public static long getTransferId(final SegmentedBuffer buffer, final long address) {
+        return buffer.getLong(address + OFFSET_TRANSFER_ID);
+    }
+
+    public static long getSourceAccount(final SegmentedBuffer buffer, final long address) {
+        return buffer.getLong(address + OFFSET_SOURCE_ACCOUNT);
+    }
+
+    public static long getDestinationAccount(final SegmentedBuffer buffer, final long address) {
+        return buffer.getLong(address + OFFSET_DESTINATION_ACCOUNT);
+    }
+
+    public static int getCurrency(final SegmentedBuffer buffer, final long address) {
+        return buffer.getInt(address + OFFSET_CURRENCY);
+    }
+
+    public static long getAmount(final SegmentedBuffer buffer, final long address) {
+        return buffer.getLong(address + OFFSET_AMOUNT);
+    }
+
+    public static int getDestinationCurrency(final SegmentedBuffer buffer, final long address) {
+        return buffer.getInt(address + OFFSET_DESTINATION_CURRENCY);
+    }
+
+    public static long getDestinationAmount(final SegmentedBuffer buffer, final long address) {
+        return buffer.getLong(address + OFFSET_DESTINATION_AMOUNT);
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.transfers;
+
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+
+public final class TransfersGenResult {
+
+    private final SegmentedBuffer transfers;
+    private final int numTransfers;
+    private final int[] transfersPerPartition;
+
+    // initial balance for every account (same order as accounts array), null if balances were not tracked
+    private final long[] initialBalances;
+
+    // true if accounts ran out of funds before the requested number of transfers was generated
+    private final boolean budgetExhausted;
+
+    public TransfersGenResult(SegmentedBuffer transfers, int numTransfers, int[] transfersPerPartition, long[] initialBalances, boolean budgetExhausted) {
+        this.transfers = transfers;
+        this.numTransfers = numTransfers;
+        this.transfersPerPartition = transfersPerPartition;
+        this.initialBalances = initialBalances;
+        this.budgetExhausted = budgetExhausted;
+    }
+
+    public SegmentedBuffer getTransfers() {
+        return transfers;
+    }
+
+    public int getNumTransfers() {
+        return numTransfers;
+    }
+
+    public int[] getTransfersPerPartition() {
+        return transfersPerPartition;
+    }
+
+    public long[] getInitialBalances() {
+        return initialBalances;
+    }
+
+    /**
+     * @return true if fewer transfers than requested were generated because all funded source accounts were drained
+     */
+    public boolean isBudgetExhausted() {
+        return budgetExhausted;
+    }
+}
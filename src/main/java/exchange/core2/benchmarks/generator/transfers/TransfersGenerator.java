@@ -0,0 +1,361 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.transfers;
+
+import exchange.core2.benchmarks.generator.currencies.CurrencyRatesMatrix;
+import exchange.core2.benchmarks.generator.orders.RandomCollectionsMerger;
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+import exchange.core2.benchmarks.generator.storage.SegmentedBufferReader;
+import exchange.core2.benchmarks.generator.storage.SegmentedBufferWriter;
+import exchange.core2.benchmarks.generator.util.ExecutionTime;
+import org.apache.commons.math3.random.JDKRandomGenerator;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.function.LongToIntFunction;
+
+/**
+ * Generates transfer commands between accounts created by ClientsCurrencyAccountsGenerator.generateAccountsForTransfers.
+ * <p>
+ * Accounts are split into deterministic partitions (account index modulo number of partitions),
+ * each partition generates transfers from its own accounts only, in parallel.
+ * Partition streams are merged like order commands, so the result depends only on accounts and configuration.
+ * <p>
+ * Balance tracking is conservative: incoming transfers are not credited (they can come from other partitions in any order),
+ * so no transfer overdraws the source account regardless of how it is interleaved with others.
+ * If all funded accounts of a partition are drained, the partition stops early and the result is marked as budget exhausted.
+ */
+public final class TransfersGenerator {
+
+    private static final Logger log = LoggerFactory.getLogger(TransfersGenerator.class);
+
+    // random attempts to find a suitable (funded, having counterparty) source account before scanning owned accounts
+    private static final int MAX_PICK_ATTEMPTS = 64;
+
+    public static TransfersGenResult generateTransfers(final long[] accounts,
+                                                       final LongToIntFunction currencyExtractor,
+                                                       final TransfersGeneratorConfig config) {
+
+        if (accounts.length < 2) {
+            throw new IllegalArgumentException("At least 2 accounts required");
+        }
+
+        final int partitions = Math.min(config.getPartitions(), accounts.length);
+
+        try (ExecutionTime ignore = new ExecutionTime(t -> log.debug("Generated {} transfers ({} partitions) in {}", config.getNumTransfers(), partitions, t))) {
+
+            final AccountGroups groups = new AccountGroups(accounts, currencyExtractor, config.getHotAccountsFraction(), config.getRates());
+
+            final long[] balances;
+            if (config.isTrackBalances()) {
+                balances = new long[accounts.length];
+                Arrays.fill(balances, config.getInitialBalance());
+            } else {
+                balances = null;
+            }
+
+            final List<CompletableFuture<SegmentedBuffer>> futures = new ArrayList<>(partitions);
+            for (int p = 0; p < partitions; p++) {
+                final int partition = p;
+                final int partitionTransfers = config.getNumTransfers() / partitions + (p < config.getNumTransfers() % partitions ? 1 : 0);
+                futures.add(CompletableFuture.supplyAsync(() -> generatePartition(
+                        accounts,
+                        groups,
+                        balances,
+                        partition,
+                        partitions,
+                        partitionTransfers,
+                        config)));
+            }
+
+            final List<SegmentedBuffer> partitionBuffers = new ArrayList<>(partitions);
+            final int[] transfersPerPartition = new int[partitions];
+            int numTransfers = 0;
+            for (int p = 0; p < partitions; p++) {
+                try {
+                    final SegmentedBuffer buffer = futures.get(p).get();
+                    partitionBuffers.add(buffer);
+                    transfersPerPartition[p] = (int) (buffer.getSize() / TransferCommand.SIZE);
+                    numTransfers += transfersPerPartition[p];
+                } catch (InterruptedException | ExecutionException ex) {
+                    throw new IllegalStateException("Exception while generating transfers for partition " + p, ex);
+                }
+            }
+
+            final boolean budgetExhausted = numTransfers < config.getNumTransfers();
+            if (budgetExhausted) {
+                log.warn("Balances budget exhausted: generated {} transfers instead of {}", numTransfers, config.getNumTransfers());
+            }
+
+            final SegmentedBufferWriter mergedWriter = new SegmentedBufferWriter(config.getSegmentSize());
+            final List<TransferSource> sources = new ArrayList<>(partitions);
+            partitionBuffers.forEach(buf -> sources.add(new TransferSource(buf.newReader(), mergedWriter)));
+
+            RandomCollectionsMerger.merge(sources, new JDKRandomGenerator(config.getSeed()));
+
+            partitionBuffers.forEach(SegmentedBuffer::free);
+
+            final long[] initialBalances = balances != null ? new long[accounts.length] : null;
+            if (initialBalances != null) {
+                Arrays.fill(initialBalances, config.getInitialBalance());
+            }
+
+            return new TransfersGenResult(mergedWriter.toBuffer(), numTransfers, transfersPerPartition, initialBalances, budgetExhausted);
+        }
+    }
+
+    private static SegmentedBuffer generatePartition(final long[] accounts,
+                                                     final AccountGroups groups,
+                                                     final long[] balances,
+                                                     final int partition,
+                                                     final int partitions,
+                                                     final int numTransfers,
+                                                     final TransfersGeneratorConfig config) {
+
+        final Random rand = new Random(config.getSeed() + partition * 177277L);
+        final SegmentedBufferWriter writer = new SegmentedBufferWriter(config.getSegmentSize());
+
+        // source accounts owned by this partition (indexes)
+        final int ownedNum = (accounts.length - partition + partitions - 1) / partitions;
+        final int[] owned = new int[ownedNum];
+        for (int i = 0; i < ownedNum; i++) {
+            owned[i] = partition + i * partitions;
+        }
+        final int ownedHot = hotCount(ownedNum, config.getHotAccountsFraction());
+        final double hotTraffic = config.getHotTrafficFraction();
+
+        for (int k = 0; k < numTransfers; k++) {
+
+            int src = -1;
+            int dst = -1;
+            for (int attempt = 0; attempt < MAX_PICK_ATTEMPTS; attempt++) {
+
+                final int candidate = owned[pickSkewed(ownedNum, ownedHot, hotTraffic, rand)];
+                if (balances != null && balances[candidate] == 0) {
+                    continue;
+                }
+
+                final int counterparty = config.isSameCurrencyOnly()
+                        ? groups.pickSameCurrency(candidate, hotTraffic, rand)
+                        : groups.pickAny(hotTraffic, rand);
+
+                if (counterparty >= 0 && counterparty != candidate) {
+                    src = candidate;
+                    dst = counterparty;
+                    break;
+                }
+            }
+
+            if (src < 0) {
+                // hot accounts are likely drained - deterministic scan of remaining owned accounts
+                src = findFundedAccount(owned, groups, balances, config.isSameCurrencyOnly(), rand.nextInt(ownedNum));
+                if (src < 0) {
+                    log.debug("Partition {} exhausted balances budget after {} of {} transfers", partition, k, numTransfers);
+                    break;
+                }
+                dst = config.isSameCurrencyOnly()
+                        ? groups.pickSameCurrencyExcept(src, hotTraffic, rand)
+                        : groups.pickAnyExcept(src, hotTraffic, rand);
+            }
+
+            long amount = 1 + rand.nextInt(config.getMaxAmount());
+            if (balances != null) {
+                amount = Math.min(amount, balances[src]);
+                balances[src] -= amount;
+            }
+
+            writer.beginRecord(TransferCommand.SIZE);
+            writer.appendLong((long) k * partitions + partition);
+            writer.appendLong(accounts[src]);
+            writer.appendLong(accounts[dst]);
+            writer.appendInt(groups.currency(src));
+            writer.appendLong(amount);
+            writer.appendInt(groups.currency(dst));
+            writer.appendLong(groups.convert(amount, src, dst));
+        }
+
+        return writer.toBuffer();
+    }
+
+    /**
+     * @return first funded owned account having a counterparty (starting from position start, wrapping around), or -1
+     */
+    private static int findFundedAccount(final int[] owned,
+                                         final AccountGroups groups,
+                                         final long[] balances,
+                                         final boolean sameCurrencyOnly,
+                                         final int start) {
+
+        for (int i = 0; i < owned.length; i++) {
+            final int candidate = owned[(start + i) % owned.length];
+            if ((balances == null || balances[candidate] != 0)
+                    && (!sameCurrencyOnly || groups.hasSameCurrencyCounterparty(candidate))) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    private static int hotCount(final int size, final double hotAccountsFraction) {
+        return Math.max(1, (int) Math.ceil(size * hotAccountsFraction));
+    }
+
+    /**
+     * @return index in range [0,size), first hotSize indexes receive hotTraffic fraction of picks (plus their uniform share)
+     */
+    private static int pickSkewed(final int size, final int hotSize, final double hotTraffic, final Random rand) {
+        return rand.nextDouble() < hotTraffic ? rand.nextInt(hotSize) : rand.nextInt(size);
+    }
+
+    /**
+     * Read-only account indexes grouped by currency (shared by all partitions).
+     */
+    private static final class AccountGroups {
+
+        private final int[] currencies;
+        private final int[] groupOfAccount;
+
+        // rates matrix index of the account currency (null if rates are not provided)
+        private final int[] rateIndexes;
+        private final CurrencyRatesMatrix rates;
+        private final int[][] groupMembers;
+        private final int[] groupHot;
+        private final int allHot;
+
+        private AccountGroups(final long[] accounts,
+                              final LongToIntFunction currencyExtractor,
+                              final double hotAccountsFraction,
+                              final CurrencyRatesMatrix rates) {
+
+            this.currencies = new int[accounts.length];
+            this.groupOfAccount = new int[accounts.length];
+            this.rates = rates;
+            this.rateIndexes = rates != null ? new int[accounts.length] : null;
+
+            final IntIntHashMap currencyToGroup = new IntIntHashMap();
+            final List<int[]> sizes = new ArrayList<>();
+            for (int i = 0; i < accounts.length; i++) {
+                final int currency = currencyExtractor.applyAsInt(accounts[i]);
+                currencies[i] = currency;
+                final int group = currencyToGroup.getIfAbsentPut(currency, currencyToGroup.size());
+                if (group == sizes.size()) {
+                    sizes.add(new int[1]);
+                }
+                sizes.get(group)[0]++;
+                groupOfAccount[i] = group;
+                if (rates != null) {
+                    final int rateIndex = rates.indexOf(currency);
+                    if (rateIndex < 0) {
+                        throw new IllegalArgumentException("No rate for currency " + currency + " of account " + accounts[i]);
+                    }
+                    rateIndexes[i] = rateIndex;
+                }
+            }
+
+            this.groupMembers = new int[sizes.size()][];
+            this.groupHot = new int[sizes.size()];
+            for (int g = 0; g < groupMembers.length; g++) {
+                groupMembers[g] = new int[sizes.get(g)[0]];
+                groupHot[g] = hotCount(groupMembers[g].length, hotAccountsFraction);
+            }
+
+            final int[] fill = new int[groupMembers.length];
+            for (int i = 0; i < accounts.length; i++) {
+                final int g = groupOfAccount[i];
+                groupMembers[g][fill[g]++] = i;
+            }
+
+            this.allHot = hotCount(accounts.length, hotAccountsFraction);
+        }
+
+        private int currency(final int accountIdx) {
+            return currencies[accountIdx];
+        }
+
+        /**
+         * @return amount in source account currency converted into destination account currency
+         */
+        private long convert(final long amount, final int srcIdx, final int dstIdx) {
+            return currencies[srcIdx] == currencies[dstIdx] ? amount : rates.convert(amount, rateIndexes[srcIdx], rateIndexes[dstIdx]);
+        }
+
+        /**
+         * @return account index with the same currency, or -1 if account is the only one in its currency
+         */
+        private int pickSameCurrency(final int accountIdx, final double hotTraffic, final Random rand) {
+            final int g = groupOfAccount[accountIdx];
+            final int[] members = groupMembers[g];
+            if (members.length < 2) {
+                return -1;
+            }
+            return members[pickSkewed(members.length, groupHot[g], hotTraffic, rand)];
+        }
+
+        private boolean hasSameCurrencyCounterparty(final int accountIdx) {
+            return groupMembers[groupOfAccount[accountIdx]].length > 1;
+        }
+
+        /**
+         * @return account index with the same currency, other than accountIdx (group should have at least 2 accounts)
+         */
+        private int pickSameCurrencyExcept(final int accountIdx, final double hotTraffic, final Random rand) {
+            final int counterparty = pickSameCurrency(accountIdx, hotTraffic, rand);
+            if (counterparty != accountIdx) {
+                return counterparty;
+            }
+            final int[] members = groupMembers[groupOfAccount[accountIdx]];
+            return members[0] != accountIdx ? members[0] : members[1];
+        }
+
+        private int pickAny(final double hotTraffic, final Random rand) {
+            return pickSkewed(currencies.length, allHot, hotTraffic, rand);
+        }
+
+        private int pickAnyExcept(final int accountIdx, final double hotTraffic, final Random rand) {
+            final int counterparty = pickAny(hotTraffic, rand);
+            return counterparty != accountIdx ? counterparty : (accountIdx + 1) % currencies.length;
+        }
+    }
+
+    private static final class TransferSource implements RandomCollectionsMerger.CommandSource {
+
+        private final SegmentedBufferReader reader;
+        private final SegmentedBufferWriter writer;
+
+        private TransferSource(SegmentedBufferReader reader, SegmentedBufferWriter writer) {
+            this.reader = reader;
+            this.writer = writer;
+        }
+
+        @Override
+        public long getRemainingSize() {
+            return reader.getRemainingSize();
+        }
+
+        @Override
+        public void copyCommand() {
+            writer.beginRecord(TransferCommand.SIZE);
+            reader.readBytesToWriter(writer, TransferCommand.SIZE);
+        }
+    }
+}
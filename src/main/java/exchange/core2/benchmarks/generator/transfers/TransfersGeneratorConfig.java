@@ -0,0 +1,158 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.transfers;
+
+import exchange.core2.benchmarks.generator.currencies.CurrencyRatesMatrix;
+
+public final class TransfersGeneratorConfig {
+
+    private final int numTransfers;
+    private final int partitions;
+
+    // hot accounts skew: hotTrafficFraction of picks go to hotAccountsFraction of accounts
+    private final double hotAccountsFraction;
+    private final double hotTrafficFraction;
+
+    // destination account must have the same currency as source account
+    private final boolean sameCurrencyOnly;
+
+    // converts amounts of cross-currency transfers (required if sameCurrencyOnly=false)
+    private final CurrencyRatesMatrix rates;
+
+    // if true - every source account starts with initialBalance and is never overdrawn
+    private final boolean trackBalances;
+    private final long initialBalance;
+
+    private final int maxAmount;
+    private final int segmentSize;
+    private final int seed;
+
+    public TransfersGeneratorConfig(int numTransfers,
+                                    int partitions,
+                                    double hotAccountsFraction,
+                                    double hotTrafficFraction,
+                                    boolean sameCurrencyOnly,
+                                    boolean trackBalances,
+                                    long initialBalance,
+                                    int maxAmount,
+                                    int segmentSize,
+                                    int seed,
+                                    CurrencyRatesMatrix rates) {
+
+        if (!sameCurrencyOnly && rates == null) {
+            throw new IllegalArgumentException("Currency rates are required for cross-currency transfers");
+        }
+        if (numTransfers < 0 || partitions < 1 || maxAmount < 1 || segmentSize < TransferCommand.SIZE) {
+            throw new IllegalArgumentException("Invalid transfers generator configuration");
+        }
+        if (hotAccountsFraction <= 0.0 || hotAccountsFraction > 1.0 || hotTrafficFraction < 0.0 || hotTrafficFraction > 1.0) {
+            throw new IllegalArgumentException("Hot accounts fractions should be in range (0,1]");
+        }
+
+        this.numTransfers = numTransfers;
+        this.partitions = partitions;
+        this.hotAccountsFraction = hotAccountsFraction;
+        this.hotTrafficFraction = hotTrafficFraction;
+        this.sameCurrencyOnly = sameCurrencyOnly;
+        this.rates = rates;
+        this.trackBalances = trackBalances;
+        this.initialBalance = initialBalance;
+        this.maxAmount = maxAmount;
+        this.segmentSize = segmentSize;
+        this.seed = seed;
+    }
+
+    /**
+     * Same-currency transfers only (no rates required) or cross-currency transfers without rates (rejected).
+     */
+    public TransfersGeneratorConfig(int numTransfers,
+                                    int partitions,
+                                    double hotAccountsFraction,
+                                    double hotTrafficFraction,
+                                    boolean sameCurrencyOnly,
+                                    boolean trackBalances,
+                                    long initialBalance,
+                                    int maxAmount,
+                                    int segmentSize,
+                                    int seed) {
+
+        this(numTransfers, partitions, hotAccountsFraction, hotTrafficFraction, sameCurrencyOnly, trackBalances,
+                initialBalance, maxAmount, segmentSize, seed, null);
+    }
+
+    public int getNumTransfers() {
+        return numTransfers;
+    }
+
+    public int getPartitions() {
+        return partitions;
+    }
+
+    public double getHotAccountsFraction() {
+        return hotAccountsFraction;
+    }
+
+    public double getHotTrafficFraction() {
+        return hotTrafficFraction;
+    }
+
+    public boolean isSameCurrencyOnly() {
+        return sameCurrencyOnly;
+    }
+
+    /**
+     * @return currency rates, can be null for same-currency transfers
+     */
+    public CurrencyRatesMatrix getRates() {
+        return rates;
+    }
+
+    public boolean isTrackBalances() {
+        return trackBalances;
+    }
+
+    public long getInitialBalance() {
+        return initialBalance;
+    }
+
+    public int getMaxAmount() {
+        return maxAmount;
+    }
+
+    public int getSegmentSize() {
+        return segmentSize;
+    }
+
+    public int getSeed() {
+        return seed;
+    }
+
+    @Override
+    public String toString() {
+        return "TransfersGeneratorConfig{" +
+                "numTransfers=" + numTransfers +
+                ", partitions=" + partitions +
+                ", hotAccountsFraction=" + hotAccountsFraction +
+                ", hotTrafficFraction=" + hotTrafficFraction +
+                ", sameCurrencyOnly=" + sameCurrencyOnly +
+                ", trackBalances=" + trackBalances +
+                ", initialBalance=" + initialBalance +
+                ", maxAmount=" + maxAmount +
+                ", segmentSize=" + segmentSize +
+                ", seed=" + seed +
+                '}';
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.util;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.SingleWriterRecorder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Records latencies from multiple threads without locks (one {@link SingleWriterRecorder} per thread).
+ * <p>
+ * Each {@link #sampleInterval()} call takes interval histograms of all threads, merges them into a combined interval
+ * histogram and into the total histogram, keeps the interval summary for the report,
+ * and optionally writes the combined interval histogram in standard HdrHistogram log format.
+ * Normally sampling is scheduled every second, so that GC spikes, warm-up and saturation are visible over time.
+ * Sampling is serialized, {@link #close()} cancels scheduled sampling and waits for an in-flight sample.
+ */
+public final class LatencyIntervalRecorder implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(LatencyIntervalRecorder.class);
+
+    private final long highestTrackableValue;
+    private final int numberOfSignificantValueDigits;
+
+    private final List<ThreadRecorder> recorders = new CopyOnWriteArrayList<>();
+
+    // guarded by this
+    private final Histogram total;
+    private final List<Map<String, String>> intervalReports = new ArrayList<>();
+    private final List<Long> intervalCounts = new ArrayList<>();
+
+    // can be null
+    private final HistogramLogWriter logWriter;
+
+    // guarded by this
+    private ScheduledFuture<?> scheduledSampling;
+    private boolean closed = false;
+
+    /**
+     * @param logStream stream for HdrHistogram interval log (can be null)
+     */
+    public LatencyIntervalRecorder(final long highestTrackableValue,
+                                   final int numberOfSignificantValueDigits,
+                                   final OutputStream logStream) {
+
+        this.highestTrackableValue = highestTrackableValue;
+        this.numberOfSignificantValueDigits = numberOfSignificantValueDigits;
+        this.total = new Histogram(highestTrackableValue, numberOfSignificantValueDigits);
+        if (logStream != null) {
+            final long startTimeMs = System.currentTimeMillis();
+            logWriter = new HistogramLogWriter(logStream);
+            logWriter.outputLogFormatVersion();
+            logWriter.outputStartTime(startTimeMs);
+            logWriter.setBaseTime(startTimeMs);
+            logWriter.outputLegend();
+        } else {
+            logWriter = null;
+        }
+    }
+
+    /**
+     * Creates recorder for a single writer thread. Can be called at any time.
+     * Recorder should be closed when the thread finishes, so it is not sampled anymore.
+     */
+    public ThreadRecorder newThreadRecorder() {
+        final ThreadRecorder recorder = new ThreadRecorder(new SingleWriterRecorder(highestTrackableValue, numberOfSignificantValueDigits), highestTrackableValue);
+        recorders.add(recorder);
+        return recorder;
+    }
+
+    /**
+     * Merges interval histograms of all threads.
+     *
+     * @return combined histogram of the interval
+     */
+    public synchronized Histogram sampleInterval() {
+
+        if (closed) {
+            throw new IllegalStateException("Latency recorder is closed");
+        }
+
+        final List<Histogram> threadIntervals = new ArrayList<>(recorders.size());
+        for (final ThreadRecorder recorder : recorders) {
+            // checked before taking the interval, so values recorded before close are not lost
+            final boolean closed = recorder.closed;
+            final Histogram threadInterval = recorder.recorder.getIntervalHistogram(recorder.recycled);
+            recorder.recycled = threadInterval;
+            threadIntervals.add(threadInterval);
+            if (closed) {
+                recorders.remove(recorder);
+            }
+        }
+
+        final Histogram interval = new Histogram(highestTrackableValue, numberOfSignificantValueDigits);
+        final long nowMs = System.currentTimeMillis();
+        interval.setStartTimeStamp(nowMs);
+        interval.setEndTimeStamp(nowMs);
+        LatencyTools.mergeInto(interval, threadIntervals);
+
+        total.add(interval);
+        intervalReports.add(LatencyTools.createLatencyReportFast(interval));
+        intervalCounts.add(interval.getTotalCount());
+
+        if (logWriter != null) {
+            logWriter.outputIntervalHistogram(interval);
+        }
+
+        return interval;
+    }
+
+    /**
+     * Samples intervals periodically using provided scheduler, until the recorder is closed.
+     */
+    public synchronized ScheduledFuture<?> schedule(final ScheduledExecutorService scheduler,
+                                                    final long period,
+                                                    final TimeUnit timeUnit) {
+
+        if (closed) {
+            throw new IllegalStateException("Latency recorder is closed");
+        }
+        if (scheduledSampling != null) {
+            throw new IllegalStateException("Sampling is already scheduled");
+        }
+
+        scheduledSampling = scheduler.scheduleAtFixedRate(() -> {
+            try {
+                synchronized (this) {
+                    // task can start after close() cancelled it
+                    if (!closed) {
+                        sampleInterval();
+                    }
+                }
+            } catch (Exception ex) {
+                log.error("Can not sample latency interval", ex);
+            }
+        }, period, period, timeUnit);
+
+        return scheduledSampling;
+    }
+
+    /**
+     * @return number of thread recorders sampled (closed ones are removed by the next sampling)
+     */
+    public int getThreadRecordersCount() {
+        return recorders.size();
+    }
+
+    /**
+     * @return histogram of all sampled intervals
+     */
+    public Histogram getTotalHistogram() {
+        return total;
+    }
+
+    public synchronized int getIntervalsCount() {
+        return intervalReports.size();
+    }
+
+    public synchronized List<Map<String, String>> getIntervalReports() {
+        return Collections.unmodifiableList(new ArrayList<>(intervalReports));
+    }
+
+    /**
+     * @return one line per sampled interval, followed by the total line
+     */
+    public synchronized List<String> createReport() {
+        final List<String> lines = new ArrayList<>(intervalReports.size() + 1);
+        for (int i = 0; i < intervalReports.size(); i++) {
+            lines.add(String.format("#%d count=%d %s", i, intervalCounts.get(i), intervalReports.get(i)));
+        }
+        lines.add(String.format("total count=%d %s", total.getTotalCount(), LatencyTools.createLatencyReportFast(total)));
+        return lines;
+    }
+
+    /**
+     * Cancels scheduled sampling, samples remaining values and closes the log.
+     * An in-flight scheduled sample completes before the final one (sampling holds the same monitor).
+     */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        if (scheduledSampling != null) {
+            scheduledSampling.cancel(false);
+        }
+        sampleInterval();
+        closed = true;
+        if (logWriter != null) {
+            logWriter.close();
+        }
+    }
+
+    /**
+     * Lock-free recorder, should be used by a single thread only.
+     * Closed recorder is sampled one last time and then removed.
+     */
+    public static final class ThreadRecorder implements AutoCloseable {
+
+        private final SingleWriterRecorder recorder;
+        private final long highestTrackableValue;
+
+        // reused by sampling thread
+        private Histogram recycled;
+
+        private volatile boolean closed = false;
+
+        private ThreadRecorder(final SingleWriterRecorder recorder, final long highestTrackableValue) {
+            this.recorder = recorder;
+            this.highestTrackableValue = highestTrackableValue;
+        }
+
+        /**
+         * Records value, values above the highest trackable one are recorded as the highest trackable value.
+         */
+        public void recordValue(final long value) {
+            recorder.recordValue(Math.min(value, highestTrackableValue));
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
@@ -18,6 +18,7 @@ package exchange.core2.benchmarks.generator.util;
 import org.HdrHistogram.Histogram;
 
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.Map;
 
@@ -32,6 +33,27 @@ public final class LatencyTools {
         return fmt;
     }
 
+    /**
+     * Adds histograms (e.g. interval histograms recorded by different threads) into target histogram.
+     * Target time range is extended to cover all non-empty source ranges.
+     */
+    public static Histogram mergeInto(final Histogram target, final Collection<Histogram> sources) {
+        long startTimeMs = Long.MAX_VALUE;
+        long endTimeMs = 0;
+        for (final Histogram source : sources) {
+            target.add(source);
+            if (source.getStartTimeStamp() != Long.MAX_VALUE) {
+                startTimeMs = Math.min(startTimeMs, source.getStartTimeStamp());
+            }
+            endTimeMs = Math.max(endTimeMs, source.getEndTimeStamp());
+        }
+        if (startTimeMs != Long.MAX_VALUE) {
+            target.setStartTimeStamp(startTimeMs);
+            target.setEndTimeStamp(endTimeMs);
+        }
+        return target;
+    }
+
     public static String formatNanos(long ns) {
         float value = ns / 1000f;
         String timeUnit = "µs";
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2018-2021 Maksim Zheravin
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package exchange.core2.benchmarks.generator.util;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Accumulates wall time, thread CPU time and allocated bytes per generation phase.
+ * <p>
+ * Every {@link PhaseMeter} measures the thread it was started on (ThreadMXBean), so phases running in parallel
+ * (e.g. per-symbol generation tasks) should start separate meters inside each task - they are summed up
+ * (including wall time, so for parallel phases it is total time spent by all threads).
+ * For CLIENTS and SYMBOLS phases generated accounts and symbols are counted as commands.
+ * Allocation measurement requires HotSpot com.sun.management.ThreadMXBean, otherwise reported as 0.
+ */
+public final class PhaseMeters {
+
+    private static final ThreadMXBean THREAD_MX_BEAN = ManagementFactory.getThreadMXBean();
+
+    private final EnumMap<GenerationPhase, PhaseTotals> totals = new EnumMap<>(GenerationPhase.class);
+
+    public PhaseMeters() {
+        for (GenerationPhase phase : GenerationPhase.values()) {
+            totals.put(phase, new PhaseTotals());
+        }
+    }
+
+    /**
+     * Starts measuring phase on the current thread, should be closed on the same thread.
+     */
+    public PhaseMeter start(final GenerationPhase phase) {
+        return new PhaseMeter(totals.get(phase));
+    }
+
+    /**
+     * Null-safe helper for optional meters, returns meter that does not measure anything if meters is null.
+     */
+    public static PhaseMeter start(final PhaseMeters meters, final GenerationPhase phase) {
+        return meters != null ? meters.start(phase) : new PhaseMeter(null);
+    }
+
+    public long getWallTimeNs(final GenerationPhase phase) {
+        return totals.get(phase).wallTimeNs.sum();
+    }
+
+    public long getCpuTimeNs(final GenerationPhase phase) {
+        return totals.get(phase).cpuTimeNs.sum();
+    }
+
+    public long getAllocatedBytes(final GenerationPhase phase) {
+        return totals.get(phase).allocatedBytes.sum();
+    }
+
+    public long getCommands(final GenerationPhase phase) {
+        return totals.get(phase).commands.sum();
+    }
+
+    /**
+     * @return allocated bytes per generated command, or NaN if phase did not report commands
+     */
+    public double getAllocatedBytesPerCommand(final GenerationPhase phase) {
+        final long commands = getCommands(phase);
+        return commands == 0 ? Double.NaN : (double) getAllocatedBytes(phase) / commands;
+    }
+
+    /**
+     * Compares allocated bytes per command against budgets.
+     *
+     * @param maxBytesPerCommand - budget per phase (phases without budget or without commands are not checked)
+     * @return list of violations (empty if all phases are within budget)
+     */
+    public List<String> checkAllocationBudgets(final Map<GenerationPhase, Double> maxBytesPerCommand) {
+        final List<String> violations = new ArrayList<>();
+        maxBytesPerCommand.forEach((phase, budget) -> {
+            final double actual = getAllocatedBytesPerCommand(phase);
+            if (!Double.isNaN(actual) && actual > budget) {
+                violations.add(String.format("%s: %.1f bytes/command exceeds budget %.1f", phase, actual, budget));
+            }
+        });
+        return violations;
+    }
+
+    public String report() {
+        final StringBuilder sb = new StringBuilder();
+        totals.forEach((phase, t) -> {
+            final long commands = t.commands.sum();
+            if (t.invocations.sum() == 0) {
+                return;
+            }
+            sb.append(String.format("%s: wall=%s cpu=%s allocated=%dMB",
+                    phase,
+                    LatencyTools.formatNanos(t.wallTimeNs.sum()),
+                    LatencyTools.formatNanos(t.cpuTimeNs.sum()),
+                    t.allocatedBytes.sum() >> 20));
+            if (commands > 0) {
+                sb.append(String.format(" commands=%d (%.1f bytes/command)", commands, (double) t.allocatedBytes.sum() / commands));
+            }
+            sb.append('\n');
+        });
+        return sb.toString();
+    }
+
+    private static long currentThreadAllocatedBytes() {
+        if (THREAD_MX_BEAN instanceof com.sun.management.ThreadMXBean) {
+            return ((com.sun.management.ThreadMXBean) THREAD_MX_BEAN).getThreadAllocatedBytes(Thread.currentThread().getId());
+        }
+        return 0L;
+    }
+
+    private static long currentThreadCpuTime() {
+        return THREAD_MX_BEAN.isCurrentThreadCpuTimeSupported() ? THREAD_MX_BEAN.getCurrentThreadCpuTime() : 0L;
+    }
+
+    private static final class PhaseTotals {
+        private final LongAdder invocations = new LongAdder();
+        private final LongAdder wallTimeNs = new LongAdder();
+        private final LongAdder cpuTimeNs = new LongAdder();
+        private final LongAdder allocatedBytes = new LongAdder();
+        private final LongAdder commands = new LongAdder();
+    }
+
+    public static final class PhaseMeter implements AutoCloseable {
+
+        private final PhaseTotals totals;
+        private final long startWallNs;
+        private final long startCpuNs;
+        private final long startAllocated;
+        private long commands = 0;
+
+        private PhaseMeter(final PhaseTotals totals) {
+            this.totals = totals;
+            this.startAllocated = totals != null ? currentThreadAllocatedBytes() : 0L;
+            this.startCpuNs = totals != null ? currentThreadCpuTime() : 0L;
+            this.startWallNs = totals != null ? System.nanoTime() : 0L;
+        }
+
+        /**
+         * Number of commands produced by the phase (used for normalization).
+         */
+        public void addCommands(final long commands) {
+            this.commands += commands;
+        }
+
+        @Override
+        public void close() {
+            if (totals == null) {
+                return;
+            }
+            final long wallNs = System.nanoTime() - startWallNs;
+            final long cpuNs = currentThreadCpuTime() - startCpuNs;
+            final long allocated = currentThreadAllocatedBytes() - startAllocated;
+            totals.invocations.increment();
+            totals.wallTimeNs.add(wallNs);
+            totals.cpuTimeNs.add(cpuNs);
+            totals.allocatedBytes.add(allocated);
+            totals.commands.add(commands);
+        }
+    }
+}
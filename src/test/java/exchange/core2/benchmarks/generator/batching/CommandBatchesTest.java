@@ -0,0 +1,69 @@
+package exchange.core2.benchmarks.generator.batching;
+
+import exchange.core2.benchmarks.generator.storage.CommandCursor;
+import exchange.core2.benchmarks.generator.storage.CommandsCorpus;
+import exchange.core2.benchmarks.generator.storage.SegmentedBufferWriter;
+import exchange.core2.orderbook.IOrderBook;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CommandBatchesTest {
+
+    @Test
+    public void shouldPackCommandsIntoBatches() {
+
+        final int numCommands = 10_000;
+        final SegmentedBufferWriter writer = new SegmentedBufferWriter(64 * 1024);
+        for (int i = 0; i < numCommands; i++) {
+            final byte code = (i % 2 == 0) ? IOrderBook.COMMAND_PLACE_ORDER : IOrderBook.COMMAND_MOVE_ORDER;
+            final int bodySize = IOrderBook.fixedCommandSize(code);
+            writer.beginRecord(5 + bodySize);
+            writer.appendByte(code);
+            writer.appendInt(i % 100);
+            for (int j = 0; j < bodySize; j++) {
+                writer.appendByte((byte) i);
+            }
+        }
+        final CommandsCorpus corpus = CommandsCorpus.merged(writer.toBuffer());
+
+        final CommandBatches batches = CommandBatches.build(corpus, 1024, 16, 1000);
+        assertThat(batches.getCommandsCount(), is((long) numCommands));
+
+        final UnsafeBuffer ringSlot = new UnsafeBuffer(new byte[1024]);
+        final CommandCursor cursor = corpus.newCursor();
+
+        long expectedSequence = 1000;
+        for (int b = 0; b < batches.getBatchesCount(); b++) {
+
+            assertThat(batches.batchOffset(b) % 64, is(0));
+
+            final int copied = batches.publishTo(b, ringSlot, 0);
+            assertThat(copied % 64, is(0));
+
+            final int count = CommandBatchHeader.count(ringSlot, 0);
+            assertThat(count > 0 && count <= 16, is(true));
+            assertThat(CommandBatchHeader.firstSequence(ringSlot, 0), is(expectedSequence));
+            assertThat(CommandBatchHeader.symbolsTouched(ringSlot, 0), is(count));
+
+            // commands are copied as is
+            int offset = CommandBatchHeader.HEADER_SIZE;
+            for (int i = 0; i < count; i++) {
+                assertThat(cursor.next(), is(true));
+                final int length = cursor.view().getLength();
+                for (int j = 0; j < length; j++) {
+                    assertThat(ringSlot.getByte(offset + j), is(cursor.view().getBuffer().getByte(cursor.view().getOffset() + j)));
+                }
+                offset += length;
+            }
+            assertThat(CommandBatchHeader.payloadLength(ringSlot, 0), is(offset - CommandBatchHeader.HEADER_SIZE));
+
+            expectedSequence += count;
+        }
+
+        assertThat(cursor.next(), is(false));
+        assertThat(expectedSequence, is(1000L + numCommands));
+    }
+}
@@ -0,0 +1,75 @@
+package exchange.core2.benchmarks.generator.currencies;
+
+import org.junit.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.core.Is.is;
+
+public class CurrencyRatesMatrixTest {
+
+    @Test
+    public void shouldMatchMapMatrixAndKeepCrossRatesConsistent() {
+
+        final Map<Integer, Double> currencies = CurrenciesGenerator.randomCurrencies(50, 20, 122342);
+        final Map<Integer, Double> rates = CurrenciesGenerator.generateRandomRates(currencies.keySet().stream(), 2.2, 4242342);
+
+        final Map<Integer, Map<Integer, Double>> ratesMap = CurrenciesGenerator.createRatesMatrix(rates);
+        final CurrencyRatesMatrix matrix = CurrenciesGenerator.createDenseRatesMatrix(rates);
+
+        assertThat(matrix.size(), is(50));
+
+        ratesMap.forEach((from, row) -> row.forEach((to, rate) ->
+                assertThat(matrix.getRateByIds(from, to), is(rate))));
+
+        for (int a = 0; a < matrix.size(); a++) {
+            assertThat(matrix.getRate(a, a), is(1.0));
+            for (int b = 0; b < matrix.size(); b++) {
+                for (int c = 0; c < matrix.size(); c++) {
+                    final double direct = matrix.getRate(a, c);
+                    assertThat(matrix.getRate(a, b) * matrix.getRate(b, c), closeTo(direct, direct * 1e-12));
+                }
+            }
+        }
+
+        assertThat(matrix.indexOf(19), is(-1));
+        assertThat(matrix.currencyId(matrix.indexOf(33)), is(33));
+    }
+
+    @Test
+    public void shouldConvertWithSparseCurrencyIds() {
+
+        final Map<Integer, Double> rates = new HashMap<>();
+        rates.put(1, 1.0);
+        rates.put(1000, 2.0);
+        rates.put(200000, 0.5);
+
+        final CurrencyRatesMatrix matrix = CurrencyRatesMatrix.create(rates);
+        final int i1 = matrix.indexOf(1);
+        final int i1000 = matrix.indexOf(1000);
+        final int i200000 = matrix.indexOf(200000);
+
+        assertThat(matrix.convert(100L, i1, i1000), is(200L));
+        assertThat(matrix.convert(100L, i1000, i200000), is(25L));
+        assertThat(matrix.indexOf(2), is(-1));
+
+        final long[] amounts = new long[3];
+        amounts[i1000] = matrix.convert(10L, i1, i1000);
+        amounts[i200000] = matrix.convert(10L, i1, i200000);
+        assertThat(amounts[i1000], is(20L));
+        assertThat(amounts[i200000], is(5L));
+
+        assertThat(matrix.totalValue(amounts, i1), closeTo(20.0, 1e-9));
+
+        final long[] converted = new long[2];
+        matrix.convert(new long[]{20L, 5L}, new int[]{i1000, i200000}, i1, converted);
+        assertThat(converted[0], is(10L));
+        assertThat(converted[1], is(10L));
+
+        assertThat(matrix.symbolPrice(1000, 1, 10, 5), is(1L));
+        assertThat(matrix.symbolPrice(1, 1000, 10, 5), is(4L));
+    }
+}
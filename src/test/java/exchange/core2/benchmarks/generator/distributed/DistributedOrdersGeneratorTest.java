@@ -0,0 +1,71 @@
+package exchange.core2.benchmarks.generator.distributed;
+
+import exchange.core2.benchmarks.generator.Constants;
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.benchmarks.generator.clients.ClientsCurrencyAccountsGenerator;
+import exchange.core2.benchmarks.generator.orders.GeneratorScenario;
+import exchange.core2.benchmarks.generator.orders.MultiSymbolGenResult;
+import exchange.core2.benchmarks.generator.orders.MultiSymbolOrdersGenerator;
+import org.apache.commons.math3.util.Pair;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.*;
+
+import static exchange.core2.benchmarks.generator.storage.CommandsTestSupport.assertSameContent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class DistributedOrdersGeneratorTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldProduceSameCommandsAsInMemoryGenerator() throws Exception {
+
+        final List<Pair<GeneratorSymbolSpec, Double>> specs = new ArrayList<>();
+        specs.add(Pair.create(Constants.SYMBOLSPEC_EUR_USD, 0.4));
+        specs.add(Pair.create(Constants.SYMBOLSPECFEE_USD_JPY, 0.3));
+        specs.add(Pair.create(Constants.SYMBOLSPEC_ETH_XBT, 0.2));
+        specs.add(Pair.create(Constants.SYMBOLSPECFEE_XBT_LTC, 0.1));
+
+        final Map<Integer, Double> currencies = new HashMap<>();
+        currencies.put(Constants.CURRENECY_USD, 0.4);
+        currencies.put(Constants.CURRENECY_EUR, 0.2);
+        currencies.put(Constants.CURRENECY_JPY, 0.1);
+        currencies.put(Constants.CURRENECY_XBT, 0.1);
+        currencies.put(Constants.CURRENECY_LTC, 0.1);
+        currencies.put(Constants.CURRENECY_ETH, 0.1);
+
+        final List<BitSet> accounts = ClientsCurrencyAccountsGenerator.generateClients(1000, currencies, 1);
+
+        final MultiSymbolGenResult expected = MultiSymbolOrdersGenerator.generateMultipleSymbols(
+                specs,
+                50_000,
+                accounts,
+                1000,
+                1,
+                false);
+
+        final DistributedGenResult distributed = DistributedOrdersGenerator.generateMultipleSymbols(
+                specs,
+                50_000,
+                accounts,
+                1000,
+                1,
+                false,
+                GeneratorScenario.RANDOM,
+                0,
+                new DistributedGeneratorConfig(tempFolder.newFolder().toPath(), 3));
+
+        assertThat(distributed.getOrderBookHashes(), is(expected.getOrderBookHashes()));
+        assertThat(distributed.getBenchmarkCommandsSize(), is(expected.getBenchmarkCommandsSize()));
+        assertThat(distributed.getFillCommandsSize(), is(expected.getFillCommandsSize()));
+
+        final MultiSymbolGenResult actual = distributed.toMultiSymbolGenResult(64 * 1024);
+        assertSameContent(actual.getCommandsFillBuffer().join(), expected.getCommandsFillBuffer().join());
+        assertSameContent(actual.getCommandsBenchmarkBuffer().join(), expected.getCommandsBenchmarkBuffer().join());
+    }
+}
@@ -0,0 +1,160 @@
+package exchange.core2.benchmarks.generator.encoding;
+
+import exchange.core2.benchmarks.generator.orders.GenResult;
+import exchange.core2.benchmarks.generator.orders.RandomCollectionsMerger;
+import exchange.core2.benchmarks.generator.storage.CommandCursor;
+import exchange.core2.benchmarks.generator.storage.CommandView;
+import exchange.core2.benchmarks.generator.storage.CommandsCorpus;
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+import exchange.core2.benchmarks.generator.storage.SegmentedBufferReader;
+import exchange.core2.benchmarks.generator.storage.SegmentedBufferWriter;
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.OrderAction;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.apache.commons.math3.random.JDKRandomGenerator;
+import org.junit.Test;
+
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CommandEncodersTest {
+
+    private static final int SYMBOL_ID = 42;
+
+    @Test
+    public void shouldEncodeNativeLayout() {
+
+        final UnsafeBuffer body = placeOrderBody();
+        final UnsafeBuffer dst = new UnsafeBuffer(new byte[NativeCommandEncoder.INSTANCE.maxEncodedLength()]);
+
+        final int length = NativeCommandEncoder.INSTANCE.encode(SYMBOL_ID, IOrderBook.COMMAND_PLACE_ORDER, body, 0, dst, 0);
+
+        assertThat(length, is(5 + IOrderBook.fixedCommandSize(IOrderBook.COMMAND_PLACE_ORDER)));
+        assertThat(dst.getByte(0), is(IOrderBook.COMMAND_PLACE_ORDER));
+        assertThat(dst.getInt(1), is(SYMBOL_ID));
+        assertThat(dst.getLong(5 + IOrderBook.PLACE_OFFSET_ORDER_ID), is(7001L));
+    }
+
+    @Test
+    public void shouldEncodeSbeLayout() {
+
+        final UnsafeBuffer body = placeOrderBody();
+        final UnsafeBuffer dst = new UnsafeBuffer(new byte[SbeCommandEncoder.INSTANCE.maxEncodedLength()]);
+
+        final int length = SbeCommandEncoder.INSTANCE.encode(SYMBOL_ID, IOrderBook.COMMAND_PLACE_ORDER, body, 0, dst, 0);
+
+        assertThat(length, is(SbeCommandEncoder.HEADER_SIZE + SbeCommandEncoder.BLOCK_LENGTH_PLACE));
+        assertThat((int) dst.getShort(0, ByteOrder.LITTLE_ENDIAN), is(SbeCommandEncoder.BLOCK_LENGTH_PLACE));
+        assertThat((byte) dst.getShort(2, ByteOrder.LITTLE_ENDIAN), is(IOrderBook.COMMAND_PLACE_ORDER));
+
+        final int block = SbeCommandEncoder.HEADER_SIZE;
+        assertThat(dst.getInt(block, ByteOrder.LITTLE_ENDIAN), is(SYMBOL_ID));
+        assertThat(dst.getLong(block + 4, ByteOrder.LITTLE_ENDIAN), is(123L));
+        assertThat(dst.getLong(block + 12, ByteOrder.LITTLE_ENDIAN), is(7001L));
+        assertThat(dst.getLong(block + 20, ByteOrder.LITTLE_ENDIAN), is(15_250L));
+        assertThat(dst.getLong(block + 36, ByteOrder.LITTLE_ENDIAN), is(30L));
+        assertThat(dst.getInt(block + 44, ByteOrder.LITTLE_ENDIAN), is(9));
+        assertThat(dst.getByte(block + 49), is(IOrderBook.ORDER_TYPE_IOC));
+
+        // cancel has short block
+        final UnsafeBuffer cancelBody = new UnsafeBuffer(new byte[IOrderBook.fixedCommandSize(IOrderBook.COMMAND_CANCEL_ORDER)]);
+        cancelBody.putLong(IOrderBook.CANCEL_OFFSET_UID, 123L);
+        cancelBody.putLong(IOrderBook.CANCEL_OFFSET_ORDER_ID, 7001L);
+        final int cancelLength = SbeCommandEncoder.INSTANCE.encode(SYMBOL_ID, IOrderBook.COMMAND_CANCEL_ORDER, cancelBody, 0, dst, 0);
+        assertThat(cancelLength, is(SbeCommandEncoder.HEADER_SIZE + SbeCommandEncoder.BLOCK_LENGTH_CANCEL));
+        assertThat(dst.getLong(block + 12, ByteOrder.LITTLE_ENDIAN), is(7001L));
+    }
+
+    @Test
+    public void shouldEncodeFixText() {
+
+        final UnsafeBuffer body = placeOrderBody();
+        final UnsafeBuffer dst = new UnsafeBuffer(new byte[FixTextCommandEncoder.INSTANCE.maxEncodedLength()]);
+
+        final int length = FixTextCommandEncoder.INSTANCE.encode(SYMBOL_ID, IOrderBook.COMMAND_PLACE_ORDER, body, 0, dst, 0);
+
+        final String message = dst.getStringWithoutLengthAscii(0, length).replace((char) FixTextCommandEncoder.SOH, '|');
+        assertThat(message, is("35=D|55=42|1=123|11=7001|54=2|44=15250|38=30|59=3|9002=9|"));
+        assertThat(length, is(message.getBytes(StandardCharsets.US_ASCII).length));
+    }
+
+    @Test
+    public void shouldMergeWithEachEncoder() {
+
+        final Map<Integer, GenResult> genResults = new LinkedHashMap<>();
+        genResults.put(SYMBOL_ID, createSymbolResult(300, 1));
+        genResults.put(SYMBOL_ID + 1, createSymbolResult(200, 1_000_000));
+
+        final SegmentedBuffer nativeMerged = RandomCollectionsMerger.mergeCommandsSegmented(
+                genResults, GenResult::getCommandsFillBuffer, new JDKRandomGenerator(1), 4096);
+
+        for (final CommandEncoder encoder : new CommandEncoder[]{SbeCommandEncoder.INSTANCE, FixTextCommandEncoder.INSTANCE}) {
+
+            final SegmentedBuffer encodedMerged = RandomCollectionsMerger.mergeCommandsSegmented(
+                    genResults, GenResult::getCommandsFillBuffer, new JDKRandomGenerator(1), 4096, null, encoder);
+
+            // same interleaving, every native record re-encoded in place
+            final UnsafeBuffer expected = new UnsafeBuffer(new byte[encoder.maxEncodedLength()]);
+            final SegmentedBufferReader encodedReader = encodedMerged.newReader();
+            final CommandCursor cursor = CommandsCorpus.merged(nativeMerged).newCursor();
+            int commands = 0;
+            while (cursor.next()) {
+                final CommandView cmd = cursor.view();
+                final int length = encoder.encode(cmd.getSymbolId(), cmd.getCommandCode(), cmd.getBuffer(), cmd.getBodyOffset(), expected, 0);
+                for (int i = 0; i < length; i++) {
+                    assertThat(encodedReader.readByte(), is(expected.getByte(i)));
+                }
+                commands++;
+            }
+            assertThat(commands, is(500));
+            assertThat(encodedReader.getRemainingSize(), is(0L));
+        }
+    }
+
+    private static GenResult createSymbolResult(final int commandsNum, final long orderIdStart) {
+
+        final SegmentedBufferWriter writer = new SegmentedBufferWriter(4096);
+        for (int i = 0; i < commandsNum; i++) {
+            final long orderId = orderIdStart + i / 2;
+            if (i % 2 == 0) {
+                writer.beginRecord(1 + IOrderBook.fixedCommandSize(IOrderBook.COMMAND_PLACE_ORDER));
+                writer.appendByte(IOrderBook.COMMAND_PLACE_ORDER);
+                writer.appendLong(100 + i % 7);
+                writer.appendLong(orderId);
+                writer.appendLong(15_000 + i);
+                writer.appendLong(15_100 + i);
+                writer.appendLong(1 + i % 11);
+                writer.appendInt(i);
+                writer.appendByte(OrderAction.ASK.getCode());
+                writer.appendByte(IOrderBook.ORDER_TYPE_GTC);
+            } else {
+                writer.beginRecord(1 + IOrderBook.fixedCommandSize(IOrderBook.COMMAND_CANCEL_ORDER));
+                writer.appendByte(IOrderBook.COMMAND_CANCEL_ORDER);
+                writer.appendLong(100 + (i - 1) % 7);
+                writer.appendLong(orderId);
+            }
+        }
+
+        return GenResult.builder()
+                .commandsFill(null, writer.toBuffer(), commandsNum)
+                .build();
+    }
+
+    private static UnsafeBuffer placeOrderBody() {
+        final UnsafeBuffer body = new UnsafeBuffer(new byte[IOrderBook.fixedCommandSize(IOrderBook.COMMAND_PLACE_ORDER)]);
+        body.putLong(IOrderBook.PLACE_OFFSET_UID, 123L);
+        body.putLong(IOrderBook.PLACE_OFFSET_ORDER_ID, 7001L);
+        body.putLong(IOrderBook.PLACE_OFFSET_PRICE, 15_250L);
+        body.putLong(IOrderBook.PLACE_OFFSET_RESERVED_BID_PRICE, 0L);
+        body.putLong(IOrderBook.PLACE_OFFSET_SIZE, 30L);
+        body.putInt(IOrderBook.PLACE_OFFSET_USER_COOKIE, 9);
+        body.putByte(IOrderBook.PLACE_OFFSET_ACTION, OrderAction.ASK.getCode());
+        body.putByte(IOrderBook.PLACE_OFFSET_TYPE, IOrderBook.ORDER_TYPE_IOC);
+        return body;
+    }
+}
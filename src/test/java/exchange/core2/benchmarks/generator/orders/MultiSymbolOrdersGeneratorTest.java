@@ -4,14 +4,40 @@ import exchange.core2.benchmarks.generator.Constants;
 import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
 import exchange.core2.benchmarks.generator.clients.ClientsCurrencyAccountsGenerator;
 import exchange.core2.benchmarks.generator.currencies.CurrenciesGenerator;
+import exchange.core2.benchmarks.generator.encoding.CommandEncoder;
+import exchange.core2.benchmarks.generator.encoding.FixTextCommandEncoder;
+import exchange.core2.benchmarks.generator.encoding.NativeCommandEncoder;
+import exchange.core2.benchmarks.generator.encoding.SbeCommandEncoder;
 import exchange.core2.benchmarks.generator.symbols.SymbolsGenerator;
+import exchange.core2.benchmarks.generator.storage.CommandCursor;
+import exchange.core2.benchmarks.generator.storage.CommandView;
+import exchange.core2.benchmarks.generator.storage.CommandsCorpus;
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+import exchange.core2.benchmarks.generator.storage.SegmentedBufferReader;
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.OrderAction;
+import exchange.core2.orderbook.api.CommandResponse;
+import exchange.core2.orderbook.api.OrderBookResponse;
+import exchange.core2.orderbook.api.TradeEvent;
+import exchange.core2.orderbook.util.BufferWriter;
+import exchange.core2.orderbook.util.ResponseDecoder;
+import org.agrona.DirectBuffer;
+import org.agrona.ExpandableArrayBuffer;
+import org.apache.commons.lang3.mutable.MutableInt;
 import org.apache.commons.math3.util.Pair;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
 import org.junit.Test;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.util.*;
 
+import static exchange.core2.benchmarks.generator.storage.CommandsTestSupport.assertSameContent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+import static org.junit.Assert.assertThrows;
+
 public class MultiSymbolOrdersGeneratorTest {
 
 
@@ -56,6 +82,191 @@ public class MultiSymbolOrdersGeneratorTest {
     }
 
 
+    @Test
+    public void shouldMergeIntoSegmentedBuffer() {
+
+        final List<Pair<GeneratorSymbolSpec, Double>> specs = new ArrayList<>();
+        specs.add(Pair.create(Constants.SYMBOLSPEC_EUR_USD, 0.5));
+        specs.add(Pair.create(Constants.SYMBOLSPECFEE_USD_JPY, 0.5));
+
+        final Map<Integer, Double> currencies = new HashMap<>();
+        currencies.put(Constants.CURRENECY_USD, 0.5);
+        currencies.put(Constants.CURRENECY_EUR, 0.25);
+        currencies.put(Constants.CURRENECY_JPY, 0.25);
+
+        final List<BitSet> accounts = ClientsCurrencyAccountsGenerator.generateClients(1000, currencies, 1);
+
+        final MultiSymbolGenResult heapResult = generateTwoSymbols(specs, accounts, 0);
+        final MultiSymbolGenResult segmentedResult = generateTwoSymbols(specs, accounts, 4096);
+
+        assertSameContent(segmentedResult.getCommandsFillBuffer().join(), heapResult.getCommandsFillBuffer().join());
+        assertSameContent(segmentedResult.getCommandsBenchmarkBuffer().join(), heapResult.getCommandsBenchmarkBuffer().join());
+        assertThat((long) segmentedResult.getFillCommandsSize(), is(segmentedResult.getCommandsFillCorpus().join().countCommands()));
+    }
+
+    @Test
+    public void shouldMergeWithNonNativeEncoders() {
+
+        final List<Pair<GeneratorSymbolSpec, Double>> specs = new ArrayList<>();
+        specs.add(Pair.create(Constants.SYMBOLSPEC_EUR_USD, 0.5));
+        specs.add(Pair.create(Constants.SYMBOLSPECFEE_XBT_LTC, 0.5));
+
+        final Map<Integer, Double> currencies = new HashMap<>();
+        currencies.put(Constants.CURRENECY_USD, 0.4);
+        currencies.put(Constants.CURRENECY_XBT, 0.3);
+        currencies.put(Constants.CURRENECY_LTC, 0.3);
+
+        final List<BitSet> accounts = ClientsCurrencyAccountsGenerator.generateClients(1000, currencies, 1);
+
+        final MultiSymbolGenResult nativeResult = generateTwoSymbols(specs, accounts, 64 * 1024);
+        assertThat(nativeResult.getCommandEncoder(), is(NativeCommandEncoder.INSTANCE));
+
+        for (final CommandEncoder encoder : new CommandEncoder[]{SbeCommandEncoder.INSTANCE, FixTextCommandEncoder.INSTANCE}) {
+
+            final MultiSymbolGenResult result = MultiSymbolOrdersGenerator.generateMultipleSymbols(
+                    specs,
+                    20_000,
+                    accounts,
+                    1000,
+                    1,
+                    false,
+                    GeneratorOptions.builder()
+                            .mergedSegmentSize(64 * 1024)
+                            .commandEncoder(encoder)
+                            .build());
+
+            assertThat(result.getCommandEncoder(), is(encoder));
+            assertThat(result.getOrderBookHashes(), is(nativeResult.getOrderBookHashes()));
+            assertThat(result.getFillCommandsSize(), is(nativeResult.getFillCommandsSize()));
+            assertThat(result.getCommandsFillBuffer().join().getSize() > 0, is(true));
+            assertThat(result.getCommandsBenchmarkBuffer().join().getSize() > 0, is(true));
+
+            // native layout views are not available for encoded buffers
+            assertThrows(IllegalStateException.class, result::getCommandsFillCorpus);
+            assertThrows(IllegalStateException.class, result::getCommandsBenchmarkCorpus);
+            assertThrows(IllegalStateException.class, () -> result.getCommandsFillBatches(64 * 1024, 256));
+            assertThrows(IllegalStateException.class, () -> result.getCommandsBenchmarkBatches(64 * 1024, 256));
+        }
+    }
+
+    @Test
+    public void shouldReportNonNegativeBalancesWhenTracked() {
+
+        final List<Pair<GeneratorSymbolSpec, Double>> specs = new ArrayList<>();
+        specs.add(Pair.create(Constants.SYMBOLSPEC_EUR_USD, 0.5));
+        specs.add(Pair.create(Constants.SYMBOLSPECFEE_XBT_LTC, 0.5));
+
+        final Map<Integer, Double> currencies = new HashMap<>();
+        currencies.put(Constants.CURRENECY_USD, 0.4);
+        currencies.put(Constants.CURRENECY_XBT, 0.3);
+        currencies.put(Constants.CURRENECY_LTC, 0.3);
+
+        final List<BitSet> accounts = ClientsCurrencyAccountsGenerator.generateClients(1000, currencies, 1);
+
+        final MultiSymbolGenResult result = MultiSymbolOrdersGenerator.generateMultipleSymbols(
+                specs,
+                20_000,
+                accounts,
+                1000,
+                1,
+                false,
+                GeneratorOptions.builder()
+                        .trackBalances(true)
+                        .build());
+
+        final BalanceReport report = result.getBalanceReport();
+        assertThat(report.getDepositsCount() > 0, is(true));
+
+        for (final long key : report.getExpectedBalanceKeys()) {
+            final long uid = BalanceTracker.uidOfKey(key);
+            final int currency = BalanceTracker.currencyOfKey(key);
+            assertThat(report.getExpectedBalance(uid, currency) >= 0, is(true));
+        }
+
+        final SegmentedBuffer deposits = report.createDepositCommands();
+        assertThat(deposits.getSize(), is((long) report.getDepositsCount() * BalanceReport.DEPOSIT_RECORD_SIZE));
+    }
+
+    @Test
+    public void shouldReplayTrackedCommandsWithoutInsufficientFunds() {
+
+        final List<Pair<GeneratorSymbolSpec, Double>> specs = new ArrayList<>();
+        specs.add(Pair.create(Constants.SYMBOLSPEC_EUR_USD, 0.5));
+        specs.add(Pair.create(Constants.SYMBOLSPECFEE_XBT_LTC, 0.5));
+
+        final Map<Integer, Double> currencies = new HashMap<>();
+        currencies.put(Constants.CURRENECY_USD, 0.4);
+        currencies.put(Constants.CURRENECY_XBT, 0.3);
+        currencies.put(Constants.CURRENECY_LTC, 0.3);
+
+        final List<BitSet> accounts = ClientsCurrencyAccountsGenerator.generateClients(1000, currencies, 1);
+
+        final MultiSymbolGenResult result = MultiSymbolOrdersGenerator.generateMultipleSymbols(
+                specs,
+                20_000,
+                accounts,
+                1000,
+                1,
+                false,
+                GeneratorOptions.builder()
+                        .trackBalances(true)
+                        .build());
+
+        final BalanceReport report = result.getBalanceReport();
+
+        final SimpleRiskModel riskModel = new SimpleRiskModel(specs);
+        riskModel.deposit(report.createDepositCommands());
+        riskModel.replay(result.getCommandsFillCorpus().join());
+        riskModel.replay(result.getCommandsBenchmarkCorpus().join());
+
+        log.debug("Replayed {} orders, rejected {}", riskModel.placedOrders, riskModel.rejectedOrders);
+        assertThat(riskModel.placedOrders > 0, is(true));
+        assertThat(riskModel.rejectedOrders, is(0));
+
+        // every balance touched by replay is reported and matches expected value
+        for (final long key : report.getExpectedBalanceKeys()) {
+            assertThat(riskModel.balances.get(key), is(report.getExpectedBalance(BalanceTracker.uidOfKey(key), BalanceTracker.currencyOfKey(key))));
+        }
+        riskModel.balances.forEachKeyValue((key, balance) ->
+                assertThat(balance, is(report.getExpectedBalance(BalanceTracker.uidOfKey(key), BalanceTracker.currencyOfKey(key)))));
+
+        riskModel.positions.forEachKeyValue((key, position) ->
+                assertThat(position, is(report.getPosition(BalanceTracker.uidOfKey(key), BalanceTracker.currencyOfKey(key)))));
+    }
+
+    @Test
+    public void shouldBatchSmallSymbols() {
+
+        final List<SymbolGenerationTask> tasks = new ArrayList<>();
+        tasks.add(new SymbolGenerationTask(Constants.SYMBOLSPEC_EUR_USD, 500_000, 1000, 1));
+        tasks.add(new SymbolGenerationTask(Constants.SYMBOLSPECFEE_USD_JPY, 400, 100, 501_001));
+        tasks.add(new SymbolGenerationTask(Constants.SYMBOLSPEC_ETH_XBT, 400, 100, 501_501));
+        tasks.add(new SymbolGenerationTask(Constants.SYMBOLSPECFEE_XBT_LTC, 300, 100, 502_001));
+
+        final List<List<SymbolGenerationTask>> batches = MultiSymbolOrdersGenerator.batchSymbolTasks(tasks, 1000);
+
+        assertThat(batches.size(), is(3));
+        assertThat(batches.get(0).size(), is(1));
+        assertThat(batches.get(1).size(), is(2));
+        assertThat(batches.get(2).size(), is(1));
+        assertThat(batches.get(2).get(0).getSymbolId(), is(Constants.SYMBOLSPECFEE_XBT_LTC.getSymbolId()));
+    }
+
+    private static MultiSymbolGenResult generateTwoSymbols(final List<Pair<GeneratorSymbolSpec, Double>> specs,
+                                                           final List<BitSet> accounts,
+                                                           final int mergedSegmentSize) {
+        return MultiSymbolOrdersGenerator.generateMultipleSymbols(
+                specs,
+                20_000,
+                accounts,
+                1000,
+                1,
+                false,
+                GeneratorOptions.builder()
+                        .mergedSegmentSize(mergedSegmentSize)
+                        .build());
+    }
+
     @Test
     public void generateMultipleLarge() {
 
@@ -93,4 +304,164 @@ public class MultiSymbolOrdersGeneratorTest {
 
 
     }
-}
\ No newline at end of file
+
+    /**
+     * Minimal risk engine: every placed order holds its full amount from available funds (released funds are not reused),
+     * order is rejected if available funds are insufficient. Trades are settled into balances and futures positions.
+     */
+    private static final class SimpleRiskModel {
+
+        private final Map<Integer, GeneratorSymbolSpec> specs = new HashMap<>();
+        private final Map<Integer, IOrderBook<ISymbolSpecification>> orderBooks = new HashMap<>();
+        private final Map<Integer, MutableInt> commandCounters = new HashMap<>();
+        private final BufferWriter resultsBufferWriter = new BufferWriter(new ExpandableArrayBuffer(), 0);
+
+        // (uid, currency) -> amount
+        private final LongLongHashMap available = new LongLongHashMap();
+        private final LongLongHashMap balances = new LongLongHashMap();
+
+        // (uid, symbolId) -> futures position
+        private final LongLongHashMap positions = new LongLongHashMap();
+
+        // (orderId, symbolId) of bid orders (trades caused by move commands)
+        private final Set<Long> bidOrders = new HashSet<>();
+
+        private int placedOrders = 0;
+        private int rejectedOrders = 0;
+
+        SimpleRiskModel(final List<Pair<GeneratorSymbolSpec, Double>> symbolSpecs) {
+            for (final Pair<GeneratorSymbolSpec, Double> pair : symbolSpecs) {
+                final GeneratorSymbolSpec spec = pair.getFirst();
+                specs.put(spec.getSymbolId(), spec);
+                orderBooks.put(spec.getSymbolId(), OrderBookFactory.NAIVE.create(spec, resultsBufferWriter));
+                commandCounters.put(spec.getSymbolId(), new MutableInt());
+            }
+        }
+
+        void deposit(final SegmentedBuffer depositCommands) {
+            final SegmentedBufferReader reader = depositCommands.newReader();
+            while (reader.getRemainingSize() > 0) {
+                final long uid = reader.readLong();
+                final int currency = reader.readInt();
+                final long amount = reader.readLong();
+                available.addToValue(BalanceTracker.key(uid, currency), amount);
+                balances.addToValue(BalanceTracker.key(uid, currency), amount);
+            }
+        }
+
+        void replay(final CommandsCorpus corpus) {
+
+            final CommandCursor cursor = corpus.newCursor();
+            while (cursor.next()) {
+
+                final CommandView cmd = cursor.view();
+                final int symbolId = cmd.getSymbolId();
+                final GeneratorSymbolSpec spec = specs.get(symbolId);
+                final IOrderBook<ISymbolSpecification> orderBook = orderBooks.get(symbolId);
+                final DirectBuffer buffer = cmd.getBuffer();
+                final int body = cmd.getBodyOffset();
+                final long timestamp = 1_000_000_000L + commandCounters.get(symbolId).getAndIncrement();
+
+                switch (cmd.getCommandCode()) {
+                    case IOrderBook.COMMAND_PLACE_ORDER:
+                        placedOrders++;
+                        final boolean bid = OrderAction.of(cmd.getPlaceAction()) == OrderAction.BID;
+                        if (bid) {
+                            bidOrders.add(orderKey(cmd.getPlaceOrderId(), symbolId));
+                        }
+                        if (!hold(spec, cmd, bid)) {
+                            rejectedOrders++;
+                        }
+                        orderBook.newOrder(buffer, body, timestamp);
+                        break;
+
+                    case IOrderBook.COMMAND_CANCEL_ORDER:
+                        orderBook.cancelOrder(buffer, body);
+                        break;
+
+                    case IOrderBook.COMMAND_MOVE_ORDER:
+                        orderBook.moveOrder(buffer, body);
+                        break;
+
+                    case IOrderBook.COMMAND_REDUCE_ORDER:
+                        orderBook.reduceOrder(buffer, body);
+                        break;
+
+                    default:
+                        throw new IllegalStateException("cmdCode=" + cmd.getCommandCode());
+                }
+
+                final OrderBookResponse response = ResponseDecoder.readResult(
+                        resultsBufferWriter.getBuffer(),
+                        resultsBufferWriter.getWriterPosition());
+                resultsBufferWriter.reset();
+
+                assertThat(response.isSuccessful(), is(true));
+
+                if (cmd.getCommandCode() != IOrderBook.COMMAND_PLACE_ORDER && cmd.getCommandCode() != IOrderBook.COMMAND_MOVE_ORDER) {
+                    continue;
+                }
+
+                final CommandResponse commandResponse = (CommandResponse) response;
+                final boolean takerBid = bidOrders.contains(orderKey(commandResponse.getOrderId(), symbolId));
+                for (final TradeEvent trade : commandResponse.getTrades()) {
+                    settle(spec, commandResponse.getUid(), trade, takerBid);
+                }
+            }
+        }
+
+        private boolean hold(final GeneratorSymbolSpec spec, final CommandView cmd, final boolean bid) {
+
+            final long uid = cmd.getPlaceUid();
+            final long size = cmd.getPlaceSize();
+
+            final long key;
+            final long amount;
+            if (spec.getSymbolType() == GeneratorSymbolSpec.SymbolType.FUTURES_CONTRACT) {
+                key = BalanceTracker.key(uid, spec.getQuoteCurrency());
+                amount = size * ((bid ? spec.getMarginBuy() : spec.getMarginSell()) + spec.getTakerFee());
+            } else if (bid) {
+                key = BalanceTracker.key(uid, spec.getQuoteCurrency());
+                amount = cmd.getPlaceType() == IOrderBook.ORDER_TYPE_FOK_BUDGET
+                        ? cmd.getPlacePrice() * spec.getQuoteScaleK() + size * spec.getTakerFee()
+                        : size * (cmd.getPlaceReservedBidPrice() * spec.getQuoteScaleK() + spec.getTakerFee());
+            } else {
+                key = BalanceTracker.key(uid, spec.getBaseCurrency());
+                amount = size * spec.getBaseScaleK();
+            }
+
+            if (available.get(key) < amount) {
+                return false;
+            }
+            available.addToValue(key, -amount);
+            return true;
+        }
+
+        private void settle(final GeneratorSymbolSpec spec, final long takerUid, final TradeEvent trade, final boolean takerBid) {
+
+            final long buyer = takerBid ? takerUid : trade.getMakerUid();
+            final long seller = takerBid ? trade.getMakerUid() : takerUid;
+            final long buyerFee = takerBid ? spec.getTakerFee() : spec.getMakerFee();
+            final long sellerFee = takerBid ? spec.getMakerFee() : spec.getTakerFee();
+            final long size = trade.getTradeSize();
+            final int quote = spec.getQuoteCurrency();
+
+            if (spec.getSymbolType() == GeneratorSymbolSpec.SymbolType.FUTURES_CONTRACT) {
+                positions.addToValue(BalanceTracker.key(buyer, spec.getSymbolId()), size);
+                positions.addToValue(BalanceTracker.key(seller, spec.getSymbolId()), -size);
+                balances.addToValue(BalanceTracker.key(buyer, quote), -size * buyerFee);
+                balances.addToValue(BalanceTracker.key(seller, quote), -size * sellerFee);
+            } else {
+                final long quoteAmount = size * trade.getTradePrice() * spec.getQuoteScaleK();
+                balances.addToValue(BalanceTracker.key(buyer, spec.getBaseCurrency()), size * spec.getBaseScaleK());
+                balances.addToValue(BalanceTracker.key(buyer, quote), -quoteAmount - size * buyerFee);
+                balances.addToValue(BalanceTracker.key(seller, spec.getBaseCurrency()), -size * spec.getBaseScaleK());
+                balances.addToValue(BalanceTracker.key(seller, quote), quoteAmount - size * sellerFee);
+            }
+        }
+
+        private static long orderKey(final long orderId, final int symbolId) {
+            return (orderId << 32) | (symbolId & 0xFFFF_FFFFL);
+        }
+    }
+}
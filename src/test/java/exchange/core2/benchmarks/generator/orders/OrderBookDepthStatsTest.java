@@ -0,0 +1,83 @@
+package exchange.core2.benchmarks.generator.orders;
+
+import org.junit.Test;
+
+import java.io.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class OrderBookDepthStatsTest {
+
+    @Test
+    public void shouldDecimateSeriesKeepingFixedMemory() throws Exception {
+
+        final OrderBookDepthStats stats = new OrderBookDepthStats(16);
+        for (int i = 0; i < 1000; i++) {
+            stats.record(i, i + 1, i * 2, i * 3);
+        }
+
+        assertThat(stats.getSnapshotsCount(), is(1000L));
+        assertThat(stats.getSeriesStride(), is(64));
+        assertThat(stats.getAskLevelsSeries().length, is(16));
+        assertThat(stats.getAskLevels().getTotalCount(), is(1000L));
+
+        // every point is the snapshot taken at stride boundary
+        final int[] asks = stats.getAskLevelsSeries();
+        final int[] bids = stats.getBidOrdersSeries();
+        for (int i = 0; i < asks.length; i++) {
+            assertThat(asks[i], is(i * 64));
+            assertThat(bids[i], is(i * 64 * 3));
+        }
+
+        // checkpoint round trip
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            stats.writeTo(dos);
+        }
+        final OrderBookDepthStats restored = new OrderBookDepthStats(16);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())));
+
+        assertThat(restored.getSnapshotsCount(), is(1000L));
+        assertThat(restored.getSeriesStride(), is(64));
+        assertThat(restored.getAskLevelsSeries(), is(stats.getAskLevelsSeries()));
+        assertThat(restored.getBidOrders().getMaxValue(), is(stats.getBidOrders().getMaxValue()));
+        assertThat(restored.getAskOrders().getTotalCount(), is(1000L));
+
+        // continues identically after restore
+        stats.record(1, 2, 3, 4);
+        restored.record(1, 2, 3, 4);
+        assertThat(restored.getAskLevelsSeries(), is(stats.getAskLevelsSeries()));
+    }
+
+    @Test
+    public void shouldGrowSeriesUpToCapacity() throws Exception {
+
+        final OrderBookDepthStats stats = new OrderBookDepthStats(OrderBookDepthStats.DEFAULT_SERIES_CAPACITY);
+        for (int i = 0; i < 100; i++) {
+            stats.record(i, i, i, i);
+        }
+
+        // no decimation before capacity is reached
+        assertThat(stats.getSeriesStride(), is(1));
+        assertThat(stats.getAskLevelsSeries().length, is(100));
+        assertThat(stats.getAskLevelsSeries()[99], is(99));
+
+        final ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        try (DataOutputStream dos = new DataOutputStream(bos)) {
+            stats.writeTo(dos);
+        }
+        final OrderBookDepthStats restored = new OrderBookDepthStats(OrderBookDepthStats.DEFAULT_SERIES_CAPACITY);
+        restored.readFrom(new DataInputStream(new ByteArrayInputStream(bos.toByteArray())));
+        assertThat(restored.getAskLevelsSeries(), is(stats.getAskLevelsSeries()));
+
+        for (int i = 100; i < 3000; i++) {
+            stats.record(i, i, i, i);
+            restored.record(i, i, i, i);
+        }
+
+        assertThat(stats.getSeriesStride(), is(4));
+        assertThat(restored.getSeriesStride(), is(4));
+        assertThat(restored.getAskLevelsSeries(), is(stats.getAskLevelsSeries()));
+    }
+}
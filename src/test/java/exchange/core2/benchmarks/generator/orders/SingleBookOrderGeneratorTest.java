@@ -2,14 +2,38 @@ package exchange.core2.benchmarks.generator.orders;
 
 import exchange.core2.benchmarks.generator.Constants;
 import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.ISymbolSpecification;
+import exchange.core2.orderbook.api.QueryResponseL2Data;
+import exchange.core2.orderbook.naive.OrderBookNaiveImpl;
+import exchange.core2.orderbook.util.BufferReader;
+import org.agrona.DirectBuffer;
+import org.agrona.concurrent.UnsafeBuffer;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.*;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongConsumer;
+
+import static exchange.core2.benchmarks.generator.storage.CommandsTestSupport.assertSameContent;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
 public class SingleBookOrderGeneratorTest {
 
     private static final Logger log = LoggerFactory.getLogger(SingleBookOrderGeneratorTest.class);
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Test
     public void shouldGenerateCommands() {
 
@@ -27,11 +51,422 @@ public class SingleBookOrderGeneratorTest {
                 a -> {
                 },
                 1,
-                1);
+                1,
+                GeneratorOptions.DEFAULT);
 
         log.debug("benchmark size: {}", genResult.getCommandsBenchmark().getSize());
 
 
     }
 
-}
\ No newline at end of file
+    @Test
+    public void shouldGenerateWorstCaseScenarios() {
+
+        final GeneratorSymbolSpec spec = Constants.SYMBOLSPECFEE_XBT_LTC;
+
+        final Map<GeneratorScenario, GenResult> results = new EnumMap<>(GeneratorScenario.class);
+        final Map<GeneratorScenario, CommandsStat> stats = new EnumMap<>(GeneratorScenario.class);
+
+        for (GeneratorScenario scenario : GeneratorScenario.values()) {
+
+            final GenResult genResult = SingleBookOrderGenerator.generateCommands(
+                    50_000,
+                    2000,
+                    1000,
+                    i -> i + 1,
+                    spec,
+                    false,
+                    false,
+                    a -> {
+                    },
+                    1,
+                    1,
+                    GeneratorOptions.builder()
+                            .scenario(scenario)
+                            .build());
+
+            final CommandsStat stat = CommandsStat.of(genResult.getCommandsBenchmark());
+
+            log.debug("{}: benchmark size: {} hash: {} asks: {} bids: {} {}",
+                    scenario,
+                    genResult.getCommandsBenchmark().getSize(),
+                    genResult.getFinalOrderBookHash(),
+                    genResult.getFinalOrderBookSnapshot().getAsks().size(),
+                    genResult.getFinalOrderBookSnapshot().getBids().size(),
+                    stat);
+
+            assertThat(stat.total, is(50_000));
+            results.put(scenario, genResult);
+            stats.put(scenario, stat);
+        }
+
+        // random activity contains all kinds of commands
+        final CommandsStat random = stats.get(GeneratorScenario.RANDOM);
+        assertThat(random.places > 0 && random.cancels > 0 && random.moves > 0 && random.reduces > 0, is(true));
+
+        // same number of orders is spread across more price levels
+        final QueryResponseL2Data randomBook = results.get(GeneratorScenario.RANDOM).getFinalOrderBookSnapshot();
+        final QueryResponseL2Data sparseBook = results.get(GeneratorScenario.WIDE_SPARSE_BOOK).getFinalOrderBookSnapshot();
+        assertThat(priceLevels(sparseBook) > priceLevels(randomBook), is(true));
+        assertThat(ordersPerLevel(sparseBook) < ordersPerLevel(randomBook), is(true));
+
+        // sweeping orders are far bigger than regular instant orders (up to 344 lots)
+        final CommandsStat sweeping = stats.get(GeneratorScenario.SWEEPING_ORDERS);
+        assertThat(sweeping.instantOrders > 0, is(true));
+        assertThat(sweeping.maxInstantOrderSize > 1000, is(true));
+
+        // most of commands are moves
+        final CommandsStat moveStorm = stats.get(GeneratorScenario.MOVE_STORM);
+        assertThat(moveStorm.moves * 2 > moveStorm.total, is(true));
+
+        // frequent cancels, orders are concentrated in deep queues
+        final CommandsStat midQueue = stats.get(GeneratorScenario.MID_QUEUE_CANCELS);
+        assertThat(midQueue.cancels * 5 > midQueue.total, is(true));
+        assertThat(midQueue.moves, is(0));
+        assertThat(ordersPerLevel(results.get(GeneratorScenario.MID_QUEUE_CANCELS).getFinalOrderBookSnapshot())
+                > ordersPerLevel(randomBook), is(true));
+    }
+
+    private static int priceLevels(final QueryResponseL2Data book) {
+        return book.getAsks().size() + book.getBids().size();
+    }
+
+    private static double ordersPerLevel(final QueryResponseL2Data book) {
+        long orders = 0;
+        for (QueryResponseL2Data.L2Record record : book.getAsks()) {
+            orders += record.getOrders();
+        }
+        for (QueryResponseL2Data.L2Record record : book.getBids()) {
+            orders += record.getOrders();
+        }
+        return (double) orders / Math.max(priceLevels(book), 1);
+    }
+
+    private static final class CommandsStat {
+
+        private int total;
+        private int places;
+        private int instantOrders;
+        private long maxInstantOrderSize;
+        private int cancels;
+        private int moves;
+        private int reduces;
+
+        private static CommandsStat of(final BufferReader commands) {
+
+            final CommandsStat stat = new CommandsStat();
+
+            for (int position = 0; position < commands.getSize(); ) {
+
+                final byte cmdCode = commands.getByte(position);
+                final int body = position + 1;
+
+                switch (cmdCode) {
+                    case IOrderBook.COMMAND_PLACE_ORDER:
+                        stat.places++;
+                        if (commands.getByte(body + IOrderBook.PLACE_OFFSET_TYPE) != IOrderBook.ORDER_TYPE_GTC) {
+                            stat.instantOrders++;
+                            stat.maxInstantOrderSize = Math.max(stat.maxInstantOrderSize, commands.getLong(body + IOrderBook.PLACE_OFFSET_SIZE));
+                        }
+                        break;
+                    case IOrderBook.COMMAND_CANCEL_ORDER:
+                        stat.cancels++;
+                        break;
+                    case IOrderBook.COMMAND_MOVE_ORDER:
+                        stat.moves++;
+                        break;
+                    case IOrderBook.COMMAND_REDUCE_ORDER:
+                        stat.reduces++;
+                        break;
+                    default:
+                        throw new IllegalStateException("Unknown command code " + cmdCode);
+                }
+
+                stat.total++;
+                position = body + IOrderBook.fixedCommandSize(cmdCode);
+            }
+
+            return stat;
+        }
+
+        @Override
+        public String toString() {
+            return "places=" + places + " (instant=" + instantOrders + " maxSize=" + maxInstantOrderSize + ")"
+                    + " cancels=" + cancels + " moves=" + moves + " reduces=" + reduces;
+        }
+    }
+
+    @Test
+    public void shouldKeepSessionStateBoundedByOrderBookSize() {
+
+        final GenResult genResult = SingleBookOrderGenerator.generateCommands(
+                200_000,
+                1000,
+                1000,
+                i -> i + 1,
+                Constants.SYMBOLSPECFEE_XBT_LTC,
+                false,
+                false,
+                a -> {
+                },
+                1,
+                1,
+                GeneratorOptions.DEFAULT);
+
+        // completed, rejected and cancelled orders are released, so only live orders are tracked
+        log.debug("peak live orders: {}", genResult.getPeakLiveOrders());
+        assertThat(genResult.getPeakLiveOrders() > 0, is(true));
+        assertThat(genResult.getPeakLiveOrders() < 10_000, is(true));
+    }
+
+    @Test
+    public void shouldResumeFromCheckpoint() throws Exception {
+
+        final GenResult expected = generateWithCheckpoints(null, a -> {
+        });
+
+        final GeneratorCheckpointConfig checkpointConfig = new GeneratorCheckpointConfig(tempFolder.newFolder().toPath(), 0);
+
+        // first run is interrupted on the third progress report (after 30000 commands),
+        // so the last checkpoint was written after 20000 commands
+        final int[] progressReports = new int[1];
+        try {
+            generateWithCheckpoints(checkpointConfig, a -> {
+                if (++progressReports[0] == 3) {
+                    throw new IllegalStateException("interrupted");
+                }
+            });
+            throw new AssertionError("generation was not interrupted");
+        } catch (IllegalStateException ex) {
+            assertThat(ex.getMessage(), is("interrupted"));
+        }
+
+        // second run is resuming from the intermediate checkpoint (restored progress is reported first)
+        final List<Long> resumedProgress = new ArrayList<>();
+        final GenResult resumed = generateWithCheckpoints(checkpointConfig, resumedProgress::add);
+        assertThat(resumedProgress.get(0), is(19_999L));
+
+        // third run is only restoring the final checkpoint
+        final GenResult restored = generateWithCheckpoints(checkpointConfig, a -> {
+        });
+
+        for (GenResult actual : new GenResult[]{resumed, restored}) {
+            assertThat(actual.getFinalOrderBookHash(), is(expected.getFinalOrderBookHash()));
+            assertSameContent(actual.getCommandsFill(), expected.getCommandsFill());
+            assertSameContent(actual.getCommandsBenchmark(), expected.getCommandsBenchmark());
+            assertThat(StateHashVerifier.findFirstDivergence(expected.getStateHashTrail(), actual.getStateHashTrail()).isPresent(), is(false));
+            assertThat(actual.getStateHashTrail().size(), is(expected.getStateHashTrail().size()));
+        }
+    }
+
+    @Test
+    public void shouldProduceSameCommandsWithReusedArena() {
+
+        final GeneratorWorkerArena arena = new GeneratorWorkerArena();
+
+        for (final GeneratorSymbolSpec spec : new GeneratorSymbolSpec[]{Constants.SYMBOLSPEC_EUR_USD, Constants.SYMBOLSPEC_ETH_XBT}) {
+
+            final GenResult expected = generateWithArena(spec, null);
+            final GenResult actual = generateWithArena(spec, arena);
+
+            assertThat(actual.getFinalOrderBookHash(), is(expected.getFinalOrderBookHash()));
+            assertSameContent(actual.getCommandsFill(), expected.getCommandsFill());
+            assertSameContent(actual.getCommandsBenchmark(), expected.getCommandsBenchmark());
+        }
+
+        assertThat(arena.getSymbolsGenerated(), is(2));
+    }
+
+    @Test
+    @SuppressWarnings("deprecation")
+    public void shouldProduceSameCommandsWithBoxingUidMapper() {
+
+        final GenResult expected = generateWithArena(Constants.SYMBOLSPEC_EUR_USD, null);
+        final GenResult actual = SingleBookOrderGenerator.generateCommands(
+                20_000,
+                500,
+                1000,
+                SingleBookOrderGenerator.UID_PLAIN_MAPPER,
+                Constants.SYMBOLSPEC_EUR_USD,
+                false,
+                false,
+                a -> {
+                },
+                1,
+                1);
+
+        assertThat(actual.getFinalOrderBookHash(), is(expected.getFinalOrderBookHash()));
+        assertSameContent(actual.getCommandsFill(), expected.getCommandsFill());
+        assertSameContent(actual.getCommandsBenchmark(), expected.getCommandsBenchmark());
+    }
+
+    @Test
+    public void shouldNotCountFailedSymbolInArena() {
+
+        final GeneratorWorkerArena arena = new GeneratorWorkerArena();
+
+        final GeneratorOptions brokenOptions = GeneratorOptions.builder()
+                .orderBookFactory((spec, resultsBufferWriter) -> {
+                    throw new IllegalStateException("order book is not available");
+                })
+                .build();
+
+        try {
+            SingleBookOrderGenerator.generateCommands(
+                    20_000, 500, 1000, i -> i + 1, Constants.SYMBOLSPEC_EUR_USD, false, false, a -> {
+                    }, 1, 1, brokenOptions, arena);
+            throw new AssertionError("generation did not fail");
+        } catch (IllegalStateException ex) {
+            assertThat(ex.getMessage(), is("order book is not available"));
+        }
+
+        assertThat(arena.getSymbolsGenerated(), is(0));
+    }
+
+    private static GenResult generateWithArena(final GeneratorSymbolSpec spec, final GeneratorWorkerArena arena) {
+
+        return SingleBookOrderGenerator.generateCommands(
+                20_000,
+                500,
+                1000,
+                i -> i + 1,
+                spec,
+                false,
+                false,
+                a -> {
+                },
+                1,
+                1,
+                GeneratorOptions.DEFAULT,
+                arena);
+    }
+
+    private static GenResult generateWithCheckpoints(final GeneratorCheckpointConfig checkpointConfig,
+                                                     final LongConsumer progressConsumer) {
+
+        return SingleBookOrderGenerator.generateCommands(
+                30_000,
+                1000,
+                1000,
+                i -> i + 1,
+                Constants.SYMBOLSPEC_ETH_XBT,
+                false,
+                false,
+                progressConsumer,
+                1,
+                1,
+                GeneratorOptions.builder()
+                        .checkpointConfig(checkpointConfig)
+                        .stateHashInterval(5000)
+                        .build());
+    }
+
+    @Test
+    public void shouldCrossCheckOrderBooks() {
+
+        final GenResult expected = generateCrossChecked(null);
+        final GenResult genResult = generateCrossChecked(OrderBookFactory.NAIVE);
+
+        // cross-checking is not affecting generated commands
+        assertThat(genResult.getFinalOrderBookHash(), is(expected.getFinalOrderBookHash()));
+        assertSameContent(genResult.getCommandsBenchmark(), expected.getCommandsBenchmark());
+        assertThat(StateHashVerifier.findFirstDivergence(expected.getStateHashTrail(), genResult.getStateHashTrail()).isPresent(), is(false));
+    }
+
+    @Test
+    public void shouldDetectDivergentOrderBook() {
+
+        // second order book is losing the 100th cancel command (cancels non-existing order instead)
+        final OrderBookFactory divergentFactory = (spec, resultsBufferWriter) -> new OrderBookNaiveImpl<ISymbolSpecification>(spec, false, resultsBufferWriter) {
+
+            private final UnsafeBuffer brokenCommand = new UnsafeBuffer(new byte[IOrderBook.CANCEL_OFFSET_END]);
+            private int cancels = 0;
+
+            @Override
+            public void cancelOrder(final DirectBuffer buffer, final int offset) {
+                if (++cancels == 100) {
+                    brokenCommand.putBytes(0, buffer, offset, IOrderBook.CANCEL_OFFSET_END);
+                    brokenCommand.putLong(IOrderBook.CANCEL_OFFSET_ORDER_ID, Integer.MAX_VALUE);
+                    super.cancelOrder(brokenCommand, 0);
+                } else {
+                    super.cancelOrder(buffer, offset);
+                }
+            }
+        };
+
+        try {
+            generateCrossChecked(divergentFactory);
+            throw new AssertionError("divergence was not detected");
+        } catch (IllegalStateException ex) {
+            log.debug("{}", ex.getMessage());
+            assertThat(ex.getMessage().startsWith("Cross-check failed on command "), is(true));
+        }
+    }
+
+    private static GenResult generateCrossChecked(final OrderBookFactory crossCheckFactory) {
+
+        return SingleBookOrderGenerator.generateCommands(
+                50_000,
+                1000,
+                1000,
+                i -> i + 1,
+                Constants.SYMBOLSPEC_EUR_USD,
+                false,
+                false,
+                a -> {
+                },
+                1,
+                1,
+                GeneratorOptions.builder()
+                        .crossCheckOrderBookFactory(crossCheckFactory)
+                        .stateHashInterval(1000)
+                        .build());
+    }
+
+    @Test
+    public void shouldFindFirstDivergentStateHashWindow() throws Exception {
+
+        final GenResult genResult = SingleBookOrderGenerator.generateCommands(
+                29_000,
+                1000,
+                1000,
+                i -> i + 1,
+                Constants.SYMBOLSPEC_EUR_USD,
+                false,
+                false,
+                a -> {
+                },
+                1,
+                1,
+                GeneratorOptions.builder()
+                        .stateHashInterval(1000)
+                        .build());
+
+        final StateHashTrail trail = genResult.getStateHashTrail();
+        assertThat(trail.size(), is(30));
+        assertThat(trail.getHash(29), is(genResult.getFinalOrderBookHash()));
+
+        final Map<Integer, StateHashTrail> trails = Collections.singletonMap(trail.getSymbolId(), trail);
+
+        // exchange reports matching hashes
+        assertThat(StateHashVerifier.findFirstDivergence(trails, exchangeHashStream(trail, -1)).isPresent(), is(false));
+
+        // exchange state diverged somewhere in commands [17000, 18000)
+        final StateHashVerifier.Divergence divergence = StateHashVerifier.findFirstDivergence(trails, exchangeHashStream(trail, 17)).get();
+        assertThat(divergence.getSymbolId(), is(trail.getSymbolId()));
+        assertThat(divergence.getFromCommand(), is(17_000L));
+        assertThat(divergence.getToCommand(), is(18_000L));
+    }
+
+    private static DataInputStream exchangeHashStream(final StateHashTrail trail, final int firstBrokenIdx) throws IOException {
+        final ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        final DataOutputStream dos = new DataOutputStream(baos);
+        for (int i = 0; i < trail.size(); i++) {
+            dos.writeInt(trail.getSymbolId());
+            dos.writeLong(trail.commandsProcessed(i));
+            dos.writeInt((firstBrokenIdx >= 0 && i >= firstBrokenIdx) ? ~trail.getHash(i) : trail.getHash(i));
+        }
+        return new DataInputStream(new ByteArrayInputStream(baos.toByteArray()));
+    }
+
+}
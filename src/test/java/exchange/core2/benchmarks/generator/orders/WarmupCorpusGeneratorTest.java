@@ -0,0 +1,90 @@
+package exchange.core2.benchmarks.generator.orders;
+
+import exchange.core2.benchmarks.generator.Constants;
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.benchmarks.generator.clients.ClientsCurrencyAccountsGenerator;
+import exchange.core2.benchmarks.generator.storage.SegmentedBufferReader;
+import exchange.core2.orderbook.IOrderBook;
+import org.apache.commons.math3.util.Pair;
+import org.junit.Test;
+
+import java.util.*;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class WarmupCorpusGeneratorTest {
+
+    @Test
+    public void shouldGenerateWarmupOnDisjointSymbolsAndUids() {
+
+        final List<Pair<GeneratorSymbolSpec, Double>> specs = createSpecs();
+        final List<BitSet> accounts = createAccounts();
+
+        final WarmupCorpusConfig config = new WarmupCorpusConfig(100_000, 1_000_000, 10_000, 500, 7);
+        final WarmupCorpus corpus = WarmupCorpusGenerator.generateWarmupCorpus(specs, accounts, false, GeneratorScenario.RANDOM, config);
+
+        final Set<Integer> warmupSymbols = new HashSet<>();
+        specs.forEach(p -> warmupSymbols.add(p.getFirst().getSymbolId() + 100_000));
+        assertThat(corpus.getOrderBookHashes().keySet(), is(warmupSymbols));
+
+        // shifted specs and uid range are exposed for registering symbols and funding users before replay
+        assertThat(corpus.getSymbolSpecs().size(), is(specs.size()));
+        for (int i = 0; i < specs.size(); i++) {
+            final GeneratorSymbolSpec spec = specs.get(i).getFirst();
+            final GeneratorSymbolSpec warmupSpec = corpus.getSymbolSpecs().get(i);
+            assertThat(warmupSpec, is(WarmupCorpusGenerator.shiftSymbolId(spec, 100_000)));
+            assertThat(warmupSpec.getSymbolId(), is(spec.getSymbolId() + 100_000));
+            assertThat(warmupSpec.getQuoteCurrency(), is(spec.getQuoteCurrency()));
+        }
+        assertThat(corpus.getFirstUid(), is(1_000_001));
+        assertThat(corpus.getLastUid(), is(1_000_000 + accounts.size() - 1));
+
+        // every command type of the benchmark stream is present, symbols and uids are shifted
+        final Set<Byte> commandCodes = new HashSet<>();
+        final SegmentedBufferReader reader = corpus.getCommandsWarmup().newReader();
+        int count = 0;
+        while (reader.getRemainingSize() > 0) {
+            final byte cmd = reader.readByte();
+            final int symbolId = reader.readInt();
+            final long uid = reader.readLong();
+            assertThat(warmupSymbols.contains(symbolId), is(true));
+            assertThat(uid >= corpus.getFirstUid() && uid <= corpus.getLastUid(), is(true));
+            commandCodes.add(cmd);
+            for (int i = 8; i < IOrderBook.fixedCommandSize(cmd); i++) {
+                reader.readByte();
+            }
+            count++;
+        }
+
+        assertThat(count, is(corpus.getWarmupCommandsSize()));
+        assertThat(commandCodes.size(), is(4));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectOverlappingSymbolIds() {
+        WarmupCorpusGenerator.generateWarmupCorpus(createSpecs(), createAccounts(), false, GeneratorScenario.RANDOM,
+                new WarmupCorpusConfig(1, 0, 1000, 100, 1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRejectOverlappingUids() {
+        WarmupCorpusGenerator.generateWarmupCorpus(createSpecs(), createAccounts(), false, GeneratorScenario.RANDOM,
+                new WarmupCorpusConfig(100_000, 10, 1000, 100, 1));
+    }
+
+    private static List<Pair<GeneratorSymbolSpec, Double>> createSpecs() {
+        final List<Pair<GeneratorSymbolSpec, Double>> specs = new ArrayList<>();
+        specs.add(Pair.create(Constants.SYMBOLSPEC_EUR_USD, 0.5));
+        specs.add(Pair.create(Constants.SYMBOLSPECFEE_USD_JPY, 0.5));
+        return specs;
+    }
+
+    private static List<BitSet> createAccounts() {
+        final Map<Integer, Double> currencies = new HashMap<>();
+        currencies.put(Constants.CURRENECY_USD, 0.5);
+        currencies.put(Constants.CURRENECY_EUR, 0.25);
+        currencies.put(Constants.CURRENECY_JPY, 0.25);
+        return ClientsCurrencyAccountsGenerator.generateClients(1000, currencies, 1);
+    }
+}
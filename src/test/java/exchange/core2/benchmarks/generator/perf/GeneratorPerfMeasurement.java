@@ -0,0 +1,89 @@
+package exchange.core2.benchmarks.generator.perf;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.Properties;
+import java.util.function.LongSupplier;
+
+final class GeneratorPerfMeasurement {
+
+    final long wallTimeNs;
+    final long commands;
+    final long peakHeapBytes;
+    final long allocatedBytes;
+
+    private GeneratorPerfMeasurement(long wallTimeNs, long commands, long peakHeapBytes, long allocatedBytes) {
+        this.wallTimeNs = wallTimeNs;
+        this.commands = commands;
+        this.peakHeapBytes = peakHeapBytes;
+        this.allocatedBytes = allocatedBytes;
+    }
+
+    /**
+     * Runs generation and measures it. Allocated bytes are summed over all live threads
+     * (allocations of threads terminated during the run are not counted, generator uses long-living common pool threads).
+     *
+     * @param generation - runs generation and returns number of generated commands
+     */
+    static GeneratorPerfMeasurement measure(final LongSupplier generation) {
+
+        System.gc();
+
+        final List<MemoryPoolMXBean> heapPools = ManagementFactory.getMemoryPoolMXBeans();
+        heapPools.stream().filter(p -> p.getType() == MemoryType.HEAP).forEach(MemoryPoolMXBean::resetPeakUsage);
+
+        final long allocatedBefore = totalAllocatedBytes();
+        final long t = System.nanoTime();
+
+        final long commands = generation.getAsLong();
+
+        final long wallTimeNs = System.nanoTime() - t;
+        final long allocated = totalAllocatedBytes() - allocatedBefore;
+
+        final long peakHeap = heapPools.stream()
+                .filter(p -> p.getType() == MemoryType.HEAP)
+                .mapToLong(p -> p.getPeakUsage().getUsed())
+                .sum();
+
+        return new GeneratorPerfMeasurement(wallTimeNs, commands, peakHeap, allocated);
+    }
+
+    private static long totalAllocatedBytes() {
+        final ThreadMXBean threadMXBean = ManagementFactory.getThreadMXBean();
+        if (!(threadMXBean instanceof com.sun.management.ThreadMXBean)) {
+            return 0L;
+        }
+        final com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) threadMXBean;
+        long sum = 0L;
+        for (long allocated : bean.getThreadAllocatedBytes(bean.getAllThreadIds())) {
+            if (allocated > 0) {
+                sum += allocated;
+            }
+        }
+        return sum;
+    }
+
+    double commandsPerSecond() {
+        return commands * 1_000_000_000.0 / wallTimeNs;
+    }
+
+    double allocatedBytesPerCommand() {
+        return commands == 0 ? 0.0 : (double) allocatedBytes / commands;
+    }
+
+    void store(final Properties properties, final GeneratorPerfScenario scenario) {
+        properties.setProperty(scenario.name() + ".commandsPerSecond", String.valueOf(Math.round(commandsPerSecond())));
+        properties.setProperty(scenario.name() + ".wallTimeMs", String.valueOf(wallTimeNs / 1_000_000));
+        properties.setProperty(scenario.name() + ".peakHeapBytes", String.valueOf(peakHeapBytes));
+        properties.setProperty(scenario.name() + ".allocatedBytesPerCommand", String.valueOf(Math.round(allocatedBytesPerCommand())));
+    }
+
+    @Override
+    public String toString() {
+        return String.format("commands=%d time=%dms throughput=%.0f cmd/s peakHeap=%dMB allocated=%.1f B/cmd",
+                commands, wallTimeNs / 1_000_000, commandsPerSecond(), peakHeapBytes >> 20, allocatedBytesPerCommand());
+    }
+}
@@ -0,0 +1,25 @@
+package exchange.core2.benchmarks.generator.perf;
+
+/**
+ * Canonical generation scenarios, numbers are fixed to keep results comparable between versions
+ * (perf.scale only for quick local runs, baseline should be recorded with the same scale).
+ */
+enum GeneratorPerfScenario {
+
+    SINGLE_SYMBOL(1, 1_000_000, 1_000, false),
+    SYMBOLS_100(100, 1_000_000, 10_000, false),
+    SYMBOLS_10K(10_000, 2_000_000, 100_000, false),
+    AVALANCHE_IOC(1, 1_000_000, 1_000, true);
+
+    final int symbols;
+    final int transactions;
+    final int orderBookTarget;
+    final boolean avalancheIOC;
+
+    GeneratorPerfScenario(int symbols, int transactions, int orderBookTarget, boolean avalancheIOC) {
+        this.symbols = symbols;
+        this.transactions = transactions;
+        this.orderBookTarget = orderBookTarget;
+        this.avalancheIOC = avalancheIOC;
+    }
+}
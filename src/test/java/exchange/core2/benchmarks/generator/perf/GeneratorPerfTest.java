@@ -0,0 +1,161 @@
+package exchange.core2.benchmarks.generator.perf;
+
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.benchmarks.generator.clients.ClientsCurrencyAccountsGenerator;
+import exchange.core2.benchmarks.generator.currencies.CurrenciesGenerator;
+import exchange.core2.benchmarks.generator.orders.GeneratorOptions;
+import exchange.core2.benchmarks.generator.orders.MultiSymbolGenResult;
+import exchange.core2.benchmarks.generator.orders.MultiSymbolOrdersGenerator;
+import exchange.core2.benchmarks.generator.symbols.SymbolsGenerator;
+import exchange.core2.benchmarks.generator.util.GenerationPhase;
+import exchange.core2.benchmarks.generator.util.PhaseMeters;
+import org.apache.commons.math3.util.Pair;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+import static org.junit.Assert.fail;
+
+/**
+ * Generator performance regression test (excluded from default build, run with -Pperf).
+ * <p>
+ * Every canonical scenario is generated perf.iterations times, the best throughput is compared against the baseline file.
+ * Test fails if throughput dropped more than perf.threshold (fraction) below the baseline.
+ * Baseline is recorded only with perf.updateBaseline=true, test fails if baseline file does not exist
+ * (otherwise every fresh checkout would record its own baseline and never detect a regression).
+ * <p>
+ * Optional allocation budgets per phase: perf.allocationBudget.PHASE=bytesPerCommand (e.g. perf.allocationBudget.SYMBOL_COMMANDS=200).
+ */
+public class GeneratorPerfTest {
+
+    private static final Logger log = LoggerFactory.getLogger(GeneratorPerfTest.class);
+
+    @Test
+    public void generationThroughputShouldNotRegress() throws IOException {
+
+        final Path baselineFile = Paths.get(System.getProperty("perf.baseline", "perf/generator-baseline.properties"));
+        final double threshold = Double.parseDouble(System.getProperty("perf.threshold", "0.15"));
+        final int iterations = Integer.parseInt(System.getProperty("perf.iterations", "3"));
+        final double scale = Double.parseDouble(System.getProperty("perf.scale", "1.0"));
+        final boolean updateBaseline = Boolean.parseBoolean(System.getProperty("perf.updateBaseline", "false"));
+
+        final Properties baseline = new Properties();
+        final boolean baselineExists = Files.exists(baselineFile);
+        if (!baselineExists && !updateBaseline) {
+            fail("Baseline " + baselineFile.toAbsolutePath() + " does not exist, record it on the reference machine with -Dperf.updateBaseline=true");
+        }
+        if (baselineExists) {
+            try (InputStream is = Files.newInputStream(baselineFile)) {
+                baseline.load(is);
+            }
+        }
+
+        final Map<GenerationPhase, Double> allocationBudgets = new EnumMap<>(GenerationPhase.class);
+        for (GenerationPhase phase : GenerationPhase.values()) {
+            final String budget = System.getProperty("perf.allocationBudget." + phase.name());
+            if (budget != null) {
+                allocationBudgets.put(phase, Double.parseDouble(budget));
+            }
+        }
+
+        final Properties results = new Properties();
+        results.setProperty("scale", String.valueOf(scale));
+        final List<String> regressions = new ArrayList<>();
+
+        for (final GeneratorPerfScenario scenario : GeneratorPerfScenario.values()) {
+
+            GeneratorPerfMeasurement best = null;
+            for (int i = 0; i < iterations; i++) {
+                final PhaseMeters phaseMeters = new PhaseMeters();
+                final GeneratorPerfMeasurement measurement = runScenario(scenario, scale, phaseMeters);
+                log.info("{} iteration {}: {}\n{}", scenario, i, measurement, phaseMeters.report());
+                for (String violation : phaseMeters.checkAllocationBudgets(allocationBudgets)) {
+                    regressions.add(scenario + " iteration " + i + " " + violation);
+                }
+                if (best == null || measurement.commandsPerSecond() > best.commandsPerSecond()) {
+                    best = measurement;
+                }
+            }
+
+            log.info("{} BEST: {}", scenario, best);
+            best.store(results, scenario);
+
+            final String baselineCps = baseline.getProperty(scenario.name() + ".commandsPerSecond");
+            if (baselineCps == null && !updateBaseline) {
+                regressions.add(scenario + ": no baseline value, re-record baseline with -Dperf.updateBaseline=true");
+            } else if (baselineCps != null && !updateBaseline) {
+                final double expected = Double.parseDouble(baselineCps);
+                final double ratio = best.commandsPerSecond() / expected;
+                log.info("{} throughput {}% of baseline", scenario, Math.round(ratio * 100));
+                if (ratio < 1.0 - threshold) {
+                    regressions.add(String.format("%s: %.0f cmd/s vs baseline %.0f cmd/s (%.1f%%)",
+                            scenario, best.commandsPerSecond(), expected, ratio * 100));
+                }
+            }
+        }
+
+        if (updateBaseline) {
+            if (baselineFile.getParent() != null) {
+                Files.createDirectories(baselineFile.getParent());
+            }
+            try (OutputStream os = Files.newOutputStream(baselineFile)) {
+                results.store(os, "Generator performance baseline");
+            }
+            log.info("Baseline recorded into {}", baselineFile);
+        } else if (!String.valueOf(scale).equals(baseline.getProperty("scale", String.valueOf(scale)))) {
+            fail("Baseline recorded with scale " + baseline.getProperty("scale") + ", current scale " + scale);
+        }
+
+        if (!regressions.isEmpty()) {
+            fail("Generation performance regression (throughput threshold " + threshold + "):\n" + String.join("\n", regressions));
+        }
+    }
+
+    private static GeneratorPerfMeasurement runScenario(final GeneratorPerfScenario scenario,
+                                                        final double scale,
+                                                        final PhaseMeters phaseMeters) {
+
+        // input data is not part of measurement
+        final Map<Integer, Double> currencies = CurrenciesGenerator.randomCurrencies(30, 1, 1);
+
+        final List<Pair<GeneratorSymbolSpec, Double>> specs = SymbolsGenerator.generateRandomSymbols(
+                scenario.symbols,
+                currencies,
+                EnumSet.allOf(GeneratorSymbolSpec.SymbolType.class),
+                40000,
+                1,
+                phaseMeters);
+
+        final int accountsNum = Math.max(10_000, scenario.symbols * 10);
+        final List<BitSet> accounts = ClientsCurrencyAccountsGenerator.generateClients(accountsNum, currencies, 1, phaseMeters);
+
+        final int transactions = (int) (scenario.transactions * scale);
+        final int orderBookTarget = (int) Math.max(scenario.symbols, scenario.orderBookTarget * scale);
+
+        // nominal number of commands (fill + benchmark), constant for the scenario
+        return GeneratorPerfMeasurement.measure(() -> {
+            final MultiSymbolGenResult result = MultiSymbolOrdersGenerator.generateMultipleSymbols(
+                    specs,
+                    transactions,
+                    accounts,
+                    orderBookTarget,
+                    1,
+                    scenario.avalancheIOC,
+                    GeneratorOptions.builder()
+                            .phaseMeters(phaseMeters)
+                            .build());
+
+            result.getCommandsFill().join();
+            result.getCommandsBenchmark().join();
+            return transactions + orderBookTarget;
+        });
+    }
+}
@@ -0,0 +1,112 @@
+package exchange.core2.benchmarks.generator.replay;
+
+import exchange.core2.benchmarks.generator.storage.CommandsCorpus;
+import exchange.core2.benchmarks.generator.storage.SegmentedBufferWriter;
+import exchange.core2.orderbook.IOrderBook;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.net.InetSocketAddress;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CommandsReplayClientTest {
+
+    private static final Logger log = LoggerFactory.getLogger(CommandsReplayClientTest.class);
+
+    private static final int NUM_COMMANDS = 100_000;
+
+    // ~40MB, much more than loopback socket buffers on both sides
+    private static final int NUM_ECHO_COMMANDS = 1_000_000;
+
+    @Test
+    public void shouldReplayOverTcp() throws Exception {
+
+        final CommandsCorpus corpus = createCorpus();
+        final long corpusSize = corpus.getBuffer().getSize();
+
+        try (LoopbackSinkServer server = new LoopbackSinkServer(ReplayClientConfig.Protocol.TCP, false)) {
+
+            final InetSocketAddress address = server.start();
+
+            // raw framing, single connection - adjacent commands are sent in a single gather buffer
+            final ReplayStats rawStats = CommandsReplayClient.replay(corpus, new ReplayClientConfig(
+                    address, ReplayClientConfig.Protocol.TCP, MessageFraming.RAW, 64));
+            log.debug("raw: {}", rawStats);
+            assertThat(rawStats.getCommands(), is((long) NUM_COMMANDS));
+            assertThat(rawStats.getBytes(), is(corpusSize));
+            assertThat(server.awaitBytes(corpusSize, 10_000), is(true));
+
+            // length-prefixed framing, fan-out by symbol
+            final ReplayStats framedStats = CommandsReplayClient.replay(corpus, new ReplayClientConfig(
+                    address, ReplayClientConfig.Protocol.TCP, MessageFraming.LENGTH_PREFIXED, 32, 4, FanOutMode.BY_SYMBOL, 0));
+            log.debug("framed: {}", framedStats);
+            assertThat(framedStats.getBytes(), is(corpusSize + 4L * NUM_COMMANDS));
+            assertThat(server.awaitBytes(corpusSize * 2 + 4L * NUM_COMMANDS, 10_000), is(true));
+        }
+    }
+
+    @Test(timeout = 60_000)
+    public void shouldReplayToEchoServer() throws Exception {
+
+        final CommandsCorpus corpus = createCorpus(NUM_ECHO_COMMANDS);
+        final long corpusSize = corpus.getBuffer().getSize();
+
+        try (LoopbackSinkServer server = new LoopbackSinkServer(ReplayClientConfig.Protocol.TCP, true)) {
+
+            final InetSocketAddress address = server.start();
+
+            // server blocks on echo (and then client on send) if client does not read responses
+            final ReplayStats stats = CommandsReplayClient.replay(corpus, new ReplayClientConfig(
+                    address, ReplayClientConfig.Protocol.TCP, MessageFraming.RAW, 64, 2, FanOutMode.BY_UID, 64 * 1024));
+            log.debug("echo: {}", stats);
+
+            assertThat(stats.getCommands(), is((long) NUM_ECHO_COMMANDS));
+            assertThat(stats.getBytes(), is(corpusSize));
+            assertThat(server.awaitBytes(corpusSize, 10_000), is(true));
+        }
+    }
+
+    @Test
+    public void shouldReplayOverUdp() throws Exception {
+
+        final CommandsCorpus corpus = createCorpus();
+
+        try (LoopbackSinkServer server = new LoopbackSinkServer(ReplayClientConfig.Protocol.UDP, false)) {
+
+            final InetSocketAddress address = server.start();
+
+            final ReplayStats stats = CommandsReplayClient.replay(corpus, new ReplayClientConfig(
+                    address, ReplayClientConfig.Protocol.UDP, MessageFraming.LENGTH_PREFIXED, 16, 2, FanOutMode.BY_UID, 0));
+            log.debug("udp: {} received {} datagrams", stats, server.getMessagesReceived());
+
+            assertThat(stats.getBytes(), is(corpus.getBuffer().getSize() + 4L * NUM_COMMANDS));
+
+            // every datagram is a single write (datagrams are also flushed when corpus segment changes)
+            assertThat(stats.getWriteCalls() >= NUM_COMMANDS / 16, is(true));
+            assertThat(stats.getWriteCalls() < NUM_COMMANDS / 8, is(true));
+        }
+    }
+
+    private static CommandsCorpus createCorpus() {
+        return createCorpus(NUM_COMMANDS);
+    }
+
+    private static CommandsCorpus createCorpus(final int numCommands) {
+        final SegmentedBufferWriter writer = new SegmentedBufferWriter(256 * 1024);
+        for (int i = 0; i < numCommands; i++) {
+            final byte code = (i % 4 == 0) ? IOrderBook.COMMAND_CANCEL_ORDER : IOrderBook.COMMAND_PLACE_ORDER;
+            final int bodySize = IOrderBook.fixedCommandSize(code);
+            writer.beginRecord(5 + bodySize);
+            writer.appendByte(code);
+            writer.appendInt(i % 10);
+            writer.appendLong(i % 2); // uid
+            for (int j = 8; j < bodySize; j++) {
+                writer.appendByte((byte) j);
+            }
+        }
+        return CommandsCorpus.merged(writer.toBuffer());
+    }
+}
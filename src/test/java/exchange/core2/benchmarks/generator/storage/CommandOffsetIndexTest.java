@@ -0,0 +1,61 @@
+package exchange.core2.benchmarks.generator.storage;
+
+import exchange.core2.orderbook.IOrderBook;
+import org.junit.Test;
+
+import static exchange.core2.benchmarks.generator.storage.CommandsTestSupport.createMergedCommands;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CommandOffsetIndexTest {
+
+    private static final int NUM_COMMANDS = 50_000;
+
+    private static final byte[] PLACE_ONLY = {IOrderBook.COMMAND_PLACE_ORDER};
+
+    @Test
+    public void shouldSeekToExactCommand() {
+
+        final CommandOffsetIndex.Builder builder = new CommandOffsetIndex.Builder(1000, true);
+        final CommandsCorpus corpus = CommandsCorpus.merged(createMergedCommands(NUM_COMMANDS, 4096, PLACE_ONLY, builder));
+        final CommandOffsetIndex index = builder.build(corpus.getBuffer().getEndAddress());
+
+        assertThat(index.getCommandsCount(), is((long) NUM_COMMANDS));
+        assertThat(index.getEntriesCount(), is(50));
+        assertThat(index.getSymbolCommandsCount(0), is(7143L));
+        assertThat(index.getSymbolCommandsCount(6), is(7142L));
+
+        // same as scanned index
+        final CommandOffsetIndex scanned = CommandOffsetIndex.scan(corpus, 1000, false);
+        for (int i = 0; i < index.getEntriesCount(); i++) {
+            assertThat(scanned.getEntryAddress(i), is(index.getEntryAddress(i)));
+        }
+
+        for (long k : new long[]{0, 1, 999, 1000, 1001, 12_345, NUM_COMMANDS - 1}) {
+            final CommandCursor cursor = index.seek(corpus, k);
+            assertThat(cursor.next(), is(true));
+            assertThat(cursor.view().getPlaceOrderId(), is(k));
+        }
+
+        assertThat(index.seek(corpus, NUM_COMMANDS).next(), is(false));
+    }
+
+    @Test
+    public void shouldSplitIntoExactRanges() {
+
+        final CommandsCorpus corpus = CommandsCorpus.merged(createMergedCommands(NUM_COMMANDS, 4096, PLACE_ONLY, null));
+        final CommandOffsetIndex index = CommandOffsetIndex.scan(corpus, 777, false);
+
+        final long[] bounds = index.splitEvenly(7);
+        long expected = 0;
+        for (int part = 0; part < 7; part++) {
+            final CommandCursor cursor = index.newCursor(corpus, bounds[part], bounds[part + 1]);
+            while (cursor.next()) {
+                assertThat(cursor.view().getPlaceOrderId(), is(expected));
+                expected++;
+            }
+            assertThat(expected, is(bounds[part + 1]));
+        }
+        assertThat(expected, is((long) NUM_COMMANDS));
+    }
+}
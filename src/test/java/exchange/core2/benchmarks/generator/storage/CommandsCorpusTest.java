@@ -0,0 +1,77 @@
+package exchange.core2.benchmarks.generator.storage;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Spliterator;
+
+import static exchange.core2.benchmarks.generator.storage.CommandsTestSupport.createMergedCommands;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CommandsCorpusTest {
+
+    private static final int NUM_COMMANDS = 50_000;
+
+    @Test
+    public void shouldIterateCommandsWithCursor() {
+
+        for (int segmentSize : new int[]{4096, 16 * 1024 * 1024}) {
+
+            final CommandsCorpus corpus = CommandsCorpus.merged(createMergedCommands(NUM_COMMANDS, segmentSize));
+
+            // two independent cursors
+            final CommandCursor cursor1 = corpus.newCursor();
+            final CommandCursor cursor2 = corpus.newCursor();
+            for (int i = 0; i < NUM_COMMANDS; i++) {
+                assertThat(cursor1.next(), is(true));
+                assertThat(cursor1.view().getSymbolId(), is(i % 7));
+                if (cursor1.view().isPlaceOrder()) {
+                    assertThat(cursor1.view().getPlaceOrderId(), is((long) i));
+                }
+            }
+            assertThat(cursor1.next(), is(false));
+
+            assertThat(cursor2.next(), is(true));
+            assertThat(cursor2.view().getAddress(), is(0L));
+        }
+    }
+
+    @Test
+    public void shouldSplitOnCommandBoundaries() {
+
+        for (int segmentSize : new int[]{4096, 16 * 1024 * 1024}) {
+
+            final CommandsCorpus corpus = CommandsCorpus.merged(createMergedCommands(NUM_COMMANDS, segmentSize));
+
+            // split recursively, then check that all parts cover every command exactly once and in order
+            final List<Spliterator<CommandView>> parts = new ArrayList<>();
+            split(corpus.spliterator(), parts);
+            assertThat(parts.size() > 8, is(true));
+
+            final int[] nextIdx = {0};
+            for (Spliterator<CommandView> part : parts) {
+                part.forEachRemaining(view -> {
+                    assertThat(view.getSymbolId(), is(nextIdx[0] % 7));
+                    nextIdx[0]++;
+                });
+            }
+            assertThat(nextIdx[0], is(NUM_COMMANDS));
+
+            // parallel stream
+            final long placeOrders = corpus.stream(true).filter(CommandView::isPlaceOrder).count();
+            assertThat(placeOrders, is((long) (NUM_COMMANDS - (NUM_COMMANDS + 2) / 3)));
+        }
+    }
+
+    private static void split(final Spliterator<CommandView> spliterator, final List<Spliterator<CommandView>> parts) {
+        final Spliterator<CommandView> prefix = (parts.size() < 64) ? spliterator.trySplit() : null;
+        if (prefix == null) {
+            parts.add(spliterator);
+        } else {
+            split(prefix, parts);
+            split(spliterator, parts);
+        }
+    }
+}
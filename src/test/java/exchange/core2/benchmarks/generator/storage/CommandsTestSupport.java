@@ -0,0 +1,82 @@
+package exchange.core2.benchmarks.generator.storage;
+
+import exchange.core2.orderbook.IOrderBook;
+import exchange.core2.orderbook.util.BufferReader;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+/**
+ * Shared fixtures for corpus and generator tests.
+ */
+public final class CommandsTestSupport {
+
+    public static final int SYMBOLS_NUM = 7;
+    public static final int UIDS_NUM = 100;
+
+    private CommandsTestSupport() {
+    }
+
+    /**
+     * Creates merged commands [code][symbolId][body], command i has:
+     * code = codes[i % codes.length], symbolId = i % 7, uid = i % 100, orderId = i, other body bytes are zero.
+     *
+     * @param builder - optional offset index builder notified about every command
+     */
+    public static SegmentedBuffer createMergedCommands(final int numCommands,
+                                                       final int segmentSize,
+                                                       final byte[] codes,
+                                                       final CommandOffsetIndex.Builder builder) {
+
+        final SegmentedBufferWriter writer = new SegmentedBufferWriter(segmentSize);
+
+        for (int i = 0; i < numCommands; i++) {
+
+            final byte code = codes[i % codes.length];
+            final int bodySize = IOrderBook.fixedCommandSize(code);
+            final int symbolId = i % SYMBOLS_NUM;
+
+            writer.beginRecord(5 + bodySize);
+            if (builder != null) {
+                builder.onCommand(writer.getWriterPosition(), symbolId);
+            }
+            writer.appendByte(code);
+            writer.appendInt(symbolId);
+            // uid and orderId are first fields of every command body
+            writer.appendLong(i % UIDS_NUM);
+            writer.appendLong(i);
+            for (int pos = 16; pos < bodySize; pos++) {
+                writer.appendByte((byte) 0);
+            }
+        }
+
+        return writer.toBuffer();
+    }
+
+    /**
+     * Every third command (starting from the first one) is cancel, others are place orders.
+     */
+    public static SegmentedBuffer createMergedCommands(final int numCommands, final int segmentSize) {
+        return createMergedCommands(
+                numCommands,
+                segmentSize,
+                new byte[]{IOrderBook.COMMAND_CANCEL_ORDER, IOrderBook.COMMAND_PLACE_ORDER, IOrderBook.COMMAND_PLACE_ORDER},
+                null);
+    }
+
+    public static void assertSameContent(final SegmentedBuffer actual, final SegmentedBuffer expected) {
+        assertThat(actual.getSize(), is(expected.getSize()));
+        final SegmentedBufferReader actualReader = actual.newReader();
+        final SegmentedBufferReader expectedReader = expected.newReader();
+        while (expectedReader.getRemainingSize() > 0) {
+            assertThat(actualReader.readByte(), is(expectedReader.readByte()));
+        }
+    }
+
+    public static void assertSameContent(final BufferReader actual, final BufferReader expected) {
+        assertThat(actual.getSize(), is(expected.getSize()));
+        for (int i = 0; i < expected.getSize(); i++) {
+            assertThat(actual.getByte(i), is(expected.getByte(i)));
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package exchange.core2.benchmarks.generator.storage;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.RandomAccessFile;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.Deflater;
+
+import static exchange.core2.benchmarks.generator.storage.CommandsTestSupport.assertSameContent;
+import static exchange.core2.benchmarks.generator.storage.CommandsTestSupport.createMergedCommands;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CompressedCorpusTest {
+
+    private static final int NUM_COMMANDS = 50_000;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldRestoreCommandsWithParallelPrefetch() throws Exception {
+
+        final SegmentedBuffer original = createMergedCommands(NUM_COMMANDS, 4096);
+        final Path file = tempFolder.newFile().toPath();
+
+        final int blocks = CompressedCorpusWriter.write(CommandsCorpus.merged(original), file, 1000, Deflater.BEST_SPEED);
+        assertThat(blocks, is(50));
+        assertThat(file.toFile().length() < original.getSize() / 2, is(true));
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try (CompressedCorpusReader reader = CompressedCorpusReader.open(file, executor, 8)) {
+
+            assertThat(reader.hasSymbolId(), is(true));
+            assertThat(reader.getBlocksCount(), is(50));
+            assertThat(reader.getCommandsCount(), is((long) NUM_COMMANDS));
+            assertThat(reader.getFirstCommandIndex(7), is(7000L));
+
+            // streaming blocks in order
+            int commandIdx = 0;
+            SegmentedBuffer block;
+            while ((block = reader.nextBlock()) != null) {
+                final CommandCursor cursor = CommandsCorpus.merged(block).newCursor();
+                while (cursor.next()) {
+                    assertThat(cursor.view().getSymbolId(), is(commandIdx % 7));
+                    commandIdx++;
+                }
+            }
+            assertThat(commandIdx, is(NUM_COMMANDS));
+
+            // random access
+            final CommandCursor cursor = CommandsCorpus.merged(reader.readBlock(3)).newCursor();
+            assertThat(cursor.next(), is(true));
+            assertThat(cursor.view().getSymbolId(), is(3000 % 7));
+        } finally {
+            executor.shutdown();
+        }
+
+        try (CompressedCorpusReader reader = CompressedCorpusReader.open(file, Runnable::run, 1)) {
+            assertSameContent(reader.readRemaining(), original);
+        }
+    }
+
+    @Test
+    public void shouldCloseWithBlocksInFlight() throws Exception {
+
+        final Path file = tempFolder.newFile().toPath();
+        CompressedCorpusWriter.write(CommandsCorpus.merged(createMergedCommands(NUM_COMMANDS, 4096)), file, 1000, Deflater.BEST_SPEED);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            // close waits for prefetched blocks before ending inflaters
+            for (int i = 0; i < 20; i++) {
+                try (CompressedCorpusReader reader = CompressedCorpusReader.open(file, executor, 8)) {
+                    assertThat(reader.nextBlock() != null, is(true));
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldRejectReadsAfterClose() throws Exception {
+
+        final Path file = tempFolder.newFile().toPath();
+        CompressedCorpusWriter.write(CommandsCorpus.merged(createMergedCommands(NUM_COMMANDS, 4096)), file, 1000, Deflater.BEST_SPEED);
+
+        final ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            final CompressedCorpusReader reader = CompressedCorpusReader.open(file, executor, 4);
+            final SegmentedBuffer first = reader.readBlock(0);
+            assertThat(reader.nextBlock() != null, is(true));
+            // inflaters are shared between threads, so random access reuses the one returned by prefetch
+            assertSameContent(reader.readBlock(0), first);
+            reader.close();
+
+            try {
+                reader.readBlock(1);
+                throw new AssertionError("closed reader returned a block");
+            } catch (IllegalStateException ex) {
+                assertThat(ex.getMessage().startsWith("Compressed corpus reader is closed"), is(true));
+            }
+            try {
+                reader.nextBlock();
+                throw new AssertionError("closed reader returned a block");
+            } catch (IllegalStateException ex) {
+                assertThat(ex.getMessage().startsWith("Compressed corpus reader is closed"), is(true));
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldDetectCorruptedBlock() throws Exception {
+
+        final Path file = tempFolder.newFile().toPath();
+        CompressedCorpusWriter.write(CommandsCorpus.merged(createMergedCommands(NUM_COMMANDS, 4096)), file, 1000, Deflater.BEST_SPEED);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file.toFile(), "rw")) {
+            final long pos = CompressedCorpusWriter.HEADER_SIZE + CompressedCorpusWriter.BLOCK_HEADER_SIZE + 20;
+            raf.seek(pos);
+            final int b = raf.read();
+            raf.seek(pos);
+            raf.write(b ^ 0x5A);
+        }
+
+        try (CompressedCorpusReader reader = CompressedCorpusReader.open(file, Runnable::run, 1)) {
+            reader.readBlock(0);
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package exchange.core2.benchmarks.generator.storage;
+
+import exchange.core2.orderbook.IOrderBook;
+import org.eclipse.collections.impl.map.mutable.primitive.IntIntHashMap;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+
+import static exchange.core2.benchmarks.generator.storage.CommandsTestSupport.createMergedCommands;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CorpusTransformerTest {
+
+    private static final int NUM_COMMANDS = 50_000;
+
+    private static final byte[] ALL_COMMANDS = {
+            IOrderBook.COMMAND_PLACE_ORDER,
+            IOrderBook.COMMAND_CANCEL_ORDER,
+            IOrderBook.COMMAND_MOVE_ORDER,
+            IOrderBook.COMMAND_REDUCE_ORDER};
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldRemapFieldsInPlace() {
+
+        final CommandsCorpus corpus = CommandsCorpus.merged(createMergedCommands(NUM_COMMANDS, 4096, ALL_COMMANDS, null));
+
+        // transform mutates the buffer through the stream
+        assertThat(corpus.stream(true).spliterator().hasCharacteristics(Spliterator.IMMUTABLE), is(false));
+
+        final long[] uidTable = new long[100];
+        for (int i = 0; i < uidTable.length; i++) {
+            uidTable[i] = 99 - i;
+        }
+        final IntIntHashMap symbolIdMap = new IntIntHashMap();
+        symbolIdMap.put(3, 33);
+
+        CorpusTransformer.transform(corpus, new CommandFieldsTransform(uidTable, 1000, symbolIdMap, 10, 1_000_000L), true);
+
+        final CommandCursor cursor = corpus.newCursor();
+        for (int i = 0; i < NUM_COMMANDS; i++) {
+            assertThat(cursor.next(), is(true));
+            final CommandView view = cursor.view();
+            final int originalSymbol = i % 7;
+            assertThat(view.getSymbolId(), is((originalSymbol == 3 ? 33 : originalSymbol) + 10));
+            assertThat(view.getUid(), is(99 - (i % 100) + 1000L));
+            assertThat(view.getBuffer().getLong(view.getBodyOffset() + 8), is(i + 1_000_000L));
+        }
+        assertThat(cursor.next(), is(false));
+    }
+
+    @Test
+    public void shouldTransformMappedFile() throws Exception {
+
+        final SegmentedBuffer original = createMergedCommands(NUM_COMMANDS, 64 * 1024, ALL_COMMANDS, null);
+        final Path file = tempFolder.newFile().toPath();
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            original.writeTo(channel);
+        }
+
+        // small segments to check splitting on command boundaries
+        final long commands = CorpusTransformer.transformFile(file, true, CommandFieldsTransform.shift(5, 100, 0), 1000);
+        assertThat(commands, is((long) NUM_COMMANDS));
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            final SegmentedBuffer mapped = CorpusTransformer.mapCommands(channel, true, 1 << 20);
+            assertThat(mapped.getSize(), is(original.getSize()));
+            final CommandCursor cursor = CommandsCorpus.merged(mapped).newCursor();
+            for (int i = 0; i < NUM_COMMANDS; i++) {
+                assertThat(cursor.next(), is(true));
+                assertThat(cursor.view().getSymbolId(), is(i % 7 + 100));
+                assertThat(cursor.view().getUid(), is(i % 100 + 5L));
+            }
+        }
+    }
+}
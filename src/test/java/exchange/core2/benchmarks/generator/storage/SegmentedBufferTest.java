@@ -0,0 +1,60 @@
+package exchange.core2.benchmarks.generator.storage;
+
+import org.junit.Test;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class SegmentedBufferTest {
+
+    @Test
+    public void shouldWriteAndReadRecordsAcrossSegments() {
+
+        final SegmentedBufferWriter writer = new SegmentedBufferWriter(128);
+
+        // 13-byte records, never split between segments
+        for (int i = 0; i < 1000; i++) {
+            writer.beginRecord(13);
+            writer.appendByte((byte) i);
+            writer.appendInt(i * 7);
+            writer.appendLong(i * 1_000_003L);
+        }
+
+        final SegmentedBuffer buffer = writer.toBuffer();
+        assertThat(buffer.getSize(), is(13_000L));
+        assertThat(buffer.getSegmentsCount(), is(112));
+        assertThat(buffer.getSegmentLimit(0), is(117));
+
+        final SegmentedBufferReader reader = buffer.newReader();
+        for (int i = 0; i < 1000; i++) {
+            final long address = reader.getPosition();
+            assertThat(buffer.getInt(address + 1), is(i * 7));
+            assertThat(reader.readByte(), is((byte) i));
+            assertThat(reader.readInt(), is(i * 7));
+            assertThat(reader.readLong(), is(i * 1_000_003L));
+        }
+        assertThat(reader.getRemainingSize(), is(0L));
+
+        // copying into another segmented buffer
+        final SegmentedBufferReader reader2 = buffer.newReader();
+        final SegmentedBufferWriter copyWriter = new SegmentedBufferWriter(256);
+        while (reader2.getRemainingSize() > 0) {
+            copyWriter.beginRecord(13);
+            reader2.readBytesToWriter(copyWriter, 13);
+        }
+        final SegmentedBuffer copy = copyWriter.toBuffer();
+        assertThat(copy.getSize(), is(buffer.getSize()));
+        assertThat(copy.getSegmentsCount(), is(53));
+
+        final SegmentedBufferReader copyReader = copy.newReader();
+        for (int i = 0; i < 1000; i++) {
+            assertThat(copyReader.readByte(), is((byte) i));
+            assertThat(copyReader.readInt(), is(i * 7));
+            assertThat(copyReader.readLong(), is(i * 1_000_003L));
+        }
+
+        buffer.free();
+        copy.free();
+    }
+
+}
@@ -0,0 +1,79 @@
+package exchange.core2.benchmarks.generator.symbols;
+
+import exchange.core2.benchmarks.generator.GeneratorSymbolSpec;
+import exchange.core2.benchmarks.generator.currencies.CurrenciesGenerator;
+import org.apache.commons.math3.util.Pair;
+import org.junit.Test;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.closeTo;
+import static org.hamcrest.core.Is.is;
+
+public class SymbolTableTest {
+
+    @Test
+    public void shouldGenerateSameTableAndMatchSpecHashes() {
+
+        final Map<Integer, Double> currencies = CurrenciesGenerator.randomCurrencies(20, 100, 1);
+
+        final SymbolTable table = SymbolsGenerator.generateRandomSymbolTable(
+                200_000,
+                currencies,
+                EnumSet.allOf(GeneratorSymbolSpec.SymbolType.class),
+                1000,
+                1);
+
+        final SymbolTable table2 = SymbolsGenerator.generateRandomSymbolTable(
+                200_000,
+                currencies,
+                EnumSet.allOf(GeneratorSymbolSpec.SymbolType.class),
+                1000,
+                1);
+
+        assertThat(table.size(), is(200_000));
+
+        final SymbolSpecView view = table.newView();
+        double weightSum = 0.0;
+        for (int i = 0; i < table.size(); i++) {
+            view.wrap(i);
+            final GeneratorSymbolSpec spec = table.toSpec(i);
+            assertThat(view.getSymbolId(), is(1000 + i));
+            assertThat(view.stateHash(), is(spec.stateHash()));
+            assertThat(view.isExchangeType(), is(spec.isExchangeType()));
+            assertThat(spec, is(table2.toSpec(i)));
+            assertThat(view.getBaseCurrency() != view.getQuoteCurrency(), is(true));
+            weightSum += view.getWeight();
+        }
+        assertThat(weightSum, closeTo(1.0, 1e-9));
+
+        assertThat(table.indexOf(1000 + 12345), is(12345));
+        assertThat(table.indexOf(999), is(-1));
+    }
+
+    @Test
+    public void shouldConvertFromAndToWeightedSpecs() {
+
+        final Map<Integer, Double> currencies = CurrenciesGenerator.randomCurrencies(10, 100, 2);
+
+        final List<Pair<GeneratorSymbolSpec, Double>> specs = SymbolsGenerator.generateRandomSymbols(
+                1000,
+                currencies,
+                EnumSet.allOf(GeneratorSymbolSpec.SymbolType.class),
+                40000,
+                2);
+
+        final SymbolTable table = SymbolTable.fromWeightedSpecs(specs);
+        final List<Pair<GeneratorSymbolSpec, Double>> converted = table.toWeightedSpecs();
+
+        assertThat(converted.size(), is(specs.size()));
+        for (int i = 0; i < specs.size(); i++) {
+            assertThat(converted.get(i).getFirst(), is(specs.get(i).getFirst()));
+            assertThat(converted.get(i).getSecond(), is(specs.get(i).getSecond()));
+            assertThat(table.newView().wrap(i).stateHash(), is(specs.get(i).getFirst().stateHash()));
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package exchange.core2.benchmarks.generator.transfers;
+
+import exchange.core2.benchmarks.generator.clients.ClientsCurrencyAccountsGenerator;
+import exchange.core2.benchmarks.generator.currencies.CurrenciesGenerator;
+import exchange.core2.benchmarks.generator.currencies.CurrencyRatesMatrix;
+import exchange.core2.benchmarks.generator.storage.SegmentedBuffer;
+import org.eclipse.collections.impl.map.mutable.primitive.LongIntHashMap;
+import org.eclipse.collections.impl.map.mutable.primitive.LongLongHashMap;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.function.LongToIntFunction;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.core.Is.is;
+
+public class TransfersGeneratorTest {
+
+    // client:32 | currency:16 | accountNum:16
+    private static final ClientsCurrencyAccountsGenerator.AccountEncoder ENCODER =
+            (clientId, currencyId, accountNum) -> (clientId << 32) | ((long) currencyId << 16) | accountNum;
+
+    private static final LongToIntFunction CURRENCY_EXTRACTOR = account -> (int) ((account >>> 16) & 0xFFFF);
+
+    @Test
+    public void shouldGenerateDeterministicSameCurrencyTransfersWithoutOverdraft() {
+
+        final Map<Integer, Double> currencies = CurrenciesGenerator.randomCurrencies(10, 1, 1);
+        final long[] accounts = ClientsCurrencyAccountsGenerator.generateAccountsForTransfers(20_000, currencies, ENCODER, 5, 1);
+
+        final TransfersGeneratorConfig config = new TransfersGeneratorConfig(
+                200_000, 4, 0.01, 0.5, true, true, 1_000_000L, 1000, 1024 * 1024, 1);
+
+        final TransfersGenResult result1 = TransfersGenerator.generateTransfers(accounts, CURRENCY_EXTRACTOR, config);
+        final TransfersGenResult result2 = TransfersGenerator.generateTransfers(accounts, CURRENCY_EXTRACTOR, config);
+
+        final SegmentedBuffer buf1 = result1.getTransfers();
+        final SegmentedBuffer buf2 = result2.getTransfers();
+
+        assertThat(buf1.getSize(), is(200_000L * TransferCommand.SIZE));
+        assertThat(buf2.getSize(), is(buf1.getSize()));
+
+        final LongLongHashMap balances = new LongLongHashMap();
+        final LongIntHashMap sourceCounters = new LongIntHashMap();
+        for (long account : accounts) {
+            balances.put(account, 1_000_000L);
+        }
+
+        int hotTransfers = 0;
+        for (int s = 0; s < buf1.getSegmentsCount(); s++) {
+            for (int offset = 0; offset < buf1.getSegmentLimit(s); offset += TransferCommand.SIZE) {
+                final long address = SegmentedBuffer.address(s, offset);
+                for (int i = 0; i < TransferCommand.SIZE; i += 4) {
+                    assertThat(buf1.getInt(address + i), is(buf2.getInt(address + i)));
+                }
+
+                final long src = TransferCommand.getSourceAccount(buf1, address);
+                final long dst = TransferCommand.getDestinationAccount(buf1, address);
+                final long amount = TransferCommand.getAmount(buf1, address);
+                final int currency = TransferCommand.getCurrency(buf1, address);
+
+                assertThat(src == dst, is(false));
+                assertThat(CURRENCY_EXTRACTOR.applyAsInt(src), is(currency));
+                assertThat(CURRENCY_EXTRACTOR.applyAsInt(dst), is(currency));
+                assertThat(TransferCommand.getDestinationCurrency(buf1, address), is(currency));
+                assertThat(TransferCommand.getDestinationAmount(buf1, address), is(amount));
+                assertThat(amount, greaterThan(0L));
+
+                // applying in merged order - no overdraft even with credits
+                balances.addToValue(src, -amount);
+                balances.addToValue(dst, amount);
+                assertThat(balances.get(src), greaterThanOrEqualTo(0L));
+
+                sourceCounters.addToValue(src, 1);
+            }
+        }
+
+        // skew: most active source account is much more active than average (10 transfers per account)
+        assertThat(sourceCounters.max(), greaterThan(100));
+
+        assertThat(result1.getInitialBalances().length, is(accounts.length));
+
+        buf1.free();
+        buf2.free();
+    }
+
+    @Test
+    public void shouldFindFundedAccountsAfterHotAccountsDrain() {
+
+        final Map<Integer, Double> currencies = CurrenciesGenerator.randomCurrencies(10, 1, 3);
+        final long[] accounts = ClientsCurrencyAccountsGenerator.generateAccountsForTransfers(2000, currencies, ENCODER, 5, 3);
+
+        // 90% of picks go to 20 hot accounts, which drain after a few transfers each
+        // ~30k transfers of 50 on average require ~75% of the total budget
+        final TransfersGeneratorConfig config = new TransfersGeneratorConfig(
+                30_000, 2, 0.01, 0.9, true, true, 1000L, 100, 1024 * 1024, 3);
+
+        final TransfersGenResult result = TransfersGenerator.generateTransfers(accounts, CURRENCY_EXTRACTOR, config);
+
+        assertThat(result.isBudgetExhausted(), is(false));
+        assertThat(result.getNumTransfers(), is(30_000));
+        assertThat(result.getTransfers().getSize(), is(30_000L * TransferCommand.SIZE));
+        assertThat(sumAmounts(result.getTransfers()) <= 1000L * accounts.length, is(true));
+
+        result.getTransfers().free();
+    }
+
+    @Test
+    public void shouldStopWhenBudgetExhausted() {
+
+        final Map<Integer, Double> currencies = CurrenciesGenerator.randomCurrencies(10, 1, 4);
+        final long[] accounts = ClientsCurrencyAccountsGenerator.generateAccountsForTransfers(2000, currencies, ENCODER, 5, 4);
+
+        final TransfersGeneratorConfig config = new TransfersGeneratorConfig(
+                1_000_000, 4, 0.01, 0.5, true, true, 100L, 50, 1024 * 1024, 4);
+
+        final TransfersGenResult result = TransfersGenerator.generateTransfers(accounts, CURRENCY_EXTRACTOR, config);
+
+        assertThat(result.isBudgetExhausted(), is(true));
+        assertThat(result.getNumTransfers() < 1_000_000, is(true));
+        assertThat(result.getTransfers().getSize(), is((long) result.getNumTransfers() * TransferCommand.SIZE));
+        assertThat(Arrays.stream(result.getTransfersPerPartition()).sum(), is(result.getNumTransfers()));
+
+        // every account was drained completely (all currencies have more than one account)
+        assertThat(sumAmounts(result.getTransfers()), is(100L * accounts.length));
+
+        result.getTransfers().free();
+    }
+
+    private static long sumAmounts(final SegmentedBuffer transfers) {
+        long sum = 0;
+        for (int s = 0; s < transfers.getSegmentsCount(); s++) {
+            for (int offset = 0; offset < transfers.getSegmentLimit(s); offset += TransferCommand.SIZE) {
+                sum += TransferCommand.getAmount(transfers, SegmentedBuffer.address(s, offset));
+            }
+        }
+        return sum;
+    }
+
+    @Test
+    public void shouldGenerateCrossCurrencyTransfersWithoutBalances() {
+
+        final Map<Integer, Double> currencies = CurrenciesGenerator.randomCurrencies(5, 1, 2);
+        final long[] accounts = ClientsCurrencyAccountsGenerator.generateAccountsForTransfers(1000, currencies, ENCODER, 3, 2);
+        final CurrencyRatesMatrix rates = CurrencyRatesMatrix.create(
+                CurrenciesGenerator.generateRandomRates(currencies.keySet().stream(), 2.2, 2));
+
+        final TransfersGeneratorConfig config = new TransfersGeneratorConfig(
+                10_001, 3, 1.0, 0.0, false, false, 0L, 100, 4096, 2, rates);
+
+        final TransfersGenResult result = TransfersGenerator.generateTransfers(accounts, CURRENCY_EXTRACTOR, config);
+
+        // destination is credited in its own currency
+        int crossCurrency = 0;
+        final SegmentedBuffer transfers = result.getTransfers();
+        for (int s = 0; s < transfers.getSegmentsCount(); s++) {
+            for (int offset = 0; offset < transfers.getSegmentLimit(s); offset += TransferCommand.SIZE) {
+                final long address = SegmentedBuffer.address(s, offset);
+                final int srcCurrency = TransferCommand.getCurrency(transfers, address);
+                final int dstCurrency = TransferCommand.getDestinationCurrency(transfers, address);
+                assertThat(CURRENCY_EXTRACTOR.applyAsInt(TransferCommand.getSourceAccount(transfers, address)), is(srcCurrency));
+                assertThat(CURRENCY_EXTRACTOR.applyAsInt(TransferCommand.getDestinationAccount(transfers, address)), is(dstCurrency));
+                final long amount = TransferCommand.getAmount(transfers, address);
+                assertThat(TransferCommand.getDestinationAmount(transfers, address), is(Math.round(amount * rates.getRateByIds(srcCurrency, dstCurrency))));
+                if (srcCurrency != dstCurrency) {
+                    crossCurrency++;
+                }
+            }
+        }
+        assertThat(crossCurrency, greaterThan(1000));
+
+        assertThat(result.getNumTransfers(), is(10_001));
+        assertThat(result.getTransfersPerPartition()[0], is(3334));
+        assertThat(result.getTransfersPerPartition()[2], is(3333));
+        assertThat(result.getInitialBalances() == null, is(true));
+        assertThat(result.getTransfers().getSize(), is(10_001L * TransferCommand.SIZE));
+        assertThat(result.getTransfers().getSegmentsCount(), greaterThan(1));
+
+        result.getTransfers().free();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void shouldRequireRatesForCrossCurrencyTransfers() {
+        new TransfersGeneratorConfig(100, 1, 1.0, 0.0, false, false, 0L, 100, 4096, 1);
+    }
+}
@@ -0,0 +1,128 @@
+package exchange.core2.benchmarks.generator.util;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogReader;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class LatencyIntervalRecorderTest {
+
+    @Test
+    public void shouldMergeThreadsAndWriteIntervalLog() throws Exception {
+
+        final ByteArrayOutputStream logStream = new ByteArrayOutputStream();
+        final LatencyIntervalRecorder recorder = new LatencyIntervalRecorder(TimeUnit.SECONDS.toNanos(10), 3, logStream);
+
+        for (int interval = 0; interval < 3; interval++) {
+
+            final List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final LatencyIntervalRecorder.ThreadRecorder threadRecorder = recorder.newThreadRecorder();
+                final long value = (interval + 1) * 1000L;
+                threads.add(new Thread(() -> {
+                    try (LatencyIntervalRecorder.ThreadRecorder r = threadRecorder) {
+                        for (int i = 0; i < 10_000; i++) {
+                            r.recordValue(value);
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            final Histogram intervalHistogram = recorder.sampleInterval();
+            assertThat(intervalHistogram.getTotalCount(), is(40_000L));
+            assertThat(intervalHistogram.getMaxValue() / 1000, is((long) interval + 1));
+
+            // finished threads are not sampled anymore
+            assertThat(recorder.getThreadRecordersCount(), is(0));
+        }
+
+        // values above the trackable range are clamped
+        recorder.newThreadRecorder().recordValue(Long.MAX_VALUE);
+        recorder.close();
+
+        assertThat(recorder.getIntervalsCount(), is(4));
+        assertThat(recorder.getTotalHistogram().getTotalCount(), is(120_001L));
+        assertThat(recorder.createReport().size(), is(5));
+
+        final HistogramLogReader reader = new HistogramLogReader(new ByteArrayInputStream(logStream.toByteArray()));
+        long logged = 0;
+        int intervals = 0;
+        while (reader.hasNext()) {
+            logged += ((Histogram) reader.nextIntervalHistogram()).getTotalCount();
+            intervals++;
+        }
+        assertThat(intervals, is(4));
+        assertThat(logged, is(120_001L));
+    }
+
+    @Test
+    public void shouldStopScheduledSamplingOnClose() throws Exception {
+
+        final ByteArrayOutputStream logStream = new ByteArrayOutputStream();
+        final LatencyIntervalRecorder recorder = new LatencyIntervalRecorder(TimeUnit.SECONDS.toNanos(10), 3, logStream);
+        final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+
+        try {
+            final ScheduledFuture<?> future = recorder.schedule(scheduler, 1, TimeUnit.MILLISECONDS);
+
+            final List<Thread> threads = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                final LatencyIntervalRecorder.ThreadRecorder threadRecorder = recorder.newThreadRecorder();
+                threads.add(new Thread(() -> {
+                    try (LatencyIntervalRecorder.ThreadRecorder r = threadRecorder) {
+                        for (int i = 0; i < 200_000; i++) {
+                            r.recordValue(1000L + (i & 1023));
+                        }
+                    }
+                }));
+            }
+            threads.forEach(Thread::start);
+            for (Thread thread : threads) {
+                thread.join();
+            }
+
+            // close races with scheduled sampling
+            recorder.close();
+            assertThat(future.isCancelled(), is(true));
+
+            final int intervals = recorder.getIntervalsCount();
+            Thread.sleep(20);
+            assertThat(recorder.getIntervalsCount(), is(intervals));
+            assertThat(recorder.getTotalHistogram().getTotalCount(), is(800_000L));
+
+            final HistogramLogReader reader = new HistogramLogReader(new ByteArrayInputStream(logStream.toByteArray()));
+            long logged = 0;
+            int logIntervals = 0;
+            while (reader.hasNext()) {
+                logged += ((Histogram) reader.nextIntervalHistogram()).getTotalCount();
+                logIntervals++;
+            }
+            assertThat(logIntervals, is(intervals));
+            assertThat(logged, is(800_000L));
+        } finally {
+            scheduler.shutdownNow();
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void shouldNotSampleAfterClose() {
+        final LatencyIntervalRecorder recorder = new LatencyIntervalRecorder(TimeUnit.SECONDS.toNanos(10), 3, null);
+        recorder.close();
+        recorder.sampleInterval();
+    }
+}
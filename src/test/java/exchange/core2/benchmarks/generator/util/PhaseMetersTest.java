@@ -0,0 +1,48 @@
+package exchange.core2.benchmarks.generator.util;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.greaterThanOrEqualTo;
+import static org.hamcrest.core.Is.is;
+
+public class PhaseMetersTest {
+
+    private static volatile Object sink;
+
+    @Test
+    public void shouldMeasureAllocationsPerCommandAndCheckBudgets() {
+
+        final PhaseMeters meters = new PhaseMeters();
+
+        try (PhaseMeters.PhaseMeter meter = meters.start(GenerationPhase.SYMBOL_COMMANDS)) {
+            for (int i = 0; i < 1000; i++) {
+                sink = new byte[1024];
+            }
+            meter.addCommands(1000);
+        }
+
+        assertThat(meters.getCommands(GenerationPhase.SYMBOL_COMMANDS), is(1000L));
+        assertThat(meters.getAllocatedBytes(GenerationPhase.SYMBOL_COMMANDS), greaterThanOrEqualTo(1024L * 1000));
+        assertThat(meters.getAllocatedBytesPerCommand(GenerationPhase.SYMBOL_COMMANDS), greaterThanOrEqualTo(1024.0));
+        assertThat(Double.isNaN(meters.getAllocatedBytesPerCommand(GenerationPhase.FILL_MERGE)), is(true));
+
+        final Map<GenerationPhase, Double> budgets = new EnumMap<>(GenerationPhase.class);
+        budgets.put(GenerationPhase.SYMBOL_COMMANDS, 100.0);
+        budgets.put(GenerationPhase.FILL_MERGE, 1.0);
+        final List<String> violations = meters.checkAllocationBudgets(budgets);
+        assertThat(violations.size(), is(1));
+
+        assertThat(meters.checkAllocationBudgets(Collections.singletonMap(GenerationPhase.SYMBOL_COMMANDS, 1e9)).isEmpty(), is(true));
+
+        // no-op meter
+        try (PhaseMeters.PhaseMeter meter = PhaseMeters.start(null, GenerationPhase.CLIENTS)) {
+            meter.addCommands(1);
+        }
+    }
+}
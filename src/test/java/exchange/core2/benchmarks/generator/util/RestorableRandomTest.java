@@ -0,0 +1,44 @@
+package exchange.core2.benchmarks.generator.util;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class RestorableRandomTest {
+
+    @Test
+    public void shouldProduceSameSequenceAsRandom() {
+
+        final Random expected = new Random(-177277L);
+        final RestorableRandom actual = new RestorableRandom(-177277L);
+
+        for (int i = 0; i < 10_000; i++) {
+            assertThat(actual.nextInt(), is(expected.nextInt()));
+            assertThat(actual.nextInt(1 + i), is(expected.nextInt(1 + i)));
+            assertThat(actual.nextLong(), is(expected.nextLong()));
+            assertThat(actual.nextDouble(), is(expected.nextDouble()));
+            assertThat(actual.nextBoolean(), is(expected.nextBoolean()));
+        }
+    }
+
+    @Test
+    public void shouldContinueSequenceFromRestoredState() {
+
+        final RestorableRandom random = new RestorableRandom(42L);
+        for (int i = 0; i < 1000; i++) {
+            random.nextInt(100);
+        }
+
+        final long state = random.getState();
+        final long[] expected = random.longs(100).toArray();
+
+        final RestorableRandom restored = new RestorableRandom(0L);
+        restored.setState(state);
+        final long[] actual = restored.longs(100).toArray();
+
+        assertThat(actual, is(expected));
+    }
+}